@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.unitils.reflectionassert.difference.Difference;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+import static org.unitils.reflectionassert.ReflectionComparatorMode.LENIENT_ORDER;
+import static org.unitils.reflectionassert.ReflectionComparatorMode.PARALLEL;
+
+/**
+ * Benchmarks the comparison of large collections and maps: the CollectionComparator (strict order), the
+ * LenientOrderCollectionComparator (equal and with a single different element) and the MapComparator.
+ * The ordered collections and maps are also compared in parallel mode, with a threshold of 1000 elements.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionComparatorBenchmark {
+
+    /* The minimum nr of elements that are compared in parallel for the parallel benchmarks */
+    private static final int PARALLEL_THRESHOLD = 1000;
+
+    /* The nr of elements in the collections and maps */
+    @Param({"100", "1000", "5000"})
+    public int size;
+
+    /* The nr of values and attributes per element */
+    @Param({"5"})
+    public int collectionSize;
+
+    private List<Node> left;
+
+    private List<Node> equalRight;
+
+    private List<Node> shuffledRight;
+
+    private List<Node> differentShuffledRight;
+
+    private Map<String, Node> leftMap;
+
+    private Map<String, Node> rightMap;
+
+
+    @Setup
+    public void setUp() {
+        ObjectGraphGenerator objectGraphGenerator = new ObjectGraphGenerator(1, 0, collectionSize, 0);
+        left = objectGraphGenerator.createNodeList(size, 1);
+        equalRight = objectGraphGenerator.createNodeList(size, 1);
+
+        shuffledRight = objectGraphGenerator.createNodeList(size, 1);
+        Collections.shuffle(shuffledRight, new Random(2));
+
+        differentShuffledRight = objectGraphGenerator.createNodeList(size, 1);
+        Collections.shuffle(differentShuffledRight, new Random(2));
+        differentShuffledRight.get(0).setName("changed");
+
+        leftMap = createMap(left);
+        rightMap = createMap(objectGraphGenerator.createNodeList(size, 1));
+    }
+
+
+    @Benchmark
+    public Difference orderedCollection() {
+        return createRefectionComparator().getDifference(left, equalRight);
+    }
+
+
+    @Benchmark
+    public Difference lenientOrderCollection() {
+        return createRefectionComparator(LENIENT_ORDER).getDifference(left, shuffledRight);
+    }
+
+
+    @Benchmark
+    public Difference lenientOrderCollectionOneDifference() {
+        return createRefectionComparator(LENIENT_ORDER).getDifference(left, differentShuffledRight);
+    }
+
+
+    @Benchmark
+    public Difference map() {
+        return createRefectionComparator().getDifference(leftMap, rightMap);
+    }
+
+
+    @Benchmark
+    public Difference parallelOrderedCollection() {
+        return createRefectionComparator(PARALLEL_THRESHOLD, PARALLEL).getDifference(left, equalRight);
+    }
+
+
+    @Benchmark
+    public Difference parallelMap() {
+        return createRefectionComparator(PARALLEL_THRESHOLD, PARALLEL).getDifference(leftMap, rightMap);
+    }
+
+
+    protected Map<String, Node> createMap(List<Node> nodes) {
+        Map<String, Node> result = new LinkedHashMap<String, Node>();
+        for (Node node : nodes) {
+            result.put(node.getName(), node);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.unitils.reflectionassert.difference.Difference;
+import org.unitils.reflectionassert.report.impl.DefaultDifferenceReport;
+import org.unitils.reflectionassert.report.impl.DefaultDifferenceView;
+import org.unitils.reflectionassert.report.impl.SimpleDifferenceView;
+import org.unitils.reflectionassert.report.impl.TreeDifferenceView;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+import static org.unitils.reflectionassert.ReflectionComparatorMode.LENIENT_ORDER;
+
+/**
+ * Benchmarks the creation of the difference reports for graphs that have different values in every node.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DifferenceReportBenchmark {
+
+    /* The depth of the graphs */
+    @Param({"3"})
+    public int depth;
+
+    /* The nr of children per node */
+    @Param({"4"})
+    public int width;
+
+    /* The nr of values and attributes per node */
+    @Param({"10", "100"})
+    public int collectionSize;
+
+    /* The comparator modes, comma separated */
+    @Param({"STRICT", "LENIENT_ORDER"})
+    public String modes;
+
+    private Difference difference;
+
+
+    @Setup
+    public void setUp() {
+        ObjectGraphGenerator objectGraphGenerator = new ObjectGraphGenerator(depth, width, collectionSize, 0);
+        Node left = objectGraphGenerator.createGraph(1);
+        Node right = objectGraphGenerator.createGraph(2);
+        difference = createRefectionComparator(ReflectionComparatorBenchmark.getComparatorModes(modes)).getDifference(left, right);
+    }
+
+
+    @Benchmark
+    public String defaultDifferenceReport() {
+        return new DefaultDifferenceReport().createReport(difference);
+    }
+
+
+    @Benchmark
+    public String defaultDifferenceView() {
+        return new DefaultDifferenceView().createView(difference);
+    }
+
+
+    @Benchmark
+    public String treeDifferenceView() {
+        return new TreeDifferenceView().createView(difference);
+    }
+
+
+    @Benchmark
+    public String simpleDifferenceView() {
+        return new SimpleDifferenceView().createView(difference);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Element of the object graphs that are compared by the benchmarks. It contains the kind of fields typical
+ * domain objects have: simple values, a date, a collection, a map and references to other nodes.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class Node {
+
+    private String name;
+
+    private long number;
+
+    private Date createdAt;
+
+    /* Reference to the parent node, creates a cycle */
+    private Node parent;
+
+    /* Optional reference to another node in the graph, creates a cycle */
+    private Node reference;
+
+    private List<Node> children = new ArrayList<Node>();
+
+    private List<Integer> values = new ArrayList<Integer>();
+
+    private Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+
+    public Node(String name, long number, Date createdAt, Node parent) {
+        this.name = name;
+        this.number = number;
+        this.createdAt = createdAt;
+        this.parent = parent;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public Node getParent() {
+        return parent;
+    }
+
+    public Node getReference() {
+        return reference;
+    }
+
+    public void setReference(Node reference) {
+        this.reference = reference;
+    }
+
+    public List<Node> getChildren() {
+        return children;
+    }
+
+    public List<Integer> getValues() {
+        return values;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates object graphs of nodes for the benchmarks.
+ * <p/>
+ * The shape of the graph is configurable: the depth of the tree, the nr of children per node (width), the size of
+ * the value lists and attribute maps of each node and the fraction of nodes that get an extra reference to a random
+ * other node in the graph (cycle density). Every node also refers to its parent, so there are always cycles.
+ * <p/>
+ * Graphs created with the same seed are equal, but contain no shared instances.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ObjectGraphGenerator {
+
+    /* The depth of the generated trees */
+    private int depth;
+
+    /* The nr of children of each node */
+    private int width;
+
+    /* The nr of values and attributes of each node */
+    private int collectionSize;
+
+    /* The fraction (0 - 1) of nodes that get a reference to another node */
+    private double cycleDensity;
+
+
+    public ObjectGraphGenerator(int depth, int width, int collectionSize, double cycleDensity) {
+        this.depth = depth;
+        this.width = width;
+        this.collectionSize = collectionSize;
+        this.cycleDensity = cycleDensity;
+    }
+
+
+    /**
+     * Creates a graph.
+     *
+     * @param seed The seed for the random values and references
+     * @return The root node, not null
+     */
+    public Node createGraph(long seed) {
+        Random random = new Random(seed);
+        List<Node> allNodes = new ArrayList<Node>();
+        Node root = createNode("root", null, random, allNodes);
+        addChildren(root, 1, random, allNodes);
+        addReferences(allNodes, random);
+        return root;
+    }
+
+
+    /**
+     * Creates a graph that is equal to the graph created with the same seed, except for the order of the elements
+     * in the children and value lists. The graphs are only equal in lenient order mode.
+     *
+     * @param seed The seed for the random values and references
+     * @return The root node, not null
+     */
+    public Node createShuffledGraph(long seed) {
+        Node root = createGraph(seed);
+        Random random = new Random(seed + 1);
+        shuffle(root, random);
+        return root;
+    }
+
+
+    /**
+     * Creates a graph that is equal to the graph created with the same seed, except for the name of the
+     * deepest node.
+     *
+     * @param seed The seed for the random values and references
+     * @return The root node, not null
+     */
+    public Node createDifferentGraph(long seed) {
+        Node root = createGraph(seed);
+        Node node = root;
+        while (!node.getChildren().isEmpty()) {
+            node = node.getChildren().get(node.getChildren().size() - 1);
+        }
+        node.setName(node.getName() + "-changed");
+        return root;
+    }
+
+
+    /**
+     * Creates a flat list of nodes without children.
+     *
+     * @param size The nr of nodes
+     * @param seed The seed for the random values
+     * @return The nodes, not null
+     */
+    public List<Node> createNodeList(int size, long seed) {
+        Random random = new Random(seed);
+        List<Node> result = new ArrayList<Node>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(createNode("node" + i, null, random, new ArrayList<Node>()));
+        }
+        return result;
+    }
+
+
+    protected void addChildren(Node node, int level, Random random, List<Node> allNodes) {
+        if (level >= depth) {
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            Node child = createNode(node.getName() + "." + i, node, random, allNodes);
+            node.getChildren().add(child);
+            addChildren(child, level + 1, random, allNodes);
+        }
+    }
+
+
+    protected Node createNode(String name, Node parent, Random random, List<Node> allNodes) {
+        Node node = new Node(name, random.nextLong(), new Date(random.nextInt()), parent);
+        for (int i = 0; i < collectionSize; i++) {
+            node.getValues().add(random.nextInt());
+            node.getAttributes().put("key" + i, "value" + random.nextInt());
+        }
+        allNodes.add(node);
+        return node;
+    }
+
+
+    protected void addReferences(List<Node> allNodes, Random random) {
+        for (Node node : allNodes) {
+            if (random.nextDouble() < cycleDensity) {
+                node.setReference(allNodes.get(random.nextInt(allNodes.size())));
+            }
+        }
+    }
+
+
+    protected void shuffle(Node node, Random random) {
+        Collections.shuffle(node.getValues(), random);
+        Collections.shuffle(node.getChildren(), random);
+        for (Node child : node.getChildren()) {
+            shuffle(child, random);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.unitils.reflectionassert.ReflectionComparatorMode;
+import org.unitils.reflectionassert.difference.Difference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+
+/**
+ * Benchmarks the comparison of object graphs through the reflection comparator, for every combination of
+ * comparator modes. A new reflection comparator is created for every comparison, as is done by the reflection
+ * assertions.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionComparatorBenchmark {
+
+    /* The depth of the graphs */
+    @Param({"4"})
+    public int depth;
+
+    /* The nr of children per node */
+    @Param({"4"})
+    public int width;
+
+    /* The nr of values and attributes per node */
+    @Param({"10", "100"})
+    public int collectionSize;
+
+    /* The fraction of nodes with an extra reference to another node */
+    @Param({"0.0", "0.2"})
+    public double cycleDensity;
+
+    /* The comparator modes, comma separated */
+    @Param({"STRICT", "IGNORE_DEFAULTS", "LENIENT_DATES", "LENIENT_ORDER", "IGNORE_DEFAULTS,LENIENT_DATES", "IGNORE_DEFAULTS,LENIENT_ORDER", "LENIENT_DATES,LENIENT_ORDER", "IGNORE_DEFAULTS,LENIENT_DATES,LENIENT_ORDER"})
+    public String modes;
+
+    private ReflectionComparatorMode[] comparatorModes;
+
+    private Node left;
+
+    private Node equalRight;
+
+    private Node differentRight;
+
+
+    @Setup
+    public void setUp() {
+        ObjectGraphGenerator objectGraphGenerator = new ObjectGraphGenerator(depth, width, collectionSize, cycleDensity);
+        comparatorModes = getComparatorModes(modes);
+        left = objectGraphGenerator.createGraph(1);
+        if (modes.contains("LENIENT_ORDER")) {
+            equalRight = objectGraphGenerator.createShuffledGraph(1);
+        } else {
+            equalRight = objectGraphGenerator.createGraph(1);
+        }
+        differentRight = objectGraphGenerator.createDifferentGraph(1);
+    }
+
+
+    @Benchmark
+    public boolean isEqual() {
+        return createRefectionComparator(comparatorModes).isEqual(left, equalRight);
+    }
+
+
+    @Benchmark
+    public Difference getDifferenceEqual() {
+        return createRefectionComparator(comparatorModes).getDifference(left, equalRight);
+    }
+
+
+    @Benchmark
+    public Difference getDifferenceDifferent() {
+        return createRefectionComparator(comparatorModes).getDifference(left, differentRight);
+    }
+
+
+    /**
+     * @param modes The comma separated modes, STRICT for no modes
+     * @return The modes, not null
+     */
+    public static ReflectionComparatorMode[] getComparatorModes(String modes) {
+        List<ReflectionComparatorMode> result = new ArrayList<ReflectionComparatorMode>();
+        for (String mode : modes.split(",")) {
+            if (!"STRICT".equals(mode)) {
+                result.add(ReflectionComparatorMode.valueOf(mode));
+            }
+        }
+        return result.toArray(new ReflectionComparatorMode[result.size()]);
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.unitils.core.dbsupport;
 
+
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -61,6 +63,40 @@ public class Db2DbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABNAME, COLNAME from SYSCAT.COLUMNS where TABSCHEMA = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABNAME, COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABSCHEMA = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database schema, using
+     * a single query.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        return getItemsAsStringSetMap("select TABNAME, REFTABNAME from SYSCAT.REFERENCES where TABSCHEMA = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema. <p/>
      * TODO check view types V = View (untyped) W = Typed view
@@ -111,20 +147,7 @@ public class Db2DbSupport extends DbSupport {
      */
     @Override
     public void disableReferentialConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableReferentialConstraints(String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select TABNAME, CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABSCHEMA = '" + getSchemaName() + "'"));
     }
 
 
@@ -133,39 +156,48 @@ public class Db2DbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableValueConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableValueConstraints(String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABNAME = '" + tableName + "' and TABSCHEMA = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select TABNAME, CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABSCHEMA = '" + getSchemaName() + "'"));
 
         // Retrieve the name of the primary key columns, since we cannot remove the not-null constraint on these columns
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = '" + tableName + "' and TABSCHEMA = '" + getSchemaName() + "'");
+        Map<String, Set<String>> primaryKeyColumnNamesPerTable = getPrimaryKeyColumnNamesPerTable();
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + getSchemaName() + "'");
-        for (String notNullColumnName : notNullColumnNames) {
-            if (primaryKeyColumnNames.contains(notNullColumnName)) {
-                // Do not remove PK constraints
+        Set<String> tableNames = getTableNames();
+        Map<String, Set<String>> notNullColumnNamesPerTable = getItemsAsStringSetMap("select TABNAME, COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABSCHEMA = '" + getSchemaName() + "'");
+        for (Map.Entry<String, Set<String>> entry : notNullColumnNamesPerTable.entrySet()) {
+            String tableName = entry.getKey();
+            if (!tableNames.contains(tableName)) {
+                // skip views
                 continue;
             }
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + quoted(notNullColumnName) + " drop not null");
-            sqlHandler.executeUpdate("call SYSPROC.ADMIN_CMD('REORG TABLE " + qualified(tableName) + "')");
+            Set<String> primaryKeyColumnNames = primaryKeyColumnNamesPerTable.get(tableName);
+            for (String notNullColumnName : entry.getValue()) {
+                if (primaryKeyColumnNames != null && primaryKeyColumnNames.contains(notNullColumnName)) {
+                    // Do not remove PK constraints
+                    continue;
+                }
+                sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + quoted(notNullColumnName) + " drop not null");
+                sqlHandler.executeUpdate("call SYSPROC.ADMIN_CMD('REORG TABLE " + qualified(tableName) + "')");
+            }
         }
     }
 
 
+    /**
+     * Removes all rows from the table with the given name. DB2 requires the immediate keyword for the truncate
+     * statement.
+     *
+     * @param tableName The table to truncate (case-sensitive), not null
+     */
+    @Override
+    protected void truncateTable(String tableName) {
+        getSQLHandler().executeUpdate("truncate table " + qualified(tableName) + " immediate");
+    }
+
+
     /**
      * Returns the value of the sequence with the given name. <p/> Note: this can have the side-effect of increasing the
      * sequence value.
@@ -205,6 +237,19 @@ public class Db2DbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of the identity columns of all tables in the database schema, using a single query.
+     * <p/>
+     * The same as for {@link #getIdentityColumnNames(String)}, the primary key columns are returned.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABNAME, COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABSCHEMA = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Increments the identity value for the specified identity column on the specified table to the given value. If
      * there is no identity specified on the given primary key, the method silently finishes without effect.
@@ -21,9 +21,18 @@ import static org.unitils.core.util.StoredIdentifierCase.*;
 import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
 import static org.unitils.util.PropertyUtils.getString;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import org.apache.commons.lang.StringUtils;
@@ -166,6 +175,89 @@ abstract public class DbSupport {
     public abstract Set<String> getColumnNames(String tableName);
 
 
+    /**
+     * Gets the names of all columns of all tables in the database.
+     * <p/>
+     * The default implementation retrieves the columns table per table. Dialects that can retrieve them in a single
+     * query should override this method.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (String tableName : getTableNames()) {
+            result.put(tableName, getColumnNames(tableName));
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database. Tables without a primary key are not
+     * included.
+     * <p/>
+     * The default implementation uses the JDBC database meta data, reusing a single connection for all tables.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        Connection connection = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getSQLHandler().getDataSource().getConnection();
+            DatabaseMetaData databaseMetaData = connection.getMetaData();
+            for (String tableName : getTableNames()) {
+                resultSet = databaseMetaData.getPrimaryKeys(null, getSchemaName(), tableName);
+                while (resultSet.next()) {
+                    addItem(result, tableName, resultSet.getString("COLUMN_NAME"));
+                }
+                closeQuietly(resultSet);
+                resultSet = null;
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to retrieve primary key columns of schema " + getSchemaName(), e);
+        } finally {
+            closeQuietly(connection, null, resultSet);
+        }
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database. Tables without
+     * foreign keys are not included.
+     * <p/>
+     * The default implementation uses the JDBC database meta data, reusing a single connection for all tables.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        Connection connection = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getSQLHandler().getDataSource().getConnection();
+            DatabaseMetaData databaseMetaData = connection.getMetaData();
+            for (String tableName : getTableNames()) {
+                resultSet = databaseMetaData.getImportedKeys(null, getSchemaName(), tableName);
+                while (resultSet.next()) {
+                    addItem(result, tableName, resultSet.getString("PKTABLE_NAME"));
+                }
+                closeQuietly(resultSet);
+                resultSet = null;
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to retrieve foreign keys of schema " + getSchemaName(), e);
+        } finally {
+            closeQuietly(connection, null, resultSet);
+        }
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -301,6 +393,126 @@ abstract public class DbSupport {
     }
 
 
+    /**
+     * Removes all rows from the given tables, using the fastest statement the database offers for this. Depending on
+     * the database, this statement can not be rolled back and can commit the current transaction.
+     * <p/>
+     * The default implementation truncates the tables one by one, see {@link #truncateTable}. Whether a table can be
+     * truncated is decided up front: a failed statement is not retried, since on some databases it aborts the
+     * current transaction. A table that is referenced by a foreign key of another table cannot be truncated: its rows
+     * are deleted after the other tables are truncated. If the database does not support truncate, the rows of all
+     * tables are deleted.
+     *
+     * @param tableNames The tables to truncate (case-sensitive), not null
+     */
+    public void truncateTables(List<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        if (!isTruncateSupported()) {
+            for (String tableName : tableNames) {
+                deleteRows(tableName);
+            }
+            return;
+        }
+        Set<String> referencedTableNames = getTableNamesReferencedByOtherTables();
+        List<String> tableNamesToDelete = new ArrayList<String>();
+        for (String tableName : tableNames) {
+            if (referencedTableNames.contains(tableName)) {
+                tableNamesToDelete.add(tableName);
+            } else {
+                truncateTable(tableName);
+            }
+        }
+        for (String tableName : tableNamesToDelete) {
+            deleteRows(tableName);
+        }
+    }
+
+
+    /**
+     * Removes all rows from the table with the given name using <code>truncate table</code>.
+     * Note: the table name is surrounded with quotes, making it case-sensitive.
+     *
+     * @param tableName The table to truncate (case-sensitive), not null
+     */
+    protected void truncateTable(String tableName) {
+        getSQLHandler().executeUpdate("truncate table " + qualified(tableName));
+    }
+
+
+    /**
+     * Removes all rows from the table with the given name using <code>delete from</code>.
+     * Note: the table name is surrounded with quotes, making it case-sensitive.
+     *
+     * @param tableName The table (case-sensitive), not null
+     */
+    protected void deleteRows(String tableName) {
+        getSQLHandler().executeUpdate("delete from " + qualified(tableName));
+    }
+
+
+    /**
+     * @return True if the database supports the truncate statement, true by default
+     */
+    protected boolean isTruncateSupported() {
+        return true;
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by a foreign key of another table. Foreign keys of a table
+     * that reference the table itself are ignored.
+     *
+     * @return The table names, not null
+     */
+    protected Set<String> getTableNamesReferencedByOtherTables() {
+        Set<String> result = new HashSet<String>();
+        for (Map.Entry<String, Set<String>> entry : getReferencedTableNamesPerTable().entrySet()) {
+            for (String referencedTableName : entry.getValue()) {
+                if (!referencedTableName.equals(entry.getKey())) {
+                    result.add(referencedTableName);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Determines which of the given tables contain rows. For every table a query is performed that fetches at most
+     * 1 row, which is cheap, even for large tables. All queries are performed on a single connection.
+     *
+     * @param tableNames The tables (case-sensitive), not null
+     * @return The names of the tables that contain at least 1 row, not null
+     */
+    public Set<String> getNonEmptyTableNames(Collection<String> tableNames) {
+        Set<String> result = new HashSet<String>();
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getSQLHandler().getDataSource().getConnection();
+            statement = connection.createStatement();
+            statement.setMaxRows(1);
+            for (String tableName : tableNames) {
+                resultSet = statement.executeQuery("select 1 from " + qualified(tableName));
+                if (resultSet.next()) {
+                    result.add(tableName);
+                }
+                closeQuietly(resultSet);
+                resultSet = null;
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw new UnitilsException("Unable to determine which tables contain rows in schema " + getSchemaName(), e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+    }
+
+
     /**
      * Disables all referential constraints (e.g. foreign keys) on all table in the schema
      */
@@ -337,6 +549,75 @@ abstract public class DbSupport {
     }
 
 
+    /**
+     * Returns the values of all sequences in the database schema.
+     * <p/>
+     * The default implementation retrieves the values sequence per sequence. Dialects that can retrieve them in
+     * a single query should override this method.
+     *
+     * @return The values per sequence name, not null
+     */
+    public Map<String, Long> getSequenceValues() {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (String sequenceName : getSequenceNames()) {
+            result.put(sequenceName, getSequenceValue(sequenceName));
+        }
+        return result;
+    }
+
+
+    /**
+     * Sets the next value of the given sequences to the given value.
+     * <p/>
+     * The default implementation increments the sequences one by one. In a session that batches updates, the
+     * statements are sent to the database in batches. Dialects that can increment several sequences in a single
+     * statement should override this method.
+     *
+     * @param sequenceNames    The sequences, not null
+     * @param newSequenceValue The value to set
+     */
+    public void incrementSequencesToValue(Collection<String> sequenceNames, long newSequenceValue) {
+        for (String sequenceName : sequenceNames) {
+            incrementSequenceToValue(sequenceName, newSequenceValue);
+        }
+    }
+
+
+    /**
+     * Returns the items extracted from the result of the given query, grouped by the value of the first column.
+     * The query should return 2 columns: the key, e.g. a table name, and the item, e.g. a column name.
+     * <p/>
+     * If the sql handler is not a {@link DefaultSQLHandler}, the query is performed on a connection of the data source
+     * of the sql handler.
+     *
+     * @param sql The sql string for retrieving the keys and items
+     * @return The items per key, not null
+     */
+    protected Map<String, Set<String>> getItemsAsStringSetMap(String sql) {
+        SQLHandler sqlHandler = getSQLHandler();
+        if (sqlHandler instanceof DefaultSQLHandler) {
+            return ((DefaultSQLHandler) sqlHandler).getItemsAsStringSetMap(sql);
+        }
+        return new DefaultSQLHandler(sqlHandler.getDataSource()).getItemsAsStringSetMap(sql);
+    }
+
+
+    /**
+     * Returns the long values extracted from the result of the given query, per key. The query should return 2
+     * columns: the key, e.g. a sequence name, and the value.
+     *
+     * @param sql The query, not null
+     * @return The values per key, not null
+     */
+    protected Map<String, Long> getItemsAsLongMap(String sql) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<String, Set<String>> entry : getItemsAsStringSetMap(sql).entrySet()) {
+            result.put(entry.getKey(), Long.valueOf(entry.getValue().iterator().next()));
+        }
+        return result;
+    }
+
+
     /**
      * Gets the names of all identity columns of the given table.
      *
@@ -348,6 +629,42 @@ abstract public class DbSupport {
     }
 
 
+    /**
+     * Gets the names of the identity columns of all tables in the database. Tables without identity columns need not
+     * be included.
+     * <p/>
+     * The default implementation retrieves the identity columns table per table. Dialects that can retrieve them in
+     * a single query should override this method.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (String tableName : getTableNames()) {
+            Set<String> identityColumnNames = getIdentityColumnNames(tableName);
+            if (!identityColumnNames.isEmpty()) {
+                result.put(tableName, identityColumnNames);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Creates a snapshot of the meta data of the database schema. The snapshot loads every kind of meta data only
+     * once, using the set based queries of this db support, and then keeps it in memory. This avoids querying the
+     * catalog again for every table.
+     * <p/>
+     * The snapshot is not updated when the schema changes. A new snapshot should be created after dropping or
+     * creating database objects.
+     *
+     * @return The snapshot, not null
+     */
+    public SchemaMetadataSnapshot createSchemaMetadataSnapshot() {
+        return new SchemaMetadataSnapshot(this);
+    }
+
+
     /**
      * Increments the identity value for the specified identity column on the specified table to the given value. If there
      * is no identity specified on the given primary key, the method silently finishes without effect.
@@ -361,6 +678,28 @@ abstract public class DbSupport {
     }
 
 
+    /**
+     * Writes a snapshot of the structure and the data of the given schemas to the given file. Restoring the snapshot
+     * with {@link #restoreSnapshot} drops and recreates all database objects of these schemas.
+     *
+     * @param snapshotFile The file to write the snapshot to, not null
+     * @param schemaNames  The names of the schemas to include, not null
+     */
+    public void createSnapshot(File snapshotFile, List<String> schemaNames) {
+        throw new UnsupportedOperationException("Snapshots not supported for " + getDatabaseDialect());
+    }
+
+
+    /**
+     * Restores a snapshot that was created with {@link #createSnapshot}.
+     *
+     * @param snapshotFile The snapshot file, not null
+     */
+    public void restoreSnapshot(File snapshotFile) {
+        throw new UnsupportedOperationException("Snapshots not supported for " + getDatabaseDialect());
+    }
+
+
     /**
      * Gets the column type suitable to store values of the Java <code>java.lang.Long</code> type.
      *
@@ -453,6 +792,39 @@ abstract public class DbSupport {
     }
 
 
+    /**
+     * Drops the given constraints using <code>alter table ... drop constraint ...</code> statements.
+     *
+     * @param constraintNamesPerTable The names of the constraints to drop per table name, not null
+     */
+    protected void dropConstraints(Map<String, Set<String>> constraintNamesPerTable) {
+        SQLHandler sqlHandler = getSQLHandler();
+        for (Map.Entry<String, Set<String>> entry : constraintNamesPerTable.entrySet()) {
+            String tableName = entry.getKey();
+            for (String constraintName : entry.getValue()) {
+                sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
+            }
+        }
+    }
+
+
+    /**
+     * Adds the given item to the set of items for the given key, creating the set if needed.
+     *
+     * @param itemsPerKey The items per key, not null
+     * @param key         The key, not null
+     * @param item        The item to add
+     */
+    protected void addItem(Map<String, Set<String>> itemsPerKey, String key, String item) {
+        Set<String> items = itemsPerKey.get(key);
+        if (items == null) {
+            items = new HashSet<String>();
+            itemsPerKey.put(key, items);
+        }
+        items.add(item);
+    }
+
+
     /**
      * Determines the case the database uses to store non-quoted identifiers. This will use the connections
      * database metadata to determine the correct case.
@@ -593,4 +965,14 @@ abstract public class DbSupport {
         return false;
     }
 
+
+    /**
+     * Indicates whether the underlying DBMS supports creating and restoring snapshots of schemas.
+     *
+     * @return True if snapshots are supported, false otherwise
+     */
+    public boolean supportsSnapshots() {
+        return false;
+    }
+
 }
\ No newline at end of file
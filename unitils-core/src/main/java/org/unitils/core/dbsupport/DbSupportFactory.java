@@ -73,14 +73,30 @@ public class DbSupportFactory {
         }
         // create new instance
         //String databaseDialect = getString(PROPKEY_DATABASE_DIALECT, configuration);
-        dbSupport = getInstanceOf(DbSupport.class, configuration, dialect);
-        dbSupport.init(configuration, sqlHandler, schemaName);
+        dbSupport = createDbSupport(configuration, sqlHandler, schemaName, dialect);
         // add to cache
         dbSupportCache.put(schemaName, dbSupport);
         return dbSupport;
     }
 
 
+    /**
+     * Creates a new dbms specific {@link DbSupport} for the given dialect, without using the cache. Use this when the
+     * db support has to work on the given SQL handler, e.g. when another database has a schema with the same name.
+     *
+     * @param configuration The config, not null
+     * @param sqlHandler    The sql handler, not null
+     * @param schemaName    The schema name, not null
+     * @param dialect       The database dialect, not null
+     * @return The dbms specific instance of {@link DbSupport}, not null
+     */
+    public static DbSupport createDbSupport(Properties configuration, SQLHandler sqlHandler, String schemaName, String dialect) {
+        DbSupport dbSupport = getInstanceOf(DbSupport.class, configuration, dialect);
+        dbSupport.init(configuration, sqlHandler, schemaName);
+        return dbSupport;
+    }
+
+
     /**
      * Returns the dbms specific {@link DbSupport} instances for all configured schemas.
      *
@@ -24,7 +24,9 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -35,7 +37,7 @@ import java.util.Set;
  * @author Filip Neven
  * @author Tim Ducheyne
  */
-public class DefaultSQLHandler implements SQLHandler {
+public class DefaultSQLHandler implements SessionAwareSQLHandler {
 
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultSQLHandler.class);
@@ -234,6 +236,45 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    /**
+     * Returns the items extracted from the result of the given query, grouped by the value of the first column.
+     * The query should return 2 columns: the key, e.g. a table name, and the item, e.g. a column name.
+     * <p/>
+     * This allows retrieving for example the columns of all tables in a single query.
+     *
+     * @param sql The sql string for retrieving the keys and items
+     * @return The items per key, not null
+     */
+    public Map<String, Set<String>> getItemsAsStringSetMap(String sql) {
+        logger.debug(sql);
+
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery(sql);
+            Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+            while (resultSet.next()) {
+                String key = resultSet.getString(1);
+                Set<String> items = result.get(key);
+                if (items == null) {
+                    items = new HashSet<String>();
+                    result.put(key, items);
+                }
+                items.add(resultSet.getString(2));
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+    }
+
+
     /* (non-Javadoc)
       * @see org.unitils.core.dbsupport.SQLHandler#exists(java.lang.String)
       */
@@ -257,6 +298,23 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    /**
+     * Every statement is executed immediately using its own connection, so nothing needs to be done to start a
+     * session.
+     *
+     * @param batchUpdates Ignored
+     */
+    public void startSession(boolean batchUpdates) {
+    }
+
+
+    /**
+     * Nothing needs to be done to end a session.
+     */
+    public void endSession() {
+    }
+
+
     /* (non-Javadoc)
 	 * @see org.unitils.core.dbsupport.SQLHandler#getDataSource()
 	 */
@@ -22,7 +22,9 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -37,6 +39,8 @@ import java.util.Set;
  */
 public class DerbyDbSupport extends DbSupport {
 
+    /* True if the database supports the truncate statement, null if not yet determined */
+    protected Boolean truncateSupported;
 
     /**
      * Creates support for Derby databases.
@@ -69,6 +73,17 @@ public class DerbyDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select t.TABLENAME, c.COLUMNNAME from SYS.SYSCOLUMNS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.REFERENCEID = t.TABLEID AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -115,6 +130,19 @@ public class DerbyDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of the identity columns of all tables in the database schema.
+     * <p/>
+     * The same as for {@link #getIdentityColumnNames(String)}, the primary key columns are returned.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getPrimaryKeyColumnNamesPerTable();
+    }
+
+
     /**
      * Increments the identity value for the specified identity column on the specified table to the given value.
      *
@@ -133,20 +161,7 @@ public class DerbyDbSupport extends DbSupport {
      */
     @Override
     public void disableReferentialConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableReferentialConstraints(String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select t.TABLENAME, c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + getSchemaName() + "'"));
     }
 
 
@@ -155,34 +170,31 @@ public class DerbyDbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableValueConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableValueConstraints(String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select t.TABLENAME, c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + getSchemaName() + "'"));
 
-        // retrieve the name of the primary key, since we cannot remove the not-null constraint on this column
-        Set<String> primaryKeyColumnNames = getPrimaryKeyColumnNames(tableName);
+        // retrieve the name of the primary keys, since we cannot remove the not-null constraint on these columns
+        Map<String, Set<String>> primaryKeyColumnNamesPerTable = getPrimaryKeyColumnNamesPerTable();
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = getNotNullColummnNames(tableName);
-        for (String notNullColumnName : notNullColumnNames) {
-            if (primaryKeyColumnNames.contains(notNullColumnName)) {
-                // Do not remove PK constraints
+        Set<String> tableNames = getTableNames();
+        Map<String, Set<String>> notNullColumnNamesPerTable = getNotNullColumnNamesPerTable();
+        for (Map.Entry<String, Set<String>> entry : notNullColumnNamesPerTable.entrySet()) {
+            String tableName = entry.getKey();
+            if (!tableNames.contains(tableName)) {
+                // skip views
                 continue;
             }
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + quoted(notNullColumnName) + " NULL");
+            Set<String> primaryKeyColumnNames = primaryKeyColumnNamesPerTable.get(tableName);
+            for (String notNullColumnName : entry.getValue()) {
+                if (primaryKeyColumnNames != null && primaryKeyColumnNames.contains(notNullColumnName)) {
+                    // Do not remove PK constraints
+                    continue;
+                }
+                sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + quoted(notNullColumnName) + " NULL");
+            }
         }
     }
 
@@ -249,33 +261,56 @@ public class DerbyDbSupport extends DbSupport {
 
 
     /**
-     * Returns the names of all columns that have a 'not-null' constraint on them.
+     * Returns the names of all columns that have a 'not-null' constraint on them, for all tables in the schema.
      * <p/>
      * This info is not available in the Derby sys tables. The database meta data is used instead to retrieve it.
      *
-     * @param tableName The table, not null
-     * @return The set of column names, not null
+     * @return The column names per table name, not null
      */
-    protected Set<String> getNotNullColummnNames(String tableName) {
+    protected Map<String, Set<String>> getNotNullColumnNamesPerTable() {
         Connection connection = null;
         ResultSet resultSet = null;
         try {
             connection = getSQLHandler().getDataSource().getConnection();
             DatabaseMetaData databaseMetaData = connection.getMetaData();
-            resultSet = databaseMetaData.getColumns(null, getSchemaName(), tableName, "%");
-            Set<String> result = new HashSet<String>();
+            resultSet = databaseMetaData.getColumns(null, getSchemaName(), "%", "%");
+            Map<String, Set<String>> result = new HashMap<String, Set<String>>();
             while (resultSet.next()) {
                 if (resultSet.getInt(11) == DatabaseMetaData.columnNoNulls) { // NULLABLE
-                    result.add(resultSet.getString(4)); //COLUMN_NAME
+                    addItem(result, resultSet.getString(3), resultSet.getString(4)); // TABLE_NAME, COLUMN_NAME
                 }
             }
             return result;
         } catch (SQLException e) {
-            throw new UnitilsException("Error while querying for Derby primary keys for table name: " + tableName, e);
+            throw new UnitilsException("Error while querying for Derby not null columns of schema: " + getSchemaName(), e);
         } finally {
             closeQuietly(connection, null, resultSet);
         }
     }
 
 
+    /**
+     * Truncate is only supported as of Derby 10.7, for older versions the rows are deleted.
+     *
+     * @return True if the database version supports the truncate statement
+     */
+    @Override
+    protected boolean isTruncateSupported() {
+        if (truncateSupported == null) {
+            Connection connection = null;
+            try {
+                connection = getSQLHandler().getDataSource().getConnection();
+                DatabaseMetaData databaseMetaData = connection.getMetaData();
+                int majorVersion = databaseMetaData.getDatabaseMajorVersion();
+                truncateSupported = majorVersion > 10 || (majorVersion == 10 && databaseMetaData.getDatabaseMinorVersion() >= 7);
+            } catch (SQLException e) {
+                throw new UnitilsException("Unable to determine the database version", e);
+            } finally {
+                closeQuietly(connection, null, null);
+            }
+        }
+        return truncateSupported;
+    }
+
+
 }
\ No newline at end of file
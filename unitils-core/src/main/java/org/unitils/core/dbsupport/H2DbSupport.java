@@ -15,9 +15,12 @@
  */
 package org.unitils.core.dbsupport;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.unitils.core.UnitilsException;
@@ -80,6 +83,28 @@ public class H2DbSupport extends DbSupport {
           + getSchemaName() + "'");
     }
 
+
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS where TABLE_SCHEMA = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the identity columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.INDEXES where PRIMARY_KEY = 'TRUE' AND TABLE_SCHEMA = '" + getSchemaName() + "'");
+    }
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -131,6 +156,19 @@ public class H2DbSupport extends DbSupport {
           + getSchemaName() + "' and SEQUENCE_NAME = '" + sequenceName + "'");
     }
 
+    /**
+     * Returns the values of all sequences in the database schema, using a
+     * single query.
+     *
+     * @return The values per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues() {
+        return getItemsAsLongMap("select SEQUENCE_NAME, CURRENT_VALUE from "
+          + "INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '"
+          + getSchemaName() + "'");
+    }
+
     /**
      * Sets the next value of the sequence with the given sequence name to the
      * given sequence value.
@@ -291,4 +329,54 @@ public class H2DbSupport extends DbSupport {
     public boolean supportsCascade() {
         return true;
     }
+
+
+    /**
+     * Snapshots are supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsSnapshots() {
+        return true;
+    }
+
+    /**
+     * Writes a snapshot of the given schemas using the H2 SCRIPT command. The script drops the existing objects
+     * before recreating them. The file is written by the database, so for a server database the path is a path
+     * on the server.
+     *
+     * @param snapshotFile The file to write the snapshot to, not null
+     * @param schemaNames  The names of the schemas to include, not null
+     */
+    @Override
+    public void createSnapshot(File snapshotFile, List<String> schemaNames) {
+        StringBuilder sql = new StringBuilder("SCRIPT NOPASSWORDS NOSETTINGS DROP TO ");
+        sql.append(toStringLiteral(snapshotFile)).append(" SCHEMA ");
+        for (int i = 0; i < schemaNames.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(quoted(schemaNames.get(i)));
+        }
+        getSQLHandler().executeQuery(sql.toString());
+    }
+
+    /**
+     * Restores a snapshot using the H2 RUNSCRIPT command.
+     *
+     * @param snapshotFile The snapshot file, not null
+     */
+    @Override
+    public void restoreSnapshot(File snapshotFile) {
+        getSQLHandler().executeUpdate("RUNSCRIPT FROM " + toStringLiteral(snapshotFile));
+    }
+
+    /**
+     * @param file The file, not null
+     * @return The absolute path of the file as a SQL string literal, not null
+     */
+    protected String toStringLiteral(File file) {
+        return "'" + file.getAbsolutePath().replace("'", "''") + "'";
+    }
 }
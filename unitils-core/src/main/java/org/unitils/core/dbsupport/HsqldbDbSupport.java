@@ -20,7 +20,9 @@ import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQui
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -31,6 +33,9 @@ import java.util.Set;
  */
 public class HsqldbDbSupport extends DbSupport {
 
+    /* True if the database supports the truncate statement, null if not yet determined */
+    protected Boolean truncateSupported;
+
     /**
      * Creates support for HsqlDb databases.
      */
@@ -62,6 +67,40 @@ public class HsqldbDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS where TABLE_SCHEM = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_SCHEM = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database schema, using
+     * a single query.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        return getItemsAsStringSetMap("select FKTABLE_NAME, PKTABLE_NAME from INFORMATION_SCHEMA.SYSTEM_CROSSREFERENCE where FKTABLE_SCHEM = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -134,6 +173,28 @@ public class HsqldbDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Truncate is only supported as of HSQLDB 2.0, for older versions the rows are deleted.
+     *
+     * @return True if the database version supports the truncate statement
+     */
+    @Override
+    protected boolean isTruncateSupported() {
+        if (truncateSupported == null) {
+            Connection connection = null;
+            try {
+                connection = getSQLHandler().getDataSource().getConnection();
+                truncateSupported = connection.getMetaData().getDatabaseMajorVersion() >= 2;
+            } catch (SQLException e) {
+                throw new UnitilsException("Unable to determine the database version", e);
+            } finally {
+                closeQuietly(connection, null, null);
+            }
+        }
+        return truncateSupported;
+    }
+
+
     /**
      * Disables all check and unique constraints on all tables in the schema
      */
@@ -206,6 +267,17 @@ public class HsqldbDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Returns the values of all sequences in the database schema, using a single query.
+     *
+     * @return The values per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues() {
+        return getItemsAsLongMap("select SEQUENCE_NAME, START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Sets the next value of the sequence with the given sequence name to the given sequence value.
      *
@@ -232,6 +304,19 @@ public class HsqldbDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of the identity columns of all tables in the database schema, using a single query.
+     * <p/>
+     * The same as for {@link #getIdentityColumnNames(String)}, the primary key columns are returned.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_SCHEM = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Increments the identity value for the specified identity column on the specified table to the given value.
      *
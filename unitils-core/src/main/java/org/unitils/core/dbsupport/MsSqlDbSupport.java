@@ -21,6 +21,7 @@ import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQui
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -65,6 +66,31 @@ public class MsSqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select t.name, c.name from sys.columns c, sys.tables t, sys.schemas s where c.object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select t.name, c.name from sys.key_constraints k, sys.index_columns i, sys.columns c, sys.tables t, sys.schemas s " +
+                "where k.type = 'PK' and i.index_id = k.unique_index_id and i.column_id = c.column_id " +
+                "  and c.object_id = t.object_id and k.parent_object_id = t.object_id and i.object_id = t.object_id " +
+                "  and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -122,24 +148,22 @@ public class MsSqlDbSupport extends DbSupport {
 
 
     /**
-     * Disables all referential constraints (e.g. foreign keys) on all table in the schema
+     * Gets the names of the identity columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the identity columns per table name, not null
      */
     @Override
-    public void disableReferentialConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(tableName);
-        }
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select t.name, i.name from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
     }
 
 
-    // todo refactor (see oracle)
-    protected void disableReferentialConstraints(String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select f.name from sys.foreign_keys f, sys.tables t, sys.schemas s where f.parent_object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on all table in the schema
+     */
+    @Override
+    public void disableReferentialConstraints() {
+        dropConstraints(getItemsAsStringSetMap("select t.name, f.name from sys.foreign_keys f, sys.tables t, sys.schemas s where f.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'"));
     }
 
 
@@ -148,31 +172,14 @@ public class MsSqlDbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableValueConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableValueConstraints(String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-
         // disable all unique constraints
-        Set<String> keyConstraintNames = sqlHandler.getItemsAsStringSet("select k.name from sys.key_constraints k, sys.tables t, sys.schemas s where k.type = 'UQ' and k.parent_object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
-        for (String keyConstraintName : keyConstraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(keyConstraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select t.name, k.name from sys.key_constraints k, sys.tables t, sys.schemas s where k.type = 'UQ' and k.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'"));
 
         // disable all check constraints
-        Set<String> checkConstraintNames = sqlHandler.getItemsAsStringSet("select c.name from sys.check_constraints c, sys.tables t, sys.schemas s where c.parent_object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
-        for (String checkConstraintName : checkConstraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(checkConstraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select t.name, c.name from sys.check_constraints c, sys.tables t, sys.schemas s where c.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'"));
 
         // disable all not null constraints
-        disableNotNullConstraints(tableName);
+        disableNotNullConstraints();
     }
 
 
@@ -236,20 +243,15 @@ public class MsSqlDbSupport extends DbSupport {
 
 
     /**
-     * Disables not-null constraints on the given table.
+     * Disables not-null constraints on all tables in the schema.
      * <p/>
      * For primary keys, row-guid, identity and computed columns not-null constrains cannot be disabled in MS-Sql.
-     *
-     * @param tableName The table, not null
      */
-    protected void disableNotNullConstraints(String tableName) {
+    protected void disableNotNullConstraints() {
         SQLHandler sqlHandler = getSQLHandler();
 
-        // retrieve the name of the primary key, since we cannot remove the not-null constraint on this column
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select c.name from sys.key_constraints k, sys.index_columns i, sys.columns c, sys.tables t, sys.schemas s " +
-                "where k.type = 'PK' and i.index_id = k.unique_index_id and i.column_id = c.column_id " +
-                "  and c.object_id = t.object_id and k.parent_object_id = t.object_id and i.object_id = t.object_id " +
-                "  and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
+        // retrieve the names of the primary keys, since we cannot remove the not-null constraint on these columns
+        Map<String, Set<String>> primaryKeyColumnNamesPerTable = getPrimaryKeyColumnNamesPerTable();
 
         Connection connection = null;
         Statement statement = null;
@@ -259,13 +261,15 @@ public class MsSqlDbSupport extends DbSupport {
             statement = connection.createStatement();
 
             // get all not-null columns but not row-guid, identity and computed columns (these cannot be altered in MS-Sql)
-            resultSet = statement.executeQuery("select c.name column_name, upper(y.name) data_type, c.max_length, c.precision from sys.types y, sys.columns c, sys.tables t, sys.schemas s " +
+            resultSet = statement.executeQuery("select t.name table_name, c.name column_name, upper(y.name) data_type, c.max_length, c.precision from sys.types y, sys.columns c, sys.tables t, sys.schemas s " +
                     "where c.is_nullable = 0 and c.is_rowguidcol = 0 and c.is_identity = 0 and c.is_computed = 0 " +
-                    "  and y.user_type_id = c.user_type_id and c.object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
+                    "  and y.user_type_id = c.user_type_id and c.object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + getSchemaName() + "'");
 
             while (resultSet.next()) {
+                String tableName = resultSet.getString("table_name");
                 String columnName = resultSet.getString("column_name");
-                if (primaryKeyColumnNames.contains(columnName)) {
+                Set<String> primaryKeyColumnNames = primaryKeyColumnNamesPerTable.get(tableName);
+                if (primaryKeyColumnNames != null && primaryKeyColumnNames.contains(columnName)) {
                     // skip primary key columns
                     continue;
                 }
@@ -288,7 +292,7 @@ public class MsSqlDbSupport extends DbSupport {
                 sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + quoted(columnName) + " " + dataType + " null");
             }
         } catch (Exception e) {
-            throw new UnitilsException("Error while disabling not null constraints. Table name: " + tableName, e);
+            throw new UnitilsException("Error while disabling not null constraints on schema " + getSchemaName(), e);
         } finally {
             closeQuietly(connection, statement, resultSet);
         }
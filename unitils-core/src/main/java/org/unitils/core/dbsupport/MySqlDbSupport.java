@@ -15,10 +15,18 @@
  */
 package org.unitils.core.dbsupport;
 
+import org.unitils.core.UnitilsException;
 import org.unitils.core.util.StoredIdentifierCase;
 import static org.unitils.core.util.StoredIdentifierCase.LOWER_CASE;
 import static org.unitils.core.util.StoredIdentifierCase.UPPER_CASE;
-
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -69,6 +77,40 @@ public class MySqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select table_name, column_name from information_schema.columns where table_schema = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select table_name, column_name from information_schema.columns where column_key = 'PRI' and table_schema = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database schema, using
+     * a single query.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        return getItemsAsStringSetMap("select table_name, referenced_table_name from information_schema.key_column_usage where referenced_table_name is not null and table_schema = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -96,19 +138,12 @@ public class MySqlDbSupport extends DbSupport {
      */
     @Override
     public void disableReferentialConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableReferentialConstraints(String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' AND table_name = '" + tableName + "' and constraint_schema = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop foreign key " + quoted(constraintName));
+        Map<String, Set<String>> constraintNamesPerTable = getItemsAsStringSetMap("select table_name, constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' and constraint_schema = '" + getSchemaName() + "'");
+        for (Map.Entry<String, Set<String>> entry : constraintNamesPerTable.entrySet()) {
+            for (String constraintName : entry.getValue()) {
+                sqlHandler.executeUpdate("alter table " + qualified(entry.getKey()) + " drop foreign key " + quoted(constraintName));
+            }
         }
     }
 
@@ -118,29 +153,74 @@ public class MySqlDbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
+        SQLHandler sqlHandler = getSQLHandler();
+
+        // disable all unique constraints (check constraints are not implemented)
+        Map<String, Set<String>> constraintNamesPerTable = getItemsAsStringSetMap("select table_name, constraint_name from information_schema.table_constraints where constraint_type in ('UNIQUE') and constraint_schema = '" + getSchemaName() + "'");
+        for (Map.Entry<String, Set<String>> entry : constraintNamesPerTable.entrySet()) {
+            for (String constraintName : entry.getValue()) {
+                sqlHandler.executeUpdate("alter table " + qualified(entry.getKey()) + " drop key " + quoted(constraintName));
+            }
+        }
+
+        // disable all not null constraints
         Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableValueConstraints(tableName);
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = sqlHandler.getDataSource().getConnection();
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery("select table_name, column_name, column_type from information_schema.columns where is_nullable = 'NO' and column_key <> 'PRI' and table_schema = '" + getSchemaName() + "'");
+            while (resultSet.next()) {
+                String tableName = resultSet.getString("table_name");
+                if (!tableNames.contains(tableName)) {
+                    // skip views
+                    continue;
+                }
+                String notNullColumnName = resultSet.getString("column_name");
+                // todo test length etc
+                String columnType = resultSet.getString("column_type");
+                sqlHandler.executeUpdate("alter table " + qualified(tableName) + " change column " + quoted(notNullColumnName) + " " + quoted(notNullColumnName) + " " + columnType + " NULL ");
+            }
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while disabling not null constraints on schema " + getSchemaName(), e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
         }
     }
 
 
-    // todo refactor (see oracle)
-    protected void disableValueConstraints(String tableName) {
+    /**
+     * Removes all rows from the given tables. The foreign key checks are switched off for the connection, so that
+     * tables that are referenced by a foreign key can also be truncated. All statements are therefore executed on
+     * a single connection.
+     *
+     * @param tableNames The tables to truncate (case-sensitive), not null
+     */
+    @Override
+    public void truncateTables(List<String> tableNames) {
         SQLHandler sqlHandler = getSQLHandler();
-
-        // disable all unique constraints (check constraints are not implemented)
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type in ('UNIQUE') AND table_name = '" + tableName + "' and constraint_schema = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop key " + quoted(constraintName));
+        if (tableNames.isEmpty() || !sqlHandler.isDoExecuteUpdates()) {
+            return;
         }
-
-        // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and column_key <> 'PRI' and table_name = '" + tableName + "' and table_schema = '" + getSchemaName() + "'");
-        for (String notNullColumnName : notNullColumnNames) {
-            // todo test length etc
-            String columnType = sqlHandler.getItemAsString("select column_type from information_schema.columns where table_schema = '" + getSchemaName() + "' and table_name = '" + tableName + "' and column_name = '" + notNullColumnName + "'");
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " change column " + quoted(notNullColumnName) + " " + quoted(notNullColumnName) + " " + columnType + " NULL ");
+        Connection connection = null;
+        Statement statement = null;
+        try {
+            connection = sqlHandler.getDataSource().getConnection();
+            statement = connection.createStatement();
+            statement.executeUpdate("set foreign_key_checks = 0");
+            try {
+                for (String tableName : tableNames) {
+                    statement.executeUpdate("truncate table " + qualified(tableName));
+                }
+            } finally {
+                statement.executeUpdate("set foreign_key_checks = 1");
+            }
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while truncating tables in schema " + getSchemaName(), e);
+        } finally {
+            closeQuietly(connection, statement, null);
         }
     }
 
@@ -158,6 +238,19 @@ public class MySqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of the identity columns of all tables in the database schema, using a single query.
+     * <p/>
+     * The same as for {@link #getIdentityColumnNames(String)}, the primary key columns are returned.
+     *
+     * @return The names of the identity columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getIdentityColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select table_name, column_name from information_schema.columns where column_key = 'PRI' and table_schema = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Increments the identity value for the specified primary key on the specified table to the given value.
      *
@@ -19,6 +19,8 @@ import org.unitils.core.UnitilsException;
 import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
 
 import java.sql.*;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -66,6 +68,40 @@ public class OracleDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select TABLE_NAME, COLUMN_NAME from ALL_TAB_COLUMNS where OWNER = '" + getSchemaName() + "' and TABLE_NAME not like 'BIN$%'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select c.TABLE_NAME, cc.COLUMN_NAME from ALL_CONSTRAINTS c, ALL_CONS_COLUMNS cc where c.CONSTRAINT_TYPE = 'P' and c.OWNER = '" + getSchemaName() + "' and c.TABLE_NAME not like 'BIN$%' and cc.OWNER = c.OWNER and cc.CONSTRAINT_NAME = c.CONSTRAINT_NAME");
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database schema, using
+     * a single query.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        return getItemsAsStringSetMap("select c.TABLE_NAME, r.TABLE_NAME from ALL_CONSTRAINTS c, ALL_CONSTRAINTS r where c.CONSTRAINT_TYPE = 'R' and c.OWNER = '" + getSchemaName() + "' and c.TABLE_NAME not like 'BIN$%' and r.OWNER = c.R_OWNER and r.CONSTRAINT_NAME = c.R_CONSTRAINT_NAME");
+    }
+
+
     /**
      * Retrieves the names of all views in the database schema.
      *
@@ -188,28 +224,8 @@ public class OracleDbSupport extends DbSupport {
      */
     @Override
     public void disableReferentialConstraints() {
-        Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
-        try {
-            connection = getSQLHandler().getDataSource().getConnection();
-            queryStatement = connection.createStatement();
-            alterStatement = connection.createStatement();
-
-            // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE = 'R' and OWNER = '" + getSchemaName() + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("TABLE_NAME");
-                String constraintName = resultSet.getString("CONSTRAINT_NAME");
-                alterStatement.executeUpdate("alter table " + qualified(tableName) + " disable constraint " + quoted(constraintName));
-            }
-        } catch (Exception e) {
-            throw new UnitilsException("Error while disabling referential constraints on schema " + getSchemaName(), e);
-        } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
-        }
+        // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
+        disableConstraints("CONSTRAINT_TYPE = 'R'");
     }
 
 
@@ -218,30 +234,29 @@ public class OracleDbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
-        Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
-        try {
-            connection = getSQLHandler().getDataSource().getConnection();
-            queryStatement = connection.createStatement();
-            alterStatement = connection.createStatement();
+        // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
+        // The 'O' type of constraints are ignored. These constraints are generated when a view is created with
+        // the with read-only option and can't be disabled with an alter table
+        disableConstraints("CONSTRAINT_TYPE in ('U', 'C', 'V')");
+    }
 
-            // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-            // The 'O' type of constraints are ignored. These constraints are generated when a view is created with
-            // the with read-only option and can't be disabled with an alter table
-            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in ('U', 'C', 'V') and OWNER = '" + getSchemaName() + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("TABLE_NAME");
-                String constraintName = resultSet.getString("CONSTRAINT_NAME");
-                alterStatement.executeUpdate("alter table " + qualified(tableName) + " disable constraint " + quoted(constraintName));
-            }
-        } catch (Exception e) {
-            throw new UnitilsException("Error while disabling value constraints on schema " + getSchemaName(), e);
-        } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
-        }
+
+    /**
+     * Disables all enabled constraints of the schema that match the given condition. The constraints are disabled
+     * by a single anonymous PL/SQL block that loops over the constraints, so that only one statement is sent to the
+     * database. Constraints with a name that starts with BIN$ are recycled items and are skipped. The names of the
+     * table and the constraint are only known inside the loop: they are concatenated into the quoted names.
+     *
+     * @param constraintTypeCondition The condition on the constraint type, not null
+     */
+    protected void disableConstraints(String constraintTypeCondition) {
+        String tableName = qualified("' || c.TABLE_NAME || '");
+        String constraintName = quoted("' || c.CONSTRAINT_NAME || '");
+        getSQLHandler().executeUpdate("begin " +
+                "for c in (select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where " + constraintTypeCondition + " and OWNER = '" + getSchemaName() + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED') loop " +
+                "execute immediate 'alter table " + tableName + " disable constraint " + constraintName + "'; " +
+                "end loop; " +
+                "end;");
     }
 
 
@@ -259,6 +274,17 @@ public class OracleDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Returns the values of all sequences in the database schema, using a single query.
+     *
+     * @return The values per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues() {
+        return getItemsAsLongMap("select SEQUENCE_NAME, LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_OWNER = '" + getSchemaName() + "'");
+    }
+
+
     /**
      * Sets the next value of the sequence with the given sequence name to the given sequence value.
      *
@@ -292,6 +318,37 @@ public class OracleDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Sets the next value of the given sequences to the given value. The same steps as in
+     * {@link #incrementSequenceToValue} are performed for all sequences in a single anonymous PL/SQL block.
+     *
+     * @param sequenceNames    The sequences, not null
+     * @param newSequenceValue The value to set
+     */
+    @Override
+    public void incrementSequencesToValue(Collection<String> sequenceNames, long newSequenceValue) {
+        if (sequenceNames.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> sequenceInfos = getItemsAsStringSetMap("select SEQUENCE_NAME, LAST_NUMBER || ':' || INCREMENT_BY from ALL_SEQUENCES where SEQUENCE_OWNER = '" + getSchemaName() + "'");
+        StringBuilder block = new StringBuilder("declare nextValue number; begin ");
+        for (String sequenceName : sequenceNames) {
+            Set<String> sequenceInfo = sequenceInfos.get(sequenceName);
+            if (sequenceInfo == null) {
+                continue;
+            }
+            String[] lastNumberAndIncrementBy = sequenceInfo.iterator().next().split(":");
+            long lastNumber = Long.parseLong(lastNumberAndIncrementBy[0]);
+            String qualifiedSequenceName = qualified(sequenceName).replace("'", "''");
+            block.append("execute immediate 'alter sequence ").append(qualifiedSequenceName).append(" increment by ").append(newSequenceValue - lastNumber).append("'; ");
+            block.append("execute immediate 'select ").append(qualifiedSequenceName).append(".NEXTVAL from DUAL' into nextValue; ");
+            block.append("execute immediate 'alter sequence ").append(qualifiedSequenceName).append(" increment by ").append(lastNumberAndIncrementBy[1]).append("'; ");
+        }
+        block.append("end;");
+        getSQLHandler().executeUpdate(block.toString());
+    }
+
+
     /**
      * Gets the column type suitable to store values of the Java <code>java.lang.Long</code> type.
      *
@@ -8,7 +8,12 @@
  */
 package org.unitils.core.dbsupport;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,6 +56,40 @@ public class PostgreSqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Gets the names of all columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select table_name, column_name from information_schema.columns where table_schema = '" + getSchemaName() + "'");
+    }
+
+
+    /**
+     * Gets the names of the primary key columns of all tables in the database schema, using a single query.
+     *
+     * @return The names of the primary key columns per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getPrimaryKeyColumnNamesPerTable() {
+        return getItemsAsStringSetMap("select key.table_name, key.column_name from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_schema = '" + getSchemaName() + "' and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY'");
+    }
+
+
+    /**
+     * Gets the names of the tables that are referenced by foreign keys, for all tables in the database schema, using
+     * a single query.
+     *
+     * @return The names of the referenced tables per table name, not null
+     */
+    @Override
+    public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+        return getItemsAsStringSetMap("select con.table_name, ref.table_name from information_schema.table_constraints con, information_schema.constraint_column_usage ref where con.constraint_type = 'FOREIGN KEY' and con.table_schema = '" + getSchemaName() + "' and ref.constraint_name = con.constraint_name and ref.constraint_schema = con.constraint_schema");
+    }
+
+
     /**
      * Retrieves the names of all the views in the database schema.
      *
@@ -134,6 +173,49 @@ public class PostgreSqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Removes all rows from the given tables using a single truncate statement. A table that is referenced by a
+     * foreign key can only be truncated together with the referencing table. The tables that are referenced by a table
+     * that is not truncated are therefore left out of the statement, and their rows are deleted afterwards. This is
+     * decided up front: a failed truncate would abort the current transaction.
+     * <p/>
+     * Cascade is not used: this would also truncate referencing tables that should be preserved.
+     *
+     * @param tableNames The tables to truncate (case-sensitive), not null
+     */
+    @Override
+    public void truncateTables(List<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> referencedTableNamesPerTable = getReferencedTableNamesPerTable();
+        Set<String> tableNamesToTruncate = new LinkedHashSet<String>(tableNames);
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            for (Map.Entry<String, Set<String>> entry : referencedTableNamesPerTable.entrySet()) {
+                if (!tableNamesToTruncate.contains(entry.getKey()) && tableNamesToTruncate.removeAll(entry.getValue())) {
+                    removed = true;
+                }
+            }
+        }
+
+        if (!tableNamesToTruncate.isEmpty()) {
+            StringBuilder statement = new StringBuilder("truncate table ");
+            for (String tableName : tableNamesToTruncate) {
+                statement.append(qualified(tableName)).append(", ");
+            }
+            statement.setLength(statement.length() - 2);
+            getSQLHandler().executeUpdate(statement.toString());
+        }
+        for (String tableName : tableNames) {
+            if (!tableNamesToTruncate.contains(tableName)) {
+                deleteRows(tableName);
+            }
+        }
+    }
+
+
     /**
      * Retrieves the names of all user-defined types in the database schema.
      *
@@ -150,20 +232,7 @@ public class PostgreSqlDbSupport extends DbSupport {
      */
     @Override
     public void disableReferentialConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableReferentialConstraints(String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con where con.table_name = '" + tableName + "' and constraint_type = 'FOREIGN KEY' and constraint_schema = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select table_name, constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' and constraint_schema = '" + getSchemaName() + "'"));
     }
 
 
@@ -172,35 +241,58 @@ public class PostgreSqlDbSupport extends DbSupport {
      */
     @Override
     public void disableValueConstraints() {
-        Set<String> tableNames = getTableNames();
-        for (String tableName : tableNames) {
-            disableValueConstraints(tableName);
-        }
-    }
-
-
-    // todo refactor (see oracle)
-    protected void disableValueConstraints(String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
         // The join wiht pg_constraints is used to filter out not null check-constraints that are implicitly created by Postgresql
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and con.table_name = '" + tableName + "' and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = '" + getSchemaName() + "'");
-        for (String constraintName : constraintNames) {
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " drop constraint " + quoted(constraintName));
-        }
+        dropConstraints(getItemsAsStringSetMap("select con.table_name, con.constraint_name from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = '" + getSchemaName() + "'"));
 
-        // retrieve the name of the primary key, since we cannot remove the not-null constraint on this column
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_name = '" + tableName + "' and con.table_schema = '" + getSchemaName() + "' and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY'");
+        // retrieve the names of the primary keys, since we cannot remove the not-null constraint on these columns
+        Map<String, Set<String>> primaryKeyColumnNamesPerTable = getPrimaryKeyColumnNamesPerTable();
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and table_name = '" + tableName + "' and table_schema = '" + getSchemaName() + "'");
-        for (String notNullColumnName : notNullColumnNames) {
-            if (primaryKeyColumnNames.contains(notNullColumnName)) {
-                // Do not remove PK constraints
+        Set<String> tableNames = getTableNames();
+        Map<String, Set<String>> notNullColumnNamesPerTable = getItemsAsStringSetMap("select table_name, column_name from information_schema.columns where is_nullable = 'NO' and table_schema = '" + getSchemaName() + "'");
+        for (Map.Entry<String, Set<String>> entry : notNullColumnNamesPerTable.entrySet()) {
+            String tableName = entry.getKey();
+            if (!tableNames.contains(tableName)) {
+                // skip views
                 continue;
             }
-            sqlHandler.executeUpdate("alter table " + qualified(tableName) + " alter column " + notNullColumnName + " drop not null");
+            Set<String> primaryKeyColumnNames = primaryKeyColumnNamesPerTable.get(tableName);
+            // all not null constraints of a table are removed by a single alter table statement
+            StringBuilder alterTable = new StringBuilder();
+            for (String notNullColumnName : entry.getValue()) {
+                if (primaryKeyColumnNames != null && primaryKeyColumnNames.contains(notNullColumnName)) {
+                    // Do not remove PK constraints
+                    continue;
+                }
+                alterTable.append(alterTable.length() == 0 ? "alter table " + qualified(tableName) + " " : ", ");
+                alterTable.append("alter column ").append(notNullColumnName).append(" drop not null");
+            }
+            if (alterTable.length() > 0) {
+                sqlHandler.executeUpdate(alterTable.toString());
+            }
+        }
+    }
+
+
+    /**
+     * Drops the given constraints. All constraints of a table are dropped by a single alter table statement.
+     *
+     * @param constraintNamesPerTable The names of the constraints per table name, not null
+     */
+    @Override
+    protected void dropConstraints(Map<String, Set<String>> constraintNamesPerTable) {
+        SQLHandler sqlHandler = getSQLHandler();
+        for (Map.Entry<String, Set<String>> entry : constraintNamesPerTable.entrySet()) {
+            StringBuilder alterTable = new StringBuilder("alter table " + qualified(entry.getKey()));
+            boolean first = true;
+            for (String constraintName : entry.getValue()) {
+                alterTable.append(first ? " " : ", ").append("drop constraint ").append(quoted(constraintName));
+                first = false;
+            }
+            sqlHandler.executeUpdate(alterTable.toString());
         }
     }
 
@@ -230,6 +322,50 @@ public class PostgreSqlDbSupport extends DbSupport {
     }
 
 
+    /**
+     * Returns the values of all sequences in the database schema. The values are retrieved in a single query, a
+     * union of the last value of every sequence.
+     *
+     * @return The values per sequence name, not null
+     */
+    @Override
+    public Map<String, Long> getSequenceValues() {
+        Set<String> sequenceNames = getSequenceNames();
+        if (sequenceNames.isEmpty()) {
+            return new HashMap<String, Long>();
+        }
+        StringBuilder sql = new StringBuilder();
+        for (String sequenceName : sequenceNames) {
+            if (sql.length() > 0) {
+                sql.append(" union all ");
+            }
+            sql.append("select '").append(sequenceName.replace("'", "''")).append("', last_value from ").append(qualified(sequenceName));
+        }
+        return getItemsAsLongMap(sql.toString());
+    }
+
+
+    /**
+     * Sets the next value of the given sequences to the given value, using a single query that calls setval for
+     * every sequence.
+     *
+     * @param sequenceNames    The sequences, not null
+     * @param newSequenceValue The value to set
+     */
+    @Override
+    public void incrementSequencesToValue(Collection<String> sequenceNames, long newSequenceValue) {
+        if (sequenceNames.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder();
+        for (String sequenceName : sequenceNames) {
+            sql.append(sql.length() == 0 ? "select " : ", ");
+            sql.append("setval('").append(qualified(sequenceName).replace("'", "''")).append("', ").append(newSequenceValue).append(")");
+        }
+        getSQLHandler().executeQuery(sql.toString());
+    }
+
+
     /**
      * Sequences are supported.
      *
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.core.dbsupport;
+
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.emptySet;
+
+/**
+ * In-memory snapshot of the meta data of a database schema: the names of the tables, views, sequences, ..., and the
+ * columns, identity columns, primary keys and foreign keys of the tables.
+ * <p/>
+ * Every kind of meta data is loaded the first time it is needed, using the set based queries of the db support. The
+ * meta data for all tables is retrieved at once instead of querying the catalog for each table separately. Kinds of
+ * database objects that are not supported by the database are returned as empty sets.
+ * <p/>
+ * The snapshot is not updated when the schema changes and is not thread-safe.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SchemaMetadataSnapshot {
+
+    /* Empty set for unsupported kinds of database objects and unknown tables */
+    private static final Set<String> EMPTY = emptySet();
+
+    /* The db support for the schema */
+    protected DbSupport dbSupport;
+
+    /* The table names, null if not yet loaded */
+    protected Set<String> tableNames;
+
+    /* The view names, null if not yet loaded */
+    protected Set<String> viewNames;
+
+    /* The materialized view names, null if not yet loaded */
+    protected Set<String> materializedViewNames;
+
+    /* The synonym names, null if not yet loaded */
+    protected Set<String> synonymNames;
+
+    /* The sequence names, null if not yet loaded */
+    protected Set<String> sequenceNames;
+
+    /* The trigger names, null if not yet loaded */
+    protected Set<String> triggerNames;
+
+    /* The type names, null if not yet loaded */
+    protected Set<String> typeNames;
+
+    /* The column names per table name, null if not yet loaded */
+    protected Map<String, Set<String>> columnNamesPerTable;
+
+    /* The identity column names per table name, null if not yet loaded */
+    protected Map<String, Set<String>> identityColumnNamesPerTable;
+
+    /* The primary key column names per table name, null if not yet loaded */
+    protected Map<String, Set<String>> primaryKeyColumnNamesPerTable;
+
+    /* The names of the referenced tables per table name, null if not yet loaded */
+    protected Map<String, Set<String>> referencedTableNamesPerTable;
+
+
+    /**
+     * Creates a snapshot for the schema of the given db support. No meta data is loaded yet.
+     *
+     * @param dbSupport The db support, not null
+     */
+    public SchemaMetadataSnapshot(DbSupport dbSupport) {
+        this.dbSupport = dbSupport;
+    }
+
+
+    /**
+     * @return The db support of the schema, not null
+     */
+    public DbSupport getDbSupport() {
+        return dbSupport;
+    }
+
+
+    /**
+     * @return The names of all tables in the schema, not null
+     */
+    public Set<String> getTableNames() {
+        if (tableNames == null) {
+            tableNames = dbSupport.getTableNames();
+        }
+        return tableNames;
+    }
+
+
+    /**
+     * @return The names of all views in the schema, not null
+     */
+    public Set<String> getViewNames() {
+        if (viewNames == null) {
+            viewNames = dbSupport.getViewNames();
+        }
+        return viewNames;
+    }
+
+
+    /**
+     * @return The names of all materialized views in the schema, empty if not supported, not null
+     */
+    public Set<String> getMaterializedViewNames() {
+        if (materializedViewNames == null) {
+            materializedViewNames = dbSupport.supportsMaterializedViews() ? dbSupport.getMaterializedViewNames() : EMPTY;
+        }
+        return materializedViewNames;
+    }
+
+
+    /**
+     * @return The names of all synonyms in the schema, empty if not supported, not null
+     */
+    public Set<String> getSynonymNames() {
+        if (synonymNames == null) {
+            synonymNames = dbSupport.supportsSynonyms() ? dbSupport.getSynonymNames() : EMPTY;
+        }
+        return synonymNames;
+    }
+
+
+    /**
+     * @return The names of all sequences in the schema, empty if not supported, not null
+     */
+    public Set<String> getSequenceNames() {
+        if (sequenceNames == null) {
+            sequenceNames = dbSupport.supportsSequences() ? dbSupport.getSequenceNames() : EMPTY;
+        }
+        return sequenceNames;
+    }
+
+
+    /**
+     * @return The names of all triggers in the schema, empty if not supported, not null
+     */
+    public Set<String> getTriggerNames() {
+        if (triggerNames == null) {
+            triggerNames = dbSupport.supportsTriggers() ? dbSupport.getTriggerNames() : EMPTY;
+        }
+        return triggerNames;
+    }
+
+
+    /**
+     * @return The names of all types in the schema, empty if not supported, not null
+     */
+    public Set<String> getTypeNames() {
+        if (typeNames == null) {
+            typeNames = dbSupport.supportsTypes() ? dbSupport.getTypeNames() : EMPTY;
+        }
+        return typeNames;
+    }
+
+
+    /**
+     * @param tableName The table, not null
+     * @return The names of the columns of the table, empty if the table is unknown, not null
+     */
+    public Set<String> getColumnNames(String tableName) {
+        if (columnNamesPerTable == null) {
+            columnNamesPerTable = dbSupport.getColumnNamesPerTable();
+        }
+        return getItems(columnNamesPerTable, tableName);
+    }
+
+
+    /**
+     * @param tableName The table, not null
+     * @return The names of the identity columns of the table, empty if identity columns are not supported, not null
+     */
+    public Set<String> getIdentityColumnNames(String tableName) {
+        if (identityColumnNamesPerTable == null) {
+            if (!dbSupport.supportsIdentityColumns()) {
+                return EMPTY;
+            }
+            identityColumnNamesPerTable = dbSupport.getIdentityColumnNamesPerTable();
+        }
+        return getItems(identityColumnNamesPerTable, tableName);
+    }
+
+
+    /**
+     * @param tableName The table, not null
+     * @return The names of the primary key columns of the table, empty if the table has no primary key, not null
+     */
+    public Set<String> getPrimaryKeyColumnNames(String tableName) {
+        if (primaryKeyColumnNamesPerTable == null) {
+            primaryKeyColumnNamesPerTable = dbSupport.getPrimaryKeyColumnNamesPerTable();
+        }
+        return getItems(primaryKeyColumnNamesPerTable, tableName);
+    }
+
+
+    /**
+     * @param tableName The table, not null
+     * @return The names of the tables that are referenced by foreign keys of the table, not null
+     */
+    public Set<String> getReferencedTableNames(String tableName) {
+        if (referencedTableNamesPerTable == null) {
+            referencedTableNamesPerTable = dbSupport.getReferencedTableNamesPerTable();
+        }
+        return getItems(referencedTableNamesPerTable, tableName);
+    }
+
+
+    /**
+     * @param itemsPerTable The items per table name, not null
+     * @param tableName     The table, not null
+     * @return The items of the table, empty if there are none, not null
+     */
+    protected Set<String> getItems(Map<String, Set<String>> itemsPerTable, String tableName) {
+        Set<String> items = itemsPerTable.get(tableName);
+        if (items == null) {
+            return EMPTY;
+        }
+        return items;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.core.dbsupport;
+
+/**
+ * A {@link SQLHandler} that can group the statements that are executed between a call to {@link #startSession} and
+ * {@link #endSession} into a unit of work.
+ * <p/>
+ * This is a separate interface so that existing {@link SQLHandler} implementations keep working: use
+ * {@link Sessions#startSession} and {@link Sessions#endSession} to start and end a session on any sql handler. These
+ * do nothing if the handler does not support sessions.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface SessionAwareSQLHandler extends SQLHandler {
+
+    /**
+     * Starts a unit of work. Implementations can use this to keep using the same connection until the session is
+     * ended, and, if <code>batchUpdates</code> is true, to collect the updates that are executed during the session
+     * in batches. Batched updates are executed at the latest when the session ends, and always before a query is
+     * performed. Sessions can be nested.
+     * <p/>
+     * Every call to this method should be followed by a call to {@link #endSession}, e.g. in a finally block.
+     *
+     * @param batchUpdates True if the updates of the session do not need to be executed immediately
+     */
+    void startSession(boolean batchUpdates);
+
+
+    /**
+     * Ends the unit of work that was started by the last call to {@link #startSession}. Batched updates are executed
+     * and, if it was the outer-most session, the connection is released.
+     */
+    void endSession();
+
+
+    /**
+     * Helpers to start and end a session on a sql handler that does not necessarily support sessions.
+     */
+    public static class Sessions {
+
+        /**
+         * Starts a session if the given sql handler supports sessions, does nothing otherwise.
+         *
+         * @param sqlHandler   The sql handler, not null
+         * @param batchUpdates True if the updates of the session do not need to be executed immediately
+         */
+        public static void startSession(SQLHandler sqlHandler, boolean batchUpdates) {
+            if (sqlHandler instanceof SessionAwareSQLHandler) {
+                ((SessionAwareSQLHandler) sqlHandler).startSession(batchUpdates);
+            }
+        }
+
+
+        /**
+         * Ends the current session if the given sql handler supports sessions, does nothing otherwise.
+         *
+         * @param sqlHandler The sql handler, not null
+         */
+        public static void endSession(SQLHandler sqlHandler) {
+            if (sqlHandler instanceof SessionAwareSQLHandler) {
+                ((SessionAwareSQLHandler) sqlHandler).endSession();
+            }
+        }
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.core.dbsupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * SQL handler that keeps using the same connection during a session. Outside a session, this handler behaves exactly
+ * like the {@link DefaultSQLHandler}: every statement gets its own connection.
+ * <p/>
+ * During a session:
+ * <ul>
+ * <li>all statements are executed on a single connection. The data source returned by {@link #getDataSource} first
+ * executes the batched updates and then hands out connections of their own, so that its callers do not take part
+ * in the transaction of the session.</li>
+ * <li>queries are executed using prepared statements that are kept open and reused when the same query is performed
+ * again.</li>
+ * <li>if the session was started with <code>batchUpdates</code> true, updates are collected in a JDBC batch. The batch
+ * is executed when it contains the configured nr of updates, before a query or an update that is not batched is
+ * performed, before a connection is handed out and when the session ends. The update count of a batched update is
+ * not known when it is added to the batch: 0 is returned instead.</li>
+ * </ul>
+ * This avoids opening and closing connections and statements for every statement, which is expensive when the data
+ * source does not pool its connections.
+ * <p/>
+ * A session is bound to the thread that started it: the state of the session, its nesting level and its connection
+ * are kept per thread. Other threads can start sessions of their own at the same time. Statements that are executed
+ * by a thread without a session are executed on a connection of their own, as if there was no session.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SessionSQLHandler extends DefaultSQLHandler {
+
+    /* Property key for the maximum nr of updates in a batch */
+    public static final String PROPKEY_BATCH_SIZE = "database.sqlHandler.batchSize";
+
+    /* The default maximum nr of updates in a batch */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /* The maximum nr of prepared statements that are kept open during a session */
+    public static final int MAX_CACHED_STATEMENTS = 50;
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(SessionSQLHandler.class);
+
+    /* The maximum nr of updates in a batch, 1 or less to never batch updates */
+    protected int batchSize;
+
+    /* The session of the current thread, null if the thread has no session */
+    protected ThreadLocal<Session> sessions = new ThreadLocal<Session>();
+
+    /* The data source that executes the batched updates before handing out connections */
+    protected DataSource sessionDataSource;
+
+
+    /**
+     * Constructs a new instance that connects to the given DataSource, using the default batch size.
+     *
+     * @param dataSource The data source, not null
+     */
+    public SessionSQLHandler(DataSource dataSource) {
+        this(dataSource, true, DEFAULT_BATCH_SIZE);
+    }
+
+
+    /**
+     * Constructs a new instance that connects to the given DataSource
+     *
+     * @param dataSource       The data source, not null
+     * @param doExecuteUpdates Boolean indicating whether updates should effectively be executed on the underlying
+     *                         database
+     * @param batchSize        The maximum nr of updates in a batch, 1 or less to never batch updates
+     */
+    public SessionSQLHandler(DataSource dataSource, boolean doExecuteUpdates, int batchSize) {
+        super(dataSource, doExecuteUpdates);
+        this.batchSize = batchSize;
+        this.sessionDataSource = createSessionDataSource(dataSource);
+    }
+
+
+    /**
+     * Starts a session for the current thread. If this is the outer-most session of the thread, a connection is
+     * retrieved that will be used until the session ends.
+     *
+     * @param batchUpdates True if the updates of the session can be executed in batches
+     */
+    @Override
+    public void startSession(boolean batchUpdates) {
+        Session session = sessions.get();
+        if (session == null) {
+            try {
+                session = new Session(super.getDataSource().getConnection());
+            } catch (SQLException e) {
+                throw new UnitilsException("Unable to retrieve a connection for the database session.", e);
+            }
+            sessions.set(session);
+        }
+        session.batchUpdates.addLast(batchUpdates);
+    }
+
+
+    /**
+     * Ends the current session: the batched updates are executed. If it is the outer-most session, all statements
+     * are closed and the connection is released.
+     */
+    @Override
+    public void endSession() {
+        Session session = sessions.get();
+        if (session == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            session.batchUpdates.removeLast();
+            if (session.batchUpdates.isEmpty()) {
+                sessions.remove();
+                closeSession(session);
+            }
+        }
+    }
+
+
+    /**
+     * Executes all updates that are still in the batch.
+     */
+    public void flush() {
+        Session session = sessions.get();
+        if (session == null || session.batchedUpdates.isEmpty()) {
+            return;
+        }
+        List<String> updates = new ArrayList<String>(session.batchedUpdates);
+        session.batchedUpdates.clear();
+        try {
+            session.updateStatement.executeBatch();
+
+        } catch (BatchUpdateException e) {
+            int failedIndex = getFailedUpdateIndex(e.getUpdateCounts(), updates.size());
+            if (failedIndex == -1) {
+                throw new UnitilsException("Error while performing database updates: " + updates, e);
+            }
+            throw new UnitilsException("Error while performing database update: " + updates.get(failedIndex), e);
+        } catch (Exception e) {
+            throw new UnitilsException("Error while performing database updates: " + updates, e);
+        } finally {
+            try {
+                session.updateStatement.clearBatch();
+            } catch (SQLException e) {
+                // ignored, the statement is no longer usable and will be recreated
+                closeQuietly(session.updateStatement);
+                session.updateStatement = null;
+            }
+        }
+    }
+
+
+    @Override
+    public int executeUpdate(String sql) {
+        if (!isSessionActive()) {
+            return super.executeUpdate(sql);
+        }
+        logger.debug(sql);
+
+        if (!isDoExecuteUpdates()) {
+            // skip update
+            return 0;
+        }
+        try {
+            if (isBatchUpdates()) {
+                getUpdateStatement().addBatch(sql);
+                List<String> batchedUpdates = sessions.get().batchedUpdates;
+                batchedUpdates.add(sql);
+                if (batchedUpdates.size() >= batchSize) {
+                    flush();
+                }
+                return 0;
+            }
+            flush();
+            return getUpdateStatement().executeUpdate(sql);
+
+        } catch (UnitilsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnitilsException("Error while performing database update: " + sql, e);
+        }
+    }
+
+
+    @Override
+    public void executeQuery(String sql) {
+        if (!isSessionActive()) {
+            super.executeQuery(sql);
+            return;
+        }
+        logger.debug(sql);
+
+        if (!isDoExecuteUpdates()) {
+            // skip query
+            return;
+        }
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while performing database update: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+
+    @Override
+    public int executeUpdateAndCommit(String sql) {
+        if (!isSessionActive()) {
+            return super.executeUpdateAndCommit(sql);
+        }
+        logger.debug(sql);
+
+        if (!isDoExecuteUpdates()) {
+            // skip update
+            return 0;
+        }
+        flush();
+        try {
+            int nbChanges = getUpdateStatement().executeUpdate(sql);
+            Connection connection = sessions.get().connection;
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            return nbChanges;
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while performing database update: " + sql, e);
+        }
+    }
+
+
+    @Override
+    public long getItemAsLong(String sql) {
+        if (!isSessionActive()) {
+            return super.getItemAsLong(sql);
+        }
+        logger.debug(sql);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+            if (resultSet.next()) {
+                return resultSet.getLong(1);
+            }
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new UnitilsException("No item value found: " + sql);
+    }
+
+
+    @Override
+    public String getItemAsString(String sql) {
+        if (!isSessionActive()) {
+            return super.getItemAsString(sql);
+        }
+        logger.debug(sql);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+            if (resultSet.next()) {
+                return resultSet.getString(1);
+            }
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new UnitilsException("No item value found: " + sql);
+    }
+
+
+    @Override
+    public Set<String> getItemsAsStringSet(String sql) {
+        if (!isSessionActive()) {
+            return super.getItemsAsStringSet(sql);
+        }
+        logger.debug(sql);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+            Set<String> result = new HashSet<String>();
+            while (resultSet.next()) {
+                result.add(resultSet.getString(1));
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+
+    @Override
+    public Map<String, Set<String>> getItemsAsStringSetMap(String sql) {
+        if (!isSessionActive()) {
+            return super.getItemsAsStringSetMap(sql);
+        }
+        logger.debug(sql);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+            Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+            while (resultSet.next()) {
+                String key = resultSet.getString(1);
+                Set<String> items = result.get(key);
+                if (items == null) {
+                    items = new HashSet<String>();
+                    result.put(key, items);
+                }
+                items.add(resultSet.getString(2));
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+
+    @Override
+    public boolean exists(String sql) {
+        if (!isSessionActive()) {
+            return super.exists(sql);
+        }
+        logger.debug(sql);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeSessionQuery(sql);
+            return resultSet.next();
+
+        } catch (Exception e) {
+            throw new UnitilsException("Error while executing statement: " + sql, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+
+    /**
+     * Gets the data source. The connections are retrieved from the wrapped data source. If the current thread has a
+     * session, its batched updates are executed first, so that they are visible to the caller. The connection of the
+     * session itself is never handed out.
+     *
+     * @return The data source, not null
+     */
+    @Override
+    public DataSource getDataSource() {
+        return sessionDataSource;
+    }
+
+
+    /**
+     * @return True if a session was started by the current thread and not yet ended
+     */
+    public boolean isSessionActive() {
+        return sessions.get() != null;
+    }
+
+
+    /**
+     * @return True if the current session collects the updates in batches
+     */
+    protected boolean isBatchUpdates() {
+        return batchSize > 1 && sessions.get().batchUpdates.getLast();
+    }
+
+
+    /**
+     * Executes the batched updates and then performs the given query using a cached prepared statement.
+     *
+     * @param sql The query, not null
+     * @return The result set, not null
+     */
+    protected ResultSet executeSessionQuery(String sql) throws SQLException {
+        flush();
+        Session session = sessions.get();
+        PreparedStatement preparedStatement = session.preparedStatements.get(sql);
+        if (preparedStatement == null) {
+            preparedStatement = session.connection.prepareStatement(sql);
+            session.preparedStatements.put(sql, preparedStatement);
+        }
+        return preparedStatement.executeQuery();
+    }
+
+
+    /**
+     * @return The statement for executing the updates of the session, not null
+     */
+    protected Statement getUpdateStatement() throws SQLException {
+        Session session = sessions.get();
+        if (session.updateStatement == null) {
+            session.updateStatement = session.connection.createStatement();
+        }
+        return session.updateStatement;
+    }
+
+
+    /**
+     * Closes all statements and the connection of the given session.
+     *
+     * @param session The session, not null
+     */
+    protected void closeSession(Session session) {
+        for (PreparedStatement preparedStatement : session.preparedStatements.values()) {
+            closeQuietly(preparedStatement);
+        }
+        session.preparedStatements.clear();
+        session.batchedUpdates.clear();
+        closeQuietly(session.connection, session.updateStatement, null);
+        session.updateStatement = null;
+        session.connection = null;
+    }
+
+
+    /**
+     * Determines which update of a batch failed using the update counts of the batch update exception. Drivers either
+     * stop at the first failure, returning the counts of the preceding updates, or continue and mark failed updates.
+     *
+     * @param updateCounts The update counts, null if unknown
+     * @param nrOfUpdates  The nr of updates in the batch
+     * @return The index of the first failed update, -1 if unknown
+     */
+    protected int getFailedUpdateIndex(int[] updateCounts, int nrOfUpdates) {
+        if (updateCounts == null) {
+            return -1;
+        }
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        if (updateCounts.length < nrOfUpdates) {
+            return updateCounts.length;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Creates the data source that is returned by {@link #getDataSource}.
+     *
+     * @param dataSource The wrapped data source, not null
+     * @return The session data source, not null
+     */
+    protected DataSource createSessionDataSource(final DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("getConnection".equals(method.getName())) {
+                    flush();
+                }
+                try {
+                    return method.invoke(dataSource, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }
+        });
+    }
+
+
+    /**
+     * The state of the session of a thread.
+     */
+    protected static class Session {
+
+        /* The batch update setting of each started (nested) session, the last one is the current session */
+        protected LinkedList<Boolean> batchUpdates = new LinkedList<Boolean>();
+
+        /* The connection of the session */
+        protected Connection connection;
+
+        /* The open prepared statements of the session per sql, least recently used first */
+        protected Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > MAX_CACHED_STATEMENTS) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        /* The statement for the updates, null if not yet created */
+        protected Statement updateStatement;
+
+        /* The updates that were added to the batch of the update statement but are not executed yet */
+        protected List<String> batchedUpdates = new ArrayList<String>();
+
+
+        public Session(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -48,6 +48,8 @@ public class ObjectFormatter {
     protected int maxDepth;
     /* The maximum nr of elements for arrays and collections to display */
     protected int maxNrArrayOrCollectionElements;
+    /* The maximum nr of characters of strings to display, -1 for no maximum */
+    protected int maxStringLength;
 
     protected ArrayAndCollectionFormatter arrayAndCollectionFormatter;
 
@@ -68,8 +70,22 @@ public class ObjectFormatter {
      * @param maxNrArrayOrCollectionElements The maximum nr of elements for arrays and collections to display  > 0
      */
     public ObjectFormatter(int maxDepth, int maxNrArrayOrCollectionElements) {
+        this(maxDepth, maxNrArrayOrCollectionElements, -1);
+    }
+
+
+    /**
+     * Creates a formatter with the given maximum recursion depth. Strings that are longer than the given
+     * maximum string length are cut off and end with '...'.
+     *
+     * @param maxDepth                       The max depth > 0
+     * @param maxNrArrayOrCollectionElements The maximum nr of elements for arrays and collections to display  > 0
+     * @param maxStringLength                The maximum nr of characters of strings to display > 0, -1 for no maximum
+     */
+    public ObjectFormatter(int maxDepth, int maxNrArrayOrCollectionElements, int maxStringLength) {
         this.maxDepth = maxDepth;
         this.maxNrArrayOrCollectionElements = maxNrArrayOrCollectionElements;
+        this.maxStringLength = maxStringLength;
         this.arrayAndCollectionFormatter = new ArrayAndCollectionFormatter(maxNrArrayOrCollectionElements, this);
     }
 
@@ -184,8 +200,14 @@ public class ObjectFormatter {
 
     protected boolean formatString(Object object, StringBuilder result) {
         if (object instanceof String) {
+            String string = (String) object;
             result.append('"');
-            result.append(object);
+            if (maxStringLength >= 0 && string.length() > maxStringLength) {
+                result.append(string, 0, maxStringLength);
+                result.append("...");
+            } else {
+                result.append(string);
+            }
             result.append('"');
             return true;
         }
@@ -19,9 +19,17 @@ import org.unitils.core.UnitilsException;
 import org.unitils.reflectionassert.comparator.Comparator;
 import org.unitils.reflectionassert.difference.Difference;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -37,12 +45,45 @@ import java.util.Map;
  * sure that a correct comparator chain is assembled.
  * <p/>
  * A readable report differences can be created using the DifferenceReport.
+ * <p/>
+ * When all differences are requested, a comparison that stops at the first difference is performed first. Equal
+ * objects, which are the common case, are then found by a single pass that does not create any difference objects.
+ * The results of the comparisons are cached, but at most maxNrOfCachedResults results are kept to bound the memory
+ * that is used for comparing very large object graphs. When the cache is full, the oldest results are removed, so that
+ * the results of recent comparisons, e.g. of shared sub-graphs, can still be reused. The comparisons that are in
+ * progress are always tracked, which is enough to avoid infinite loops because of cycles.
+ * <p/>
+ * A comparator is not thread-safe: its caches and cache counter may only be used by one thread at a time. If a
+ * parallel threshold is set, the elements of collections and maps that have at least that many elements are
+ * compared on a shared thread pool. Every task uses its own child comparator with its own caches and counter. The
+ * children can look up, but not change, the results in the cache of this comparator. This comparator does not change
+ * its caches while the children are running, since its thread waits until all parts are compared. Comparisons
+ * that are in progress are therefore still found and the same differences are reported as for a sequential
+ * comparison. The children compare the elements of nested collections on their own thread.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
  */
 public class ReflectionComparator {
 
+    /**
+     * The default maximum nr of comparison results that are kept in the caches.
+     */
+    public static final int DEFAULT_MAX_NR_OF_CACHED_RESULTS = 1000000;
+
+    /**
+     * The default minimum nr of elements of collections and maps that are compared in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+    /**
+     * The value of the parallel threshold to compare all elements on the calling thread.
+     */
+    public static final int NO_PARALLEL_COMPARISON = -1;
+
+    /* The thread pool for the parallel comparisons, created when first needed */
+    private static ExecutorService executorService;
+
     /**
      * The comparator chain.
      */
@@ -56,6 +97,31 @@ public class ReflectionComparator {
     protected Map<Object, Map<Object, Difference>> firstDifferenceCachedResults = new IdentityHashMap<Object, Map<Object, Difference>>();
     protected Map<Object, Map<Object, Difference>> allDifferencesCachedResults = new IdentityHashMap<Object, Map<Object, Difference>>();
 
+    /**
+     * The maximum nr of comparison results that are kept in the caches.
+     */
+    protected int maxNrOfCachedResults;
+
+    /**
+     * The current nr of comparison results in the caches.
+     */
+    protected int nrOfCachedResults;
+
+    /**
+     * The comparisons of which the results are in the caches, oldest first.
+     */
+    protected LinkedList<CachedResultKey> cachedResultKeys = new LinkedList<CachedResultKey>();
+
+    /**
+     * The minimum nr of elements of collections and maps that are compared in parallel, -1 for no parallel comparison.
+     */
+    protected int parallelThreshold;
+
+    /**
+     * The comparator of which the cached results can be used, null if there is none.
+     */
+    protected ReflectionComparator parentComparator;
+
 
     /**
      * Creates a comparator that will use the given chain.
@@ -63,7 +129,33 @@ public class ReflectionComparator {
      * @param comparators The comparator chain, not null
      */
     public ReflectionComparator(List<Comparator> comparators) {
+        this(comparators, DEFAULT_MAX_NR_OF_CACHED_RESULTS);
+    }
+
+
+    /**
+     * Creates a comparator that will use the given chain.
+     *
+     * @param comparators          The comparator chain, not null
+     * @param maxNrOfCachedResults The maximum nr of comparison results that are kept in the caches
+     */
+    public ReflectionComparator(List<Comparator> comparators, int maxNrOfCachedResults) {
+        this(comparators, maxNrOfCachedResults, NO_PARALLEL_COMPARISON);
+    }
+
+
+    /**
+     * Creates a comparator that will use the given chain.
+     *
+     * @param comparators          The comparator chain, not null
+     * @param maxNrOfCachedResults The maximum nr of comparison results that are kept in the caches
+     * @param parallelThreshold    The minimum nr of elements of collections and maps that are compared in parallel,
+     *                             {@link #NO_PARALLEL_COMPARISON} to compare all elements on the calling thread
+     */
+    public ReflectionComparator(List<Comparator> comparators, int maxNrOfCachedResults, int parallelThreshold) {
         this.comparators = comparators;
+        this.maxNrOfCachedResults = maxNrOfCachedResults;
+        this.parallelThreshold = parallelThreshold;
     }
 
 
@@ -82,12 +174,18 @@ public class ReflectionComparator {
 
     /**
      * Checks whether there is a difference between the left and right objects.
+     * <p/>
+     * The objects are first compared until the first difference is found. Only if they are not equal, the comparison
+     * is repeated to find all differences.
      *
      * @param left  the left instance
      * @param right the right instance
      * @return the difference, null if there is no difference
      */
     public Difference getDifference(Object left, Object right) {
+        if (isEqual(left, right)) {
+            return null;
+        }
         return getDifference(left, right, false);
     }
 
@@ -102,6 +200,13 @@ public class ReflectionComparator {
      * @return the root difference, null if there is no difference
      */
     public Difference getDifference(Object left, Object right, boolean onlyFirstDifference) {
+        // check whether difference is available in the cache of the parent
+        if (parentComparator != null) {
+            Map<Object, Difference> parentCachedResult = parentComparator.getCachedDifference(left, onlyFirstDifference);
+            if (parentCachedResult != null && parentCachedResult.containsKey(right)) {
+                return parentCachedResult.get(right);
+            }
+        }
         // check whether difference is available in cache
         Map<Object, Difference> cachedResult = getCachedDifference(left, onlyFirstDifference);
         if (cachedResult != null) {
@@ -110,9 +215,11 @@ public class ReflectionComparator {
                 return cachedResult.get(right);
             }
         } else {
-            cachedResult = new IdentityHashMap<Object, Difference>();
+            // most objects are only compared with a single other object
+            cachedResult = new IdentityHashMap<Object, Difference>(2);
             saveResultInCache(left, cachedResult, onlyFirstDifference);
         }
+        // mark the comparison as in progress, a cycle back to these objects is considered equal
         cachedResult.put(right, null);
 
         // perform actual comparison by iterating over the comparators
@@ -131,11 +238,177 @@ public class ReflectionComparator {
             throw new UnitilsException("Could not determine differences. No comparator found that is able to compare the values. Left: " + left + ", right " + right);
         }
 
-        // register outcome in cache
+        // register outcome in cache, removing the oldest results if the cache is full
         cachedResult.put(right, result);
+        cachedResultKeys.add(new CachedResultKey(left, right, onlyFirstDifference));
+        nrOfCachedResults++;
+        while (nrOfCachedResults > maxNrOfCachedResults) {
+            CachedResultKey oldestKey = cachedResultKeys.removeFirst();
+            removeResultFromCache(oldestKey.left, oldestKey.right, oldestKey.onlyFirstDifference);
+        }
         return result;
     }
 
+
+    /**
+     * Compares the elements of the given lists pair by pair: the first left element with the first right element
+     * and so on. Both lists should have the same size. If only the first difference is requested, the differences
+     * of the elements after the first element that is different are not returned.
+     * <p/>
+     * If the lists have at least the parallel threshold nr of elements, they are split into parts that are compared
+     * in parallel.
+     *
+     * @param leftElements        The left elements, not null
+     * @param rightElements       The right elements, not null
+     * @param onlyFirstDifference True if the comparison should stop at the first difference
+     * @return The difference per element index, null for elements that are equal, not null
+     */
+    public Difference[] getDifferences(List<?> leftElements, List<?> rightElements, boolean onlyFirstDifference) {
+        int nrOfElements = leftElements.size();
+        if (parallelThreshold == NO_PARALLEL_COMPARISON || nrOfElements < parallelThreshold) {
+            Difference[] result = new Difference[nrOfElements];
+            for (int index = 0; index < nrOfElements; index++) {
+                result[index] = getDifference(leftElements.get(index), rightElements.get(index), onlyFirstDifference);
+                if (result[index] != null && onlyFirstDifference) {
+                    break;
+                }
+            }
+            return result;
+        }
+        return getDifferencesInParallel(leftElements, rightElements, onlyFirstDifference);
+    }
+
+
+    /**
+     * Compares the elements on the thread pool. The elements are split into a number of parts per thread. Every part
+     * is compared by a child comparator. If only the first difference is requested, the parts stop comparing when
+     * a difference was found for a lower index.
+     *
+     * @param leftElements        The left elements, not null
+     * @param rightElements       The right elements, not null
+     * @param onlyFirstDifference True if the comparison should stop at the first difference
+     * @return The difference per element index, null for elements that are equal, not null
+     */
+    protected Difference[] getDifferencesInParallel(final List<?> leftElements, final List<?> rightElements, final boolean onlyFirstDifference) {
+        int nrOfElements = leftElements.size();
+        int nrOfParts = Math.min(nrOfElements, 4 * Runtime.getRuntime().availableProcessors());
+        int partSize = (nrOfElements + nrOfParts - 1) / nrOfParts;
+
+        final Difference[] result = new Difference[nrOfElements];
+        final AtomicInteger firstDifferenceIndex = new AtomicInteger(Integer.MAX_VALUE);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int fromIndex = 0; fromIndex < nrOfElements; fromIndex += partSize) {
+            final int partFromIndex = fromIndex;
+            final int partToIndex = Math.min(fromIndex + partSize, nrOfElements);
+            final ReflectionComparator childComparator = createChildComparator(nrOfParts);
+            futures.add(getExecutorService().submit(new Runnable() {
+                public void run() {
+                    for (int index = partFromIndex; index < partToIndex && index < firstDifferenceIndex.get(); index++) {
+                        result[index] = childComparator.getDifference(leftElements.get(index), rightElements.get(index), onlyFirstDifference);
+                        if (result[index] != null && onlyFirstDifference) {
+                            setFirstDifferenceIndex(firstDifferenceIndex, index);
+                            break;
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            waitForPart(future);
+        }
+        if (onlyFirstDifference) {
+            clearDifferencesAfterFirst(result);
+        }
+        return result;
+    }
+
+
+    /**
+     * Lowers the first difference index to the given index if it is lower than the current value.
+     *
+     * @param firstDifferenceIndex The index of the first difference that was found, not null
+     * @param index                The index of a difference
+     */
+    protected void setFirstDifferenceIndex(AtomicInteger firstDifferenceIndex, int index) {
+        int currentIndex = firstDifferenceIndex.get();
+        while (index < currentIndex && !firstDifferenceIndex.compareAndSet(currentIndex, index)) {
+            currentIndex = firstDifferenceIndex.get();
+        }
+    }
+
+
+    /**
+     * Creates a comparator for comparing a part of the elements on another thread.
+     *
+     * @param nrOfParts The nr of parts that are compared in parallel
+     * @return The comparator, not null
+     */
+    protected ReflectionComparator createChildComparator(int nrOfParts) {
+        ReflectionComparator childComparator = new ReflectionComparator(comparators, maxNrOfCachedResults / nrOfParts, NO_PARALLEL_COMPARISON);
+        childComparator.parentComparator = this;
+        return childComparator;
+    }
+
+
+    /**
+     * Waits until the comparison of a part is finished.
+     *
+     * @param future The comparison of a part, not null
+     */
+    protected void waitForPart(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while comparing elements in parallel.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UnitilsException("Unable to compare elements in parallel.", cause);
+        }
+    }
+
+
+    /**
+     * Removes all differences after the first one, so that the result is the same as for a comparison that stops
+     * at the first difference.
+     *
+     * @param differences The differences, not null
+     */
+    protected void clearDifferencesAfterFirst(Difference[] differences) {
+        boolean found = false;
+        for (int index = 0; index < differences.length; index++) {
+            if (found) {
+                differences[index] = null;
+            } else if (differences[index] != null) {
+                found = true;
+            }
+        }
+    }
+
+
+    /**
+     * @return The shared thread pool for parallel comparisons, not null
+     */
+    protected static synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "unitils-reflection-comparator");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executorService;
+    }
+
+
     protected void saveResultInCache(Object left, Map<Object, Difference> cachedResult, boolean onlyFirstDifference) {
         if (onlyFirstDifference) {
             firstDifferenceCachedResults.put(left, cachedResult);
@@ -144,6 +417,23 @@ public class ReflectionComparator {
         }
     }
 
+    protected void removeResultFromCache(Object left, Object right, boolean onlyFirstDifference) {
+        Map<Object, Difference> cachedResult = getCachedDifference(left, onlyFirstDifference);
+        if (cachedResult == null || !cachedResult.containsKey(right)) {
+            return;
+        }
+        cachedResult.remove(right);
+        nrOfCachedResults--;
+        if (!cachedResult.isEmpty()) {
+            return;
+        }
+        if (onlyFirstDifference) {
+            firstDifferenceCachedResults.remove(left);
+        } else {
+            allDifferencesCachedResults.remove(left);
+        }
+    }
+
     protected Map<Object, Difference> getCachedDifference(Object left, boolean onlyFirstDifference) {
         if (onlyFirstDifference) {
             return firstDifferenceCachedResults.get(left);
@@ -151,4 +441,27 @@ public class ReflectionComparator {
             return allDifferencesCachedResults.get(left);
         }
     }
+
+
+    /**
+     * Identifies a comparison of which the result is in the caches.
+     */
+    protected static class CachedResultKey {
+
+        /* The left instance */
+        protected Object left;
+
+        /* The right instance */
+        protected Object right;
+
+        /* True if the result is in the cache for the first difference */
+        protected boolean onlyFirstDifference;
+
+
+        public CachedResultKey(Object left, Object right, boolean onlyFirstDifference) {
+            this.left = left;
+            this.right = right;
+            this.onlyFirstDifference = onlyFirstDifference;
+        }
+    }
 }
@@ -18,6 +18,8 @@ package org.unitils.reflectionassert;
 import static org.unitils.reflectionassert.ReflectionComparatorMode.*;
 import org.unitils.reflectionassert.comparator.Comparator;
 import org.unitils.reflectionassert.comparator.impl.*;
+import static org.unitils.reflectionassert.ReflectionComparator.DEFAULT_MAX_NR_OF_CACHED_RESULTS;
+import static org.unitils.reflectionassert.ReflectionComparator.DEFAULT_PARALLEL_THRESHOLD;
 import static org.unitils.util.CollectionUtils.asSet;
 
 import java.util.ArrayList;
@@ -38,6 +40,9 @@ import java.util.Set;
  * <li>lenient order: only check whether both collections or arrays contain the same value, the actual order of the
  * values is not compared. Eg. if the left object is int[]{ 1, 2} and the right value is int[]{2, 1} they would still
  * be considered equal.
+ * <li>parallel: compare the elements of large collections, arrays and maps on multiple threads. This does not change
+ * the outcome of the comparison.</li>
+ * </ul>
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -98,7 +103,25 @@ public class ReflectionComparatorFactory {
      * @return The reflection comparator, not null
      */
     public static ReflectionComparator createRefectionComparator(ReflectionComparatorMode... modes) {
-        List<Comparator> comparators = getComparatorChain(asSet(modes));
+        return createRefectionComparator(DEFAULT_PARALLEL_THRESHOLD, modes);
+    }
+
+
+    /**
+     * Creates a reflection comparator for the given modes.
+     * If no mode is given, a strict comparator will be created.
+     *
+     * @param parallelThreshold The minimum nr of elements of collections and maps that are compared in parallel
+     *                          when the parallel mode is set
+     * @param modes             The modes, null for strict comparison
+     * @return The reflection comparator, not null
+     */
+    public static ReflectionComparator createRefectionComparator(int parallelThreshold, ReflectionComparatorMode... modes) {
+        Set<ReflectionComparatorMode> modeSet = asSet(modes);
+        List<Comparator> comparators = getComparatorChain(modeSet);
+        if (modeSet.contains(PARALLEL)) {
+            return new ReflectionComparator(comparators, DEFAULT_MAX_NR_OF_CACHED_RESULTS, parallelThreshold);
+        }
         return new ReflectionComparator(comparators);
     }
 
@@ -23,6 +23,8 @@ package org.unitils.reflectionassert;
  * <li>lenient dates: do not compare actual date values, just that they both have a value or not</li>
  * <li>lenient order: order is not important when comparing collections or arrays</li>
  * </ul>
+ * The parallel mode does not change the outcome of the comparison: it only compares the elements of large
+ * collections, arrays and maps on multiple threads.
  * The modes can be combined if needed.
  *
  * @author Tim Ducheyne
@@ -44,6 +46,12 @@ public enum ReflectionComparatorMode {
      * Do not compare the order of collections and arrays. Only check that all values of the left-hand (expected) side
      * collection or array are also contained in the right-hand (actual) side and vice versa.
      */
-    LENIENT_ORDER
+    LENIENT_ORDER,
+
+    /**
+     * Compare the elements of large collections, arrays and maps in parallel. The same differences are found as
+     * without this mode. This does not apply to collections and arrays that are compared with lenient order.
+     */
+    PARALLEL
 
 }
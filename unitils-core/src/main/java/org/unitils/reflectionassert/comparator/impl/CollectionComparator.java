@@ -23,7 +23,6 @@ import static org.unitils.util.CollectionUtils.convertToCollection;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -69,15 +68,13 @@ public class CollectionComparator implements Comparator {
         List<Object> leftList = new ArrayList<Object>(convertToCollection(left));
         List<Object> rightList = new ArrayList<Object>(convertToCollection(right));
 
-        int elementIndex = -1;
         CollectionDifference difference = new CollectionDifference("Different elements", left, right, leftList, rightList);
 
-        Iterator<?> leftIterator = leftList.iterator();
-        Iterator<?> rightIterator = rightList.iterator();
-        while (leftIterator.hasNext() && rightIterator.hasNext()) {
-            elementIndex++;
-
-            Difference elementDifference = reflectionComparator.getDifference(leftIterator.next(), rightIterator.next(), onlyFirstDifference);
+        // compare the elements that are in both lists, large lists can be compared in parallel
+        int nrOfCommonElements = Math.min(leftList.size(), rightList.size());
+        Difference[] elementDifferences = reflectionComparator.getDifferences(leftList.subList(0, nrOfCommonElements), rightList.subList(0, nrOfCommonElements), onlyFirstDifference);
+        for (int elementIndex = 0; elementIndex < nrOfCommonElements; elementIndex++) {
+            Difference elementDifference = elementDifferences[elementIndex];
             if (elementDifference != null) {
                 difference.addElementDifference(elementIndex, elementDifference);
                 if (onlyFirstDifference) {
@@ -87,15 +84,11 @@ public class CollectionComparator implements Comparator {
         }
 
         // check for missing elements 
-        int leftElementIndex = elementIndex;
-        while (leftIterator.hasNext()) {
-            leftIterator.next();
-            difference.addLeftMissingIndex(++leftElementIndex);
+        for (int leftElementIndex = nrOfCommonElements; leftElementIndex < leftList.size(); leftElementIndex++) {
+            difference.addLeftMissingIndex(leftElementIndex);
         }
-        int rightElementIndex = elementIndex;
-        while (rightIterator.hasNext()) {
-            rightIterator.next();
-            difference.addRightMissingIndex(++rightElementIndex);
+        for (int rightElementIndex = nrOfCommonElements; rightElementIndex < rightList.size(); rightElementIndex++) {
+            difference.addRightMissingIndex(rightElementIndex);
         }
 
         if (difference.getElementDifferences().isEmpty() && difference.getLeftMissingIndexes().isEmpty() && difference.getRightMissingIndexes().isEmpty()) {
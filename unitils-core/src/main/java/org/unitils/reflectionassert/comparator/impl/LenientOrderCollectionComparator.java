@@ -20,11 +20,13 @@ import org.unitils.reflectionassert.comparator.Comparator;
 import org.unitils.reflectionassert.difference.Difference;
 import org.unitils.reflectionassert.difference.UnorderedCollectionDifference;
 import org.unitils.reflectionassert.util.MatchingScoreCalculator;
+import org.unitils.reflectionassert.util.UnorderedCollectionMatcher;
+import static org.unitils.reflectionassert.util.UnorderedCollectionMatcher.NO_MATCH;
 import static org.unitils.util.CollectionUtils.convertToCollection;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 
@@ -59,8 +61,8 @@ public class LenientOrderCollectionComparator implements Comparator {
 
     /**
      * Compares the given collections/arrays but ignoring the actual order of the elements.
-     * This will first try to find a sequence that is an exact match. If no such sequence can be found,
-     * the difference of all elements with all other elements are calculated one by one.
+     * This will first try to find a matching of all left elements with all right elements. If no such matching can be
+     * found, the differences of the unmatched left elements with the unmatched right elements are calculated.
      *
      * @param left                 The left array/collection, not null
      * @param right                The right array/collection, not null
@@ -74,7 +76,8 @@ public class LenientOrderCollectionComparator implements Comparator {
         ArrayList<Object> rightList = new ArrayList<Object>(convertToCollection(right));
 
         // check whether a combination exists
-        boolean isEqual = isEqual(leftList, rightList, 0, reflectionComparator);
+        UnorderedCollectionMatcher matcher = createUnorderedCollectionMatcher(leftList, rightList, reflectionComparator);
+        boolean isEqual = isEqual(leftList, rightList, matcher);
         if (isEqual) {
             // found a match
             return null;
@@ -85,75 +88,54 @@ public class LenientOrderCollectionComparator implements Comparator {
         if (onlyFirstDifference) {
             return difference;
         }
-        fillAllDifferences(leftList, rightList, reflectionComparator, difference);
-        fillBestMatchingIndexes(leftList, rightList, difference);
+        fillAllDifferences(leftList, rightList, matcher, reflectionComparator, difference);
+        fillBestMatchingIndexes(leftList, rightList, matcher, difference);
         return difference;
     }
 
 
     /**
-     * Recursively checks whether there is a sequence so that both collections have matching elements.
-     * This will loop over the elements of the left list and then try to find a match for these elements in the right
-     * list. If a match is found, the element is removed from the right collection and the comparison is recursively
-     * performed again on the remaining elements.
-     * <p/>
-     * NOTE: because difference are cached in the reflection comparator, comparing two elements that were already
-     * compared should be very fast.
+     * Checks whether there is a sequence so that both collections have matching elements.
+     * If both collections have a different size, no elements are compared.
      *
-     * @param leftList             The left list, not null
-     * @param rightList            The right list, not null
-     * @param leftIndex            The current index in the left collection
-     * @param reflectionComparator reflectionComparator The comparator for the element comparisons, not null
+     * @param leftList  The left list, not null
+     * @param rightList The right list, not null
+     * @param matcher   The matcher for the elements of both lists, not null
      * @return True if a match is found
      */
-    @SuppressWarnings({"unchecked"})
-    protected boolean isEqual(ArrayList<Object> leftList, ArrayList<Object> rightList, int leftIndex, ReflectionComparator reflectionComparator) {
-        if (leftIndex >= leftList.size()) {
-            // end of the recursion
-            // if there are no more elements left in the right and left collections, a match is found
-            return (rightList.isEmpty());
-        }
-
-        Object leftValue = leftList.get(leftIndex);
-        for (int rightIndex = 0; rightIndex < rightList.size(); rightIndex++) {
-            Object rightValue = rightList.get(rightIndex);
-
-            Difference elementDifference = reflectionComparator.getDifference(leftValue, rightValue, true);
-            if (elementDifference != null) {
-                // elements are not matching
-                continue;
-            }
-
-            // match found, try to find a match for the remaining elements
-            ArrayList<Object> rightListClone = (ArrayList<Object>) rightList.clone();
-            rightListClone.remove(rightIndex);
-
-            boolean isEqual = isEqual(leftList, rightListClone, leftIndex + 1, reflectionComparator);
-            if (isEqual) {
-                return true;
-            }
+    protected boolean isEqual(ArrayList<Object> leftList, ArrayList<Object> rightList, UnorderedCollectionMatcher matcher) {
+        if (leftList.size() != rightList.size()) {
+            return false;
         }
-        return false;
+        return matcher.isCompleteMatch();
     }
 
 
     /**
-     * Calculates the difference of all elements in the left list with all elements of the right list. The result is
-     * added to the given difference.
+     * Calculates the difference of all unmatched elements in the left list with all unmatched elements of the right
+     * list. The matched elements are added as a match (null difference). The result is added to the given difference.
      * <p/>
      * NOTE: because difference are cached in the reflection comparator, comparing two elements that were already
      * compared should be very fast.
      *
      * @param leftList             The left list, not null
      * @param rightList            The right list, not null
+     * @param matcher              The matcher for the elements of both lists, not null
      * @param reflectionComparator The comparator for element comparisons, not null
      * @param difference           The root difference to which all differences will be added, not null
      */
-    protected void fillAllDifferences(ArrayList<Object> leftList, ArrayList<Object> rightList, ReflectionComparator reflectionComparator, UnorderedCollectionDifference difference) {
-        // loops over all left and right elements to calculate the differences
+    protected void fillAllDifferences(ArrayList<Object> leftList, ArrayList<Object> rightList, UnorderedCollectionMatcher matcher, ReflectionComparator reflectionComparator, UnorderedCollectionDifference difference) {
+        int[] leftMatches = matcher.getLeftMatches();
+        List<Integer> unmatchedRightIndexes = matcher.getUnmatchedRightIndexes();
+
+        // loops over all unmatched left and right elements to calculate the differences
         for (int leftIndex = 0; leftIndex < leftList.size(); leftIndex++) {
+            if (leftMatches[leftIndex] != NO_MATCH) {
+                difference.addElementDifference(leftIndex, leftMatches[leftIndex], null);
+                continue;
+            }
             Object leftValue = leftList.get(leftIndex);
-            for (int rightIndex = 0; rightIndex < rightList.size(); rightIndex++) {
+            for (Integer rightIndex : unmatchedRightIndexes) {
                 Object rightValue = rightList.get(rightIndex);
                 Difference elementDifference = reflectionComparator.getDifference(leftValue, rightValue, false);
                 difference.addElementDifference(leftIndex, rightIndex, elementDifference);
@@ -165,17 +147,17 @@ public class LenientOrderCollectionComparator implements Comparator {
      * Calculates the indexes of the best matching differences for the given unordered collection difference.
      * The resulting indexes are set on the given difference.
      * <p/>
-     * Note: The unordered collection difference should contain the differences of all left-elements with
-     * all right-elements.
+     * Note: The unordered collection difference should contain the differences of all unmatched left-elements with
+     * all unmatched right-elements.
      *
      * @param leftList   The left list, not null
      * @param rightList  The right list, not null
+     * @param matcher    The matcher for the elements of both lists, not null
      * @param difference The difference to which all indexes will be added, not null
      */
-    protected void fillBestMatchingIndexes(ArrayList<Object> leftList, ArrayList<Object> rightList, UnorderedCollectionDifference difference) {
-        ArrayList<Integer> leftIndexes = createIndexList(leftList.size());
-        ArrayList<Integer> rightIndexes = createIndexList(rightList.size());
-        removeMatchingIndexes(leftIndexes, rightIndexes, difference);
+    protected void fillBestMatchingIndexes(ArrayList<Object> leftList, ArrayList<Object> rightList, UnorderedCollectionMatcher matcher, UnorderedCollectionDifference difference) {
+        List<Integer> leftIndexes = matcher.getUnmatchedLeftIndexes();
+        List<Integer> rightIndexes = matcher.getUnmatchedRightIndexes();
         setBestMatchingIndexes(leftIndexes, rightIndexes, difference);
     }
 
@@ -189,7 +171,7 @@ public class LenientOrderCollectionComparator implements Comparator {
      * @param rightIndexes The current remaining indexes in the right collection, not null
      * @param difference   The difference to which all indexes will be added, not null
      */
-    protected void setBestMatchingIndexes(ArrayList<Integer> leftIndexes, ArrayList<Integer> rightIndexes, UnorderedCollectionDifference difference) {
+    protected void setBestMatchingIndexes(List<Integer> leftIndexes, List<Integer> rightIndexes, UnorderedCollectionDifference difference) {
         MatchingScoreCalculator matchingScoreCalculator = createMatchingScoreCalculator();
         Map<Integer, Map<Integer, Difference>> differences = difference.getElementDifferences();
 
@@ -207,41 +189,17 @@ public class LenientOrderCollectionComparator implements Comparator {
         }
     }
 
-    /**
-     * Removes all left and right indexes for which there is a match in the given difference object.
-     *
-     * @param leftIndexes  The indexes, not null
-     * @param rightIndexes The indexes, not null
-     * @param difference   The collection difference, not null
-     */
-    protected void removeMatchingIndexes(ArrayList<Integer> leftIndexes, ArrayList<Integer> rightIndexes, UnorderedCollectionDifference difference) {
-        Map<Integer, Map<Integer, Difference>> differences = difference.getElementDifferences();
-        Iterator<Integer> rightIterator = rightIndexes.iterator();
-        while (rightIterator.hasNext()) {
-            int rightIndex = rightIterator.next();
-            Iterator<Integer> leftIterator = leftIndexes.iterator();
-            while (leftIterator.hasNext()) {
-                int leftIndex = leftIterator.next();
-                Difference elementDifference = differences.get(leftIndex).get(rightIndex);
-                if (elementDifference == null) {
-                    rightIterator.remove();
-                    leftIterator.remove();
-                }
-            }
-        }
-    }
-
 
     /**
-     * @param size The nr of elements
-     * @return A list containing 0, 1, 2, ..., not null
+     * Creates the matcher for finding matching elements in both lists.
+     *
+     * @param leftList             The left list, not null
+     * @param rightList            The right list, not null
+     * @param reflectionComparator The comparator for the element comparisons, not null
+     * @return The instance, not null
      */
-    protected ArrayList<Integer> createIndexList(int size) {
-        ArrayList<Integer> leftIndexes = new ArrayList<Integer>(size);
-        for (int i = 0; i < size; i++) {
-            leftIndexes.add(i);
-        }
-        return leftIndexes;
+    protected UnorderedCollectionMatcher createUnorderedCollectionMatcher(ArrayList<Object> leftList, ArrayList<Object> rightList, ReflectionComparator reflectionComparator) {
+        return new UnorderedCollectionMatcher(leftList, rightList, reflectionComparator);
     }
 
 
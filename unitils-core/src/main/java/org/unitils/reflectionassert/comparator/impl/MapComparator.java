@@ -21,8 +21,9 @@ import org.unitils.reflectionassert.comparator.Comparator;
 import org.unitils.reflectionassert.difference.Difference;
 import org.unitils.reflectionassert.difference.MapDifference;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +34,12 @@ import java.util.Map;
  */
 public class MapComparator implements Comparator {
 
+    /* The bucket for null keys */
+    private static final Object NULL_KEY_BUCKET = new Object();
+
+    /* The bucket for keys that are not null, a number, character, string or boolean */
+    private static final Object OTHER_KEYS_BUCKET = new Object();
+
 
     /**
      * Returns true when both values are not null and instance of Map
@@ -55,6 +62,10 @@ public class MapComparator implements Comparator {
     /**
      * Compares the given maps by looping over the keys and comparing their values.
      * The key values are compared using a strict reflection comparison.
+     * <p/>
+     * First the left keys are paired with the right keys. For every left key, the first right key (in the order of
+     * the right map) that is equal is taken. Then the values of the pairs are compared, which can be done in
+     * parallel by the reflection comparator for large maps.
      *
      * @param left                 The left map, not null
      * @param right                The right map, not null
@@ -66,48 +77,57 @@ public class MapComparator implements Comparator {
         Map<?, ?> leftMap = (Map<?, ?>) left;
         Map<?, ?> rightMap = (Map<?, ?>) right;
 
-        // Create copy from which we can remove elements.
+        // Create copy that determines the order in which the right keys are tried
         Map<Object, Object> rightCopy = new HashMap<Object, Object>(rightMap);
+        List<Object> rightKeys = new ArrayList<Object>(rightCopy.keySet());
+        Map<Object, List<Integer>> rightKeyIndex = createKeyIndex(rightKeys);
+        boolean[] rightKeyMatched = new boolean[rightKeys.size()];
 
+        // pair the keys
         ReflectionComparator keyReflectionComparator = createRefectionComparator();
-        MapDifference difference = new MapDifference("Different elements", left, right, leftMap, rightMap);
-
+        List<Object> leftKeys = new ArrayList<Object>(leftMap.size());
+        List<Object> leftValues = new ArrayList<Object>(leftMap.size());
+        List<Object> rightValues = new ArrayList<Object>(leftMap.size());
+        List<Integer> matchIndexes = new ArrayList<Integer>(leftMap.size());
         for (Map.Entry<?, ?> leftEntry : leftMap.entrySet()) {
             Object leftKey = leftEntry.getKey();
-            Object leftValue = leftEntry.getValue();
-
-            boolean found = false;
-            Iterator<Map.Entry<Object, Object>> rightIterator = rightCopy.entrySet().iterator();
-            while (rightIterator.hasNext()) {
-                Map.Entry<Object, Object> rightEntry = rightIterator.next();
-                Object rightKey = rightEntry.getKey();
-                Object rightValue = rightEntry.getValue();
-
-                // compare keys using strict reflection compare
-                boolean isKeyEqual = keyReflectionComparator.isEqual(leftKey, rightKey);
-                if (isKeyEqual) {
-                    found = true;
-                    rightIterator.remove();
-
-                    // compare values
-                    Difference elementDifference = reflectionComparator.getDifference(leftValue, rightValue, onlyFirstDifference);
-                    if (elementDifference != null) {
-                        difference.addValueDifference(leftKey, elementDifference);
-                        if (onlyFirstDifference) {
-                            return difference;
-                        }
-                    }
-                    break;
-                }
+            leftKeys.add(leftKey);
+
+            int rightIndex = findMatchingKey(leftKey, rightKeys, rightKeyIndex, rightKeyMatched, keyReflectionComparator);
+            if (rightIndex == -1) {
+                matchIndexes.add(-1);
+                continue;
             }
+            rightKeyMatched[rightIndex] = true;
+            matchIndexes.add(leftValues.size());
+            leftValues.add(leftEntry.getValue());
+            rightValues.add(rightCopy.get(rightKeys.get(rightIndex)));
+        }
+
+        // compare values
+        Difference[] valueDifferences = reflectionComparator.getDifferences(leftValues, rightValues, onlyFirstDifference);
 
-            if (!found) {
+        MapDifference difference = new MapDifference("Different elements", left, right, leftMap, rightMap);
+        for (int i = 0; i < leftKeys.size(); i++) {
+            Object leftKey = leftKeys.get(i);
+            int matchIndex = matchIndexes.get(i);
+            if (matchIndex == -1) {
                 difference.addLeftMissingKey(leftKey);
+                continue;
+            }
+            Difference elementDifference = valueDifferences[matchIndex];
+            if (elementDifference != null) {
+                difference.addValueDifference(leftKey, elementDifference);
+                if (onlyFirstDifference) {
+                    return difference;
+                }
             }
         }
 
-        for (Object rightKey : rightCopy.keySet()) {
-            difference.addRightMissingKey(rightKey);
+        for (int rightIndex = 0; rightIndex < rightKeys.size(); rightIndex++) {
+            if (!rightKeyMatched[rightIndex]) {
+                difference.addRightMissingKey(rightKeys.get(rightIndex));
+            }
         }
 
         if (difference.getValueDifferences().isEmpty() && difference.getLeftMissingKeys().isEmpty() && difference.getRightMissingKeys().isEmpty()) {
@@ -115,4 +135,87 @@ public class MapComparator implements Comparator {
         }
         return difference;
     }
-}
+
+
+    /**
+     * Finds the first right key that is equal to the given left key and that was not yet matched. If possible, only
+     * the keys in the same bucket are tried, otherwise all keys are tried.
+     *
+     * @param leftKey                 The left key
+     * @param rightKeys               The right keys, not null
+     * @param rightKeyIndex           The indexes of the right keys per bucket, not null
+     * @param rightKeyMatched         True for the right keys that were already matched, not null
+     * @param keyReflectionComparator The comparator for the keys, not null
+     * @return The index of the right key, -1 if there is no matching key
+     */
+    protected int findMatchingKey(Object leftKey, List<Object> rightKeys, Map<Object, List<Integer>> rightKeyIndex, boolean[] rightKeyMatched, ReflectionComparator keyReflectionComparator) {
+        Object bucket = getKeyBucket(leftKey);
+        if (bucket == OTHER_KEYS_BUCKET) {
+            for (int rightIndex = 0; rightIndex < rightKeys.size(); rightIndex++) {
+                if (!rightKeyMatched[rightIndex] && keyReflectionComparator.isEqual(leftKey, rightKeys.get(rightIndex))) {
+                    return rightIndex;
+                }
+            }
+            return -1;
+        }
+        List<Integer> rightIndexes = rightKeyIndex.get(bucket);
+        if (rightIndexes == null) {
+            return -1;
+        }
+        for (int rightIndex : rightIndexes) {
+            if (!rightKeyMatched[rightIndex] && keyReflectionComparator.isEqual(leftKey, rightKeys.get(rightIndex))) {
+                return rightIndex;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Creates an index of the given keys per bucket. The indexes of the keys in a bucket are in the same order as
+     * the keys.
+     *
+     * @param keys The keys, not null
+     * @return The indexes per bucket, not null
+     */
+    protected Map<Object, List<Integer>> createKeyIndex(List<Object> keys) {
+        Map<Object, List<Integer>> result = new HashMap<Object, List<Integer>>();
+        for (int index = 0; index < keys.size(); index++) {
+            Object bucket = getKeyBucket(keys.get(index));
+            List<Integer> indexes = result.get(bucket);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>(1);
+                result.put(bucket, indexes);
+            }
+            indexes.add(index);
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets the bucket of a key. A key can only be strictly equal to the keys in the same bucket, except for the
+     * keys in the bucket of other keys: these can be equal to any key.
+     * <p/>
+     * Null keys are only equal to null, numbers and characters only to numbers and characters with the same double
+     * value and strings and booleans only to values that are equal.
+     *
+     * @param key The key
+     * @return The bucket, not null
+     */
+    protected Object getKeyBucket(Object key) {
+        if (key == null) {
+            return NULL_KEY_BUCKET;
+        }
+        if (key instanceof Number) {
+            return ((Number) key).doubleValue();
+        }
+        if (key instanceof Character) {
+            return (double) ((Character) key).charValue();
+        }
+        if (key instanceof String || key instanceof Boolean) {
+            return key;
+        }
+        return OTHER_KEYS_BUCKET;
+    }
+}
\ No newline at end of file
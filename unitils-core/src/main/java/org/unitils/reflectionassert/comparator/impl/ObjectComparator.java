@@ -21,10 +21,11 @@ import org.unitils.reflectionassert.difference.Difference;
 import org.unitils.reflectionassert.difference.ObjectDifference;
 import org.unitils.reflectionassert.difference.ClassDifference;
 
-import java.lang.reflect.AccessibleObject;
+import org.unitils.reflectionassert.util.ComparableFieldsCache;
+import static org.unitils.reflectionassert.util.ComparableFieldsCache.getComparableFields;
+
 import java.lang.reflect.Field;
-import static java.lang.reflect.Modifier.isStatic;
-import static java.lang.reflect.Modifier.isTransient;
+import java.util.List;
 
 /**
  * Comparator for objects. This will compare all corresponding field values.
@@ -81,6 +82,7 @@ public class ObjectComparator implements Comparator {
 
     /**
      * Compares the values of all fields in the given objects by use of reflection.
+     * The fields are looked up once per class, see {@link ComparableFieldsCache}.
      *
      * @param left                 the left object for the comparison, not null
      * @param right                the right object for the comparison, not null
@@ -90,14 +92,8 @@ public class ObjectComparator implements Comparator {
      * @param reflectionComparator the reflection comparator, not null
      */
     protected void compareFields(Object left, Object right, Class<?> clazz, ObjectDifference difference, boolean onlyFirstDifference, ReflectionComparator reflectionComparator) {
-        Field[] fields = clazz.getDeclaredFields();
-        AccessibleObject.setAccessible(fields, true);
-
+        List<Field> fields = getComparableFields(clazz);
         for (Field field : fields) {
-            // skip transient and static fields
-            if (isTransient(field.getModifiers()) || isStatic(field.getModifiers()) || field.isSynthetic()) {
-                continue;
-            }
             try {
                 // recursively check the value of the fields
                 Difference innerDifference = reflectionComparator.getDifference(field.get(left), field.get(right), onlyFirstDifference);
@@ -113,13 +109,6 @@ public class ObjectComparator implements Comparator {
                 throw new InternalError("Unexpected IllegalAccessException");
             }
         }
-
-        // compare fields declared in superclass
-        Class<?> superclazz = clazz.getSuperclass();
-        while (superclazz != null && !superclazz.getName().startsWith("java.lang")) {
-            compareFields(left, right, superclazz, difference, onlyFirstDifference, reflectionComparator);
-            superclazz = superclazz.getSuperclass();
-        }
     }
 
 
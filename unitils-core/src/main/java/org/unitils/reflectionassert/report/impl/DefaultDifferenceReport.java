@@ -15,14 +15,23 @@
  */
 package org.unitils.reflectionassert.report.impl;
 
-import org.apache.commons.lang.StringUtils;
+import org.unitils.core.UnitilsException;
 import org.unitils.reflectionassert.difference.Difference;
 import org.unitils.reflectionassert.report.DifferenceReport;
 
+import java.io.IOException;
+
+import static org.unitils.reflectionassert.report.impl.DefaultDifferenceView.DEFAULT_MAX_NR_OF_DIFFERENCES;
+import static org.unitils.reflectionassert.report.impl.DefaultDifferenceView.DEFAULT_MAX_STRING_LENGTH;
+
 /**
  * Creates a report of the given differences. This will first output the differences using the default difference
  * view. If the difference is not a simple difference, this will also output the difference tree using the
  * difference tree view.
+ * <p/>
+ * The report can also be written to an appendable. The size of the report is bounded: the views output at most the
+ * maximum nr of differences, large string values are shortened and the report is cut off after the maximum nr of
+ * characters.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -31,8 +40,42 @@ public class DefaultDifferenceReport implements DifferenceReport {
 
     public static final int MAX_LINE_SIZE = 110;
 
+    public static final int DEFAULT_MAX_NR_OF_CHARACTERS = 1000000;
+
     public static enum MatchType {NO_MATCH};
 
+    /* The maximum nr of characters of the report */
+    protected int maxNrOfCharacters;
+
+    /* The maximum nr of differences per view */
+    protected int maxNrOfDifferences;
+
+    /* The maximum length of string values that are output completely */
+    protected int maxStringLength;
+
+
+    /**
+     * Creates a report with the default limits.
+     */
+    public DefaultDifferenceReport() {
+        this(DEFAULT_MAX_NR_OF_CHARACTERS, DEFAULT_MAX_NR_OF_DIFFERENCES, DEFAULT_MAX_STRING_LENGTH);
+    }
+
+
+    /**
+     * Creates a report.
+     *
+     * @param maxNrOfCharacters  The maximum nr of characters of the report, > 0
+     * @param maxNrOfDifferences The maximum nr of differences per view, > 0
+     * @param maxStringLength    The maximum length of string values that are output completely, > 0
+     */
+    public DefaultDifferenceReport(int maxNrOfCharacters, int maxNrOfDifferences, int maxStringLength) {
+        this.maxNrOfCharacters = maxNrOfCharacters;
+        this.maxNrOfDifferences = maxNrOfDifferences;
+        this.maxStringLength = maxStringLength;
+    }
+
+
     /**
      * Creates a report.
      *
@@ -41,14 +84,30 @@ public class DefaultDifferenceReport implements DifferenceReport {
      */
     public String createReport(Difference difference) {
         StringBuilder result = new StringBuilder();
-        result.append(new SimpleDifferenceView().createView(difference)).append("\n\n");
-        result.append("--- Found following differences ---\n");
-        result.append(new DefaultDifferenceView().createView(difference));
-        if (!Difference.class.equals(difference.getClass())) {
-            result.append("\n--- Difference detail tree ---\n");
-            result.append(new TreeDifferenceView().createView(difference));
-        }
+        writeReport(difference, result);
         return result.toString();
     }
 
+
+    /**
+     * Writes the report to the given output. Writing stops when the maximum nr of characters is reached.
+     *
+     * @param difference The difference to output, not null
+     * @param output     The output to write to, not null
+     */
+    public void writeReport(Difference difference, Appendable output) {
+        LimitedAppendable limitedOutput = new LimitedAppendable(output, maxNrOfCharacters);
+        try {
+            limitedOutput.append(new SimpleDifferenceView(maxStringLength).createView(difference)).append("\n\n");
+            limitedOutput.append("--- Found following differences ---\n");
+            new DefaultDifferenceView(maxNrOfDifferences, maxStringLength).writeView(difference, limitedOutput);
+            if (!Difference.class.equals(difference.getClass()) && !limitedOutput.isLimitReached()) {
+                limitedOutput.append("\n--- Difference detail tree ---\n");
+                new TreeDifferenceView(maxNrOfDifferences, maxStringLength).writeView(difference, limitedOutput);
+            }
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to write difference report.", e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -16,24 +16,41 @@
 package org.unitils.reflectionassert.report.impl;
 
 import static org.apache.commons.lang.ClassUtils.getShortClassName;
+import org.unitils.core.UnitilsException;
 import org.unitils.core.util.ObjectFormatter;
 import org.unitils.reflectionassert.difference.*;
 import org.unitils.reflectionassert.report.DifferenceView;
 import static org.unitils.reflectionassert.report.impl.DefaultDifferenceReport.MAX_LINE_SIZE;
 import static org.unitils.reflectionassert.report.impl.DefaultDifferenceReport.MatchType.NO_MATCH;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Formatter that will output all leaf differences in the tree and, in case of an unordered collection difference,
  * the difference of all best matches.
+ * <p/>
+ * The view is written to an appendable while the tree is visited. After the maximum nr of differences is written,
+ * or when the output is a {@link LimitedAppendable} of which the limit was reached, the remaining differences are
+ * skipped without formatting them. String values that are longer than the maximum string length are shortened to
+ * a window around their first difference.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
  */
 public class DefaultDifferenceView implements DifferenceView {
 
+    /**
+     * The default maximum nr of differences to output.
+     */
+    public static final int DEFAULT_MAX_NR_OF_DIFFERENCES = 1000;
+
+    /**
+     * The default maximum length of string values that are output completely.
+     */
+    public static final int DEFAULT_MAX_STRING_LENGTH = 1000;
+
     /**
      * True when an unordered collection is being formatted.
      */
@@ -42,13 +59,55 @@ public class DefaultDifferenceView implements DifferenceView {
     /**
      * Formatter for object values.
      */
-    protected ObjectFormatter objectFormatter = new ObjectFormatter();
+    protected ObjectFormatter objectFormatter;
+
+    /**
+     * Formatter for the values of leaf differences.
+     */
+    protected LargeValueFormatter largeValueFormatter;
 
     /**
      * The visitor for visiting the difference tree
      */
     protected DifferenceFormatterVisitor differenceFormatterVisitor = new DifferenceFormatterVisitor();
 
+    /**
+     * The maximum nr of differences to output.
+     */
+    protected int maxNrOfDifferences;
+
+    /**
+     * The nr of differences that were output.
+     */
+    protected int nrOfDifferences;
+
+    /**
+     * The output the view is written to.
+     */
+    protected Appendable output;
+
+
+    /**
+     * Creates a view with the default maximum nr of differences and string length.
+     */
+    public DefaultDifferenceView() {
+        this(DEFAULT_MAX_NR_OF_DIFFERENCES, DEFAULT_MAX_STRING_LENGTH);
+    }
+
+
+    /**
+     * Creates a view.
+     *
+     * @param maxNrOfDifferences The maximum nr of differences to output, > 0
+     * @param maxStringLength    The maximum length of string values that are output completely, > 0
+     */
+    public DefaultDifferenceView(int maxNrOfDifferences, int maxStringLength) {
+        this.maxNrOfDifferences = maxNrOfDifferences;
+        this.objectFormatter = new ObjectFormatter(3, 15, maxStringLength);
+        this.largeValueFormatter = new LargeValueFormatter(maxStringLength, objectFormatter);
+    }
+
+
     /**
      * Creates a string representation of the given difference tree.
      *
@@ -56,100 +115,126 @@ public class DefaultDifferenceView implements DifferenceView {
      * @return The string representation, not null
      */
     public String createView(Difference difference) {
-        return difference.accept(differenceFormatterVisitor, null);
+        StringBuilder result = new StringBuilder();
+        writeView(difference, result);
+        return result.toString();
+    }
+
+
+    /**
+     * Writes a string representation of the given difference tree to the given output.
+     *
+     * @param difference The root difference, not null
+     * @param output     The output to write to, not null
+     */
+    public void writeView(Difference difference, Appendable output) {
+        this.output = output;
+        this.nrOfDifferences = 0;
+        difference.accept(differenceFormatterVisitor, null);
     }
 
 
     /**
-     * Creates a string representation of a simple difference.
+     * Writes a string representation of a simple difference.
      *
      * @param difference The difference, not null
      * @param fieldName  The current fieldName, null for root
-     * @return The string representation, not null
      */
-    protected String formatDifference(Difference difference, String fieldName) {
-        return formatValues(fieldName, difference.getLeftValue(), difference.getRightValue());
+    protected void formatDifference(Difference difference, String fieldName) {
+        writeValues(fieldName, difference.getLeftValue(), difference.getRightValue());
     }
 
 
     /**
-     * Creates a string representation of an object difference.
+     * Writes a string representation of an object difference.
      *
      * @param objectDifference The difference, not null
      * @param fieldName        The current fieldName, null for root
-     * @return The string representation, not null
      */
-    protected String formatDifference(ObjectDifference objectDifference, String fieldName) {
-        StringBuilder result = new StringBuilder();
+    protected void formatDifference(ObjectDifference objectDifference, String fieldName) {
         for (Map.Entry<String, Difference> fieldDifference : objectDifference.getFieldDifferences().entrySet()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, fieldDifference.getKey(), true);
-            result.append(fieldDifference.getValue().accept(differenceFormatterVisitor, innerFieldName));
+            fieldDifference.getValue().accept(differenceFormatterVisitor, innerFieldName);
         }
-        return result.toString();
     }
 
 
-    protected String formatDifferrence(ClassDifference classDifference, String fieldName) {
+    protected void formatDifferrence(ClassDifference classDifference, String fieldName) {
         StringBuilder result = new StringBuilder();
         result.append("Expected: object of type ").append(getShortClassName(classDifference.getLeftClass()));
         result.append(", actual: object of type ").append(getShortClassName(classDifference.getRightClass())).append("\n");
-        return result.toString();
+        writeDifference(result.toString());
     }
 
 
     /**
-     * Creates a string representation of a collection difference.
+     * Writes a string representation of a collection difference.
      *
      * @param collectionDifference The difference, not null
      * @param fieldName            The current fieldName, null for root
-     * @return The string representation, not null
      */
-    protected String formatDifference(CollectionDifference collectionDifference, String fieldName) {
-        StringBuilder result = new StringBuilder();
+    protected void formatDifference(CollectionDifference collectionDifference, String fieldName) {
         for (Map.Entry<Integer, Difference> elementDifferences : collectionDifference.getElementDifferences().entrySet()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, "[" + elementDifferences.getKey() + "]", false);
-            result.append(elementDifferences.getValue().accept(differenceFormatterVisitor, innerFieldName));
+            elementDifferences.getValue().accept(differenceFormatterVisitor, innerFieldName);
         }
 
         List<?> leftList = collectionDifference.getLeftList();
         List<?> rightList = collectionDifference.getRightList();
         for (Integer leftIndex : collectionDifference.getLeftMissingIndexes()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, "[" + leftIndex + "]", false);
-            result.append(formatValues(innerFieldName, leftList.get(leftIndex), NO_MATCH));
+            writeValues(innerFieldName, leftList.get(leftIndex), NO_MATCH);
         }
         for (Integer rightIndex : collectionDifference.getRightMissingIndexes()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, "[" + rightIndex + "]", false);
-            result.append(formatValues(innerFieldName, NO_MATCH, rightList.get(rightIndex)));
+            writeValues(innerFieldName, NO_MATCH, rightList.get(rightIndex));
         }
-        return result.toString();
     }
 
 
     /**
-     * Creates a string representation of a map difference.
+     * Writes a string representation of a map difference.
      *
      * @param mapDifference The difference, not null
      * @param fieldName     The current fieldName, null for root
-     * @return The string representation, not null
      */
-    protected String formatDifference(MapDifference mapDifference, String fieldName) {
-        StringBuilder result = new StringBuilder();
+    protected void formatDifference(MapDifference mapDifference, String fieldName) {
         for (Map.Entry<Object, Difference> valueDifference : mapDifference.getValueDifferences().entrySet()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, formatObject(valueDifference.getKey()), true);
-            result.append(valueDifference.getValue().accept(differenceFormatterVisitor, innerFieldName));
+            valueDifference.getValue().accept(differenceFormatterVisitor, innerFieldName);
         }
 
         Map<?, ?> leftMap = mapDifference.getLeftMap();
         Map<?, ?> rightMap = mapDifference.getRightMap();
         for (Object leftKey : mapDifference.getLeftMissingKeys()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, formatObject(leftKey), true);
-            result.append(formatValues(innerFieldName, leftMap.get(leftKey), ""));
+            writeValues(innerFieldName, leftMap.get(leftKey), "");
         }
         for (Object rightKey : mapDifference.getRightMissingKeys()) {
+            if (isOutputFull()) {
+                return;
+            }
             String innerFieldName = createFieldName(fieldName, formatObject(rightKey), true);
-            result.append(formatValues(innerFieldName, rightMap.get(rightKey), ""));
+            writeValues(innerFieldName, rightMap.get(rightKey), "");
         }
-        return result.toString();
     }
 
     protected String formatObject(Object object) {
@@ -161,34 +246,53 @@ public class DefaultDifferenceView implements DifferenceView {
 
 
     /**
-     * Creates a string representation of an unordered collection difference.
+     * Formats a value of a difference. Large string values are shortened to a window around the first difference
+     * with the other value.
      *
-     * @param unorderedCollectionDifference The difference, not null
-     * @param fieldName                     The current fieldName, null for root
+     * @param object      The value to format
+     * @param otherObject The value it was compared with
      * @return The string representation, not null
      */
-    protected String formatDifference(UnorderedCollectionDifference unorderedCollectionDifference, String fieldName) {
-        StringBuilder result = new StringBuilder();
+    protected String formatObject(Object object, Object otherObject) {
+        if (object == NO_MATCH) {
+            return "--no match--";
+        }
+        return largeValueFormatter.format(object, otherObject);
+    }
+
 
-        result.append(fieldName == null ? "" : fieldName + ": ");
+    /**
+     * Writes a string representation of an unordered collection difference.
+     *
+     * @param unorderedCollectionDifference The difference, not null
+     * @param fieldName                     The current fieldName, null for root
+     */
+    protected void formatDifference(UnorderedCollectionDifference unorderedCollectionDifference, String fieldName) {
+        if (isOutputFull()) {
+            return;
+        }
+        write(fieldName == null ? "" : fieldName + ": ");
         if (unorderedCollectionDifference.getRightList().size() != unorderedCollectionDifference.getLeftList().size()) {
-            result.append("Collections have a different size: Expected " + unorderedCollectionDifference.getLeftList().size() + ", actual " +
+            write("Collections have a different size: Expected " + unorderedCollectionDifference.getLeftList().size() + ", actual " +
                     unorderedCollectionDifference.getRightList().size() + ".\n");
         }
 
         Map<Integer, Integer> bestMatchingIndexes = unorderedCollectionDifference.getBestMatchingIndexes();
         for (Map.Entry<Integer, Integer> bestMatchingIndex : bestMatchingIndexes.entrySet()) {
+            if (isOutputFull()) {
+                return;
+            }
             int leftIndex = bestMatchingIndex.getKey();
             int rightIndex = bestMatchingIndex.getValue();
 
             if (leftIndex == -1) {
                 String innerFieldName = createFieldName(fieldName, "[x," + rightIndex + "]", false);
-                result.append(formatValues(innerFieldName, NO_MATCH, unorderedCollectionDifference.getRightList().get(rightIndex)));
+                writeValues(innerFieldName, NO_MATCH, unorderedCollectionDifference.getRightList().get(rightIndex));
                 continue;
             }
             if (rightIndex == -1) {
                 String innerFieldName = createFieldName(fieldName, "[" + leftIndex + ",x]", false);
-                result.append(formatValues(innerFieldName, unorderedCollectionDifference.getLeftList().get(leftIndex), NO_MATCH));
+                writeValues(innerFieldName, unorderedCollectionDifference.getLeftList().get(leftIndex), NO_MATCH);
                 continue;
             }
 
@@ -198,9 +302,8 @@ public class DefaultDifferenceView implements DifferenceView {
             }
 
             String innerFieldName = createFieldName(fieldName, "[" + leftIndex + "," + rightIndex + "]", false);
-            result.append(difference.accept(differenceFormatterVisitor, innerFieldName));
+            difference.accept(differenceFormatterVisitor, innerFieldName);
         }
-        return result.toString();
     }
 
 
@@ -213,8 +316,8 @@ public class DefaultDifferenceView implements DifferenceView {
      * @return The string representation, not null
      */
     protected String formatValues(String fieldName, Object leftValue, Object rightValue) {
-        String leftValueFormatted = formatObject(leftValue);
-        String rightValueFormatted = formatObject(rightValue);
+        String leftValueFormatted = formatObject(leftValue, rightValue);
+        String rightValueFormatted = formatObject(rightValue, leftValue);
         String valuesFormattedOnOneLine = formatValuesOnOneLine(fieldName, leftValueFormatted, rightValueFormatted);
         if (valuesFormattedOnOneLine.length() < MAX_LINE_SIZE) {
             return valuesFormattedOnOneLine;
@@ -267,33 +370,110 @@ public class DefaultDifferenceView implements DifferenceView {
     }
 
 
+    /**
+     * Formats the given field name and values and writes them to the output as a leaf difference. The values are only
+     * formatted if the difference will be written.
+     *
+     * @param fieldName  The field name, null if there is no field name
+     * @param leftValue  The left value
+     * @param rightValue The right value
+     */
+    protected void writeValues(String fieldName, Object leftValue, Object rightValue) {
+        if (startDifference()) {
+            write(formatValues(fieldName, leftValue, rightValue));
+        }
+    }
+
+
+    /**
+     * Writes a formatted leaf difference to the output.
+     *
+     * @param formattedDifference The formatted difference, not null
+     */
+    protected void writeDifference(String formattedDifference) {
+        if (startDifference()) {
+            write(formattedDifference);
+        }
+    }
+
+
+    /**
+     * Counts a difference that is about to be written. If the maximum nr of differences was reached, a message
+     * is written instead and all further differences are ignored.
+     *
+     * @return True if the difference should be formatted and written
+     */
+    protected boolean startDifference() {
+        if (isOutputFull()) {
+            return false;
+        }
+        nrOfDifferences++;
+        if (nrOfDifferences > maxNrOfDifferences) {
+            write("... (only the first " + maxNrOfDifferences + " differences are shown)\n");
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * @return True if nothing more should be written to the output
+     */
+    protected boolean isOutputFull() {
+        if (nrOfDifferences > maxNrOfDifferences) {
+            return true;
+        }
+        return output instanceof LimitedAppendable && ((LimitedAppendable) output).isLimitReached();
+    }
+
+
+    /**
+     * Writes the given value to the output.
+     *
+     * @param value The value, not null
+     */
+    protected void write(String value) {
+        try {
+            output.append(value);
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to write difference view.", e);
+        }
+    }
+
+
     /**
      * The visitor for visiting the difference tree.
      */
-    protected class DifferenceFormatterVisitor implements DifferenceVisitor<String, String> {
+    protected class DifferenceFormatterVisitor implements DifferenceVisitor<Void, String> {
 
-        public String visit(Difference difference, String fieldName) {
-            return formatDifference(difference, fieldName);
+        public Void visit(Difference difference, String fieldName) {
+            formatDifference(difference, fieldName);
+            return null;
         }
 
-        public String visit(ObjectDifference objectDifference, String fieldName) {
-            return formatDifference(objectDifference, fieldName);
+        public Void visit(ObjectDifference objectDifference, String fieldName) {
+            formatDifference(objectDifference, fieldName);
+            return null;
         }
 
-        public String visit(ClassDifference classDifference, String fieldName) {
-            return formatDifferrence(classDifference, fieldName);
+        public Void visit(ClassDifference classDifference, String fieldName) {
+            formatDifferrence(classDifference, fieldName);
+            return null;
         }
 
-        public String visit(MapDifference mapDifference, String fieldName) {
-            return formatDifference(mapDifference, fieldName);
+        public Void visit(MapDifference mapDifference, String fieldName) {
+            formatDifference(mapDifference, fieldName);
+            return null;
         }
 
-        public String visit(CollectionDifference collectionDifference, String fieldName) {
-            return formatDifference(collectionDifference, fieldName);
+        public Void visit(CollectionDifference collectionDifference, String fieldName) {
+            formatDifference(collectionDifference, fieldName);
+            return null;
         }
 
-        public String visit(UnorderedCollectionDifference unorderedCollectionDifference, String fieldName) {
-            return formatDifference(unorderedCollectionDifference, fieldName);
+        public Void visit(UnorderedCollectionDifference unorderedCollectionDifference, String fieldName) {
+            formatDifference(unorderedCollectionDifference, fieldName);
+            return null;
         }
     }
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.report.impl;
+
+import org.unitils.core.util.ObjectFormatter;
+
+/**
+ * Formatter for the values of a difference that limits the output for large string values.
+ * <p/>
+ * If a string is longer than the maximum length, only a window around the first character that differs from the
+ * other value is shown, together with the length of the string and the index of the first difference. All other
+ * values are formatted using the given object formatter.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class LargeValueFormatter {
+
+    /* The maximum length of a string that is formatted completely */
+    protected int maxStringLength;
+
+    /* Formatter for the other values */
+    protected ObjectFormatter objectFormatter;
+
+
+    /**
+     * Creates a formatter.
+     *
+     * @param maxStringLength The maximum length of a string that is formatted completely, > 0
+     * @param objectFormatter Formatter for the other values, not null
+     */
+    public LargeValueFormatter(int maxStringLength, ObjectFormatter objectFormatter) {
+        this.maxStringLength = maxStringLength;
+        this.objectFormatter = objectFormatter;
+    }
+
+
+    /**
+     * Gets the string representation of the given value.
+     *
+     * @param value      The value to format
+     * @param otherValue The value it was compared with
+     * @return The string representation, not null
+     */
+    public String format(Object value, Object otherValue) {
+        if (!(value instanceof String) || ((String) value).length() <= maxStringLength) {
+            return objectFormatter.format(value);
+        }
+        String string = (String) value;
+        int mismatchIndex = 0;
+        if (otherValue instanceof String) {
+            mismatchIndex = getFirstMismatchIndex(string, (String) otherValue);
+        }
+        int start = Math.max(0, Math.min(mismatchIndex - maxStringLength / 2, string.length() - maxStringLength));
+        int end = start + maxStringLength;
+
+        StringBuilder result = new StringBuilder();
+        result.append('"');
+        if (start > 0) {
+            result.append("...");
+        }
+        result.append(string, start, end);
+        if (end < string.length()) {
+            result.append("...");
+        }
+        result.append("\" (length: ").append(string.length());
+        if (otherValue instanceof String) {
+            result.append(", first difference at index: ").append(mismatchIndex);
+        }
+        result.append(")");
+        return result.toString();
+    }
+
+
+    /**
+     * @param left  The left string, not null
+     * @param right The right string, not null
+     * @return The index of the first character that is different, the length of the shortest string if there is none
+     */
+    protected int getFirstMismatchIndex(String left, String right) {
+        int length = Math.min(left.length(), right.length());
+        for (int i = 0; i < length; i++) {
+            if (left.charAt(i) != right.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.report.impl;
+
+import java.io.IOException;
+
+/**
+ * Appendable that writes at most a maximum nr of characters to a target appendable. When the maximum is reached,
+ * a message is added to indicate that the output was truncated and everything that is appended afterwards is
+ * ignored.
+ * <p/>
+ * Writers of large reports can check {@link #isLimitReached} to stop formatting values that will not be written.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class LimitedAppendable implements Appendable {
+
+    /* The appendable to write to */
+    protected Appendable target;
+
+    /* The maximum nr of characters to write */
+    protected int maxNrOfCharacters;
+
+    /* The nr of characters that were written */
+    protected int nrOfCharacters;
+
+    /* True if the maximum nr of characters was reached */
+    protected boolean limitReached;
+
+
+    /**
+     * Creates an appendable.
+     *
+     * @param target            The appendable to write to, not null
+     * @param maxNrOfCharacters The maximum nr of characters to write, > 0
+     */
+    public LimitedAppendable(Appendable target, int maxNrOfCharacters) {
+        this.target = target;
+        this.maxNrOfCharacters = maxNrOfCharacters;
+    }
+
+
+    /**
+     * @return True if the maximum nr of characters was reached, nothing will be written anymore
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+
+    public Appendable append(CharSequence charSequence) throws IOException {
+        String value = String.valueOf(charSequence);
+        return append(value, 0, value.length());
+    }
+
+
+    public Appendable append(CharSequence charSequence, int start, int end) throws IOException {
+        if (limitReached) {
+            return this;
+        }
+        CharSequence value = (charSequence == null) ? "null" : charSequence;
+        int remaining = maxNrOfCharacters - nrOfCharacters;
+        if (end - start <= remaining) {
+            target.append(value, start, end);
+            nrOfCharacters += end - start;
+            return this;
+        }
+        target.append(value, start, start + remaining);
+        target.append("\n... (output truncated after " + maxNrOfCharacters + " characters)\n");
+        nrOfCharacters = maxNrOfCharacters;
+        limitReached = true;
+        return this;
+    }
+
+
+    public Appendable append(char c) throws IOException {
+        return append(String.valueOf(c));
+    }
+}
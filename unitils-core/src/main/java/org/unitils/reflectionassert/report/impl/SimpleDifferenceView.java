@@ -21,12 +21,33 @@ import org.unitils.reflectionassert.difference.Difference;
 import org.unitils.core.util.ObjectFormatter;
 import junit.framework.AssertionFailedError;
 
+import static org.unitils.reflectionassert.report.impl.DefaultDifferenceView.DEFAULT_MAX_STRING_LENGTH;
+
 /**
  * @author Filip Neven
  */
 public class SimpleDifferenceView implements DifferenceView {
 
-    private ObjectFormatter objectFormatter = new ObjectFormatter();
+    private LargeValueFormatter largeValueFormatter;
+
+
+    /**
+     * Creates a view with the default maximum string length.
+     */
+    public SimpleDifferenceView() {
+        this(DEFAULT_MAX_STRING_LENGTH);
+    }
+
+
+    /**
+     * Creates a view.
+     *
+     * @param maxStringLength The maximum length of string values that are output completely, > 0
+     */
+    public SimpleDifferenceView(int maxStringLength) {
+        this.largeValueFormatter = new LargeValueFormatter(maxStringLength, new ObjectFormatter(3, 15, maxStringLength));
+    }
+
 
     /**
      * Creates a string representation of the given difference tree.
@@ -35,8 +56,8 @@ public class SimpleDifferenceView implements DifferenceView {
      * @return The string representation, not null
      */
     public String createView(Difference difference) {
-        String expectedStr = objectFormatter.format(difference.getLeftValue());
-        String actualStr = objectFormatter.format(difference.getRightValue());
+        String expectedStr = largeValueFormatter.format(difference.getLeftValue(), difference.getRightValue());
+        String actualStr = largeValueFormatter.format(difference.getRightValue(), difference.getLeftValue());
         String formattedOnOneLine = formatOnOneLine(expectedStr, actualStr);
         if (AssertionFailedError.class.getName().length() + 2  + formattedOnOneLine.length() < MAX_LINE_SIZE) {
             return formattedOnOneLine;
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.util;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableList;
+
+import static java.lang.reflect.Modifier.isStatic;
+import static java.lang.reflect.Modifier.isTransient;
+
+/**
+ * A shared cache of the fields that are compared by reflection for a class.
+ * <p/>
+ * These are the fields declared in the class and all its super classes, except for the fields of java.lang classes
+ * (e.g. Object). Static, transient and synthetic fields are skipped. The fields of the class come first, followed
+ * by the fields of its super class and so on. All fields are made accessible.
+ * <p/>
+ * The fields are only looked up once per class, so comparing a lot of instances does not have to get the declared
+ * fields and make them accessible over and over again. The classes are weakly referenced, so the cache does not
+ * keep classes (and their class loaders) from being unloaded.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ComparableFieldsCache {
+
+    /* The cached fields per class. The fields are softly referenced since they strongly reference their class. */
+    private static final Map<Class<?>, SoftReference<List<Field>>> comparableFields = synchronizedMap(new WeakHashMap<Class<?>, SoftReference<List<Field>>>());
+
+
+    /**
+     * Gets the fields of the given class (and super classes) that should be compared.
+     *
+     * @param clazz The class, not null
+     * @return The accessible fields, not null. The list cannot be modified.
+     */
+    public static List<Field> getComparableFields(Class<?> clazz) {
+        SoftReference<List<Field>> reference = comparableFields.get(clazz);
+        List<Field> result = reference == null ? null : reference.get();
+        if (result == null) {
+            result = unmodifiableList(findComparableFields(clazz));
+            comparableFields.put(clazz, new SoftReference<List<Field>>(result));
+        }
+        return result;
+    }
+
+
+    /**
+     * Clears all cached fields.
+     */
+    public static void clear() {
+        comparableFields.clear();
+    }
+
+
+    /**
+     * Looks up the fields of the given class (and super classes) that should be compared.
+     *
+     * @param clazz The class, not null
+     * @return The accessible fields, not null
+     */
+    protected static List<Field> findComparableFields(Class<?> clazz) {
+        List<Field> result = new ArrayList<Field>();
+        Class<?> currentClass = clazz;
+        while (currentClass != null && (currentClass == clazz || !currentClass.getName().startsWith("java.lang"))) {
+            Field[] fields = currentClass.getDeclaredFields();
+            AccessibleObject.setAccessible(fields, true);
+
+            for (Field field : fields) {
+                // skip transient and static fields
+                if (isTransient(field.getModifiers()) || isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                result.add(field);
+            }
+            currentClass = currentClass.getSuperclass();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.util;
+
+import org.unitils.reflectionassert.ReflectionComparator;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.unitils.reflectionassert.util.ComparableFieldsCache.getComparableFields;
+
+/**
+ * Finds a maximum matching between the elements of two lists. A left and right element can be matched if the
+ * reflection comparator does not find a difference between them.
+ * <p/>
+ * The matching is calculated in 2 steps. First the elements are paired greedily: the left elements are only tried
+ * against the right elements that are in the same hash bucket (e.g. the same class or the same string value). This
+ * typically pairs all elements with a linear number of comparisons. The elements that could not be paired this way
+ * are then matched using the Hopcroft-Karp algorithm. The right elements a left element can be matched with are only
+ * determined when the algorithm needs them. This way both collections are found equal if and only if a complete
+ * matching exists, in polynomial time.
+ * <p/>
+ * NOTE: because difference are cached in the reflection comparator, comparing two elements that were already
+ * compared should be very fast.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UnorderedCollectionMatcher {
+
+    /* Index value for an element that has no matching element */
+    public static final int NO_MATCH = -1;
+
+    /* Distance value for elements that can not be reached */
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    /* The left elements */
+    protected List<?> leftList;
+
+    /* The right elements */
+    protected List<?> rightList;
+
+    /* The comparator for the element comparisons */
+    protected ReflectionComparator reflectionComparator;
+
+    /* The index of the matching right element per left index, null if the matching was not yet calculated */
+    protected int[] leftMatches;
+
+    /* The index of the matching left element per right index */
+    protected int[] rightMatches;
+
+    /* The indexes of the right elements that match, per left index. Null if not yet determined */
+    protected int[][] matchingRightIndexes;
+
+    /* The distances of the left elements in the layered graph of the current Hopcroft-Karp phase */
+    protected int[] distances;
+
+    /* Per left index, the position of the next matching right index to try in the current Hopcroft-Karp phase */
+    protected int[] nextPositions;
+
+
+    /**
+     * Creates a matcher for the given lists.
+     *
+     * @param leftList             The left list, not null
+     * @param rightList            The right list, not null
+     * @param reflectionComparator The comparator for the element comparisons, not null
+     */
+    public UnorderedCollectionMatcher(List<?> leftList, List<?> rightList, ReflectionComparator reflectionComparator) {
+        this.leftList = leftList;
+        this.rightList = rightList;
+        this.reflectionComparator = reflectionComparator;
+    }
+
+
+    /**
+     * Checks whether every left element can be matched with a different right element and vice versa.
+     *
+     * @return True if both lists contain the same elements
+     */
+    public boolean isCompleteMatch() {
+        if (leftList.size() != rightList.size()) {
+            return false;
+        }
+        int[] matches = getLeftMatches();
+        for (int match : matches) {
+            if (match == NO_MATCH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Gets the index of the matching right element for each left index.
+     *
+     * @return The indexes, {@link #NO_MATCH} if a left element has no match, not null
+     */
+    public int[] getLeftMatches() {
+        calculateMatching();
+        return leftMatches;
+    }
+
+
+    /**
+     * Gets the index of the matching left element for each right index.
+     *
+     * @return The indexes, {@link #NO_MATCH} if a right element has no match, not null
+     */
+    public int[] getRightMatches() {
+        calculateMatching();
+        return rightMatches;
+    }
+
+
+    /**
+     * @return The indexes of the left elements that have no match, not null
+     */
+    public List<Integer> getUnmatchedLeftIndexes() {
+        return getUnmatchedIndexes(getLeftMatches());
+    }
+
+
+    /**
+     * @return The indexes of the right elements that have no match, not null
+     */
+    public List<Integer> getUnmatchedRightIndexes() {
+        return getUnmatchedIndexes(getRightMatches());
+    }
+
+
+    /**
+     * Calculates the maximum matching if this was not done before.
+     */
+    protected void calculateMatching() {
+        if (leftMatches != null) {
+            return;
+        }
+        leftMatches = new int[leftList.size()];
+        rightMatches = new int[rightList.size()];
+        Arrays.fill(leftMatches, NO_MATCH);
+        Arrays.fill(rightMatches, NO_MATCH);
+
+        int nrOfMatches = matchGreedily();
+        int maxNrOfMatches = Math.min(leftList.size(), rightList.size());
+        if (nrOfMatches == maxNrOfMatches) {
+            return;
+        }
+        matchingRightIndexes = new int[leftList.size()][];
+        distances = new int[leftList.size()];
+        nextPositions = new int[leftList.size()];
+        while (nrOfMatches < maxNrOfMatches && calculateDistances()) {
+            Arrays.fill(nextPositions, 0);
+            for (int leftIndex = 0; leftIndex < leftMatches.length; leftIndex++) {
+                if (leftMatches[leftIndex] == NO_MATCH && findAugmentingPath(leftIndex)) {
+                    nrOfMatches++;
+                }
+            }
+        }
+        matchingRightIndexes = null;
+        distances = null;
+        nextPositions = null;
+    }
+
+
+    /**
+     * Pairs the elements that are in the same bucket, taking the first matching right element for every left element.
+     *
+     * @return The nr of matched elements
+     */
+    protected int matchGreedily() {
+        Map<Object, LinkedList<Integer>> rightBuckets = new HashMap<Object, LinkedList<Integer>>();
+        for (int rightIndex = 0; rightIndex < rightList.size(); rightIndex++) {
+            Object bucketKey = getBucketKey(rightList.get(rightIndex));
+            LinkedList<Integer> bucket = rightBuckets.get(bucketKey);
+            if (bucket == null) {
+                bucket = new LinkedList<Integer>();
+                rightBuckets.put(bucketKey, bucket);
+            }
+            bucket.add(rightIndex);
+        }
+
+        int nrOfMatches = 0;
+        for (int leftIndex = 0; leftIndex < leftList.size(); leftIndex++) {
+            Object leftValue = leftList.get(leftIndex);
+            LinkedList<Integer> bucket = rightBuckets.get(getBucketKey(leftValue));
+            if (bucket == null) {
+                continue;
+            }
+            Iterator<Integer> iterator = bucket.iterator();
+            while (iterator.hasNext()) {
+                int rightIndex = iterator.next();
+                if (isMatch(leftValue, rightList.get(rightIndex))) {
+                    iterator.remove();
+                    leftMatches[leftIndex] = rightIndex;
+                    rightMatches[rightIndex] = leftIndex;
+                    nrOfMatches++;
+                    break;
+                }
+            }
+        }
+        return nrOfMatches;
+    }
+
+
+    /**
+     * Breadth first search that builds the layers of the Hopcroft-Karp phase starting from the unmatched left elements.
+     *
+     * @return True if an unmatched right element can be reached, i.e. an augmenting path exists
+     */
+    protected boolean calculateDistances() {
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int leftIndex = 0; leftIndex < leftMatches.length; leftIndex++) {
+            if (leftMatches[leftIndex] == NO_MATCH) {
+                distances[leftIndex] = 0;
+                queue.add(leftIndex);
+            } else {
+                distances[leftIndex] = INFINITE;
+            }
+        }
+
+        boolean found = false;
+        while (!queue.isEmpty()) {
+            int leftIndex = queue.removeFirst();
+            for (int rightIndex : getMatchingRightIndexes(leftIndex)) {
+                int nextLeftIndex = rightMatches[rightIndex];
+                if (nextLeftIndex == NO_MATCH) {
+                    found = true;
+                } else if (distances[nextLeftIndex] == INFINITE) {
+                    distances[nextLeftIndex] = distances[leftIndex] + 1;
+                    queue.add(nextLeftIndex);
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Depth first search for an augmenting path in the layers calculated by {@link #calculateDistances}. If a path
+     * is found, the matching is updated along the path.
+     * <p/>
+     * The path is kept on an explicit stack instead of recursing, since its length can grow with the size of the
+     * collections. For every left element on the path, {@link #nextPositions} points to the right element through
+     * which the path continues. Left elements from which no free right element can be reached are removed from the
+     * layers, so that they are not tried again in this phase.
+     *
+     * @param startLeftIndex The left index to start from
+     * @return True if an augmenting path was found
+     */
+    protected boolean findAugmentingPath(int startLeftIndex) {
+        List<Integer> path = new ArrayList<Integer>();
+        path.add(startLeftIndex);
+        while (!path.isEmpty()) {
+            int leftIndex = path.get(path.size() - 1);
+            int[] rightIndexes = getMatchingRightIndexes(leftIndex);
+            if (nextPositions[leftIndex] >= rightIndexes.length) {
+                distances[leftIndex] = INFINITE;
+                path.remove(path.size() - 1);
+                continue;
+            }
+            int nextLeftIndex = rightMatches[rightIndexes[nextPositions[leftIndex]]];
+            if (nextLeftIndex == NO_MATCH) {
+                for (int pathLeftIndex : path) {
+                    int rightIndex = getMatchingRightIndexes(pathLeftIndex)[nextPositions[pathLeftIndex]];
+                    leftMatches[pathLeftIndex] = rightIndex;
+                    rightMatches[rightIndex] = pathLeftIndex;
+                }
+                return true;
+            }
+            if (distances[nextLeftIndex] == distances[leftIndex] + 1) {
+                path.add(nextLeftIndex);
+            } else {
+                nextPositions[leftIndex]++;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Gets the indexes of all right elements that match the left element with the given index. These are only
+     * determined the first time they are needed.
+     *
+     * @param leftIndex The left index
+     * @return The right indexes, not null
+     */
+    protected int[] getMatchingRightIndexes(int leftIndex) {
+        int[] result = matchingRightIndexes[leftIndex];
+        if (result == null) {
+            Object leftValue = leftList.get(leftIndex);
+            List<Integer> rightIndexes = new ArrayList<Integer>();
+            for (int rightIndex = 0; rightIndex < rightList.size(); rightIndex++) {
+                if (isMatch(leftValue, rightList.get(rightIndex))) {
+                    rightIndexes.add(rightIndex);
+                }
+            }
+            result = new int[rightIndexes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = rightIndexes.get(i);
+            }
+            matchingRightIndexes[leftIndex] = result;
+        }
+        return result;
+    }
+
+
+    /**
+     * @param leftValue  The left element
+     * @param rightValue The right element
+     * @return True if the reflection comparator finds no difference
+     */
+    protected boolean isMatch(Object leftValue, Object rightValue) {
+        return reflectionComparator.getDifference(leftValue, rightValue, true) == null;
+    }
+
+
+    /**
+     * Gets the key of the bucket in which the given element is placed for the greedy matching. Elements that have
+     * the same key are likely to match. The key is only used as a hint, elements in different buckets can still be
+     * matched in the second step. Therefore this does not need to be consistent with the comparator modes.
+     * <p/>
+     * Simple values are placed in a bucket per value. Other objects are placed in a bucket per class and per value
+     * of their simple fields.
+     *
+     * @param element The element
+     * @return The key, null for a null element
+     */
+    protected Object getBucketKey(Object element) {
+        if (element == null) {
+            return null;
+        }
+        Object simpleValueKey = getSimpleValueKey(element);
+        if (simpleValueKey != null) {
+            return simpleValueKey;
+        }
+        Class<?> clazz = element.getClass();
+        if (clazz.isArray() || element instanceof Collection || element instanceof Map || clazz.getName().startsWith("java.")) {
+            return clazz;
+        }
+        try {
+            List<Object> key = new ArrayList<Object>();
+            key.add(clazz);
+            for (Field field : getComparableFields(clazz)) {
+                key.add(getSimpleValueKey(field.get(element)));
+            }
+            return key;
+        } catch (Exception e) {
+            // the key is only a hint, fall back to a bucket per class
+            return element.getClass();
+        }
+    }
+
+
+    /**
+     * Gets the bucket key for simple values: numbers and characters are placed in a bucket per double value (the
+     * same way they are compared), strings, booleans and enums per value.
+     *
+     * @param value The value
+     * @return The key, null if the value is not a simple value
+     */
+    protected Object getSimpleValueKey(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Character) {
+            return (double) ((Character) value).charValue();
+        }
+        if (value instanceof String || value instanceof Boolean || value instanceof Enum) {
+            return value;
+        }
+        return null;
+    }
+
+
+    /**
+     * @param matches The matching indexes
+     * @return The indexes that have no match, not null
+     */
+    protected List<Integer> getUnmatchedIndexes(int[] matches) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int index = 0; index < matches.length; index++) {
+            if (matches[index] == NO_MATCH) {
+                result.add(index);
+            }
+        }
+        return result;
+    }
+}
@@ -62,4 +62,59 @@ public class FileUtils {
             closeQuietly(out);
         }
     }
+
+
+    /**
+     * Writes the given file using the given writer. The content is first written to a new temporary file in the
+     * same directory that then replaces the file, so that other threads or processes never read a half written file.
+     * Every writer uses a temporary file with a unique name, so that several processes can write the same file at
+     * the same time: the last one that finishes wins.
+     * <p/>
+     * The temporary file is renamed to the file. If that fails because the file already exists, e.g. on Windows, the
+     * file is deleted and the rename is tried once more. The temporary file is always removed.
+     *
+     * @param file   The file to write, not null
+     * @param writer The writer of the content, not null
+     */
+    public static void writeFile(File file, ContentWriter writer) {
+        File tempFile = null;
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            directory.mkdirs();
+            tempFile = File.createTempFile(file.getName() + ".", ".tmp", directory);
+            writer.writeContent(tempFile);
+
+            if (tempFile.renameTo(file)) {
+                return;
+            }
+            if (file.exists() && !file.delete()) {
+                throw new UnitilsException("Unable to replace file " + file + ". The file could not be deleted.");
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new UnitilsException("Unable to rename " + tempFile + " to " + file);
+            }
+        } catch (UnitilsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to write file " + file, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+
+    /**
+     * Writes the content of a file, see {@link FileUtils#writeFile}.
+     */
+    public static interface ContentWriter {
+
+        /**
+         * Writes the content to the given file.
+         *
+         * @param file The (temporary) file to write, not null
+         */
+        void writeContent(File file) throws Exception;
+    }
 }
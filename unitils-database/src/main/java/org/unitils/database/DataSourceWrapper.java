@@ -10,8 +10,8 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.unitils.core.Unitils;
 import org.unitils.core.UnitilsException;
-import org.unitils.core.dbsupport.DefaultSQLHandler;
 import org.unitils.core.dbsupport.SQLHandler;
+import org.unitils.core.dbsupport.SessionSQLHandler;
 import org.unitils.core.util.ConfigUtils;
 import org.unitils.database.config.DataSourceFactory;
 import org.unitils.database.config.DatabaseConfiguration;
@@ -116,7 +116,7 @@ public class DataSourceWrapper {
 
         // Call the database maintainer if enabled
         if (updateDatabaseSchemaEnabled) {
-            updateDatabase(new DefaultSQLHandler(dataSource));
+            updateDatabase(createSqlHandler(dataSource));
         }
         return dataSource;
     }
@@ -148,7 +148,19 @@ public class DataSourceWrapper {
      *         test database
      */
     protected SQLHandler getDefaultSqlHandler() {
-        return new DefaultSQLHandler(getDataSourceAndActivateTransactionIfNeeded());
+        return createSqlHandler(getDataSourceAndActivateTransactionIfNeeded());
+    }
+
+
+    /**
+     * Creates a SQL handler that reuses its connection and batches updates during the sessions of the database tasks.
+     *
+     * @param dataSource The data source, not null
+     * @return The SQL handler, not null
+     */
+    protected SQLHandler createSqlHandler(DataSource dataSource) {
+        int batchSize = PropertyUtils.getInt(SessionSQLHandler.PROPKEY_BATCH_SIZE, SessionSQLHandler.DEFAULT_BATCH_SIZE, configuration);
+        return new SessionSQLHandler(dataSource, true, batchSize);
     }
 
     /**
@@ -18,10 +18,12 @@ package org.unitils.dbmaintainer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.unitils.core.UnitilsException;
+import org.unitils.core.dbsupport.DbSupport;
 import org.unitils.core.dbsupport.SQLHandler;
 import org.unitils.core.util.ConfigUtils;
 import org.unitils.dbmaintainer.clean.DBCleaner;
 import org.unitils.dbmaintainer.clean.DBClearer;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
 import org.unitils.dbmaintainer.script.ExecutedScript;
 import org.unitils.dbmaintainer.script.Script;
 import org.unitils.dbmaintainer.script.ScriptRunner;
@@ -30,16 +32,36 @@ import org.unitils.dbmaintainer.structure.ConstraintsDisabler;
 import org.unitils.dbmaintainer.structure.DataSetStructureGenerator;
 import org.unitils.dbmaintainer.structure.SequenceUpdater;
 
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
+import static org.unitils.core.dbsupport.DbSupportFactory.getDbSupports;
 import static org.unitils.dbmaintainer.util.DatabaseModuleConfigUtils.getConfiguredDatabaseTaskInstance;
+import static org.unitils.util.FileUtils.writeFile;
 
 import org.unitils.dbmaintainer.version.ExecutedScriptInfoSource;
 import org.unitils.dbmaintainer.version.Version;
+import org.unitils.util.FileUtils.ContentWriter;
 import org.unitils.util.PropertyUtils;
 
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A class for performing automatic maintenance of a database.<br>
@@ -61,6 +83,11 @@ import java.util.Set;
  * <li>A DTD is generated that describes the database's table structure, to use in test data XML
  * files</li>
  * </ul>
+ * <p/> The scripts are executed one by one, unless a nr of threads larger than 1 is configured using
+ * {@link #PROPKEY_NR_OF_THREADS}. The scripts in different top-level folders (e.g. 01_customers/... and
+ * 02_orders/...) are then considered to be independent and are executed in parallel. The scripts of one folder are
+ * still executed in sequence, scripts that are not in a folder are executed after all preceding scripts and before
+ * all following scripts. A folder can be made to wait for other folders using {@link #PROPKEY_SCRIPT_DEPENDENCIES}.
  * <p/> To obtain a properly configured <code>DBMaintainer</code>, invoke the constructor
  * {@link #DBMaintainer(Properties,SQLHandler)} with a <code>TestDataSource</code> providing
  * access to the database and a <code>Configuration</code> object containing all necessary
@@ -110,6 +137,29 @@ public class DBMaintainer {
      */
     public static final String PROPKEY_GENERATE_DATA_SET_STRUCTURE_ENABLED = "dbMaintainer.generateDataSetStructure.enabled";
 
+    /**
+     * Property that defines the nr of threads that execute independent scripts in parallel, 1 to execute all scripts in
+     * sequence
+     */
+    public static final String PROPKEY_NR_OF_THREADS = "dbMaintainer.script.nrOfThreads";
+
+    /**
+     * Property prefix for the folders a top-level script folder depends on when executing scripts in parallel,
+     * e.g. dbMaintainer.script.dependencies.02_orders=01_customers
+     */
+    public static final String PROPKEY_SCRIPT_DEPENDENCIES = "dbMaintainer.script.dependencies.";
+
+    /**
+     * Property indicating if a from scratch update should restore a snapshot of the database instead of executing all
+     * scripts, when a snapshot exists for the current scripts
+     */
+    public static final String PROPKEY_SNAPSHOT_ENABLED = "dbMaintainer.snapshot.enabled";
+
+    /**
+     * Property that defines the directory in which the database snapshots are stored
+     */
+    public static final String PROPKEY_SNAPSHOT_DIRECTORY = "dbMaintainer.snapshot.directory";
+
     /**
      * Provider of the current version of the database, and means to increment it
      */
@@ -169,8 +219,39 @@ public class DBMaintainer {
      */
     protected boolean keepRetryingAfterError;
 
+    /**
+     * The nr of threads that execute independent scripts in parallel, 1 to execute all scripts in sequence
+     */
+    protected int nrOfThreads = 1;
+
+    /**
+     * The top-level script folders that each top-level script folder depends on, not null
+     */
+    protected Map<String, List<String>> scriptDependencies = new HashMap<String, List<String>>();
+
+    /**
+     * Indicates whether from scratch updates are done by restoring a snapshot of the database, if available
+     */
+    protected boolean snapshotEnabled;
+
+    /**
+     * The directory in which the database snapshots are stored, null if snapshots are not enabled
+     */
+    protected File snapshotDirectory;
+
+    /**
+     * The db supports for the schemas that are included in the snapshots, the first one is used to create and
+     * restore the snapshots. Null if snapshots are not enabled
+     */
+    protected List<DbSupport> dbSupports;
+
     protected String dialect;
 
+    /**
+     * The handler for the statements, null if not initialized with a configuration
+     */
+    protected SQLHandler sqlHandler;
+
     /**
      * Default constructor for testing.
      */
@@ -198,8 +279,16 @@ public class DBMaintainer {
 
             fromScratchEnabled = PropertyUtils.getBoolean(PROPKEY_FROM_SCRATCH_ENABLED, configuration);
             keepRetryingAfterError = PropertyUtils.getBoolean(PROPKEY_KEEP_RETRYING_AFTER_ERROR_ENABLED, configuration);
+            nrOfThreads = PropertyUtils.getInt(PROPKEY_NR_OF_THREADS, 1, configuration);
+            scriptDependencies = getScriptDependencies(configuration);
             if (fromScratchEnabled) {
                 dbClearer = getConfiguredDatabaseTaskInstance(DBClearer.class, configuration, sqlHandler, dialect, schemaNames);
+
+                snapshotEnabled = PropertyUtils.getBoolean(PROPKEY_SNAPSHOT_ENABLED, false, configuration);
+                if (snapshotEnabled) {
+                    snapshotDirectory = new File(PropertyUtils.getString(PROPKEY_SNAPSHOT_DIRECTORY, configuration));
+                    dbSupports = getDbSupports(configuration, sqlHandler, dialect, schemaNames);
+                }
             }
 
             disableConstraintsEnabled = PropertyUtils.getBoolean(PROPKEY_DISABLE_CONSTRAINTS_ENABLED, configuration);
@@ -219,6 +308,7 @@ public class DBMaintainer {
             throw e;
         }
         this.dialect = dialect;
+        this.sqlHandler = sqlHandler;
     }
 
 
@@ -226,9 +316,32 @@ public class DBMaintainer {
      * Checks if the new scripts are available to update the version of the database. If yes, these
      * scripts are executed and the version number is increased. If an existing script has been
      * modified, the database is cleared and completely rebuilt from scratch. If an error occurs
-     * with one of the scripts, a {@link UnitilsException} is thrown.
+     * with one of the scripts, a {@link UnitilsException} is thrown. The jar files from which the scripts were read
+     * are closed afterwards.
      */
     public void updateDatabase(String databaseName, boolean defaultDatabase) {
+        // all statements of the update are executed on the same connection
+        if (sqlHandler != null) {
+            startSession(sqlHandler, false);
+        }
+        try {
+            doUpdateDatabase(databaseName, defaultDatabase);
+        } finally {
+            if (sqlHandler != null) {
+                endSession(sqlHandler);
+            }
+            ClassPathResourceIndex.closeJarFiles();
+        }
+    }
+
+
+    /**
+     * Performs the update of the database, see {@link #updateDatabase(String, boolean)}.
+     *
+     * @param databaseName    The name of the database
+     * @param defaultDatabase True if it is the default database
+     */
+    protected void doUpdateDatabase(String databaseName, boolean defaultDatabase) {
         // Check if the executed scripts info source recommends a from-scratch update
         boolean fromScratchUpdateRecommended = versionSource.isFromScratchUpdateRecommended();
 
@@ -245,8 +358,15 @@ public class DBMaintainer {
             dbClearer.clearSchemas();
             // reset the database version
             versionSource.clearAllExecutedScripts();
+
+            List<Script> allScripts = scriptSource.getAllUpdateScripts(dialect, databaseName, defaultDatabase);
+            // restore the snapshot of the database if one was taken for exactly the same scripts
+            File snapshotFile = getSnapshotFile(allScripts, databaseName);
+            if (snapshotFile != null && snapshotFile.exists() && restoreSnapshot(snapshotFile, allScripts, databaseName, defaultDatabase)) {
+                return;
+            }
             // update database with all scripts
-            updateDatabase(scriptSource.getAllUpdateScripts(dialect, databaseName, defaultDatabase), databaseName, defaultDatabase);
+            updateDatabase(allScripts, databaseName, defaultDatabase, snapshotFile);
             return;
         }
 
@@ -290,6 +410,18 @@ public class DBMaintainer {
      * @param scripts The scripts, not null
      */
     protected void updateDatabase(List<Script> scripts, String schema, boolean defaultDatabase) {
+        updateDatabase(scripts, schema, defaultDatabase, null);
+    }
+
+
+    /**
+     * Updates the state of the database using the given scripts. If a snapshot file is given, a snapshot of the
+     * database is taken after executing the scripts, before executing the postprocessing scripts.
+     *
+     * @param scripts      The scripts, not null
+     * @param snapshotFile The file for the snapshot of the database, null to not take a snapshot
+     */
+    protected void updateDatabase(List<Script> scripts, String schema, boolean defaultDatabase, File snapshotFile) {
         if (scripts.isEmpty()) {
             // nothing to do
             logger.info("Database is up to date");
@@ -306,6 +438,18 @@ public class DBMaintainer {
         // Excute all of the scripts
         executeScripts(scripts);
 
+        if (snapshotFile != null) {
+            createSnapshot(snapshotFile);
+        }
+        postProcessDatabase(schema, defaultDatabase);
+    }
+
+
+    /**
+     * Performs the tasks that are done after the scripts were executed: executing the postprocessing scripts,
+     * disabling the constraints, updating the sequences and generating the data set structure, if enabled.
+     */
+    protected void postProcessDatabase(String schema, boolean defaultDatabase) {
         // Execute postprocessing scripts, if any
         executePostProcessingScripts(scriptSource.getPostProcessingScripts(dialect, schema, defaultDatabase));
 
@@ -324,6 +468,108 @@ public class DBMaintainer {
     }
 
 
+    /**
+     * Gets the file of the snapshot of the database that is obtained by executing the given scripts. The name of the
+     * file contains a hash of the dialect, the schema names and the file names and checksums of the scripts, so that
+     * any change to the scripts results in a new snapshot.
+     *
+     * @param scripts      The scripts, not null
+     * @param databaseName The name of the database
+     * @return The snapshot file, null if snapshots are not enabled or not supported
+     */
+    protected File getSnapshotFile(List<Script> scripts, String databaseName) {
+        if (!snapshotEnabled || dbSupports.isEmpty()) {
+            return null;
+        }
+        if (!dbSupports.get(0).supportsSnapshots()) {
+            logger.warn("Database snapshots are not supported for " + dialect + ". Executing all update scripts.");
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update((dialect + "\n" + databaseName + "\n").getBytes("UTF-8"));
+            for (DbSupport dbSupport : dbSupports) {
+                digest.update((dbSupport.getSchemaName() + "\n").getBytes("UTF-8"));
+            }
+            for (Script script : scripts) {
+                digest.update((script.getFileName() + ":" + script.getCheckSum() + "\n").getBytes("UTF-8"));
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return new File(snapshotDirectory, "snapshot-" + dialect + "-" + hash + ".sql");
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to determine database snapshot file.", e);
+        }
+    }
+
+
+    /**
+     * Takes a snapshot of the database. The snapshot is written using {@link org.unitils.util.FileUtils#writeFile},
+     * so that a half written snapshot is never restored. A failure is logged but does not stop the update: the
+     * snapshot is only a cache.
+     *
+     * @param snapshotFile The snapshot file, not null
+     */
+    protected void createSnapshot(File snapshotFile) {
+        final List<String> schemaNames = new ArrayList<String>();
+        for (DbSupport dbSupport : dbSupports) {
+            schemaNames.add(dbSupport.getSchemaName());
+        }
+        try {
+            writeFile(snapshotFile, new ContentWriter() {
+                public void writeContent(File file) {
+                    dbSupports.get(0).createSnapshot(file, schemaNames);
+                }
+            });
+            logger.info("Created database snapshot " + snapshotFile + ".");
+
+        } catch (UnitilsException e) {
+            logger.warn("Unable to create database snapshot " + snapshotFile + ".", e);
+        }
+    }
+
+
+    /**
+     * Restores the given snapshot instead of executing the given scripts. The scripts are registered as executed and
+     * the tasks that follow the execution of the scripts, such as the postprocessing scripts, are performed.
+     * <p/>
+     * If the snapshot cannot be restored, it is deleted and the schemas are cleared again so that the scripts can be
+     * executed instead.
+     *
+     * @param snapshotFile    The snapshot file, not null
+     * @param scripts         The scripts that were executed to obtain the snapshot, not null
+     * @param databaseName    The name of the database
+     * @param defaultDatabase True if it is the default database
+     * @return True if the snapshot was restored, false if the scripts should be executed instead
+     */
+    protected boolean restoreSnapshot(File snapshotFile, List<Script> scripts, String databaseName, boolean defaultDatabase) {
+        logger.info("Restoring database snapshot " + snapshotFile + " instead of executing " + scripts.size() + " update scripts.");
+        try {
+            dbSupports.get(0).restoreSnapshot(snapshotFile);
+
+        } catch (UnitilsException e) {
+            logger.warn("Unable to restore database snapshot " + snapshotFile + ". Executing all update scripts instead.", e);
+            if (!snapshotFile.delete()) {
+                logger.warn("Unable to delete database snapshot " + snapshotFile + ".");
+            }
+            constraintsDisabler.disableConstraints();
+            dbClearer.clearSchemas();
+            versionSource.clearAllExecutedScripts();
+            return false;
+        }
+        // the snapshot can also contain the version table, register the scripts again to be sure it is up to date
+        versionSource.clearAllExecutedScripts();
+        for (Script script : scripts) {
+            versionSource.registerExecutedScript(new ExecutedScript(script, new Date(), true));
+        }
+        postProcessDatabase(databaseName, defaultDatabase);
+        return true;
+    }
+
+
     /**
      * Executes the given scripts and updates the database version and state appropriatly. After
      * each successful script execution, the new version is stored in the database and marked as
@@ -335,24 +581,219 @@ public class DBMaintainer {
      * @param scripts The scripts to execute, not null
      */
     protected void executeScripts(List<Script> scripts) {
+        if (nrOfThreads > 1 && scripts.size() > 1) {
+            executeScriptsInParallel(scripts);
+            return;
+        }
         for (Script script : scripts) {
-            try {
-                // We register the script execution, but we indicate it to be unsuccessful. If anything goes wrong or if the update is
-                // interrupted before being completed, this will be the final state and the DbMaintainer will do a from-scratch update the next time
-                ExecutedScript executedScript = new ExecutedScript(script, new Date(), false);
+            executeScript(script);
+        }
+    }
+
+
+    /**
+     * Executes the given script and registers the execution, see {@link #executeScripts}. The registration is
+     * synchronized on the version source, so that scripts can be executed by different threads.
+     *
+     * @param script The script to execute, not null
+     */
+    protected void executeScript(Script script) {
+        try {
+            // We register the script execution, but we indicate it to be unsuccessful. If anything goes wrong or if the update is
+            // interrupted before being completed, this will be the final state and the DbMaintainer will do a from-scratch update the next time
+            ExecutedScript executedScript = new ExecutedScript(script, new Date(), false);
+            synchronized (versionSource) {
                 versionSource.registerExecutedScript(executedScript);
+            }
 
-                logger.info("Executing script " + script.getFileName());
-                scriptRunner.execute(script.getScriptContentHandle());
-                // We now register the previously registered script execution as being successful
-                executedScript.setSuccessful(true);
+            logger.info("Executing script " + script.getFileName());
+            scriptRunner.execute(script.getScriptContentHandle());
+            // We now register the previously registered script execution as being successful
+            executedScript.setSuccessful(true);
+            synchronized (versionSource) {
                 versionSource.updateExecutedScript(executedScript);
+            }
 
-            } catch (UnitilsException e) {
-                logger.error("Error while executing script " + script.getFileName(), e);
-                throw e;
+        } catch (UnitilsException e) {
+            logger.error("Error while executing script " + script.getFileName(), e);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Executes the given scripts using {@link #nrOfThreads} threads. A script is started as soon as all the scripts it
+     * depends on (see {@link #getScriptDependencies(List)}) were executed successfully. The threads do not take part in
+     * the session of the sql handler: they use connections of their own.
+     * <p/>
+     * If a script fails, no other scripts are started and the scripts that were waiting are cancelled. The scripts
+     * that are being executed by the other threads are allowed to finish, so that their registration is complete.
+     * The error of the first failing script is then thrown.
+     *
+     * @param scripts The scripts to execute, sorted by version, not null
+     */
+    protected void executeScriptsInParallel(List<Script> scripts) {
+        Map<Script, Set<Script>> dependencies = getScriptDependencies(scripts);
+        Map<Script, List<Script>> dependentScripts = new HashMap<Script, List<Script>>();
+        for (Map.Entry<Script, Set<Script>> entry : dependencies.entrySet()) {
+            for (Script dependency : entry.getValue()) {
+                List<Script> scriptsOfDependency = dependentScripts.get(dependency);
+                if (scriptsOfDependency == null) {
+                    scriptsOfDependency = new ArrayList<Script>();
+                    dependentScripts.put(dependency, scriptsOfDependency);
+                }
+                scriptsOfDependency.add(entry.getKey());
+            }
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(nrOfThreads, scripts.size()));
+        CompletionService<Script> completionService = new ExecutorCompletionService<Script>(executorService);
+        List<Future<Script>> futures = new ArrayList<Future<Script>>();
+        RuntimeException failure = null;
+        try {
+            for (Map.Entry<Script, Set<Script>> entry : dependencies.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    futures.add(completionService.submit(createScriptTask(entry.getKey())));
+                }
+            }
+            int nrOfPendingScripts = futures.size();
+            while (nrOfPendingScripts > 0) {
+                Future<Script> future = completionService.take();
+                nrOfPendingScripts--;
+                try {
+                    Script executedScript = future.get();
+                    if (failure != null || !dependentScripts.containsKey(executedScript)) {
+                        continue;
+                    }
+                    for (Script dependentScript : dependentScripts.get(executedScript)) {
+                        Set<Script> remainingDependencies = dependencies.get(dependentScript);
+                        remainingDependencies.remove(executedScript);
+                        if (remainingDependencies.isEmpty()) {
+                            futures.add(completionService.submit(createScriptTask(dependentScript)));
+                            nrOfPendingScripts++;
+                        }
+                    }
+                } catch (CancellationException e) {
+                    // cancelled after a failure
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new UnitilsException("Error while executing scripts.", e.getCause());
+                        for (Future<Script> otherFuture : futures) {
+                            otherFuture.cancel(false);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while executing scripts.", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+
+    /**
+     * Determines for each of the given scripts the scripts that need to be executed before it:
+     * <ul>
+     * <li>a script in a top-level folder depends on the previous script in that folder, or, if it is the first script
+     * of the folder, on the preceding script that is not in a folder</li>
+     * <li>a script that is not in a folder depends on all preceding scripts</li>
+     * <li>a script in a top-level folder for which dependencies are declared, also depends on the preceding scripts of
+     * these folders</li>
+     * </ul>
+     * Only the direct dependencies are returned, e.g. a script only depends on the last preceding script of a folder.
+     *
+     * @param scripts The scripts, sorted by version, not null
+     * @return The scripts each script depends on, in the order of the given scripts, not null
+     */
+    protected Map<Script, Set<Script>> getScriptDependencies(List<Script> scripts) {
+        Map<Script, Set<Script>> result = new LinkedHashMap<Script, Set<Script>>();
+        Map<String, Script> lastScriptPerFolder = new HashMap<String, Script>();
+        Script lastScriptWithoutFolder = null;
+
+        for (Script script : scripts) {
+            Set<Script> dependencies = new HashSet<Script>();
+            String folder = getTopLevelFolder(script);
+            if (folder == null) {
+                dependencies.addAll(lastScriptPerFolder.values());
+                if (lastScriptWithoutFolder != null) {
+                    dependencies.add(lastScriptWithoutFolder);
+                }
+                lastScriptPerFolder.clear();
+                lastScriptWithoutFolder = script;
+            } else {
+                Script previousScript = lastScriptPerFolder.get(folder);
+                if (previousScript != null) {
+                    dependencies.add(previousScript);
+                } else if (lastScriptWithoutFolder != null) {
+                    dependencies.add(lastScriptWithoutFolder);
+                }
+                List<String> dependencyFolders = scriptDependencies.get(folder);
+                if (dependencyFolders != null) {
+                    for (String dependencyFolder : dependencyFolders) {
+                        Script dependency = lastScriptPerFolder.get(dependencyFolder);
+                        if (dependency != null) {
+                            dependencies.add(dependency);
+                        }
+                    }
+                }
+                lastScriptPerFolder.put(folder, script);
+            }
+            result.put(script, dependencies);
+        }
+        return result;
+    }
+
+
+    /**
+     * @param script The script, not null
+     * @return The name of the top-level folder of the script, null if the script is not in a folder
+     */
+    protected String getTopLevelFolder(Script script) {
+        String fileName = script.getFileName();
+        int index = fileName.indexOf('/');
+        if (index == -1) {
+            return null;
+        }
+        return fileName.substring(0, index);
+    }
+
+
+    /**
+     * Creates a task that executes the given script.
+     *
+     * @param script The script, not null
+     * @return The task, returns the script when it is executed successfully, not null
+     */
+    protected Callable<Script> createScriptTask(final Script script) {
+        return new Callable<Script>() {
+            public Script call() {
+                executeScript(script);
+                return script;
+            }
+        };
+    }
+
+
+    /**
+     * Gets the declared dependencies of the top-level script folders, see {@link #PROPKEY_SCRIPT_DEPENDENCIES}.
+     *
+     * @param configuration The configuration, not null
+     * @return The folders each folder depends on, not null
+     */
+    protected Map<String, List<String>> getScriptDependencies(Properties configuration) {
+        Map<String, List<String>> result = new HashMap<String, List<String>>();
+        for (String propertyName : configuration.stringPropertyNames()) {
+            if (propertyName.startsWith(PROPKEY_SCRIPT_DEPENDENCIES)) {
+                String folder = propertyName.substring(PROPKEY_SCRIPT_DEPENDENCIES.length());
+                result.put(folder, PropertyUtils.getStringList(propertyName, configuration));
             }
         }
+        return result;
     }
 
 
@@ -17,16 +17,35 @@ package org.unitils.dbmaintainer.clean.impl;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
 import org.unitils.core.dbsupport.DbSupport;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
 import static org.unitils.core.util.StoredIdentifierCase.MIXED_CASE;
 import org.unitils.dbmaintainer.clean.DBCleaner;
 import static org.unitils.dbmaintainer.clean.impl.DefaultDBClearer.PROPKEY_PRESERVE_SCHEMAS;
+import static org.unitils.util.PropertyUtils.getBoolean;
+import static org.unitils.util.PropertyUtils.getInt;
 import static org.unitils.util.PropertyUtils.getStringList;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 /**
@@ -34,6 +53,11 @@ import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
  * that are configured as tables to preserve. This includes the tables that are listed in the property
  * {@link #PROPKEY_PRESERVE_TABLES}, {@link #PROPKEY_PRESERVE_DATA_TABLES}. and the table that is configured as
  * version table using the property {@link #PROPKEY_VERSION_TABLE_NAME}.
+ * <p/>
+ * By default, the data is removed using a delete statement per table. If the property
+ * {@link #PROPKEY_TRUNCATE_ENABLED} is set to true, the tables that contain rows are truncated instead, using the
+ * fastest statement of the database, see {@link DbSupport#truncateTables}. If the property
+ * {@link #PROPKEY_NR_OF_THREADS} is larger than 1, the tables are cleaned in parallel.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -61,6 +85,17 @@ public class DefaultDBCleaner extends BaseDatabaseAccessor implements DBCleaner
      */
     public static final String PROPKEY_VERSION_TABLE_NAME = "dbMaintainer.executedScriptsTableName";
 
+    /**
+     * Property key that specifies whether the tables should be truncated instead of deleting their rows
+     */
+    public static final String PROPKEY_TRUNCATE_ENABLED = "dbMaintainer.cleanDb.truncate.enabled";
+
+    /**
+     * Property key for the nr of threads that are used to clean the tables, every thread uses a connection of its
+     * own. 1 or less to clean them one by one
+     */
+    public static final String PROPKEY_NR_OF_THREADS = "dbMaintainer.cleanDb.nrOfThreads";
+
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultDBCleaner.class);
 
@@ -74,6 +109,21 @@ public class DefaultDBCleaner extends BaseDatabaseAccessor implements DBCleaner
      */
     protected Set<String> tablesToPreserve;
 
+    /**
+     * True if the tables should be truncated instead of deleting their rows
+     */
+    protected boolean truncateEnabled;
+
+    /**
+     * The nr of threads that are used to clean the tables, 1 or less to clean them one by one
+     */
+    protected int nrOfThreads;
+
+    /**
+     * The thread pool that is used to clean the tables in parallel, null if not yet created
+     */
+    protected ThreadPoolExecutor executorService;
+
 
     /**
      * Configures this object.
@@ -87,6 +137,8 @@ public class DefaultDBCleaner extends BaseDatabaseAccessor implements DBCleaner
         tablesToPreserve = getItemsToPreserve(PROPKEY_VERSION_TABLE_NAME, true);
         tablesToPreserve.addAll(getItemsToPreserve(PROPKEY_PRESERVE_TABLES, true));
         tablesToPreserve.addAll(getItemsToPreserve(PROPKEY_PRESERVE_DATA_TABLES, true));
+        truncateEnabled = getBoolean(PROPKEY_TRUNCATE_ENABLED, false, configuration);
+        nrOfThreads = getInt(PROPKEY_NR_OF_THREADS, 1, configuration);
     }
 
 
@@ -95,22 +147,206 @@ public class DefaultDBCleaner extends BaseDatabaseAccessor implements DBCleaner
      * configured as <i>tablesToPreserve</i> , and the table in which the database version is stored
      */
     public void cleanSchemas() {
-        for (DbSupport dbSupport : dbSupports) {
-            // check whether schema needs to be preserved
-            if (isItemToPreserve(dbSupport.getSchemaName(), schemasToPreserve)) {
-                continue;
+        // all statements are executed on the same connection. Deletes are executed in batches, truncates are not
+        // because on several databases they commit the current transaction
+        startSession(sqlHandler, !truncateEnabled);
+        try {
+            for (DbSupport dbSupport : dbSupports) {
+                // check whether schema needs to be preserved
+                if (isItemToPreserve(dbSupport.getSchemaName(), schemasToPreserve)) {
+                    continue;
+                }
+                logger.info("Cleaning database schema " + dbSupport.getSchemaName());
+
+                List<String> tableNames = new ArrayList<String>();
+                for (String tableName : dbSupport.getTableNames()) {
+                    // check whether table needs to be preserved
+                    if (isItemToPreserve(tableName, tablesToPreserve) || isItemToPreserve(dbSupport.getSchemaName() + "." + tableName, tablesToPreserve)) {
+                        continue;
+                    }
+                    tableNames.add(tableName);
+                }
+                if (nrOfThreads > 1) {
+                    cleanTablesInParallel(tableNames, dbSupport);
+                } else {
+                    cleanTables(tableNames, dbSupport);
+                }
             }
-            logger.info("Cleaning database schema " + dbSupport.getSchemaName());
+        } finally {
+            endSession(sqlHandler);
+        }
+    }
 
-            Set<String> tableNames = dbSupport.getTableNames();
+
+    /**
+     * Removes the data of the given tables. If truncate is enabled, the tables that contain rows are truncated,
+     * otherwise the rows of every table are deleted, see {@link #cleanTable}.
+     * <p/>
+     * Truncating a table is typically a lot faster than deleting its rows, but truncating an empty table is not
+     * cheap. The tables that are already empty are therefore skipped.
+     *
+     * @param tableNames The names of the tables that need to be cleared, not null
+     * @param dbSupport  The database support, not null
+     */
+    protected void cleanTables(List<String> tableNames, DbSupport dbSupport) {
+        if (!truncateEnabled) {
             for (String tableName : tableNames) {
-                // check whether table needs to be preserved
-                if (isItemToPreserve(tableName, tablesToPreserve) || isItemToPreserve(dbSupport.getSchemaName() + "." + tableName, tablesToPreserve)) {
+                cleanTable(tableName, dbSupport);
+            }
+            return;
+        }
+        Set<String> nonEmptyTableNames = dbSupport.getNonEmptyTableNames(tableNames);
+        List<String> tablesToTruncate = new ArrayList<String>();
+        for (String tableName : tableNames) {
+            if (nonEmptyTableNames.contains(tableName)) {
+                tablesToTruncate.add(tableName);
+            }
+        }
+        if (tablesToTruncate.isEmpty()) {
+            return;
+        }
+        logger.debug("Truncating tables " + tablesToTruncate + " in database schema " + dbSupport.getSchemaName());
+        dbSupport.truncateTables(tablesToTruncate);
+    }
+
+
+    /**
+     * Removes the data of the given tables using a pool of {@link #nrOfThreads} threads. Every task runs in a
+     * session of its own, so that a thread executes all statements of a task on the same connection. Tables that are linked by foreign keys are always cleaned by the same thread, see
+     * {@link #getTableGroups}.
+     *
+     * @param tableNames The names of the tables that need to be cleared, not null
+     * @param dbSupport  The database support, not null
+     */
+    protected void cleanTablesInParallel(List<String> tableNames, final DbSupport dbSupport) {
+        List<List<String>> tableGroups = getTableGroups(tableNames, dbSupport);
+        int nrOfTasks = Math.min(nrOfThreads, tableGroups.size());
+        if (nrOfTasks <= 1) {
+            cleanTables(tableNames, dbSupport);
+            return;
+        }
+
+        // divide the groups over the tasks, adding every group to the task with the least tables
+        List<List<String>> tableNamesPerTask = new ArrayList<List<String>>();
+        for (int i = 0; i < nrOfTasks; i++) {
+            tableNamesPerTask.add(new ArrayList<String>());
+        }
+        for (List<String> tableGroup : tableGroups) {
+            List<String> smallestTask = tableNamesPerTask.get(0);
+            for (List<String> task : tableNamesPerTask) {
+                if (task.size() < smallestTask.size()) {
+                    smallestTask = task;
+                }
+            }
+            smallestTask.addAll(tableGroup);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final List<String> taskTableNames : tableNamesPerTask) {
+            tasks.add(new Callable<Void>() {
+
+                public Void call() {
+                    startSession(sqlHandler, !truncateEnabled);
+                    try {
+                        cleanTables(taskTableNames, dbSupport);
+                    } finally {
+                        endSession(sqlHandler);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : getExecutorService().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnitilsException("Unable to clean database schema " + dbSupport.getSchemaName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while cleaning database schema " + dbSupport.getSchemaName(), e);
+        }
+    }
+
+
+    /**
+     * Gets the thread pool that is used to clean the tables in parallel. The pool is created the first time it is
+     * needed and reused by the following calls. It contains at most {@link #nrOfThreads} daemon threads, which are
+     * stopped when they are idle for a minute.
+     *
+     * @return The thread pool, not null
+     */
+    protected synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = new ThreadPoolExecutor(nrOfThreads, nrOfThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "unitils-db-cleaner");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executorService.allowCoreThreadTimeOut(true);
+        }
+        return executorService;
+    }
+
+
+    /**
+     * Divides the given tables in groups of tables that are linked by foreign keys. Cleaning these tables at the
+     * same time on different connections could fail, e.g. a table that is referenced by a foreign key can only be
+     * truncated together with the referencing table in PostgreSQL.
+     *
+     * @param tableNames The names of the tables, not null
+     * @param dbSupport  The database support, not null
+     * @return The groups of tables, largest groups first, not null
+     */
+    protected List<List<String>> getTableGroups(List<String> tableNames, DbSupport dbSupport) {
+        Map<String, List<String>> tableGroups = new HashMap<String, List<String>>();
+        for (String tableName : tableNames) {
+            List<String> tableGroup = new ArrayList<String>();
+            tableGroup.add(tableName);
+            tableGroups.put(tableName, tableGroup);
+        }
+        Map<String, Set<String>> referencedTableNamesPerTable = dbSupport.getReferencedTableNamesPerTable();
+        for (Map.Entry<String, Set<String>> entry : referencedTableNamesPerTable.entrySet()) {
+            for (String referencedTableName : entry.getValue()) {
+                List<String> tableGroup = tableGroups.get(entry.getKey());
+                List<String> referencedTableGroup = tableGroups.get(referencedTableName);
+                if (tableGroup == null || referencedTableGroup == null || tableGroup == referencedTableGroup) {
                     continue;
                 }
-                cleanTable(tableName, dbSupport);
+                // merge the smallest group into the largest one
+                if (tableGroup.size() < referencedTableGroup.size()) {
+                    List<String> temp = tableGroup;
+                    tableGroup = referencedTableGroup;
+                    referencedTableGroup = temp;
+                }
+                tableGroup.addAll(referencedTableGroup);
+                for (String tableName : referencedTableGroup) {
+                    tableGroups.put(tableName, tableGroup);
+                }
             }
         }
+
+        List<List<String>> result = new ArrayList<List<String>>();
+        Map<List<String>, Boolean> addedTableGroups = new IdentityHashMap<List<String>, Boolean>();
+        for (String tableName : tableNames) {
+            List<String> tableGroup = tableGroups.get(tableName);
+            if (addedTableGroups.put(tableGroup, Boolean.TRUE) == null) {
+                result.add(tableGroup);
+            }
+        }
+        // largest groups first, so that the groups are divided evenly over the threads
+        Collections.sort(result, new Comparator<List<String>>() {
+
+            public int compare(List<String> tableGroup1, List<String> tableGroup2) {
+                return tableGroup2.size() - tableGroup1.size();
+            }
+        });
+        return result;
     }
 
 
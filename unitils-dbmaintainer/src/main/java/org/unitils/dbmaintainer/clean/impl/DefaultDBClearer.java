@@ -19,12 +19,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.unitils.core.UnitilsException;
 import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.SchemaMetadataSnapshot;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
 import static org.unitils.core.util.StoredIdentifierCase.MIXED_CASE;
 import org.unitils.dbmaintainer.clean.DBClearer;
 import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
+import static org.unitils.util.PropertyUtils.getInt;
 import static org.unitils.util.PropertyUtils.getStringList;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of {@link DBClearer}. This implementation individually drops every table, view, constraint, trigger
@@ -32,6 +44,9 @@ import java.util.*;
  * property {@link #PROPKEY_PRESERVE_TABLES}. <p/> NOTE: FK constraints give problems in MySQL and Derby The cascade in
  * drop table A cascade; does not work in MySQL-5.0 The DBMaintainer will first remove all constraints before calling
  * the db clearer
+ * <p/>
+ * If the property {@link #PROPKEY_NR_OF_THREADS} is set to a value larger than 1, the schemas are cleared in parallel
+ * and items that do not depend on each other are dropped concurrently, see {@link #clearSchemasInParallel}.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -84,6 +99,27 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
      */
     public static final String PROPKEY_VERSION_TABLE_NAME = "dbMaintainer.executedScriptsTableName";
 
+    /**
+     * The key of the property that specifies the nr of threads that are used to drop the database items. Every
+     * thread uses a connection of its own. 1 or less to drop all items one by one.
+     */
+    public static final String PROPKEY_NR_OF_THREADS = "dbMaintainer.clearDb.nrOfThreads";
+
+
+    /* The kinds of database items, as used in the log messages */
+    protected static final String TABLE = "table";
+
+    protected static final String VIEW = "view";
+
+    protected static final String MATERIALIZED_VIEW = "materialized view";
+
+    protected static final String SYNONYM = "synonym";
+
+    protected static final String SEQUENCE = "sequence";
+
+    protected static final String TRIGGER = "trigger";
+
+    protected static final String TYPE = "type";
 
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultDBClearer.class);
@@ -128,6 +164,16 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
      */
     protected Map<String, Set<String>> typesToPreserve;
 
+    /**
+     * The nr of threads that are used to drop the database items, 1 or less to drop them one by one.
+     */
+    protected int nrOfThreads;
+
+    /**
+     * The thread pool that is used to drop the database items in parallel, null if not yet created
+     */
+    protected ThreadPoolExecutor executorService;
+
 
     /**
      * Initializes the the DBClearer. The list of database items that should be preserved is retrieved from the given
@@ -145,6 +191,7 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
         synonymsToPreserve = getSynonymsToPreserve();
         triggersToPreserve = getTriggersToPreserve();
         typesToPreserve = getTypesToPreserve();
+        nrOfThreads = getInt(PROPKEY_NR_OF_THREADS, 1, configuration);
     }
 
 
@@ -154,32 +201,350 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
      * untouched.
      */
     public void clearSchemas() {
+        if (nrOfThreads > 1) {
+            clearSchemasInParallel();
+            return;
+        }
+        // all drop statements are executed on the same connection, in batches
+        startSession(sqlHandler, true);
+        try {
+            for (DbSupport dbSupport : dbSupports) {
+                clearSchema(dbSupport);
+            }
+        } finally {
+            endSession(sqlHandler);
+        }
+    }
+
+
+    /**
+     * Clears the given database schema, unless it is configured as schema to preserve.
+     *
+     * @param dbSupport The database support, not null
+     */
+    protected void clearSchema(DbSupport dbSupport) {
+        // check whether schema needs to be preserved
+        if (schemasToPreserve.contains(dbSupport.getSchemaName())) {
+            return;
+        }
+        logger.info("Clearing (dropping) database schema " + dbSupport.getSchemaName());
+        // the meta data of every kind of database object is only loaded when it is needed, i.e. after the
+        // previous kinds were dropped
+        SchemaMetadataSnapshot snapshot = dbSupport.createSchemaMetadataSnapshot();
+        dropSynonyms(snapshot);
+        dropViews(snapshot);
+        dropMaterializedViews(snapshot);
+        dropSequences(snapshot);
+        dropTables(snapshot);
+
+        dropTriggers(snapshot);
+        dropTypes(snapshot);
+        // todo drop functions, stored procedures.
+    }
+
+
+    /**
+     * Clears all database schemas that are not configured as schema to preserve, using a pool of
+     * {@link #nrOfThreads} threads. Every task runs in a session of its own, see {@link #createDropTask}, so that a
+     * thread executes all statements of a task on the same connection.
+     * <p/>
+     * The schemas are cleared at the same time: a kind of database items is dropped in all schemas before the next
+     * kind is dropped, in the same order as {@link #clearSchema}. Synonyms, sequences and triggers do not depend on
+     * each other and are dropped concurrently. Tables are dropped in waves using the foreign keys of the schema: a
+     * table is only dropped after all tables that reference it were dropped, so that the tables of a wave can be
+     * dropped concurrently. Tables that reference each other in a cycle are dropped one by one at the end, relying on
+     * cascade if the database supports it. The dependencies between views, materialized views and types are not
+     * available in the meta data, these are dropped one by one per schema.
+     */
+    protected void clearSchemasInParallel() {
+        List<SchemaMetadataSnapshot> snapshots = new ArrayList<SchemaMetadataSnapshot>();
         for (DbSupport dbSupport : dbSupports) {
             // check whether schema needs to be preserved
             if (schemasToPreserve.contains(dbSupport.getSchemaName())) {
                 continue;
             }
-            logger.info("Clearing (dropping) database schema " + dbSupport.getSchemaName());
-            dropSynonyms(dbSupport);
-            dropViews(dbSupport);
-            dropMaterializedViews(dbSupport);
-            dropSequences(dbSupport);
-            dropTables(dbSupport);
+            logger.info("Clearing (dropping) database schema " + dbSupport.getSchemaName() + " using " + nrOfThreads + " threads");
+            snapshots.add(dbSupport.createSchemaMetadataSnapshot());
+        }
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executorService = getExecutorService();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (SchemaMetadataSnapshot snapshot : snapshots) {
+            DbSupport dbSupport = snapshot.getDbSupport();
+            for (String synonymName : getItemsToDrop(snapshot.getSynonymNames(), synonymsToPreserve.get(dbSupport.getSchemaName()))) {
+                tasks.add(createDropTask(dbSupport, SYNONYM, Collections.singletonList(synonymName)));
+            }
+        }
+        executeTasks(tasks, executorService);
+
+        tasks.clear();
+        for (SchemaMetadataSnapshot snapshot : snapshots) {
+            DbSupport dbSupport = snapshot.getDbSupport();
+            List<String> viewNames = new ArrayList<String>(getItemsToDrop(snapshot.getViewNames(), viewsToPreserve.get(dbSupport.getSchemaName())));
+            List<String> materializedViewNames = new ArrayList<String>(getItemsToDrop(snapshot.getMaterializedViewNames(), materializedViewsToPreserve.get(dbSupport.getSchemaName())));
+            tasks.add(createDropTask(dbSupport, VIEW, viewNames));
+            tasks.add(createDropTask(dbSupport, MATERIALIZED_VIEW, materializedViewNames));
+            for (String sequenceName : getItemsToDrop(snapshot.getSequenceNames(), sequencesToPreserve.get(dbSupport.getSchemaName()))) {
+                tasks.add(createDropTask(dbSupport, SEQUENCE, Collections.singletonList(sequenceName)));
+            }
+        }
+        executeTasks(tasks, executorService);
+
+        List<List<Callable<Void>>> waves = new ArrayList<List<Callable<Void>>>();
+        for (SchemaMetadataSnapshot snapshot : snapshots) {
+            List<List<Callable<Void>>> schemaWaves = getTableDropWaves(snapshot);
+            for (int i = 0; i < schemaWaves.size(); i++) {
+                if (i == waves.size()) {
+                    waves.add(new ArrayList<Callable<Void>>());
+                }
+                waves.get(i).addAll(schemaWaves.get(i));
+            }
+        }
+        for (List<Callable<Void>> wave : waves) {
+            executeTasks(wave, executorService);
+        }
+
+        tasks.clear();
+        for (SchemaMetadataSnapshot snapshot : snapshots) {
+            DbSupport dbSupport = snapshot.getDbSupport();
+            for (String triggerName : getItemsToDrop(snapshot.getTriggerNames(), triggersToPreserve.get(dbSupport.getSchemaName()))) {
+                tasks.add(createDropTask(dbSupport, TRIGGER, Collections.singletonList(triggerName)));
+            }
+        }
+        executeTasks(tasks, executorService);
 
-            dropTriggers(dbSupport);
-            dropTypes(dbSupport);
-            // todo drop functions, stored procedures.
+        tasks.clear();
+        for (SchemaMetadataSnapshot snapshot : snapshots) {
+            DbSupport dbSupport = snapshot.getDbSupport();
+            List<String> typeNames = new ArrayList<String>(getItemsToDrop(snapshot.getTypeNames(), typesToPreserve.get(dbSupport.getSchemaName())));
+            tasks.add(createDropTask(dbSupport, TYPE, typeNames));
         }
+        executeTasks(tasks, executorService);
     }
 
 
     /**
-     * Drops all tables.
+     * Gets the thread pool that is used to drop the database items in parallel. The pool is created the first time
+     * it is needed and reused by the following calls. It contains at most {@link #nrOfThreads} daemon threads, which
+     * are stopped when they are idle for a minute.
+     *
+     * @return The thread pool, not null
+     */
+    protected synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = new ThreadPoolExecutor(nrOfThreads, nrOfThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "unitils-db-clearer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executorService.allowCoreThreadTimeOut(true);
+        }
+        return executorService;
+    }
+
+
+    /**
+     * Determines the waves in which the tables of the schema can be dropped. A table can only be dropped after all
+     * tables that have a foreign key referencing it are dropped. The first wave contains the tables that are not
+     * referenced, the next wave the tables that were only referenced by the first wave and so on. Every table of a
+     * wave is dropped by a task of its own. If tables reference each other in a cycle, they are added as a last wave
+     * containing a single task that drops them one by one.
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     * @return The drop tasks per wave, not null
+     */
+    protected List<List<Callable<Void>>> getTableDropWaves(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> tableNames = getItemsToDrop(snapshot.getTableNames(), tablesToPreserve.get(dbSupport.getSchemaName()));
+
+        // the nr of tables that reference a table and that are not dropped yet
+        Map<String, Integer> nrOfReferencingTables = new HashMap<String, Integer>();
+        for (String tableName : tableNames) {
+            nrOfReferencingTables.put(tableName, 0);
+        }
+        for (String tableName : tableNames) {
+            for (String referencedTableName : getReferencedTablesToDrop(snapshot, tableName, tableNames)) {
+                nrOfReferencingTables.put(referencedTableName, nrOfReferencingTables.get(referencedTableName) + 1);
+            }
+        }
+
+        List<String> wave = new ArrayList<String>();
+        for (String tableName : tableNames) {
+            if (nrOfReferencingTables.get(tableName) == 0) {
+                wave.add(tableName);
+            }
+        }
+        List<List<Callable<Void>>> waves = new ArrayList<List<Callable<Void>>>();
+        int nrOfTablesInWaves = 0;
+        while (!wave.isEmpty()) {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            List<String> nextWave = new ArrayList<String>();
+            for (String tableName : wave) {
+                tasks.add(createDropTask(dbSupport, TABLE, Collections.singletonList(tableName)));
+                for (String referencedTableName : getReferencedTablesToDrop(snapshot, tableName, tableNames)) {
+                    int nrOfReferences = nrOfReferencingTables.get(referencedTableName) - 1;
+                    nrOfReferencingTables.put(referencedTableName, nrOfReferences);
+                    if (nrOfReferences == 0) {
+                        nextWave.add(referencedTableName);
+                    }
+                }
+            }
+            waves.add(tasks);
+            nrOfTablesInWaves += wave.size();
+            wave = nextWave;
+        }
+
+        if (nrOfTablesInWaves < tableNames.size()) {
+            List<String> cyclicTableNames = new ArrayList<String>();
+            for (String tableName : tableNames) {
+                if (nrOfReferencingTables.get(tableName) > 0) {
+                    cyclicTableNames.add(tableName);
+                }
+            }
+            waves.add(Collections.singletonList(createDropTask(dbSupport, TABLE, cyclicTableNames)));
+        }
+        return waves;
+    }
+
+
+    /**
+     * @param snapshot   The meta data snapshot of the schema, not null
+     * @param tableName  The table, not null
+     * @param tableNames The tables that will be dropped, not null
+     * @return The tables that will be dropped and that are referenced by the given table, not null
+     */
+    protected Set<String> getReferencedTablesToDrop(SchemaMetadataSnapshot snapshot, String tableName, Set<String> tableNames) {
+        Set<String> result = new HashSet<String>();
+        for (String referencedTableName : snapshot.getReferencedTableNames(tableName)) {
+            // self references do not constrain the order
+            if (!referencedTableName.equals(tableName) && tableNames.contains(referencedTableName)) {
+                result.add(referencedTableName);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param itemNames       The names of the items in the schema, not null
+     * @param itemsToPreserve The items that should not be dropped, null if there are none
+     * @return The names of the items that should be dropped, not null
+     */
+    protected Set<String> getItemsToDrop(Set<String> itemNames, Set<String> itemsToPreserve) {
+        Set<String> result = new HashSet<String>();
+        for (String itemName : itemNames) {
+            if (!isItemToPreserve(itemName, itemsToPreserve)) {
+                result.add(itemName);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Creates a task that drops the given items one by one. The task runs in a session of the SQL handler, so that
+     * all its statements are executed on the same connection, in batches, as {@link #clearSchemas} does when the
+     * items are dropped one by one.
+     *
+     * @param dbSupport The database support, not null
+     * @param itemType  The kind of items, e.g. {@link #TABLE}, not null
+     * @param itemNames The names of the items to drop, not null
+     * @return The task, not null
+     */
+    protected Callable<Void> createDropTask(final DbSupport dbSupport, final String itemType, final List<String> itemNames) {
+        return new Callable<Void>() {
+
+            public Void call() {
+                startSession(sqlHandler, true);
+                try {
+                    for (String itemName : itemNames) {
+                        logger.debug("Dropping " + itemType + " " + itemName + " in database schema " + dbSupport.getSchemaName());
+                        dropItem(dbSupport, itemType, itemName);
+                    }
+                } finally {
+                    endSession(sqlHandler);
+                }
+                return null;
+            }
+        };
+    }
+
+
+    /**
+     * Drops the given item.
+     *
+     * @param dbSupport The database support, not null
+     * @param itemType  The kind of item, e.g. {@link #TABLE}, not null
+     * @param itemName  The name of the item, not null
+     */
+    protected void dropItem(DbSupport dbSupport, String itemType, String itemName) {
+        if (TABLE.equals(itemType)) {
+            dbSupport.dropTable(itemName);
+        } else if (VIEW.equals(itemType)) {
+            dbSupport.dropView(itemName);
+        } else if (MATERIALIZED_VIEW.equals(itemType)) {
+            dbSupport.dropMaterializedView(itemName);
+        } else if (SYNONYM.equals(itemType)) {
+            dbSupport.dropSynonym(itemName);
+        } else if (SEQUENCE.equals(itemType)) {
+            dbSupport.dropSequence(itemName);
+        } else if (TRIGGER.equals(itemType)) {
+            dbSupport.dropTrigger(itemName);
+        } else if (TYPE.equals(itemType)) {
+            dbSupport.dropType(itemName);
+        } else {
+            throw new UnitilsException("Unknown type of database item: " + itemType);
+        }
+    }
+
+
+    /**
+     * Executes the given tasks using the executor service and waits until all of them are finished. If a task
+     * failed, its exception is rethrown.
+     *
+     * @param tasks           The tasks, not null
+     * @param executorService The executor service, not null
+     */
+    protected void executeTasks(List<Callable<Void>> tasks, ExecutorService executorService) {
+        try {
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnitilsException("Unable to clear database schemas.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while clearing database schemas.", e);
+        }
+    }
+
+
+    /**
+     * Drops all tables. The meta data of the schema is retrieved first, see {@link #dropTables(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropTables(DbSupport dbSupport) {
-        Set<String> tableNames = dbSupport.getTableNames();
+        dropTables(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all tables.
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropTables(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> tableNames = snapshot.getTableNames();
         Set<String> schemaTablesToPreserve = tablesToPreserve.get(dbSupport.getSchemaName());
         for (String tableName : tableNames) {
             // check whether table needs to be preserved
@@ -193,12 +558,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all views.
+     * Drops all views. The meta data of the schema is retrieved first, see {@link #dropViews(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropViews(DbSupport dbSupport) {
-        Set<String> viewNames = dbSupport.getViewNames();
+        dropViews(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all views.
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropViews(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> viewNames = snapshot.getViewNames();
         Set<String> schemaViewsToPreserve = viewsToPreserve.get(dbSupport.getSchemaName());
         for (String viewName : viewNames) {
             // check whether view needs to be preserved
@@ -212,15 +588,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all materialized views.
+     * Drops all materialized views. The meta data of the schema is retrieved first, see {@link #dropMaterializedViews(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropMaterializedViews(DbSupport dbSupport) {
-        if (!dbSupport.supportsMaterializedViews()) {
-            return;
-        }
-        Set<String> materializedViewNames = dbSupport.getMaterializedViewNames();
+        dropMaterializedViews(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all materialized views.
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropMaterializedViews(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> materializedViewNames = snapshot.getMaterializedViewNames();
         Set<String> schemaMaterializedViewsToPreserve = materializedViewsToPreserve.get(dbSupport.getSchemaName());
         for (String materializedViewName : materializedViewNames) {
             // check whether view needs to be preserved
@@ -234,15 +618,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all synonyms
+     * Drops all synonyms. The meta data of the schema is retrieved first, see {@link #dropSynonyms(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropSynonyms(DbSupport dbSupport) {
-        if (!dbSupport.supportsSynonyms()) {
-            return;
-        }
-        Set<String> synonymNames = dbSupport.getSynonymNames();
+        dropSynonyms(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all synonyms
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropSynonyms(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> synonymNames = snapshot.getSynonymNames();
         Set<String> schemaSynonymsToPreserve = synonymsToPreserve.get(dbSupport.getSchemaName());
         for (String synonymName : synonymNames) {
             // check whether table needs to be preserved
@@ -256,15 +648,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all sequences
+     * Drops all sequences. The meta data of the schema is retrieved first, see {@link #dropSequences(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropSequences(DbSupport dbSupport) {
-        if (!dbSupport.supportsSequences()) {
-            return;
-        }
-        Set<String> sequenceNames = dbSupport.getSequenceNames();
+        dropSequences(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all sequences
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropSequences(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> sequenceNames = snapshot.getSequenceNames();
         Set<String> schemaSequencesToPreserve = sequencesToPreserve.get(dbSupport.getSchemaName());
         for (String sequenceName : sequenceNames) {
             // check whether sequence needs to be preserved
@@ -278,15 +678,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all triggers
+     * Drops all triggers. The meta data of the schema is retrieved first, see {@link #dropTriggers(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropTriggers(DbSupport dbSupport) {
-        if (!dbSupport.supportsTriggers()) {
-            return;
-        }
-        Set<String> triggerNames = dbSupport.getTriggerNames();
+        dropTriggers(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all triggers
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropTriggers(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> triggerNames = snapshot.getTriggerNames();
         Set<String> schemaTriggersToPreserve = triggersToPreserve.get(dbSupport.getSchemaName());
         for (String triggerName : triggerNames) {
             // check whether trigger needs to be preserved
@@ -300,15 +708,23 @@ public class DefaultDBClearer extends BaseDatabaseAccessor implements DBClearer
 
 
     /**
-     * Drops all types.
+     * Drops all types. The meta data of the schema is retrieved first, see {@link #dropTypes(SchemaMetadataSnapshot)}.
      *
      * @param dbSupport The database support, not null
      */
     protected void dropTypes(DbSupport dbSupport) {
-        if (!dbSupport.supportsTypes()) {
-            return;
-        }
-        Set<String> typeNames = dbSupport.getTypeNames();
+        dropTypes(dbSupport.createSchemaMetadataSnapshot());
+    }
+
+
+    /**
+     * Drops all types.
+     *
+     * @param snapshot The meta data snapshot of the schema, not null
+     */
+    protected void dropTypes(SchemaMetadataSnapshot snapshot) {
+        DbSupport dbSupport = snapshot.getDbSupport();
+        Set<String> typeNames = snapshot.getTypeNames();
         Set<String> schemaTypesToPreserve = typesToPreserve.get(dbSupport.getSchemaName());
         for (String typeName : typeNames) {
             // check whether type needs to be preserved
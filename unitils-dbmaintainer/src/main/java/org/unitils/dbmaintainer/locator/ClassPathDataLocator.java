@@ -37,22 +37,38 @@ public class ClassPathDataLocator extends ClassPathResourceLocator {
      * @return {@link InputStream}
      */
     public InputStream getDataResource(String resourceName, ResourcePickingStrategie resourcePickingStrategie) {
+        URL resource = getDataResourceUrl(resourceName, resourcePickingStrategie);
+        if (resource == null) {
+            return null;
+        }
+        try {
+            return ClassPathResourceIndex.openStream(resource);
+        } catch (IOException e) {
+            logger.error("could open stream", e);
+        }
+        return null;
+    }
+
+
+    /**
+     * Same as {@link #getDataResource} but returns the url of the chosen resource instead of opening it.
+     *
+     * @param resourceName
+     * @param resourcePickingStrategie
+     * @return The url of the resource, null if there is no resource left
+     */
+    public URL getDataResourceUrl(String resourceName, ResourcePickingStrategie resourcePickingStrategie) {
         List<URL> matchedResources = loadResources(resourceName, true);
       //  List<URL> resourcesF = chooseMostRecent(matchedResources, resourceName);
         List<URL> resourcesF = resourcePickingStrategie.filter(matchedResources, resourceName);
-       
-        try {
-            if (resourcesF.size() > 1) {
-                logger.warn("Multiple resources found for '" + resourceName + "'. Ambigues resourceName. Will choose first occurence");
 
-                return resourcesF.get(0).openStream();
+        if (resourcesF.size() > 1) {
+            logger.warn("Multiple resources found for '" + resourceName + "'. Ambigues resourceName. Will choose first occurence");
+            return resourcesF.get(0);
 
-            } else if (resourcesF.size() == 1) {
-                logger.info("One resources found for '" + resourceName + "'. ");
-                return resourcesF.get(0).openStream();
-            }
-        } catch (IOException e) {
-            logger.error("could open stream", e);
+        } else if (resourcesF.size() == 1) {
+            logger.info("One resources found for '" + resourceName + "'. ");
+            return resourcesF.get(0);
         }
         return null;
     }
@@ -0,0 +1,398 @@
+package org.unitils.dbmaintainer.locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Index of the resources on the classpath, that is created once per class loader.
+ * <p/>
+ * The entry names of a jar are read only the first time the jar is queried. They are kept sorted, so that all resources
+ * below a path can be looked up without scanning the jar again. Resources below a directory are listed directly, since
+ * the content of a directory can change while the tests are running. Resources in other locations, e.g. nested jars,
+ * are not indexed: for these null is returned, so that the caller can fall back to scanning them.
+ * <p/>
+ * The content and last modification time of jar entries are read through {@link JarFile} instances that are opened
+ * once and shared by all indexes, instead of opening a new url connection for every resource. A jar file is opened
+ * again, and its entries are indexed again, when the jar was replaced, i.e. when its last modification time changed.
+ * The previously opened jar file is then closed. {@link #closeJarFiles} closes all opened jar files, e.g. when a
+ * database update has read all its scripts.
+ * <p/>
+ * Entry names are url decoded, so that directories with e.g. spaces or non-ascii characters in their names are found.
+ * The urls that are returned are encoded again.
+ *
+ * @author tdr
+ */
+public class ClassPathResourceIndex {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ClassPathResourceIndex.class);
+
+    /* The indexes per class loader */
+    private static Map<ClassLoader, ClassPathResourceIndex> indexes = new WeakHashMap<ClassLoader, ClassPathResourceIndex>();
+
+    /* The opened jar files, shared by all indexes: canonical path of the jar -> jar file with its last modification time */
+    private static Map<String, IndexedJarFile> jarFiles = new HashMap<String, IndexedJarFile>();
+
+    /* The class loader of the index. This is a weak reference, otherwise the index would keep its key in the indexes alive */
+    protected WeakReference<ClassLoader> classLoader;
+
+
+    /**
+     * Gets the index for the given class loader. The index is created the first time it is requested.
+     *
+     * @param classLoader The class loader, not null
+     * @return The index, not null
+     */
+    public static synchronized ClassPathResourceIndex getInstance(ClassLoader classLoader) {
+        ClassPathResourceIndex index = indexes.get(classLoader);
+        if (index == null) {
+            index = new ClassPathResourceIndex(classLoader);
+            indexes.put(classLoader, index);
+        }
+        return index;
+    }
+
+
+    /**
+     * Creates an empty index for the given class loader.
+     *
+     * @param classLoader The class loader, not null
+     */
+    protected ClassPathResourceIndex(ClassLoader classLoader) {
+        this.classLoader = new WeakReference<ClassLoader>(classLoader);
+    }
+
+
+    /**
+     * Gets the urls of all locations on the classpath for the given resource path.
+     *
+     * @param path The path of the resource or directory, not null
+     * @return The urls, not null
+     */
+    public List<URL> getRootResources(String path) throws IOException {
+        List<URL> result = new ArrayList<URL>();
+        ClassLoader classLoader = this.classLoader.get();
+        if (classLoader == null) {
+            return result;
+        }
+        Enumeration<URL> resources = classLoader.getResources(path);
+        while (resources.hasMoreElements()) {
+            result.add(resources.nextElement());
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets all resources below the given classpath location, optionally only the ones with one of the given extensions.
+     *
+     * @param rootUrl    The url of a directory in a jar or on the file system, not null
+     * @param extensions The file extensions of the resources, null for all resources
+     * @return The urls of the resources, null if the location cannot be indexed
+     */
+    public List<URL> getResources(URL rootUrl, Collection<String> extensions) throws IOException {
+        if ("file".equals(rootUrl.getProtocol())) {
+            File directory = toFile(rootUrl.toString());
+            if (directory == null || !directory.isDirectory()) {
+                return null;
+            }
+            List<URL> result = new ArrayList<URL>();
+            addFileResources(directory, extensions, result);
+            return result;
+        }
+
+        String[] jarFileAndEntry = splitJarUrl(rootUrl);
+        if (jarFileAndEntry == null) {
+            return null;
+        }
+        File jarFile = toFile(jarFileAndEntry[0]);
+        if (jarFile == null) {
+            return null;
+        }
+        String prefix = jarFileAndEntry[1];
+        List<URL> result = new ArrayList<URL>();
+        for (String entryName : getJarEntryNames(jarFile).subSet(prefix, prefix + Character.MAX_VALUE)) {
+            if (hasExtension(entryName, extensions)) {
+                result.add(new URL("jar:" + jarFileAndEntry[0] + "!/" + encodeEntryName(entryName)));
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Opens a stream to the content of the given resource. Jar entries are read using the shared jar files.
+     *
+     * @param url The url of the resource, not null
+     * @return The stream, not null
+     */
+    public static InputStream openStream(URL url) throws IOException {
+        String[] jarFileAndEntry = splitJarUrl(url);
+        if (jarFileAndEntry != null) {
+            File file = toFile(jarFileAndEntry[0]);
+            if (file != null) {
+                JarFile jarFile = getJarFile(file);
+                JarEntry jarEntry = jarFile.getJarEntry(jarFileAndEntry[1]);
+                if (jarEntry != null) {
+                    return jarFile.getInputStream(jarEntry);
+                }
+            }
+        }
+        return url.openStream();
+    }
+
+
+    /**
+     * Gets the last modification time of the given resource. As for a jar url connection, this is the last
+     * modification time of the jar itself for entries in a jar.
+     *
+     * @param url The url of the resource, not null
+     * @return The last modification time, 0 if not known
+     */
+    public static long getLastModified(URL url) throws IOException {
+        String[] jarFileAndEntry = splitJarUrl(url);
+        File file = toFile(jarFileAndEntry == null ? url.toString() : jarFileAndEntry[0]);
+        if (file != null && file.exists()) {
+            return file.lastModified();
+        }
+        return url.openConnection().getLastModified();
+    }
+
+
+    /**
+     * Closes all opened jar files. Streams that were opened on entries of these jar files can no longer be read, so
+     * this should only be called when no resources are being read. The jar files are opened again when needed.
+     */
+    public static void closeJarFiles() {
+        synchronized (jarFiles) {
+            for (IndexedJarFile indexedJarFile : jarFiles.values()) {
+                closeQuietly(indexedJarFile.jarFile);
+            }
+            jarFiles.clear();
+        }
+    }
+
+
+    /**
+     * Gets the sorted names of the file entries of the given jar. The names are read the first time the jar is queried
+     * and again when the jar was replaced.
+     *
+     * @param file The jar, not null
+     * @return The entry names, not null
+     */
+    protected SortedSet<String> getJarEntryNames(File file) throws IOException {
+        synchronized (jarFiles) {
+            IndexedJarFile indexedJarFile = getIndexedJarFile(file);
+            if (indexedJarFile.entryNames == null) {
+                SortedSet<String> entryNames = new TreeSet<String>();
+                Enumeration<JarEntry> entries = indexedJarFile.jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        entryNames.add(entry.getName());
+                    }
+                }
+                indexedJarFile.entryNames = entryNames;
+                logger.debug("Indexed " + entryNames.size() + " entries of jar " + file);
+            }
+            return indexedJarFile.entryNames;
+        }
+    }
+
+
+    /**
+     * Adds the urls of all files below the given directory.
+     *
+     * @param directory  The directory, not null
+     * @param extensions The file extensions, null for all files
+     * @param result     The list to add the urls to, not null
+     */
+    protected void addFileResources(File directory, Collection<String> extensions, List<URL> result) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addFileResources(file, extensions, result);
+            } else if (hasExtension(file.getName(), extensions)) {
+                result.add(file.toURI().toURL());
+            }
+        }
+    }
+
+
+    /**
+     * @param name       The name of the resource, not null
+     * @param extensions The extensions, null for all extensions
+     * @return True if the name ends with a dot followed by one of the extensions
+     */
+    protected boolean hasExtension(String name, Collection<String> extensions) {
+        if (extensions == null) {
+            return true;
+        }
+        for (String extension : extensions) {
+            if (name.endsWith("." + extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Gets the opened jar file for the given file. The jar is opened the first time it is requested.
+     *
+     * @param file The jar, not null
+     * @return The jar file, not null
+     */
+    protected static JarFile getJarFile(File file) throws IOException {
+        synchronized (jarFiles) {
+            return getIndexedJarFile(file).jarFile;
+        }
+    }
+
+
+    /**
+     * Gets the opened jar file for the given file with the last modification time of the jar. The jar is opened the
+     * first time it is requested. If the last modification time of the jar changed, the jar was replaced: the jar file
+     * that was opened before is closed and the jar is opened again. Should be called while holding the lock on the jar
+     * files.
+     *
+     * @param file The jar, not null
+     * @return The jar file, not null
+     */
+    private static IndexedJarFile getIndexedJarFile(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        long lastModified = file.lastModified();
+        IndexedJarFile indexedJarFile = jarFiles.get(key);
+        if (indexedJarFile != null && indexedJarFile.lastModified != lastModified) {
+            logger.debug("Jar " + file + " was replaced. Closing the jar file that was opened before.");
+            jarFiles.remove(key);
+            closeQuietly(indexedJarFile.jarFile);
+            indexedJarFile = null;
+        }
+        if (indexedJarFile == null) {
+            indexedJarFile = new IndexedJarFile(new JarFile(file), lastModified);
+            jarFiles.put(key, indexedJarFile);
+        }
+        return indexedJarFile;
+    }
+
+
+    /**
+     * Closes the given jar file, logging a warning if this fails.
+     *
+     * @param jarFile The jar file, not null
+     */
+    private static void closeQuietly(JarFile jarFile) {
+        try {
+            jarFile.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close jar file " + jarFile.getName(), e);
+        }
+    }
+
+
+    /**
+     * Splits a url to an entry in a jar on the file system, e.g. jar:file:/lib/scripts.jar!/dbscripts/, in the url of
+     * the jar and the decoded name of the entry.
+     *
+     * @param url The url, not null
+     * @return The url of the jar and the entry name, null if it is not a url of an entry in a jar on the file system
+     */
+    protected static String[] splitJarUrl(URL url) {
+        if (!"jar".equals(url.getProtocol())) {
+            return null;
+        }
+        String path = url.getPath();
+        int separatorIndex = path.indexOf("!/");
+        if (separatorIndex == -1 || !path.startsWith("file:") || path.indexOf("!/", separatorIndex + 2) != -1) {
+            return null;
+        }
+        return new String[]{path.substring(0, separatorIndex), decodeEntryName(path.substring(separatorIndex + 2))};
+    }
+
+
+    /**
+     * @param entryName The url encoded entry name, not null
+     * @return The decoded entry name, the given name if it is not a valid url path
+     */
+    protected static String decodeEntryName(String entryName) {
+        try {
+            return new URI("file:/" + entryName).getPath().substring(1);
+        } catch (URISyntaxException e) {
+            return entryName;
+        }
+    }
+
+
+    /**
+     * @param entryName The entry name, not null
+     * @return The url encoded entry name, the given name if it cannot be encoded
+     */
+    protected static String encodeEntryName(String entryName) {
+        try {
+            return new URI(null, null, "/" + entryName, null).toASCIIString().substring(1);
+        } catch (URISyntaxException e) {
+            return entryName;
+        }
+    }
+
+
+    /**
+     * @param fileUrl The file url, not null
+     * @return The file, null if the url is not a valid file url
+     */
+    protected static File toFile(String fileUrl) {
+        try {
+            return new File(new URL(fileUrl).toURI());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * An opened jar file with the last modification time of the jar when it was opened and the sorted names of its
+     * file entries.
+     */
+    private static class IndexedJarFile {
+
+        /* The opened jar file */
+        private JarFile jarFile;
+
+        /* The last modification time of the jar when it was opened */
+        private long lastModified;
+
+        /* The sorted names of the file entries, null if not yet indexed */
+        private SortedSet<String> entryNames;
+
+
+        private IndexedJarFile(JarFile jarFile, long lastModified) {
+            this.jarFile = jarFile;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package org.unitils.dbmaintainer.locator;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -16,6 +16,9 @@ import org.unitils.core.UnitilsException;
 /**
  * Abstract class to locate resources on the classpath.
  * Will also look in jars that are in the classpath.
+ * <p/>
+ * The resources are looked up in the {@link ClassPathResourceIndex} of the class loader, so that the content of a jar
+ * is only scanned once.
  *
  * @author tdr
  *
@@ -40,21 +43,31 @@ public abstract class ClassPathResourceLocator {
      * @return List<URL>
      */
     public List<URL> loadResources(String path, Boolean isConcreteResource) {
+        return loadResources(path, isConcreteResource, null);
+    }
+
+
+    /**
+     * Load resources from the classpath. When searching in a directory, only the resources with one of the given
+     * extensions are returned.
+     *
+     * @param path
+     * @param isConcreteResource
+     * @param extensions The file extensions, null for all resources
+     * @return List<URL>
+     */
+    public List<URL> loadResources(String path, Boolean isConcreteResource, Collection<String> extensions) {
         resourceList = new ArrayList<URL>();
 
         try {
             // will also check in external referenced jars.
-            Enumeration<URL> resources = getClass().getClassLoader().getResources(path);
-
-            while (resources.hasMoreElements()) {
-
-                URL url = resources.nextElement();
+            for (URL url : getResourceIndex().getRootResources(path)) {
 
                 resourceList.add(url);
                 logger.debug(" Resource '" + url.toString() + "' added to resourcelist ");
 
                 if (!isConcreteResource) {
-                    List<URL> subResources = searchResources(url);
+                    List<URL> subResources = searchResources(url, extensions);
                     resourceList.addAll(subResources);
                 }
 
@@ -68,13 +81,33 @@ public abstract class ClassPathResourceLocator {
 
 
     /**
-     * Will use the Spring {@link PathMatchingResourcePatternResolver} to find a resource that corresponds to the <code>url</code>.
+     * Will find the resources below the <code>url</code>.
      *
      * @param url
      * @return List<URL>
      * @throws IOException
      */
     protected List<URL> searchResources(URL url) throws IOException {
+        return searchResources(url, null);
+    }
+
+
+    /**
+     * Will find the resources below the <code>url</code> with one of the given extensions, using the index of the
+     * class loader. Locations that cannot be indexed are searched using the Spring
+     * {@link PathMatchingResourcePatternResolver}.
+     *
+     * @param url
+     * @param extensions The file extensions, null for all resources
+     * @return List<URL>
+     * @throws IOException
+     */
+    protected List<URL> searchResources(URL url, Collection<String> extensions) throws IOException {
+        List<URL> indexedResources = getResourceIndex().getResources(url, extensions);
+        if (indexedResources != null) {
+            return indexedResources;
+        }
+
         PathMatchingResourcePatternResolver p = new PathMatchingResourcePatternResolver();
         Resource[] scriptResources = p.getResources(url.toString() + "**");
         List<URL> listScriptResources = new ArrayList<URL>();
@@ -83,14 +116,16 @@ public abstract class ClassPathResourceLocator {
             URL urlResource = scriptResources[i].getURL();
             listScriptResources.add(urlResource);
             logger.debug("Resource '" + urlResource.toString() + "' added to resourcelist ");
-            try {
-                urlResource.openStream();
-
-            } catch (Exception e) {
-                logger.error(" Resource '" + urlResource.toString() + "' is not found.");
-            }
         }
 
         return listScriptResources;
     }
+
+
+    /**
+     * @return The resource index of the class loader of this locator, not null
+     */
+    protected ClassPathResourceIndex getResourceIndex() {
+        return ClassPathResourceIndex.getInstance(getClass().getClassLoader());
+    }
 }
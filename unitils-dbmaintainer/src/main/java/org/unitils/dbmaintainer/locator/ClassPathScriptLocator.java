@@ -45,7 +45,7 @@ public class ClassPathScriptLocator extends ClassPathResourceLocator {
         this.scriptList = scriptList1;
         this.scriptExtensions = scriptExtensions1;
         this.schema = schema;
-        List<URL> matchedResources = loadResources(path1, false);
+        List<URL> matchedResources = loadResources(path1, false, scriptExtensions1);
         List<URL> resourcesF = resourcePickingStrategie.filter(matchedResources, path1);
 
         try {
@@ -63,7 +63,7 @@ public class ClassPathScriptLocator extends ClassPathResourceLocator {
                 DefaultScriptSource defaultScriptSource = new DefaultScriptSource();
                 defaultScriptSource.init(configuration);
                 if (defaultScriptSource.checkIfScriptContainsCorrectDatabaseName(scriptName, schema, defaultDatabase) && defaultScriptSource.containsOneOfQualifiers(scriptName)) {
-                    Script script = new Script(scriptName, Long.valueOf(url.openConnection().getLastModified()), new org.unitils.dbmaintainer.script.ScriptContentHandle.UrlScriptContentHandle(url));
+                    Script script = new Script(scriptName, Long.valueOf(ClassPathResourceIndex.getLastModified(url)), new org.unitils.dbmaintainer.script.ScriptContentHandle.UrlScriptContentHandle(url));
 
                     logger.debug(" + script added (" + url.toString() + "))");
 
@@ -1,14 +1,17 @@
 package org.unitils.dbmaintainer.locator.resourcepickingstrategie.impl;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.sql.Date;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
 import org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie;
 
 
@@ -29,7 +32,8 @@ public class UniqueMostRecentPickingStrategie implements ResourcePickingStrategi
      * @see org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie#filter(java.util.List)
      */
     public List<URL> filter(List<URL> resources, String resourceSearchName) {
-        List<URL> filteredResources = new ArrayList<URL>();
+        // the duplicates are looked up by the part of the url starting with the search name
+        Map<String, URL> filteredResources = new LinkedHashMap<String, URL>();
 
         for (URL url : resources) {
             try {
@@ -38,43 +42,58 @@ public class UniqueMostRecentPickingStrategie implements ResourcePickingStrategi
                 logger.error("could not add resource", e);
             }
         }
-        return filteredResources;
+        return new ArrayList<URL>(filteredResources.values());
 
     }
+
     /**
      * Will look to add the urlNew in the filteredResource. if duplicate exists (based on resourceSearchName) it will look at
-     * last modification date and take the most recent one.
-     * 
+     * last modification date and take the most recent one. The resources are stored by the part of their url that
+     * starts with the <code>resourceSearchName</code>, so that duplicates are found without comparing all resources.
+     *
      * @param filteredResources
      * @param urlNew
      * @param resourceSearchName
      * @throws IOException
      */
-    public void addMostRecent(List<URL> filteredResources, URL urlNew, String resourceSearchName) throws IOException {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd,yyyy HH:mm");
-        
-        for (int i = 0; i < filteredResources.size(); i++) {
-            URL url = filteredResources.get(i);
-            String endingWith = url.toString().substring(url.toString().lastIndexOf(resourceSearchName));
-            //    logger.debug("List Resource ending with :" + endingWith);
+    protected void addMostRecent(Map<String, URL> filteredResources, URL urlNew, String resourceSearchName) throws IOException {
+        String location = getLocation(urlNew);
+        int index = location.lastIndexOf(resourceSearchName);
+        String endingWith = index == -1 ? location : location.substring(index);
 
-                if (urlNew.toString().endsWith(endingWith)) {
-                    Long inlistresource = url.openConnection().getLastModified();
-                    Long newresource = urlNew.openConnection().getLastModified();
-                    if (inlistresource < newresource) {
-                        logger.debug("Resource replace by more recent after PickingStrategie: '" + url + "'(" + sdf.format(new Date(inlistresource)) + ") replaced_by '" + urlNew + "' (" + sdf.format(new Date(newresource)) + ")");
-                        filteredResources.remove(url);
-                        filteredResources.add(urlNew);
-                    } else {
-                        logger.debug("Duplicate Resource found after PickingStrategie but not more recent (not added): '" + url + "'(" + sdf.format(new Date(inlistresource)) + ") is choosen over '" + urlNew + "' (" + sdf.format(new Date(newresource)) + ")");
-                    }
-                    return;
-                }
+        URL url = filteredResources.get(endingWith);
+        if (url == null) {
+            filteredResources.put(endingWith, urlNew);
+            logger.debug("Resource added after Picking Strategie " + urlNew + " ");
+            return;
         }
+        if (getLastModified(url) < getLastModified(urlNew)) {
+            logger.debug("Resource replace by more recent after PickingStrategie: '" + url + "' replaced_by '" + urlNew + "'");
+            filteredResources.remove(endingWith);
+            filteredResources.put(endingWith, urlNew);
+        } else {
+            logger.debug("Duplicate Resource found after PickingStrategie but not more recent (not added): '" + url + "' is choosen over '" + urlNew + "'");
+        }
+    }
 
-        filteredResources.add(urlNew);
-        logger.debug("Resource added after Picking Strategie " + urlNew + " ");
-
+    /**
+     * @param url
+     * @return The decoded url, so that it can be compared with the search name, the url itself if it cannot be decoded
+     */
+    protected String getLocation(URL url) {
+        try {
+            return url.getProtocol() + ":" + new URI(url.toString()).getSchemeSpecificPart();
+        } catch (URISyntaxException e) {
+            return url.toString();
+        }
+    }
 
+    /**
+     * @param url
+     * @return The last modification time of the resource, read without opening a connection for files and jar entries
+     * @throws IOException
+     */
+    protected long getLastModified(URL url) throws IOException {
+        return ClassPathResourceIndex.getLastModified(url);
     }
 }
@@ -85,6 +85,21 @@ public class Script implements Comparable<Script> {
     }
 
 
+    /**
+     * Creates a script with the given script fileName, whose content is provided by the given handle and whose
+     * checksum is already known, e.g. because it was stored in an index.
+     *
+     * @param fileName The name of the script file, not null
+     * @param fileLastModifiedAt The time at which the file was last modified
+     * @param checkSum Checksum of the content of the script, null if it should be calculated when needed
+     * @param scriptContentHandle Handle providing access to the contents of the script, not null
+     */
+    public Script(String fileName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle) {
+        this(fileName, fileLastModifiedAt, scriptContentHandle);
+        this.checkSum = checkSum;
+    }
+
+
     /**
      * @return The script name, not null
      */
@@ -27,6 +27,7 @@ import java.security.NoSuchAlgorithmException;
 
 import org.hibernate.lob.ReaderInputStream;
 import org.unitils.core.UnitilsException;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
 import org.unitils.thirdparty.org.apache.commons.io.IOUtils;
 import org.unitils.thirdparty.org.apache.commons.io.NullWriter;
 
@@ -122,7 +123,7 @@ public abstract class ScriptContentHandle {
 		@Override
 		protected InputStream getScriptInputStream() {
 			try {
-				return url.openStream();
+				return ClassPathResourceIndex.openStream(url);
 			} catch (IOException e) {
                 throw new UnitilsException("Error while trying to create reader for url " + url, e);
             }
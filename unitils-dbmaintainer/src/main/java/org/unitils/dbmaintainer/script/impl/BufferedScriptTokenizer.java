@@ -0,0 +1,552 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.script.impl;
+
+import org.unitils.core.UnitilsException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Tokenizer that splits a script into statements. It returns exactly the same statements as the parsing states of
+ * the {@link DefaultScriptParser} (normal, in-line comment, in-block comment, in-single-quotes and in-double-quotes)
+ * or, for Oracle, the {@link org.unitils.dbmaintainer.script.parsingstate.impl.OracleNormalParsingState} and the
+ * {@link OracleScriptParser.OracleStatementBuilder}.
+ * <p/>
+ * Instead of reading and dispatching the script character per character, the script is read in blocks into a char
+ * array. The characters are classified using a lookup table and the state machine is implemented as a switch on the
+ * current state. Runs of characters that cannot change the state, e.g. the contents of a literal or a comment, are
+ * copied to the statement at once. A statement is only copied once into a string, after trimming.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BufferedScriptTokenizer {
+
+    /* The nr of characters that are read from the script at once */
+    public static final int BUFFER_SIZE = 8192;
+
+    /* The parsing states */
+    protected static final int NORMAL = 0;
+
+    protected static final int IN_LINE_COMMENT = 1;
+
+    protected static final int IN_BLOCK_COMMENT = 2;
+
+    protected static final int IN_SINGLE_QUOTES = 3;
+
+    protected static final int IN_DOUBLE_QUOTES = 4;
+
+    /* Returned instead of a state when the end of the statement is reached */
+    protected static final int END_OF_STATEMENT = -1;
+
+    /* The character classes, all characters that are not in the table are ordinary characters */
+    protected static final byte ORDINARY = 0;
+
+    protected static final byte SEMICOLON = 1;
+
+    protected static final byte BACKSLASH = 2;
+
+    protected static final byte DASH = 3;
+
+    protected static final byte STAR = 4;
+
+    protected static final byte SINGLE_QUOTE = 5;
+
+    protected static final byte DOUBLE_QUOTE = 6;
+
+    /* The class of every ASCII character */
+    protected static final byte[] CHARACTER_CLASSES = new byte[128];
+
+    static {
+        CHARACTER_CLASSES[';'] = SEMICOLON;
+        CHARACTER_CLASSES['\\'] = BACKSLASH;
+        CHARACTER_CLASSES['-'] = DASH;
+        CHARACTER_CLASSES['*'] = STAR;
+        CHARACTER_CLASSES['\''] = SINGLE_QUOTE;
+        CHARACTER_CLASSES['"'] = DOUBLE_QUOTE;
+    }
+
+    /* The states of the current line of an Oracle script: only whitespace, a single slash or something else */
+    protected static final int LINE_EMPTY = 0;
+
+    protected static final int LINE_SLASH = 1;
+
+    protected static final int LINE_OTHER = 2;
+
+    /* The starting words of Oracle statements that contain PL/SQL code */
+    protected static final String[] CODE_STATEMENT_STARTS = {"CREATE PACKAGE", "CREATE OR REPLACE PACKAGE",
+            "CREATE LIBRARY", "CREATE OR REPLACE LIBRARY", "CREATE FUNCTION", "CREATE OR REPLACE FUNCTION",
+            "CREATE PROCEDURE", "CREATE OR REPLACE PROCEDURE", "CREATE TRIGGER", "CREATE OR REPLACE TRIGGER",
+            "CREATE TYPE", "CREATE OR REPLACE TYPE", "DECLARE", "BEGIN"};
+
+    /* The reader for the script */
+    protected Reader scriptReader;
+
+    /* True if backslashes can be used to escape characters */
+    protected boolean backSlashEscapingEnabled;
+
+    /* True if the Oracle rules apply: PL/SQL code blocks, a slash as separator and no carriage returns */
+    protected boolean oracle;
+
+    /* The block of the script that is being tokenized */
+    protected char[] buffer = new char[BUFFER_SIZE];
+
+    /* The index of the next character in the buffer */
+    protected int position;
+
+    /* The nr of characters in the buffer */
+    protected int limit;
+
+    /* True if the end of the script was reached */
+    protected boolean endOfScript;
+
+    /* The characters of the current statement */
+    protected char[] statement = new char[256];
+
+    /* The nr of characters of the current statement */
+    protected int statementLength;
+
+    /* True if the current statement is executable */
+    protected boolean executable;
+
+    /* The current state */
+    protected int state;
+
+    /* The previous character of the statement, 0 if none */
+    protected char previousChar;
+
+    /* True if the next character should be escaped, per state. These are not reset between statements */
+    protected boolean escapingInNormal;
+
+    protected boolean escapingInSingleQuotes;
+
+    protected boolean escapingInDoubleQuotes;
+
+    /* True if an Oracle code block is being parsed */
+    protected boolean parsingCodeBlock;
+
+    /* The state of the current line of an Oracle script */
+    protected int lineState = LINE_EMPTY;
+
+    /* The letters of the start of an Oracle statement, whitespace converted to single spaces */
+    protected StringBuilder codeStatementBuffer = new StringBuilder();
+
+
+    /**
+     * Creates a tokenizer for the given script.
+     *
+     * @param scriptReader             The script, not null
+     * @param backSlashEscapingEnabled True if backslashes can be used to escape characters
+     * @param oracle                   True if the Oracle rules apply
+     */
+    public BufferedScriptTokenizer(Reader scriptReader, boolean backSlashEscapingEnabled, boolean oracle) {
+        this.scriptReader = scriptReader;
+        this.backSlashEscapingEnabled = backSlashEscapingEnabled;
+        this.oracle = oracle;
+    }
+
+
+    /**
+     * Gets the next statement out of the script.
+     *
+     * @return The statement, null if there are no more statements
+     */
+    public String getNextStatement() throws IOException {
+        if (position == limit && !fill()) {
+            return null;
+        }
+        state = NORMAL;
+        previousChar = 0;
+        statementLength = 0;
+        executable = false;
+
+        while (position < limit || fill()) {
+            char currentChar = buffer[position];
+            // skip leading whitespace (NOTE String.trim uses <= ' ' for whitespace)
+            if (statementLength == 0 && currentChar <= ' ') {
+                position++;
+                continue;
+            }
+
+            int runEnd = getEndOfRun();
+            if (runEnd > position) {
+                if (state == NORMAL && (previousChar != 0 || runEnd - position > 1)) {
+                    executable = true;
+                }
+                append(position, runEnd);
+                previousChar = buffer[runEnd - 1];
+                position = runEnd;
+                continue;
+            }
+
+            position++;
+            append(currentChar);
+            int nextState = handleNextChar(currentChar);
+            if (nextState == END_OF_STATEMENT) {
+                String result = createStatement();
+                state = NORMAL;
+                previousChar = 0;
+                statementLength = 0;
+                executable = false;
+                if (result != null) {
+                    return result;
+                }
+                continue;
+            }
+            state = nextState;
+            previousChar = currentChar;
+        }
+
+        // check whether there was still an executable statement in the script
+        // or only whitespace was left
+        if (executable && createStatement() != null) {
+            throw new UnitilsException("Last statement in script was not ended correctly. Each statement should end with one of " + (oracle ? "[;, /]" : "[;]"));
+        }
+        return null;
+    }
+
+
+    /**
+     * Finds the end of the run of characters starting at the current position that cannot change the state. These
+     * characters can be added to the statement without handling them one by one.
+     *
+     * @return The index after the run, the current position if the current character needs to be handled
+     */
+    protected int getEndOfRun() {
+        int end = position;
+        switch (state) {
+            case NORMAL:
+                if (oracle || escapingInNormal) {
+                    return end;
+                }
+                while (end < limit && getCharacterClass(buffer[end]) == ORDINARY) {
+                    end++;
+                }
+                return end;
+            case IN_LINE_COMMENT:
+                while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+                    end++;
+                }
+                return end;
+            case IN_BLOCK_COMMENT:
+                while (end < limit && buffer[end] != '/') {
+                    end++;
+                }
+                return end;
+            case IN_SINGLE_QUOTES:
+                if (escapingInSingleQuotes) {
+                    return end;
+                }
+                while (end < limit && buffer[end] != '\'' && buffer[end] != '\\') {
+                    end++;
+                }
+                return end;
+            default:
+                if (escapingInDoubleQuotes) {
+                    return end;
+                }
+                while (end < limit && buffer[end] != '"' && buffer[end] != '\\') {
+                    end++;
+                }
+                return end;
+        }
+    }
+
+
+    /**
+     * Handles the given character in the current state.
+     *
+     * @param currentChar The character
+     * @return The next state, {@link #END_OF_STATEMENT} if the end of the statement is reached
+     */
+    protected int handleNextChar(char currentChar) throws IOException {
+        switch (state) {
+            case NORMAL:
+                return oracle ? handleNextCharInOracleNormal(currentChar) : handleNextCharInNormal(currentChar);
+            case IN_LINE_COMMENT:
+                return currentChar == '\n' || currentChar == '\r' ? NORMAL : IN_LINE_COMMENT;
+            case IN_BLOCK_COMMENT:
+                return previousChar == '*' && currentChar == '/' ? NORMAL : IN_BLOCK_COMMENT;
+            case IN_SINGLE_QUOTES:
+                if (escapingInSingleQuotes) {
+                    escapingInSingleQuotes = false;
+                } else if ((currentChar == '\'' && peekNextChar() == '\'') || (currentChar == '\\' && backSlashEscapingEnabled)) {
+                    escapingInSingleQuotes = true;
+                } else if (currentChar == '\'') {
+                    return NORMAL;
+                }
+                return IN_SINGLE_QUOTES;
+            default:
+                if (escapingInDoubleQuotes) {
+                    escapingInDoubleQuotes = false;
+                } else if ((currentChar == '"' && peekNextChar() == '"') || (currentChar == '\\' && backSlashEscapingEnabled)) {
+                    escapingInDoubleQuotes = true;
+                } else if (currentChar == '"') {
+                    return NORMAL;
+                }
+                return IN_DOUBLE_QUOTES;
+        }
+    }
+
+
+    /**
+     * Handles the given character in the normal state: looks for the beginning of comments and literals and for the
+     * end of the statement.
+     *
+     * @param currentChar The character
+     * @return The next state, {@link #END_OF_STATEMENT} if the end of the statement is reached
+     */
+    protected int handleNextCharInNormal(char currentChar) {
+        byte characterClass = getCharacterClass(currentChar);
+        if (characterClass == SEMICOLON) {
+            return END_OF_STATEMENT;
+        }
+        if (escapingInNormal) {
+            escapingInNormal = false;
+            executable = true;
+            return NORMAL;
+        }
+        switch (characterClass) {
+            case BACKSLASH:
+                if (backSlashEscapingEnabled) {
+                    escapingInNormal = true;
+                    executable = true;
+                    return NORMAL;
+                }
+                break;
+            case DASH:
+                if (previousChar == '-') {
+                    return IN_LINE_COMMENT;
+                }
+                break;
+            case STAR:
+                if (previousChar == '/') {
+                    return IN_BLOCK_COMMENT;
+                }
+                break;
+            case SINGLE_QUOTE:
+                return IN_SINGLE_QUOTES;
+            case DOUBLE_QUOTE:
+                return IN_DOUBLE_QUOTES;
+        }
+        // flag the statement executable from the second character
+        if (previousChar != 0) {
+            executable = true;
+        }
+        return NORMAL;
+    }
+
+
+    /**
+     * Handles the given character in the normal state of an Oracle script. A line containing only a slash ends the
+     * statement. Semicolons do not end the statement in PL/SQL code blocks.
+     *
+     * @param currentChar The character
+     * @return The next state, {@link #END_OF_STATEMENT} if the end of the statement is reached
+     */
+    protected int handleNextCharInOracleNormal(char currentChar) {
+        // track lines
+        if (currentChar == '\n' || currentChar == '\r') {
+            boolean slashLine = lineState == LINE_SLASH;
+            lineState = LINE_EMPTY;
+            if (slashLine) {
+                parsingCodeBlock = false;
+                codeStatementBuffer.setLength(0);
+                return END_OF_STATEMENT;
+            }
+        } else if (currentChar > ' ') {
+            lineState = (currentChar == '/' && lineState == LINE_EMPTY) ? LINE_SLASH : LINE_OTHER;
+        }
+
+        // search for the beginning of a code statement
+        if (!parsingCodeBlock && codeStatementBuffer.length() < 100) {
+            if (Character.isWhitespace(currentChar)) {
+                int length = codeStatementBuffer.length();
+                if (length != 0 && codeStatementBuffer.charAt(length - 1) != ' ') {
+                    codeStatementBuffer.append(' ');
+                }
+            } else if (Character.isLetter(currentChar)) {
+                codeStatementBuffer.append(Character.toUpperCase(currentChar));
+            }
+            if (isStartOfCodeStatement()) {
+                parsingCodeBlock = true;
+                codeStatementBuffer.setLength(0);
+                return NORMAL;
+            }
+        }
+
+        int nextState = handleNextCharInNormal(currentChar);
+        if (nextState == END_OF_STATEMENT) {
+            if (parsingCodeBlock) {
+                // parsing a block of code, ignore statement end
+                return NORMAL;
+            }
+            codeStatementBuffer.setLength(0);
+            lineState = LINE_EMPTY;
+        }
+        return nextState;
+    }
+
+
+    /**
+     * @return True if the letters of the start of the statement are the start of a PL/SQL code statement
+     */
+    protected boolean isStartOfCodeStatement() {
+        for (String codeStatementStart : CODE_STATEMENT_STARTS) {
+            if (codeStatementStart.contentEquals(codeStatementBuffer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Creates the statement out of the collected characters: the statement is trimmed and a trailing separator is
+     * removed. For Oracle, carriage returns are replaced by new lines.
+     *
+     * @return The statement, null if no statement is left
+     */
+    protected String createStatement() {
+        int start = 0;
+        int end = statementLength;
+        while (start < end && statement[start] <= ' ') {
+            start++;
+        }
+        while (end > start && statement[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        char lastChar = statement[end - 1];
+        if (lastChar == ';' || (oracle && lastChar == '/')) {
+            end--;
+            while (end > start && statement[end - 1] <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                return null;
+            }
+        }
+        if (!oracle) {
+            return new String(statement, start, end - start);
+        }
+
+        // Oracle does not handle carriage returns correctly
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = statement[i];
+            if (c == '\r') {
+                if (i + 1 < end && statement[i + 1] == '\n') {
+                    continue;
+                }
+                c = '\n';
+            }
+            statement[start + length++] = c;
+        }
+        return new String(statement, start, length);
+    }
+
+
+    /**
+     * @param c The character
+     * @return The class of the character
+     */
+    protected byte getCharacterClass(char c) {
+        return c < 128 ? CHARACTER_CLASSES[c] : ORDINARY;
+    }
+
+
+    /**
+     * Gets the character after the current character, reading the next block of the script if needed.
+     *
+     * @return The next character, 0 if the end of the script is reached
+     */
+    protected char peekNextChar() throws IOException {
+        if (position == limit && !fill()) {
+            return 0;
+        }
+        return buffer[position];
+    }
+
+
+    /**
+     * Reads the next block of the script into the buffer.
+     *
+     * @return False if the end of the script was reached
+     */
+    protected boolean fill() throws IOException {
+        if (endOfScript) {
+            return false;
+        }
+        int count;
+        do {
+            count = scriptReader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+
+        position = 0;
+        if (count == -1) {
+            endOfScript = true;
+            limit = 0;
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+
+    /**
+     * Adds the given character to the statement.
+     *
+     * @param c The character
+     */
+    protected void append(char c) {
+        ensureStatementCapacity(1);
+        statement[statementLength++] = c;
+    }
+
+
+    /**
+     * Adds the characters of the buffer between the given indexes to the statement.
+     *
+     * @param start The first index, inclusive
+     * @param end   The last index, exclusive
+     */
+    protected void append(int start, int end) {
+        int length = end - start;
+        ensureStatementCapacity(length);
+        System.arraycopy(buffer, start, statement, statementLength, length);
+        statementLength += length;
+    }
+
+
+    /**
+     * Makes sure the given nr of characters can be added to the statement.
+     *
+     * @param nrOfChars The nr of characters
+     */
+    protected void ensureStatementCapacity(int nrOfChars) {
+        if (statementLength + nrOfChars > statement.length) {
+            char[] newStatement = new char[Math.max(statement.length * 2, statementLength + nrOfChars)];
+            System.arraycopy(statement, 0, newStatement, 0, statementLength);
+            statement = newStatement;
+        }
+    }
+}
@@ -36,6 +36,10 @@ import java.util.Properties;
  * <p/>
  * This parser also takes quoted literals, double quoted text and in-line (--comment) and block (/ * comment * /)
  * into account when parsing the statements.
+ * <p/>
+ * If the parsing states and statement builder of this class are used, i.e. they are not replaced in a subclass, the
+ * statements are parsed by a {@link BufferedScriptTokenizer}. This gives the same statements, but is a lot faster for
+ * large scripts. This can be switched off by setting the {@link #PROPKEY_BUFFERED_TOKENIZER_ENABLED} property to false.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -48,6 +52,11 @@ public class DefaultScriptParser implements ScriptParser {
      */
     public static final String PROPKEY_BACKSLASH_ESCAPING_ENABLED = "org.unitils.dbmaintainer.script.ScriptParser.backSlashEscapingEnabled";
 
+    /**
+     * Property indicating whether the buffered tokenizer can be used instead of the parsing states.
+     */
+    public static final String PROPKEY_BUFFERED_TOKENIZER_ENABLED = "org.unitils.dbmaintainer.script.ScriptParser.bufferedTokenizerEnabled";
+
     /**
      * The starting state.
      */
@@ -63,11 +72,21 @@ public class DefaultScriptParser implements ScriptParser {
      */
     protected int currentChar;
 
+    /**
+     * True if the current character was already read while ending the previous statement
+     */
+    protected boolean currentCharRead;
+
     /**
      * The reader for the script content stream.
      */
     protected Reader scriptReader;
 
+    /**
+     * The tokenizer that parses the statements, null if the parsing states are used.
+     */
+    protected BufferedScriptTokenizer bufferedScriptTokenizer;
+
 
     /**
      * Initializes the parser with the given configuration settings.
@@ -77,8 +96,12 @@ public class DefaultScriptParser implements ScriptParser {
      */
     public void init(Properties configuration, Reader scriptReader) {
         boolean backSlashEscapingEnabled = PropertyUtils.getBoolean(PROPKEY_BACKSLASH_ESCAPING_ENABLED, configuration);
+        boolean bufferedTokenizerEnabled = PropertyUtils.getBoolean(PROPKEY_BUFFERED_TOKENIZER_ENABLED, true, configuration);
         this.initialParsingState = createInitialParsingState(backSlashEscapingEnabled);
         this.currentParsingState = initialParsingState;
+        if (bufferedTokenizerEnabled) {
+            this.bufferedScriptTokenizer = createBufferedScriptTokenizer(scriptReader, backSlashEscapingEnabled);
+        }
         this.scriptReader = new BufferedReader(scriptReader);
     }
 
@@ -103,7 +126,13 @@ public class DefaultScriptParser implements ScriptParser {
      * @return the statements, null if no more statements
      */
     protected String getNextStatementImpl() throws IOException {
-        currentChar = scriptReader.read();
+        if (bufferedScriptTokenizer != null) {
+            return bufferedScriptTokenizer.getNextStatement();
+        }
+        if (!currentCharRead) {
+            currentChar = scriptReader.read();
+        }
+        currentCharRead = false;
         if (currentChar == -1) {
             // nothing more to read
             return null;
@@ -147,6 +176,8 @@ public class DefaultScriptParser implements ScriptParser {
                 currentParsingState = initialParsingState;
 
                 if (statement != null) {
+                    // the first character of the next statement was already read as next char
+                    currentCharRead = true;
                     return statement;
                 }
             }
@@ -192,6 +223,40 @@ public class DefaultScriptParser implements ScriptParser {
     }
 
 
+    /**
+     * Creates the tokenizer that parses the statements instead of the parsing states. The tokenizer implements the
+     * parsing states of this class, it can therefore only be used if these states are not replaced in a subclass.
+     *
+     * @param scriptReader             The script stream, not null
+     * @param backSlashEscapingEnabled True if a backslash can be used for escaping characters
+     * @return The tokenizer, null if the parsing states should be used
+     */
+    protected BufferedScriptTokenizer createBufferedScriptTokenizer(Reader scriptReader, boolean backSlashEscapingEnabled) {
+        if (!hasParsingStates(NormalParsingState.class, StatementBuilder.class)) {
+            return null;
+        }
+        return new BufferedScriptTokenizer(scriptReader, backSlashEscapingEnabled, false);
+    }
+
+
+    /**
+     * Checks whether the parsing states and statement builder that are used, are of the given types and the standard
+     * comment and literal states.
+     *
+     * @param normalParsingStateClass The expected type of the normal state, not null
+     * @param statementBuilderClass   The expected type of the statement builder, not null
+     * @return True if the states are of the given types
+     */
+    protected boolean hasParsingStates(Class<? extends NormalParsingState> normalParsingStateClass, Class<? extends StatementBuilder> statementBuilderClass) {
+        return initialParsingState.getClass() == normalParsingStateClass &&
+                createStatementBuilder().getClass() == statementBuilderClass &&
+                createInLineCommentParsingState().getClass() == InLineCommentParsingState.class &&
+                createInBlockCommentParsingState().getClass() == InBlockCommentParsingState.class &&
+                createInSingleQuotesParsingState().getClass() == InSingleQuotesParsingState.class &&
+                createInDoubleQuotesParsingState().getClass() == InDoubleQuotesParsingState.class;
+    }
+
+
     /**
      * Factory method for the statement builder.
      *
@@ -16,10 +16,23 @@
 package org.unitils.dbmaintainer.script.impl;
 
 import static org.unitils.core.util.ConfigUtils.getInstanceOf;
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
 import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+import static org.unitils.util.PropertyUtils.getBoolean;
+import static org.unitils.util.PropertyUtils.getInt;
 
 import java.io.Reader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
 import org.unitils.dbmaintainer.script.ScriptContentHandle;
 import org.unitils.dbmaintainer.script.ScriptParser;
 import org.unitils.dbmaintainer.script.ScriptRunner;
@@ -27,12 +40,55 @@ import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 
 /**
  * Default implementation of a script runner.
+ * <p/>
+ * By default every statement of a script is executed and committed separately. If batching is enabled
+ * ({@link #PROPKEY_BATCH_ENABLED}), a script is executed on a single connection in a single transaction and
+ * consecutive insert, update, delete and merge statements are sent to the database in JDBC batches. The changes are
+ * committed when the script is finished and, if a commit interval is configured, after every interval of statements.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
  */
 public class DefaultScriptRunner extends BaseDatabaseAccessor implements ScriptRunner {
 
+    /* Property key that indicates whether the statements of a script should be executed in batches */
+    public static final String PROPKEY_BATCH_ENABLED = "org.unitils.dbmaintainer.script.ScriptRunner.batchEnabled";
+
+    /* Property key for the maximum nr of statements in a batch */
+    public static final String PROPKEY_BATCH_SIZE = "org.unitils.dbmaintainer.script.ScriptRunner.batchSize";
+
+    /* Property key for the nr of statements after which the changes of a batched script are committed */
+    public static final String PROPKEY_COMMIT_INTERVAL = "org.unitils.dbmaintainer.script.ScriptRunner.commitInterval";
+
+    /* The first words of the statements that can be batched */
+    protected static final String[] BATCHABLE_STATEMENT_STARTS = {"INSERT", "UPDATE", "DELETE", "MERGE"};
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultScriptRunner.class);
+
+    /* True if the statements of a script are executed in batches */
+    protected boolean batchEnabled;
+
+    /* The maximum nr of statements in a batch, 1 or less to execute every statement separately */
+    protected int batchSize;
+
+    /* The nr of statements after which the changes are committed, 0 or less to only commit at the end of the script */
+    protected int commitInterval;
+
+
+    /**
+     * Initializes the batch settings.
+     *
+     * @param configuration The config, not null
+     */
+    @Override
+    protected void doInit(Properties configuration) {
+        batchEnabled = getBoolean(PROPKEY_BATCH_ENABLED, false, configuration);
+        batchSize = getInt(PROPKEY_BATCH_SIZE, 100, configuration);
+        commitInterval = getInt(PROPKEY_COMMIT_INTERVAL, 0, configuration);
+    }
+
+
     /**
      * Executes the given script.
      * <p/>
@@ -52,6 +108,10 @@ public class DefaultScriptRunner extends BaseDatabaseAccessor implements ScriptR
             ScriptParser scriptParser = createScriptParser(dialect);
             scriptParser.init(configuration, scriptContentReader);
 
+            if (batchEnabled) {
+                executeBatched(scriptParser);
+                return;
+            }
             // parse and execute the statements
             String statement;
             while ((statement = scriptParser.getNextStatement()) != null) {
@@ -63,6 +123,219 @@ public class DefaultScriptRunner extends BaseDatabaseAccessor implements ScriptR
     }
 
 
+    /**
+     * Executes the statements of the given parser on a single connection in a single transaction. The changes are
+     * committed when all statements were executed, so once this method returns the script is completely applied.
+     * If a statement fails, the changes since the last commit are rolled back.
+     *
+     * @param scriptParser The parser for the script, not null
+     */
+    protected void executeBatched(ScriptParser scriptParser) {
+        if (!sqlHandler.isDoExecuteUpdates()) {
+            // skip updates, only parse the script
+            String sql;
+            while ((sql = scriptParser.getNextStatement()) != null) {
+                logger.debug(sql);
+            }
+            return;
+        }
+
+        Connection connection = null;
+        Statement statement = null;
+        Boolean autoCommit = null;
+        try {
+            connection = sqlHandler.getDataSource().getConnection();
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            statement = connection.createStatement();
+
+            executeBatched(scriptParser, connection, statement);
+            connection.commit();
+
+        } catch (RuntimeException e) {
+            rollbackQuietly(connection);
+            throw e;
+        } catch (Exception e) {
+            rollbackQuietly(connection);
+            throw new UnitilsException("Error while executing script.", e);
+        } finally {
+            restoreAutoCommitQuietly(connection, autoCommit);
+            closeQuietly(connection, statement, null);
+        }
+    }
+
+
+    /**
+     * Executes the statements of the given parser using the given statement. Consecutive statements that can be
+     * batched are added to a batch, other statements are executed immediately after executing the batch.
+     *
+     * @param scriptParser The parser for the script, not null
+     * @param connection   The connection, not null
+     * @param statement    The statement, not null
+     */
+    protected void executeBatched(ScriptParser scriptParser, Connection connection, Statement statement) throws SQLException {
+        List<String> batch = new ArrayList<String>();
+        int nrOfUncommittedStatements = 0;
+
+        String sql;
+        while ((sql = scriptParser.getNextStatement()) != null) {
+            logger.debug(sql);
+            if (batchSize > 1 && isBatchable(sql)) {
+                statement.addBatch(sql);
+                batch.add(sql);
+                if (batch.size() >= batchSize) {
+                    executeBatch(statement, batch);
+                }
+            } else {
+                executeBatch(statement, batch);
+                executeStatement(statement, sql);
+            }
+            if (commitInterval > 0 && ++nrOfUncommittedStatements >= commitInterval) {
+                executeBatch(statement, batch);
+                connection.commit();
+                nrOfUncommittedStatements = 0;
+            }
+        }
+        executeBatch(statement, batch);
+    }
+
+
+    /**
+     * Executes the statements in the batch of the given statement, if any.
+     *
+     * @param statement The statement, not null
+     * @param batch     The statements that were added to the batch, not null
+     */
+    protected void executeBatch(Statement statement, List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            statement.executeBatch();
+
+        } catch (BatchUpdateException e) {
+            String failedStatement = getFailedStatement(e.getUpdateCounts(), batch);
+            if (failedStatement == null) {
+                throw new UnitilsException("Error while performing database updates: " + batch, e);
+            }
+            throw new UnitilsException("Error while performing database update: " + failedStatement, e);
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while performing database updates: " + batch, e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+
+    /**
+     * Executes the given statement, that was not batched.
+     *
+     * @param statement The statement, not null
+     * @param sql       The sql to execute, not null
+     */
+    protected void executeStatement(Statement statement, String sql) {
+        try {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while performing database update: " + sql, e);
+        }
+    }
+
+
+    /**
+     * Determines which statement of a batch failed using the update counts of the batch update exception. Drivers
+     * either stop at the first failure, returning the counts of the preceding statements, or continue and mark the
+     * failed statements.
+     *
+     * @param updateCounts The update counts, null if unknown
+     * @param batch        The statements of the batch, not null
+     * @return The first failed statement, null if unknown
+     */
+    protected String getFailedStatement(int[] updateCounts, List<String> batch) {
+        if (updateCounts == null) {
+            return null;
+        }
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                return batch.get(i);
+            }
+        }
+        if (updateCounts.length < batch.size()) {
+            return batch.get(updateCounts.length);
+        }
+        return null;
+    }
+
+
+    /**
+     * Checks whether the given statement can be added to a batch: insert, update, delete and merge statements can be
+     * batched. Leading comments are skipped.
+     *
+     * @param sql The statement, not null
+     * @return True if the statement can be batched
+     */
+    protected boolean isBatchable(String sql) {
+        int index = 0;
+        int length = sql.length();
+        while (index < length) {
+            char c = sql.charAt(index);
+            if (Character.isWhitespace(c)) {
+                index++;
+            } else if (sql.startsWith("--", index)) {
+                int end = sql.indexOf('\n', index);
+                index = end == -1 ? length : end + 1;
+            } else if (sql.startsWith("/*", index)) {
+                int end = sql.indexOf("*/", index + 2);
+                index = end == -1 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        for (String statementStart : BATCHABLE_STATEMENT_STARTS) {
+            int end = index + statementStart.length();
+            if (sql.regionMatches(true, index, statementStart, 0, statementStart.length()) && (end == length || !Character.isLetterOrDigit(sql.charAt(end)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Rolls back the changes of the given connection, ignoring any errors.
+     *
+     * @param connection The connection, null if it was not retrieved
+     */
+    protected void rollbackQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (Throwable t) {
+            logger.warn("Unable to roll back the changes of the script.", t);
+        }
+    }
+
+
+    /**
+     * Sets the auto commit of the given connection back to the original value, ignoring any errors.
+     *
+     * @param connection The connection, null if it was not retrieved
+     * @param autoCommit The original auto commit value, null if it was not retrieved
+     */
+    protected void restoreAutoCommitQuietly(Connection connection, Boolean autoCommit) {
+        if (connection == null || autoCommit == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(autoCommit);
+        } catch (Throwable t) {
+            logger.warn("Unable to restore the auto commit setting of the connection.", t);
+        }
+    }
+
+
     /**
      * Creates a script parser.
      *
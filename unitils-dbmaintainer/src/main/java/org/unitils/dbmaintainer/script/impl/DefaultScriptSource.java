@@ -21,9 +21,14 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -42,6 +47,9 @@ import org.unitils.util.PropertyUtils;
  * files should be located in the directory configured by {@link #PROPKEY_SCRIPT_LOCATIONS}.
  * Valid script files start with a version number followed by an underscore, and end with the
  * extension configured by {@link #PROPKEY_SCRIPT_EXTENSIONS}.
+ * <p/> If a checksum index file is configured using {@link #PROPKEY_CHECKSUM_INDEX_FILE}, the checksums of the
+ * script files are kept in that file between runs. Only the checksums of new and changed files are calculated, using
+ * the nr of threads configured by {@link #PROPKEY_CHECKSUM_INDEX_NR_OF_THREADS}.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
@@ -74,8 +82,25 @@ public class DefaultScriptSource extends BaseConfigurable implements ScriptSourc
 
     public static final String PROPKEY_QUALIFIERS = "dbMaintainer.qualifiers";
 
+    /**
+     * Property key for the file in which the checksums of the script files are kept between runs, empty to not keep
+     * an index
+     */
+    public static final String PROPKEY_CHECKSUM_INDEX_FILE = "dbMaintainer.script.checksumIndex.fileName";
+
+    /**
+     * Property key for the nr of threads that calculate the checksums of new and changed script files
+     */
+    public static final String PROPKEY_CHECKSUM_INDEX_NR_OF_THREADS = "dbMaintainer.script.checksumIndex.nrOfThreads";
+
     protected List<Script> allUpdateScripts, allPostProcessingScripts;
 
+    /* The checksum index while the scripts are being loaded, null if no index is kept */
+    protected ScriptChecksumIndex scriptChecksumIndex;
+
+    /* The loaded scripts that are not in the checksum index yet, with their files */
+    protected Map<Script, File> scriptsToIndex = new IdentityHashMap<Script, File>();
+
 
     /**
      * Gets a list of all available update scripts. These scripts can be used to completely recreate the
@@ -255,16 +280,78 @@ public class DefaultScriptSource extends BaseConfigurable implements ScriptSourc
     protected List<Script> loadAllScripts(String dialect, String databaseName, boolean defaultDatabase) {
         List<String> scriptLocations = PropertyUtils.getStringList(PROPKEY_SCRIPT_LOCATIONS, configuration);
         List<Script> scripts = new ArrayList<Script>();
-        for (String scriptLocation : scriptLocations) {
-            if (!new File(scriptLocation).exists()) {
-                throw new UnitilsException("File location " + scriptLocation + " defined in property " + PROPKEY_SCRIPT_LOCATIONS + " doesn't exist");
+        scriptChecksumIndex = createScriptChecksumIndex();
+        try {
+            for (String scriptLocation : scriptLocations) {
+                if (!new File(scriptLocation).exists()) {
+                    throw new UnitilsException("File location " + scriptLocation + " defined in property " + PROPKEY_SCRIPT_LOCATIONS + " doesn't exist");
+                }
+                getScriptsAt(scripts, scriptLocation, "", databaseName, defaultDatabase);
             }
-            getScriptsAt(scripts, scriptLocation, "", databaseName, defaultDatabase);
+            indexScripts();
+        } finally {
+            scriptChecksumIndex = null;
+            scriptsToIndex.clear();
         }
         return scripts;
     }
 
 
+    /**
+     * Creates the checksum index, see {@link #PROPKEY_CHECKSUM_INDEX_FILE}.
+     *
+     * @return The index, null if no index is kept
+     */
+    protected ScriptChecksumIndex createScriptChecksumIndex() {
+        String indexFileName = PropertyUtils.getString(PROPKEY_CHECKSUM_INDEX_FILE, null, configuration);
+        if (indexFileName == null || indexFileName.trim().length() == 0) {
+            return null;
+        }
+        return new ScriptChecksumIndex(new File(indexFileName.trim()));
+    }
+
+
+    /**
+     * Calculates the checksums of the loaded scripts that were not in the checksum index in parallel and stores them
+     * in the index. If the checksum of a script cannot be calculated, it is left out of the index: the error will
+     * then occur when the checksum is actually needed.
+     */
+    protected void indexScripts() {
+        if (scriptChecksumIndex == null) {
+            return;
+        }
+        if (!scriptsToIndex.isEmpty()) {
+            List<Map.Entry<Script, File>> entries = new ArrayList<Map.Entry<Script, File>>(scriptsToIndex.entrySet());
+            List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+            for (final Map.Entry<Script, File> entry : entries) {
+                tasks.add(new Callable<String>() {
+                    public String call() {
+                        return entry.getKey().getCheckSum();
+                    }
+                });
+            }
+            int nrOfThreads = PropertyUtils.getInt(PROPKEY_CHECKSUM_INDEX_NR_OF_THREADS, 4, configuration);
+            ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(nrOfThreads, tasks.size())));
+            try {
+                List<Future<String>> futures = executorService.invokeAll(tasks);
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        scriptChecksumIndex.putCheckSum(entries.get(i).getValue(), futures.get(i).get());
+                    } catch (Exception e) {
+                        logger.debug("Unable to calculate checksum of script " + entries.get(i).getKey() + ". Script is not indexed.", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UnitilsException("Interrupted while calculating script checksums.", e);
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+        scriptChecksumIndex.save();
+    }
+
+
 
     /**
      * Adds all scripts available in the given directory or one of its subdirectories to the
@@ -383,13 +470,23 @@ public class DefaultScriptSource extends BaseConfigurable implements ScriptSourc
 
 
     /**
-     * Creates a script object for the given script file
+     * Creates a script object for the given script file. If a checksum index is kept, the checksum is taken from the
+     * index when the file did not change.
      *
      * @param scriptFile The script file, not null
      * @return The script, not null
      */
     protected Script createScript(File scriptFile, String relativePath) {
-        return new Script(relativePath, scriptFile.lastModified(), new ScriptContentHandle.UrlScriptContentHandle(FileUtils.getUrl(scriptFile)));
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(FileUtils.getUrl(scriptFile));
+        if (scriptChecksumIndex == null) {
+            return new Script(relativePath, scriptFile.lastModified(), scriptContentHandle);
+        }
+        String checkSum = scriptChecksumIndex.getCheckSum(scriptFile);
+        Script script = new Script(relativePath, scriptFile.lastModified(), checkSum, scriptContentHandle);
+        if (checkSum == null) {
+            scriptsToIndex.put(script, scriptFile);
+        }
+        return script;
     }
 
 
@@ -19,6 +19,8 @@ import org.unitils.dbmaintainer.script.StatementBuilder;
 import org.unitils.dbmaintainer.script.parsingstate.impl.NormalParsingState;
 import org.unitils.dbmaintainer.script.parsingstate.impl.OracleNormalParsingState;
 
+import java.io.Reader;
+
 /**
  * A parser that can handle Oracle specific things like PL/SQL and a forward slash (/) as separator.
  *
@@ -48,6 +50,22 @@ public class OracleScriptParser extends DefaultScriptParser {
     }
 
 
+    /**
+     * Overridden to create a tokenizer that applies the Oracle rules.
+     *
+     * @param scriptReader             The script stream, not null
+     * @param backSlashEscapingEnabled True if a backslash can be used for escaping characters
+     * @return The tokenizer, null if the parsing states should be used
+     */
+    @Override
+    protected BufferedScriptTokenizer createBufferedScriptTokenizer(Reader scriptReader, boolean backSlashEscapingEnabled) {
+        if (!hasParsingStates(OracleNormalParsingState.class, OracleStatementBuilder.class)) {
+            return null;
+        }
+        return new BufferedScriptTokenizer(scriptReader, backSlashEscapingEnabled, true);
+    }
+
+
     /**
      * A statement builder with special handling for Oracle
      */
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.script.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
+import org.unitils.util.FileUtils.ContentWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static org.apache.commons.lang.StringUtils.split;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+import static org.unitils.util.FileUtils.writeFile;
+
+/**
+ * Index of the checksums of script files that is kept on disk between runs. For each file the size, the last
+ * modification time, the checksum and the time at which the entry was made are stored. If the size and the
+ * modification time of a file did not change since the checksum was stored, the stored checksum is used and the file
+ * does not have to be read again.
+ * <p/>
+ * Modification times have a limited resolution, on some file systems only a few seconds. A file that is changed
+ * again shortly after its checksum was calculated can therefore keep the same modification time. As git does for its
+ * index, a stored checksum is only trusted if the file was modified clearly before the entry was made, i.e. at least
+ * {@link #TIMESTAMP_RESOLUTION} ms earlier. Otherwise the checksum is calculated again, and the new entry becomes
+ * trusted once that time has passed.
+ * <p/>
+ * The index is only a cache: if it cannot be read or written, a warning is logged and the checksums are calculated
+ * again. The same index file can be shared by several databases and processes: when the index is saved, the new
+ * checksums are merged with the entries that are stored in the file at that moment. Only the entries of files that
+ * no longer exist are removed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptChecksumIndex {
+
+    /* The coarsest resolution of the modification times of files in ms, FAT file systems use 2 seconds */
+    public static final long TIMESTAMP_RESOLUTION = 2000;
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ScriptChecksumIndex.class);
+
+    /* The file in which the index is stored */
+    protected File indexFile;
+
+    /* The entries that were read from the index file: file path -> size:last modified:checksum:indexed at */
+    protected Properties storedEntries = new Properties();
+
+    /* The entries that were stored since the index was read or saved */
+    protected Properties entries = new Properties();
+
+
+    /**
+     * Creates an index that is stored in the given file. The stored entries are read if the file exists.
+     *
+     * @param indexFile The file of the index, not null
+     */
+    public ScriptChecksumIndex(File indexFile) {
+        this.indexFile = indexFile;
+        load();
+    }
+
+
+    /**
+     * Gets the stored checksum of the given file.
+     *
+     * @param scriptFile The script file, not null
+     * @return The checksum, null if the file is not in the index, if it changed since its checksum was stored or if
+     *         it was modified too shortly before its checksum was stored
+     */
+    public synchronized String getCheckSum(File scriptFile) {
+        String key = getKey(scriptFile);
+        String entry = storedEntries.getProperty(key);
+        if (entry == null) {
+            return null;
+        }
+        String[] parts = split(entry, ':');
+        if (parts.length != 4 || !parts[0].equals(String.valueOf(scriptFile.length())) || !parts[1].equals(String.valueOf(scriptFile.lastModified()))) {
+            return null;
+        }
+        try {
+            if (isRacilyClean(scriptFile.lastModified(), Long.parseLong(parts[3]))) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return parts[2];
+    }
+
+
+    /**
+     * Checks whether the file could have been changed after the entry was made without changing its size and
+     * modification time, i.e. whether the file was modified less than {@link #TIMESTAMP_RESOLUTION} ms before the
+     * entry was made.
+     *
+     * @param lastModified The modification time of the file when the entry was made
+     * @param indexedAt    The time at which the entry was made
+     * @return True if the stored checksum cannot be trusted
+     */
+    protected boolean isRacilyClean(long lastModified, long indexedAt) {
+        return lastModified + TIMESTAMP_RESOLUTION > indexedAt;
+    }
+
+
+    /**
+     * Stores the checksum of the given file.
+     *
+     * @param scriptFile The script file, not null
+     * @param checkSum   The checksum of the file, not null
+     */
+    public synchronized void putCheckSum(File scriptFile, String checkSum) {
+        entries.setProperty(getKey(scriptFile), scriptFile.length() + ":" + scriptFile.lastModified() + ":" + checkSum + ":" + System.currentTimeMillis());
+    }
+
+
+    /**
+     * Writes the index to the index file, if it changed. The new entries are merged with the entries that are
+     * currently stored in the index file, so that the entries of other databases or processes are kept. Entries of
+     * files that no longer exist are removed. The index file is replaced using
+     * {@link org.unitils.util.FileUtils#writeFile}, so that other processes never read a half written index.
+     */
+    public synchronized void save() {
+        final Properties mergedEntries = new Properties();
+        mergedEntries.putAll(storedEntries);
+        mergedEntries.putAll(readIndexFile());
+        mergedEntries.putAll(entries);
+        boolean evicted = false;
+        for (Object key : mergedEntries.keySet().toArray()) {
+            if (!new File((String) key).exists()) {
+                mergedEntries.remove(key);
+                evicted = true;
+            }
+        }
+        if (entries.isEmpty() && !evicted) {
+            return;
+        }
+        try {
+            writeFile(indexFile, new ContentWriter() {
+                public void writeContent(File file) throws Exception {
+                    OutputStream outputStream = new FileOutputStream(file);
+                    try {
+                        mergedEntries.store(outputStream, "Unitils script checksum index: file path=size:last modified:checksum:indexed at");
+                    } finally {
+                        closeQuietly(outputStream);
+                    }
+                }
+            });
+            storedEntries = mergedEntries;
+            entries.clear();
+
+        } catch (UnitilsException e) {
+            logger.warn("Unable to store script checksum index " + indexFile + ".", e);
+        }
+    }
+
+
+    /**
+     * Reads the stored entries from the index file, if it exists.
+     */
+    protected void load() {
+        storedEntries = readIndexFile();
+    }
+
+
+    /**
+     * Reads the entries of the index file.
+     *
+     * @return The entries, empty if the file does not exist or cannot be read, not null
+     */
+    protected Properties readIndexFile() {
+        Properties result = new Properties();
+        if (!indexFile.exists()) {
+            return result;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(indexFile);
+            result.load(inputStream);
+
+        } catch (Exception e) {
+            logger.warn("Unable to read script checksum index " + indexFile + ". The checksums of all scripts will be calculated.", e);
+            result.clear();
+        } finally {
+            closeQuietly(inputStream);
+        }
+        return result;
+    }
+
+
+    /**
+     * @param scriptFile The script file, not null
+     * @return The key of the file in the index, not null
+     */
+    protected String getKey(File scriptFile) {
+        return scriptFile.getAbsolutePath();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.structure.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.SchemaMetadataSnapshot;
+import org.unitils.dbmaintainer.structure.DataSetStructureGenerator;
+import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
+import org.unitils.util.PropertyUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Base class for the data set structure generators.
+ * <p/>
+ * The column names of all tables of a schema are retrieved using a single query and are returned sorted, so that the
+ * generated files do not depend on the order in which the database returns them.
+ * <p/>
+ * If {@link #PROPKEY_SKIP_UNCHANGED_ENABLED} is true, a fingerprint of this structure is written in a comment at the
+ * start of every generated file. If the fingerprint did not change since the last generation, the files do not have
+ * to be generated again. No other files are written next to the generated files.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public abstract class BaseDataSetStructureGenerator extends BaseDatabaseAccessor implements DataSetStructureGenerator {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(BaseDataSetStructureGenerator.class);
+
+    /* Property key that indicates whether the generation is skipped when the database structure did not change */
+    public static final String PROPKEY_SKIP_UNCHANGED_ENABLED = "dataSetStructureGenerator.skipUnchanged.enabled";
+
+    /* The text that precedes the fingerprint in the comment at the start of the generated files */
+    protected static final String FINGERPRINT_COMMENT_PREFIX = " Unitils data set structure fingerprint: ";
+
+    /* True if the generation is skipped when the database structure did not change */
+    protected boolean skipUnchangedEnabled;
+
+
+    /**
+     * Initializes the generator.
+     *
+     * @param configuration The config, not null
+     */
+    @Override
+    protected void doInit(Properties configuration) {
+        skipUnchangedEnabled = PropertyUtils.getBoolean(PROPKEY_SKIP_UNCHANGED_ENABLED, false, configuration);
+    }
+
+
+    /**
+     * Gets the names of the columns of all tables in the schema of the given db support.
+     *
+     * @param dbSupport The db support, not null
+     * @return The sorted column names per sorted table name, not null
+     */
+    protected SortedMap<String, SortedSet<String>> getColumnNamesPerTable(DbSupport dbSupport) {
+        // the columns of all tables are retrieved in a single query
+        SchemaMetadataSnapshot snapshot = dbSupport.createSchemaMetadataSnapshot();
+
+        SortedMap<String, SortedSet<String>> result = new TreeMap<String, SortedSet<String>>();
+        for (String tableName : snapshot.getTableNames()) {
+            result.put(tableName, new TreeSet<String>(snapshot.getColumnNames(tableName)));
+        }
+        return result;
+    }
+
+
+    /**
+     * Calculates a fingerprint of the given settings and database structure.
+     *
+     * @param settings             The settings of the generator that determine the content of the files, not null
+     * @param columnNamesPerSchema The column names per table name per schema name, not null
+     * @return The fingerprint, not null
+     */
+    protected String getFingerprint(String settings, Map<String, SortedMap<String, SortedSet<String>>> columnNamesPerSchema) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update((getClass().getName() + "\n" + settings + "\n").getBytes("UTF-8"));
+            for (Map.Entry<String, SortedMap<String, SortedSet<String>>> schemaEntry : columnNamesPerSchema.entrySet()) {
+                digest.update((schemaEntry.getKey() + "\n").getBytes("UTF-8"));
+                for (Map.Entry<String, SortedSet<String>> tableEntry : schemaEntry.getValue().entrySet()) {
+                    digest.update(("\t" + tableEntry.getKey() + ":" + tableEntry.getValue() + "\n").getBytes("UTF-8"));
+                }
+            }
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+            }
+            return fingerprint.toString();
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to calculate fingerprint of the data set structure.", e);
+        }
+    }
+
+
+    /**
+     * Checks whether the generated files are up to date: skipping unchanged structures is enabled, all generated files
+     * exist and the fingerprint in each of them is equal to the given fingerprint.
+     *
+     * @param fingerprint    The fingerprint of the current database structure, not null
+     * @param generatedFiles The files that are generated, not null
+     * @return True if the files do not have to be generated again
+     */
+    protected boolean isUpToDate(String fingerprint, File... generatedFiles) {
+        if (!skipUnchangedEnabled) {
+            return false;
+        }
+        for (File generatedFile : generatedFiles) {
+            if (!generatedFile.exists() || !fingerprint.equals(readFingerprint(generatedFile))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Gets the text of the comment that contains the given fingerprint, see {@link #readFingerprint}.
+     *
+     * @param fingerprint The fingerprint of the database structure, not null
+     * @return The text of the comment, null if skipping unchanged structures is not enabled
+     */
+    protected String getFingerprintComment(String fingerprint) {
+        if (!skipUnchangedEnabled) {
+            return null;
+        }
+        return FINGERPRINT_COMMENT_PREFIX + fingerprint + " ";
+    }
+
+
+    /**
+     * Reads the fingerprint from the comment at the start of the given generated file. Only the first characters of
+     * the file are read.
+     *
+     * @param generatedFile The generated file, not null
+     * @return The fingerprint, null if the file does not contain a fingerprint or cannot be read
+     */
+    protected String readFingerprint(File generatedFile) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(generatedFile), "ISO-8859-1");
+            char[] buffer = new char[512];
+            int length = 0;
+            int count;
+            while (length < buffer.length && (count = reader.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+            }
+            String start = new String(buffer, 0, length);
+            int beginIndex = start.indexOf(FINGERPRINT_COMMENT_PREFIX);
+            int endIndex = start.indexOf("-->", beginIndex);
+            if (beginIndex == -1 || endIndex == -1) {
+                return null;
+            }
+            return start.substring(beginIndex + FINGERPRINT_COMMENT_PREFIX.length(), endIndex).trim();
+
+        } catch (Exception e) {
+            logger.warn("Unable to read data set structure fingerprint of " + generatedFile + ". Generating data set structure.", e);
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+}
@@ -21,10 +21,16 @@ import org.unitils.core.dbsupport.DbSupport;
 import org.unitils.dbmaintainer.structure.ConstraintsDisabler;
 import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
+
 /**
  * Default implementation of {@link ConstraintsDisabler}.
  * This will disable all foreign key, check and not-null constraints on the configured database schemas.
  * Primary key constraints will not be disabled.
+ * <p/>
+ * The constraints of a schema are retrieved by the db support using set based queries. The alter statements that
+ * disable them are executed on a single connection, in batches.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -58,7 +64,13 @@ public class DefaultConstraintsDisabler extends BaseDatabaseAccessor implements
      */
     protected void disableReferentialConstraints(DbSupport dbSupport) {
         try {
-            dbSupport.disableReferentialConstraints();
+            // the batch is executed when the session ends, so that errors are also logged
+            startSession(sqlHandler, true);
+            try {
+                dbSupport.disableReferentialConstraints();
+            } finally {
+                endSession(sqlHandler);
+            }
         } catch (Throwable t) {
             logger.error("Unable to remove referential constraints.", t);
         }
@@ -72,7 +84,12 @@ public class DefaultConstraintsDisabler extends BaseDatabaseAccessor implements
      */
     protected void disableValueConstraints(DbSupport dbSupport) {
         try {
-            dbSupport.disableValueConstraints();
+            startSession(sqlHandler, true);
+            try {
+                dbSupport.disableValueConstraints();
+            } finally {
+                endSession(sqlHandler);
+            }
         } catch (Throwable t) {
             logger.error("Unable to remove value constraints.", t);
         }
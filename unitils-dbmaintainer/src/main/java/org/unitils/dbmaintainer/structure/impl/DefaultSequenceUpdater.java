@@ -19,16 +19,32 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.unitils.core.UnitilsException;
 import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.SchemaMetadataSnapshot;
 import org.unitils.dbmaintainer.structure.SequenceUpdater;
 import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 import org.unitils.util.PropertyUtils;
 
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of {@link SequenceUpdater}. All sequences and identity columns that have a value lower than the value
  * defined by {@link #PROPKEY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE} are set to this value.
+ * <p/>
+ * The values of all sequences of a schema are retrieved at once and the sequences are incremented in batches, or in
+ * a single statement if the dialect supports it. If {@link #PROPKEY_NR_OF_THREADS} is larger than 1, the schemas are
+ * updated in parallel.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
@@ -38,12 +54,18 @@ public class DefaultSequenceUpdater extends BaseDatabaseAccessor implements Sequ
     /* Property key for the lowest acceptacle sequence value */
     public static final String PROPKEY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE = "sequenceUpdater.sequencevalue.lowestacceptable";
 
+    /* Property key for the nr of threads that update the schemas in parallel */
+    public static final String PROPKEY_NR_OF_THREADS = "sequenceUpdater.nrOfThreads";
+
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultSequenceUpdater.class);
 
     /* The lowest acceptable sequence value */
     protected long lowestAcceptableSequenceValue;
 
+    /* The nr of threads that update the schemas in parallel, 1 to update them one by one */
+    protected int nrOfThreads;
+
 
     /**
      * Initializes the lowest acceptable sequence value using the given configuration object
@@ -53,6 +75,7 @@ public class DefaultSequenceUpdater extends BaseDatabaseAccessor implements Sequ
     @Override
     protected void doInit(Properties configuration) {
         lowestAcceptableSequenceValue = PropertyUtils.getLong(PROPKEY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE, configuration);
+        nrOfThreads = PropertyUtils.getInt(PROPKEY_NR_OF_THREADS, 1, configuration);
     }
 
 
@@ -61,10 +84,71 @@ public class DefaultSequenceUpdater extends BaseDatabaseAccessor implements Sequ
      * easily.
      */
     public void updateSequences() {
-        for (DbSupport dbSupport : dbSupports) {
-            logger.info("Updating sequences and identity columns in database schema " + dbSupport.getSchemaName());
-            incrementSequencesWithLowValue(dbSupport);
-            incrementIdentityColumnsWithLowValue(dbSupport);
+        if (nrOfThreads > 1 && dbSupports.size() > 1) {
+            updateSequencesInParallel();
+            return;
+        }
+        // all statements are executed on the same connection, in batches
+        startSession(sqlHandler, true);
+        try {
+            for (DbSupport dbSupport : dbSupports) {
+                updateSequences(dbSupport);
+            }
+        } finally {
+            endSession(sqlHandler);
+        }
+    }
+
+
+    /**
+     * Updates the sequences and identity columns of the given database schema.
+     *
+     * @param dbSupport The database support, not null
+     */
+    protected void updateSequences(DbSupport dbSupport) {
+        logger.info("Updating sequences and identity columns in database schema " + dbSupport.getSchemaName());
+        incrementSequencesWithLowValue(dbSupport);
+        incrementIdentityColumnsWithLowValue(dbSupport);
+    }
+
+
+    /**
+     * Updates the sequences and identity columns of all schemas using a pool of {@link #nrOfThreads} threads, one
+     * task per schema. Every task runs in a session of its own, so that a thread executes all statements of a schema
+     * on the same connection, in batches, as {@link #updateSequences()} does when the schemas are updated one by one.
+     * No session of the calling thread is needed.
+     */
+    protected void updateSequencesInParallel() {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(nrOfThreads, dbSupports.size()));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final DbSupport dbSupport : dbSupports) {
+                tasks.add(new Callable<Void>() {
+
+                    public Void call() {
+                        startSession(sqlHandler, true);
+                        try {
+                            updateSequences(dbSupport);
+                        } finally {
+                            endSession(sqlHandler);
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnitilsException("Unable to update sequences.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnitilsException("Interrupted while updating sequences.", e);
+        } finally {
+            executorService.shutdown();
         }
     }
 
@@ -74,17 +158,19 @@ public class DefaultSequenceUpdater extends BaseDatabaseAccessor implements Sequ
      *
      * @param dbSupport The database support, not null
      */
-    private void incrementSequencesWithLowValue(DbSupport dbSupport) {
+    protected void incrementSequencesWithLowValue(DbSupport dbSupport) {
         if (!dbSupport.supportsSequences()) {
             return;
         }
-        Set<String> sequenceNames = dbSupport.getSequenceNames();
-        for (String sequenceName : sequenceNames) {
-            if (dbSupport.getSequenceValue(sequenceName) < lowestAcceptableSequenceValue) {
-                logger.debug("Incrementing value for sequence " + sequenceName + " in database schema " + dbSupport.getSchemaName());
-                dbSupport.incrementSequenceToValue(sequenceName, lowestAcceptableSequenceValue);
+        // retrieve the values of all sequences at once
+        List<String> sequenceNamesWithLowValue = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : dbSupport.getSequenceValues().entrySet()) {
+            if (entry.getValue() < lowestAcceptableSequenceValue) {
+                logger.debug("Incrementing value for sequence " + entry.getKey() + " in database schema " + dbSupport.getSchemaName());
+                sequenceNamesWithLowValue.add(entry.getKey());
             }
         }
+        dbSupport.incrementSequencesToValue(sequenceNamesWithLowValue, lowestAcceptableSequenceValue);
     }
 
 
@@ -93,23 +179,31 @@ public class DefaultSequenceUpdater extends BaseDatabaseAccessor implements Sequ
      *
      * @param dbSupport The database support, not null
      */
-    private void incrementIdentityColumnsWithLowValue(DbSupport dbSupport) {
+    protected void incrementIdentityColumnsWithLowValue(DbSupport dbSupport) {
         if (!dbSupport.supportsIdentityColumns()) {
             return;
         }
-        Set<String> tableNames = dbSupport.getTableNames();
-        for (String tableName : tableNames) {
-            Set<String> identityColumnNames = dbSupport.getIdentityColumnNames(tableName);
-            for (String identityColumnName : identityColumnNames) {
-                try {
-                    dbSupport.incrementIdentityColumnToValue(tableName, identityColumnName, lowestAcceptableSequenceValue);
-                    logger.debug("Incrementing value for identity column " + identityColumnName + " in database schema " + dbSupport.getSchemaName());
-
-                } catch (UnitilsException e) {
-                    // primary key is not an identity column
-                    // skip column
+        // retrieve the identity columns of all tables at once
+        SchemaMetadataSnapshot snapshot = dbSupport.createSchemaMetadataSnapshot();
+        Set<String> tableNames = snapshot.getTableNames();
+        // not batched: the identity columns can contain primary keys that are no identity columns, these fail
+        startSession(sqlHandler, false);
+        try {
+            for (String tableName : tableNames) {
+                Set<String> identityColumnNames = snapshot.getIdentityColumnNames(tableName);
+                for (String identityColumnName : identityColumnNames) {
+                    try {
+                        dbSupport.incrementIdentityColumnToValue(tableName, identityColumnName, lowestAcceptableSequenceValue);
+                        logger.debug("Incrementing value for identity column " + identityColumnName + " in database schema " + dbSupport.getSchemaName());
+
+                    } catch (UnitilsException e) {
+                        // primary key is not an identity column
+                        // skip column
+                    }
                 }
             }
+        } finally {
+            endSession(sqlHandler);
         }
     }
 
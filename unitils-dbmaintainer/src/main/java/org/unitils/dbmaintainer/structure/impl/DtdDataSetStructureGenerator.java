@@ -16,38 +16,34 @@
 package org.unitils.dbmaintainer.structure.impl;
 
 import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
-import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.write;
-
-import org.apache.commons.lang.StringUtils;
-import org.dbunit.database.DatabaseConnection;
-import org.dbunit.database.IDatabaseConnection;
-import org.dbunit.dataset.FilteredDataSet;
-import org.dbunit.dataset.IDataSet;
-import org.dbunit.dataset.filter.IncludeTableFilter;
-import org.dbunit.dataset.xml.FlatDtdWriter;
+
 import org.unitils.core.UnitilsException;
 import org.unitils.dbmaintainer.structure.DataSetStructureGenerator;
-import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
-import org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils;
 import org.unitils.util.PropertyUtils;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.io.StringWriter;
 import java.io.Writer;
-import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
 
 /**
  * Implementation of {@link DataSetStructureGenerator} for the DbUnit {@link FlatXmlDataSet} XML test data files format
  * <p/>
+ * The DTD is written directly to the file, using the column names of all tables that are retrieved in a single query.
+ * It is not generated again if the structure of the database schema did not change since the last generation.
+ * <p/>
  * todo test and fix for hsqldb (see sample project)
  *
  * @author Filip Neven
  * @author Tim Ducheyne
  */
-public class DtdDataSetStructureGenerator extends BaseDatabaseAccessor implements DataSetStructureGenerator {
+public class DtdDataSetStructureGenerator extends BaseDataSetStructureGenerator {
 
     /* Property key of the filename of the generated DTD  */
     public static final String PROPKEY_DTD_FILENAME = "dtdGenerator.dtd.filename";
@@ -63,6 +59,7 @@ public class DtdDataSetStructureGenerator extends BaseDatabaseAccessor implement
      */
     @Override
     protected void doInit(Properties configuration) {
+        super.doInit(configuration);
         dtdFileName = PropertyUtils.getString(PROPKEY_DTD_FILENAME, configuration);
     }
 
@@ -83,14 +80,22 @@ public class DtdDataSetStructureGenerator extends BaseDatabaseAccessor implement
             }
             parentDirectory.mkdirs();
 
-            // generate content as a string
-            String dtdContent = generateDtdContent();
-            // make all elements optional
-            dtdContent = StringUtils.replace(dtdContent, "#REQUIRED\n", "#IMPLIED\n");
+            SortedMap<String, SortedSet<String>> columnNames = getColumnNamesPerTable(defaultDbSupport);
+            Map<String, SortedMap<String, SortedSet<String>>> columnNamesPerSchema = new HashMap<String, SortedMap<String, SortedSet<String>>>();
+            columnNamesPerSchema.put(defaultDbSupport.getSchemaName(), columnNames);
+
+            String fingerprint = getFingerprint("", columnNamesPerSchema);
+            if (isUpToDate(fingerprint, dtdFile)) {
+                return;
+            }
 
-            // write the content to the file
-            writer = new FileWriter(dtdFile);
-            write(dtdContent, writer);
+            writer = new BufferedWriter(new FileWriter(dtdFile));
+            String fingerprintComment = getFingerprintComment(fingerprint);
+            if (fingerprintComment != null) {
+                writer.write("<!--" + fingerprintComment + "-->\n");
+            }
+            writeDtdContent(columnNames, writer);
+            writer.close();
 
         } catch (UnitilsException e) {
             throw e;
@@ -103,34 +108,30 @@ public class DtdDataSetStructureGenerator extends BaseDatabaseAccessor implement
 
 
     /**
-     * Generates the actual content of the DTD file as an in-memory string.
+     * Writes the content of the DTD file. The format is the same as the one of the DbUnit FlatDtdWriter using the
+     * choice content model, except that all columns are optional.
      *
-     * @return the DTD content, not null
+     * @param columnNames The column names per table name, not null
+     * @param writer      The writer for the DTD file, not null
      */
-    protected String generateDtdContent() {
-        Connection conn = null;
-        try {
-            conn = sqlHandler.getDataSource().getConnection();
-            IDatabaseConnection dbUnitDatabaseConnection = new DatabaseConnection(conn, defaultDbSupport.getSchemaName());
-
-            StringWriter stringWriter = new StringWriter();
-
-            FlatDtdWriter datasetWriter = new FlatDtdWriter(stringWriter);
-            datasetWriter.setContentModel(FlatDtdWriter.CHOICE);
-
-            // create a dataset for the database content
-            // filter out all system table names
-            Set<String> tableNames = defaultDbSupport.getTableNames();
-            IDataSet actualDataSet = dbUnitDatabaseConnection.createDataSet();
-            IDataSet filteredActualDataSet = new FilteredDataSet(new IncludeTableFilter(tableNames.toArray(new String[0])), actualDataSet);
-
-            datasetWriter.write(filteredActualDataSet);
-            return stringWriter.toString();
-
-        } catch (Exception e) {
-            throw new UnitilsException("Error generating content for DTD file.", e);
-        } finally {
-            DbUtils.closeQuietly(conn);
+    protected void writeDtdContent(SortedMap<String, SortedSet<String>> columnNames, Writer writer) throws Exception {
+        writer.write("<!ELEMENT dataset (\n    (");
+        for (Iterator<String> iterator = columnNames.keySet().iterator(); iterator.hasNext(); ) {
+            writer.write(iterator.next());
+            if (iterator.hasNext()) {
+                writer.write("|\n     ");
+            }
+        }
+        writer.write(")*)>\n\n");
+
+        for (Map.Entry<String, SortedSet<String>> entry : columnNames.entrySet()) {
+            String tableName = entry.getKey();
+            writer.write("<!ELEMENT " + tableName + " EMPTY>\n");
+            writer.write("<!ATTLIST " + tableName + "\n");
+            for (String columnName : entry.getValue()) {
+                writer.write("    " + columnName + " CDATA #IMPLIED\n");
+            }
+            writer.write(">\n\n");
         }
     }
 }
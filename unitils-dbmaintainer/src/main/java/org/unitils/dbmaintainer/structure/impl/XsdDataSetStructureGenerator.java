@@ -18,27 +18,36 @@ package org.unitils.dbmaintainer.structure.impl;
 import org.unitils.core.UnitilsException;
 import org.unitils.core.dbsupport.DbSupport;
 import org.unitils.dbmaintainer.structure.DataSetStructureGenerator;
-import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
 import org.unitils.util.PropertyUtils;
 
-import java.io.BufferedWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.Writer;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
 
 /**
  * Implementation of {@link DataSetStructureGenerator} that generates xml schema files for data sets.
  * <p/>
  * This will generate an xsd for each configured database schema. Each database schema will be described in an xsd named
  * 'schema_name'.xsd. A general dataset.xsd will also be generated. This xsd refers to the database schema specific xsds.
+ * <p/>
+ * The xsds are streamed to the files. They are not generated again if the structure of the database schemas did not
+ * change since the last generation.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
  */
-public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implements DataSetStructureGenerator {
+public class XsdDataSetStructureGenerator extends BaseDataSetStructureGenerator {
 
     /* Property key for the target directory for the generated xsd files */
     public static final String PROPKEY_XSD_DIR_NAME = "dataSetStructureGenerator.xsd.dirName";
@@ -46,6 +55,9 @@ public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implement
     /* Property key for the suffix to use when defining complex types for the table definitions */
     public static final String PROPKEY_XSD_COMPLEX_TYPE_SUFFIX = "dataSetStructureGenerator.xsd.complexTypeSuffix";
 
+    /* The namespace of xml schema */
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
     /* The target directory for the xsd files */
     private String xsdDirectoryName;
 
@@ -60,6 +72,7 @@ public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implement
      */
     @Override
     protected void doInit(Properties configuration) {
+        super.doInit(configuration);
         xsdDirectoryName = PropertyUtils.getString(PROPKEY_XSD_DIR_NAME, configuration);
         complexTypeSuffix = PropertyUtils.getString(PROPKEY_XSD_COMPLEX_TYPE_SUFFIX, configuration);
     }
@@ -72,9 +85,26 @@ public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implement
         File xsdDirectory = new File(xsdDirectoryName);
         xsdDirectory.mkdirs();
 
-        generateDataSetXsd(xsdDirectory);
+        Map<String, SortedMap<String, SortedSet<String>>> columnNamesPerSchema = new LinkedHashMap<String, SortedMap<String, SortedSet<String>>>();
+        columnNamesPerSchema.put(defaultDbSupport.getSchemaName(), getColumnNamesPerTable(defaultDbSupport));
+        List<File> xsdFiles = new ArrayList<File>();
+        xsdFiles.add(new File(xsdDirectory, "dataset.xsd"));
+        for (DbSupport dbSupport : dbSupports) {
+            String schemaName = dbSupport.getSchemaName();
+            if (!columnNamesPerSchema.containsKey(schemaName)) {
+                columnNamesPerSchema.put(schemaName, getColumnNamesPerTable(dbSupport));
+            }
+            xsdFiles.add(new File(xsdDirectory, schemaName + ".xsd"));
+        }
+
+        String fingerprint = getFingerprint(complexTypeSuffix, columnNamesPerSchema);
+        if (isUpToDate(fingerprint, xsdFiles.toArray(new File[xsdFiles.size()]))) {
+            return;
+        }
+
+        generateDataSetXsd(xsdDirectory, columnNamesPerSchema.get(defaultDbSupport.getSchemaName()), fingerprint);
         for (DbSupport dbSupport : dbSupports) {
-            generateDatabaseSchemaXsd(dbSupport, xsdDirectory);
+            generateDatabaseSchemaXsd(dbSupport, xsdDirectory, columnNamesPerSchema.get(dbSupport.getSchemaName()), fingerprint);
         }
     }
 
@@ -82,41 +112,66 @@ public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implement
     /**
      * Generates a general dataset xsd that will refer to database schema specific dataset XSDs.
      *
-     * @param xsdDirectory The target directory, not null
+     * @param xsdDirectory             The target directory, not null
+     * @param defaultSchemaColumnNames The column names per table name of the default schema, not null
+     * @param fingerprint              The fingerprint of the database structure, not null
      */
-    protected void generateDataSetXsd(File xsdDirectory) {
-        Writer writer = null;
+    protected void generateDataSetXsd(File xsdDirectory, SortedMap<String, SortedSet<String>> defaultSchemaColumnNames, String fingerprint) {
+        OutputStream outputStream = null;
         try {
-            writer = new BufferedWriter(new FileWriter(new File(xsdDirectory, "dataset.xsd")));
+            outputStream = new BufferedOutputStream(new FileOutputStream(new File(xsdDirectory, "dataset.xsd")));
+            XMLStreamWriter writer = createXMLStreamWriter(outputStream, fingerprint);
 
             String defaultSchemaName = defaultDbSupport.getSchemaName();
-            writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
-            writer.write("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\" xmlns:dflt=\"" + defaultSchemaName + "\">\n");
+            writer.writeStartElement("xsd", "schema", XSD_NAMESPACE);
+            writer.writeNamespace("xsd", XSD_NAMESPACE);
+            writer.writeAttribute("elementFormDefault", "qualified");
+            writer.writeNamespace("dflt", defaultSchemaName);
 
             for (DbSupport dbSupport : dbSupports) {
                 String schemaName = dbSupport.getSchemaName();
-                writer.write("\t<xsd:import namespace=\"" + schemaName + "\" schemaLocation=\"" + schemaName + ".xsd\" />\n");
+                writer.writeCharacters("\n\t");
+                writer.writeEmptyElement("xsd", "import", XSD_NAMESPACE);
+                writer.writeAttribute("namespace", schemaName);
+                writer.writeAttribute("schemaLocation", schemaName + ".xsd");
             }
 
-            writer.write("\t<xsd:element name=\"dataset\">\n");
-            writer.write("\t\t<xsd:complexType>\n");
-            writer.write("\t\t\t<xsd:choice minOccurs=\"0\" maxOccurs=\"unbounded\">\n");
-
-            Set<String> defaultSchemaTableNames = defaultDbSupport.getTableNames();
-            for (String tableName : defaultSchemaTableNames) {
-                writer.write("\t\t\t\t<xsd:element name=\"" + tableName + "\" type=\"dflt:" + tableName + complexTypeSuffix + "\" />\n");
+            writer.writeCharacters("\n\t");
+            writer.writeStartElement("xsd", "element", XSD_NAMESPACE);
+            writer.writeAttribute("name", "dataset");
+            writer.writeCharacters("\n\t\t");
+            writer.writeStartElement("xsd", "complexType", XSD_NAMESPACE);
+            writer.writeCharacters("\n\t\t\t");
+            writer.writeStartElement("xsd", "choice", XSD_NAMESPACE);
+            writer.writeAttribute("minOccurs", "0");
+            writer.writeAttribute("maxOccurs", "unbounded");
+
+            for (String tableName : defaultSchemaColumnNames.keySet()) {
+                writer.writeCharacters("\n\t\t\t\t");
+                writer.writeEmptyElement("xsd", "element", XSD_NAMESPACE);
+                writer.writeAttribute("name", tableName);
+                writer.writeAttribute("type", "dflt:" + tableName + complexTypeSuffix);
             }
-            writer.write("\t\t\t\t<xsd:any namespace=\"" + defaultSchemaName + "\" />\n");
-
-            writer.write("\t\t\t</xsd:choice>\n");
-            writer.write("\t\t</xsd:complexType>\n");
-            writer.write("\t</xsd:element>\n");
-            writer.write("</xsd:schema>\n");
+            writer.writeCharacters("\n\t\t\t\t");
+            writer.writeEmptyElement("xsd", "any", XSD_NAMESPACE);
+            writer.writeAttribute("namespace", defaultSchemaName);
+
+            writer.writeCharacters("\n\t\t\t");
+            writer.writeEndElement();
+            writer.writeCharacters("\n\t\t");
+            writer.writeEndElement();
+            writer.writeCharacters("\n\t");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.close();
 
         } catch (Exception e) {
             throw new UnitilsException("Error generating xsd file: " + xsdDirectory, e);
         } finally {
-            closeQuietly(writer);
+            closeQuietly(outputStream);
         }
     }
 
@@ -126,36 +181,74 @@ public class XsdDataSetStructureGenerator extends BaseDatabaseAccessor implement
      *
      * @param dbSupport    The db support, not null
      * @param xsdDirectory The target directory, not null
+     * @param columnNames  The column names per table name of the schema, not null
+     * @param fingerprint  The fingerprint of the database structure, not null
      */
-    protected void generateDatabaseSchemaXsd(DbSupport dbSupport, File xsdDirectory) {
-        Writer writer = null;
+    protected void generateDatabaseSchemaXsd(DbSupport dbSupport, File xsdDirectory, SortedMap<String, SortedSet<String>> columnNames, String fingerprint) {
+        OutputStream outputStream = null;
         try {
-            writer = new BufferedWriter(new FileWriter(new File(xsdDirectory, dbSupport.getSchemaName() + ".xsd")));
-
-            writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
-            writer.write("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\" xmlns=\"" + dbSupport.getSchemaName() + "\" targetNamespace=\"" + dbSupport.getSchemaName() + "\">\n");
-
-            Set<String> tableNames = dbSupport.getTableNames();
-            for (String tableName : tableNames) {
-                writer.write("\t<xsd:element name=\"" + tableName + "\" type=\"" + tableName + complexTypeSuffix + "\" />\n");
+            outputStream = new BufferedOutputStream(new FileOutputStream(new File(xsdDirectory, dbSupport.getSchemaName() + ".xsd")));
+            XMLStreamWriter writer = createXMLStreamWriter(outputStream, fingerprint);
+
+            writer.writeStartElement("xsd", "schema", XSD_NAMESPACE);
+            writer.writeNamespace("xsd", XSD_NAMESPACE);
+            writer.writeAttribute("elementFormDefault", "qualified");
+            writer.writeDefaultNamespace(dbSupport.getSchemaName());
+            writer.writeAttribute("targetNamespace", dbSupport.getSchemaName());
+
+            for (String tableName : columnNames.keySet()) {
+                writer.writeCharacters("\n\t");
+                writer.writeEmptyElement("xsd", "element", XSD_NAMESPACE);
+                writer.writeAttribute("name", tableName);
+                writer.writeAttribute("type", tableName + complexTypeSuffix);
             }
 
-            for (String tableName : tableNames) {
-                writer.write("\t<xsd:complexType name=\"" + tableName + complexTypeSuffix + "\">\n");
+            for (Map.Entry<String, SortedSet<String>> entry : columnNames.entrySet()) {
+                writer.writeCharacters("\n\t");
+                writer.writeStartElement("xsd", "complexType", XSD_NAMESPACE);
+                writer.writeAttribute("name", entry.getKey() + complexTypeSuffix);
 
-                Set<String> columnNames = dbSupport.getColumnNames(tableName);
-                for (String columnName : columnNames) {
-                    writer.write("\t\t<xsd:attribute name=\"" + columnName + "\" use=\"optional\" />\n");
+                for (String columnName : entry.getValue()) {
+                    writer.writeCharacters("\n\t\t");
+                    writer.writeEmptyElement("xsd", "attribute", XSD_NAMESPACE);
+                    writer.writeAttribute("name", columnName);
+                    writer.writeAttribute("use", "optional");
                 }
-                writer.write("\t</xsd:complexType>\n");
+                writer.writeCharacters("\n\t");
+                writer.writeEndElement();
             }
-            writer.write("</xsd:schema>\n");
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.close();
 
         } catch (Exception e) {
             throw new UnitilsException("Error generating xsd file: " + xsdDirectory, e);
         } finally {
-            closeQuietly(writer);
+            closeQuietly(outputStream);
+        }
+    }
+
+
+    /**
+     * Creates a writer that streams the xml to the given output stream and writes the xml declaration, followed by
+     * the comment containing the fingerprint if skipping unchanged structures is enabled.
+     *
+     * @param outputStream The stream to write to, not null
+     * @param fingerprint  The fingerprint of the database structure, not null
+     * @return The writer, not null
+     */
+    protected XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String fingerprint) throws Exception {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "ISO-8859-1");
+        writer.writeStartDocument("ISO-8859-1", "1.0");
+        writer.writeCharacters("\n");
+        String fingerprintComment = getFingerprintComment(fingerprint);
+        if (fingerprintComment != null) {
+            writer.writeComment(fingerprintComment);
+            writer.writeCharacters("\n");
         }
+        return writer;
     }
 
-}
+}
\ No newline at end of file
@@ -23,8 +23,15 @@ import org.unitils.dbmaintainer.script.Script;
 import org.unitils.dbmaintainer.util.BaseDatabaseAccessor;
 import org.unitils.dbmaintainer.version.ExecutedScriptInfoSource;
 import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+import org.unitils.util.FileUtils.ContentWriter;
 import org.unitils.util.PropertyUtils;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -33,16 +40,28 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
+import static org.apache.commons.lang.StringUtils.split;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+import static org.unitils.util.FileUtils.writeFile;
+
 /**
  * Implementation of <code>VersionSource</code> that stores the version in the database. The version is stored in the
  * table whose name is defined by the property {@link #PROPERTY_EXECUTED_SCRIPTS_TABLE_NAME}. The version index column name is
  * defined by {@link #PROPERTY_FILE_NAME_COLUMN_NAME}, the version timestamp colmumn name is defined by
  * {@link #PROPERTY_SCRIPT_VERSION_COLUMN_NAME}. The last updated succeeded column name is defined by
  * {@link #PROPERTY_EXECUTED_AT_COLUMN_NAME}.
+ * <p/>
+ * If {@link #PROPERTY_CACHE_ENABLED} is true, the executed scripts are cached in memory and, if
+ * {@link #PROPERTY_CACHE_DIRECTORY} is set, on disk, so that they are also available to other JVMs. The cache is
+ * validated with a single aggregate query on the executed scripts table (the fingerprint). The executed scripts are
+ * only read from the table if the fingerprint changed. The fingerprint query also serves as a check that the table
+ * is valid, so that the database metadata does not have to be queried.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
@@ -82,6 +101,15 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
 
     public static final String PROPERTY_TIMESTAMP_FORMAT = "dbMaintainer.timestampFormat";
 
+    /* The key of the property that specifies whether the executed scripts are cached between updates */
+    public static final String PROPERTY_CACHE_ENABLED = "dbMaintainer.executedScriptsCache.enabled";
+
+    /* The key of the property that specifies the directory in which the executed scripts are cached between JVMs */
+    public static final String PROPERTY_CACHE_DIRECTORY = "dbMaintainer.executedScriptsCache.directory";
+
+    /* The executed scripts that were read in this JVM, per database and table */
+    private static Map<String, CachedExecutedScripts> executedScriptsCache = new HashMap<String, CachedExecutedScripts>();
+
     protected Set<ExecutedScript> executedScripts;
 
     /**
@@ -133,6 +161,26 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
      */
     protected DateFormat timestampFormat;
 
+    /**
+     * True if the executed scripts are cached between updates
+     */
+    protected boolean cacheEnabled;
+
+    /**
+     * The directory in which the executed scripts are cached between JVMs, null to only cache in memory
+     */
+    protected File cacheDirectory;
+
+    /**
+     * The key of the executed scripts table in the cache (database url, user and table name), null if not yet known
+     */
+    protected String cacheKey;
+
+    /**
+     * The last fingerprint of the executed scripts table, null if not yet known
+     */
+    protected String fingerprint;
+
 
     /**
      * Initializes the name of the version table and its columns using the given configuration.
@@ -156,6 +204,10 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
 
         this.autoCreateExecutedScriptsTable = PropertyUtils.getBoolean(PROPERTY_AUTO_CREATE_EXECUTED_SCRIPTS_TABLE, configuration);
         this.timestampFormat = new SimpleDateFormat(PropertyUtils.getString(PROPERTY_TIMESTAMP_FORMAT, configuration));
+
+        this.cacheEnabled = PropertyUtils.getBoolean(PROPERTY_CACHE_ENABLED, false, configuration);
+        String cacheDirectoryName = PropertyUtils.getString(PROPERTY_CACHE_DIRECTORY, null, configuration);
+        this.cacheDirectory = cacheDirectoryName == null ? null : new File(cacheDirectoryName);
     }
 
 
@@ -198,41 +250,271 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
      * @return All scripts that were registered as executed on the database
      */
     protected Set<ExecutedScript> doGetExecutedScripts() {
+        if (executedScripts != null) {
+            return executedScripts;
+        }
+        if (!cacheEnabled) {
+            executedScripts = readExecutedScripts();
+            return executedScripts;
+        }
+        if (fingerprint == null) {
+            fingerprint = getFingerprint();
+        }
+        executedScripts = getCachedExecutedScripts(fingerprint);
         if (executedScripts == null) {
-            Connection conn = null;
-            Statement st = null;
-            ResultSet rs = null;
-            try {
-                conn = sqlHandler.getDataSource().getConnection();
-                st = conn.createStatement();
-                rs = st.executeQuery("select " + fileNameColumnName + ", " + versionColumnName + ", " + fileLastModifiedAtColumnName + ", " +
-                        checksumColumnName + ", " + executedAtColumnName + ", " + succeededColumnName +
-                        " from " + defaultDbSupport.qualified(executedScriptsTableName));
-                executedScripts = new HashSet<ExecutedScript>();
-                while (rs.next()) {
-                    String fileName = rs.getString(fileNameColumnName);
-                    String checkSum = rs.getString(checksumColumnName);
-                    Long fileLastModifiedAt = rs.getLong(fileLastModifiedAtColumnName);
-                    Date executedAt = null;
+            executedScripts = readExecutedScripts();
+            storeCachedExecutedScripts(fingerprint, executedScripts);
+        }
+        return executedScripts;
+    }
+
+
+    /**
+     * Reads all executed scripts from the executed scripts table.
+     * Precondition: The table dbmaintain_scripts must exist
+     *
+     * @return The executed scripts, not null
+     */
+    protected Set<ExecutedScript> readExecutedScripts() {
+        Connection conn = null;
+        Statement st = null;
+        ResultSet rs = null;
+        try {
+            conn = sqlHandler.getDataSource().getConnection();
+            st = conn.createStatement();
+            rs = st.executeQuery("select " + fileNameColumnName + ", " + versionColumnName + ", " + fileLastModifiedAtColumnName + ", " +
+                    checksumColumnName + ", " + executedAtColumnName + ", " + succeededColumnName +
+                    " from " + defaultDbSupport.qualified(executedScriptsTableName));
+            Set<ExecutedScript> result = new HashSet<ExecutedScript>();
+            // scripts that were executed in the same second share their timestamp, only parse it once
+            Map<String, Date> parsedTimestamps = new HashMap<String, Date>();
+            while (rs.next()) {
+                String fileName = rs.getString(fileNameColumnName);
+                String checkSum = rs.getString(checksumColumnName);
+                Long fileLastModifiedAt = rs.getLong(fileLastModifiedAtColumnName);
+                String timestamp = rs.getString(executedAtColumnName);
+                Date executedAt = parsedTimestamps.get(timestamp);
+                if (executedAt == null) {
                     try {
-                        executedAt = timestampFormat.parse(rs.getString(executedAtColumnName));
+                        executedAt = timestampFormat.parse(timestamp);
                     } catch (ParseException e) {
-                        throw new UnitilsException("Error when parsing date " + executedAt + " using format "
+                        throw new UnitilsException("Error when parsing date " + timestamp + " using format "
                                 + timestampFormat, e);
                     }
-                    Boolean succeeded = rs.getInt(succeededColumnName) == 1 ? Boolean.TRUE : Boolean.FALSE;
-                    ExecutedScript executedScript = new ExecutedScript(new Script(fileName, fileLastModifiedAt, checkSum), executedAt, succeeded);
-                    executedScripts.add(executedScript);
+                    parsedTimestamps.put(timestamp, executedAt);
                 }
+                Boolean succeeded = rs.getInt(succeededColumnName) == 1 ? Boolean.TRUE : Boolean.FALSE;
+                ExecutedScript executedScript = new ExecutedScript(new Script(fileName, fileLastModifiedAt, checkSum), executedAt, succeeded);
+                result.add(executedScript);
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw new UnitilsException(
+                    "Error while retrieving database version", e);
+        } finally {
+            closeQuietly(conn, st, rs);
+        }
+    }
 
-            } catch (SQLException e) {
-                throw new UnitilsException(
-                        "Error while retrieving database version", e);
-            } finally {
-                closeQuietly(conn, st, rs);
+
+    /**
+     * Gets the fingerprint of the executed scripts table: the nr of rows, the first and last execution timestamp, the
+     * nr of succeeded scripts, the sum of the file modification timestamps and the highest file name, version and
+     * checksum. Every registration or update of a script changes the fingerprint. All columns of the table are used in the query, so if the query succeeds, the table is
+     * valid. The cache key is determined on the same connection.
+     * Precondition: The table dbmaintain_scripts must exist
+     *
+     * @return The fingerprint, not null
+     */
+    protected String getFingerprint() {
+        Connection conn = null;
+        Statement st = null;
+        ResultSet rs = null;
+        try {
+            conn = sqlHandler.getDataSource().getConnection();
+            if (cacheKey == null) {
+                cacheKey = conn.getMetaData().getURL() + "|" + conn.getMetaData().getUserName() + "|" + defaultDbSupport.qualified(executedScriptsTableName);
             }
+            st = conn.createStatement();
+            rs = st.executeQuery("select count(*), min(" + executedAtColumnName + "), max(" + executedAtColumnName + "), sum(" +
+                    succeededColumnName + "), sum(" + fileLastModifiedAtColumnName + "), max(" + fileNameColumnName + "), max(" +
+                    versionColumnName + "), max(" + checksumColumnName + ") from " + defaultDbSupport.qualified(executedScriptsTableName));
+            rs.next();
+            return rs.getLong(1) + "|" + rs.getString(2) + "|" + rs.getString(3) + "|" + rs.getLong(4) + "|" + rs.getLong(5) + "|" +
+                    rs.getString(6) + "|" + rs.getString(7) + "|" + rs.getString(8);
+
+        } catch (SQLException e) {
+            throw new UnitilsException("Error while retrieving fingerprint of executed scripts table", e);
+        } finally {
+            closeQuietly(conn, st, rs);
+        }
+    }
+
+
+    /**
+     * Gets the cached executed scripts, first from the cache in memory, then from the cache on disk.
+     *
+     * @param fingerprint The current fingerprint of the executed scripts table, not null
+     * @return A copy of the cached executed scripts, null if not cached or if the fingerprint changed
+     */
+    protected Set<ExecutedScript> getCachedExecutedScripts(String fingerprint) {
+        CachedExecutedScripts cachedExecutedScripts;
+        synchronized (executedScriptsCache) {
+            cachedExecutedScripts = executedScriptsCache.get(cacheKey);
+        }
+        if (cachedExecutedScripts == null) {
+            cachedExecutedScripts = readCacheFile();
+        }
+        if (cachedExecutedScripts == null || !fingerprint.equals(cachedExecutedScripts.fingerprint)) {
+            return null;
+        }
+        synchronized (executedScriptsCache) {
+            executedScriptsCache.put(cacheKey, cachedExecutedScripts);
+        }
+        return copy(cachedExecutedScripts.executedScripts);
+    }
+
+
+    /**
+     * Stores the given executed scripts in the cache in memory and on disk.
+     *
+     * @param fingerprint     The fingerprint of the executed scripts table, not null
+     * @param executedScripts The executed scripts, not null
+     */
+    protected void storeCachedExecutedScripts(String fingerprint, Set<ExecutedScript> executedScripts) {
+        CachedExecutedScripts cachedExecutedScripts = new CachedExecutedScripts(fingerprint, copy(executedScripts));
+        synchronized (executedScriptsCache) {
+            executedScriptsCache.put(cacheKey, cachedExecutedScripts);
+        }
+        writeCacheFile(cachedExecutedScripts);
+    }
+
+
+    /**
+     * Removes the executed scripts from the cache. Invoked when the executed scripts table is changed.
+     */
+    protected void invalidateCache() {
+        fingerprint = null;
+        if (!cacheEnabled || cacheKey == null) {
+            return;
+        }
+        synchronized (executedScriptsCache) {
+            executedScriptsCache.remove(cacheKey);
+        }
+        File cacheFile = getCacheFile();
+        if (cacheFile != null && cacheFile.exists() && !cacheFile.delete()) {
+            logger.warn("Unable to delete executed scripts cache " + cacheFile + ".");
         }
-        return executedScripts;
+    }
+
+
+    /**
+     * Reads the executed scripts from the cache file. The file contains the fingerprint and for each script an entry
+     * file name=last modified:checksum:executed at:succeeded.
+     *
+     * @return The cached executed scripts, null if there is no cache file or if it cannot be read
+     */
+    protected CachedExecutedScripts readCacheFile() {
+        File cacheFile = getCacheFile();
+        if (cacheFile == null || !cacheFile.exists()) {
+            return null;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(cacheFile);
+            Properties properties = new Properties();
+            properties.load(inputStream);
+
+            Set<ExecutedScript> result = new HashSet<ExecutedScript>();
+            for (String name : properties.stringPropertyNames()) {
+                if (!name.startsWith("script.")) {
+                    continue;
+                }
+                String[] parts = split(properties.getProperty(name), ':');
+                Script script = new Script(name.substring(7), Long.valueOf(parts[0]), parts[1]);
+                result.add(new ExecutedScript(script, new Date(Long.parseLong(parts[2])), Boolean.valueOf(parts[3])));
+            }
+            return new CachedExecutedScripts(properties.getProperty("fingerprint"), result);
+
+        } catch (Exception e) {
+            logger.warn("Unable to read executed scripts cache " + cacheFile + ". The executed scripts will be read from the database.", e);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+
+    /**
+     * Writes the executed scripts to the cache file, see {@link #readCacheFile}. The cache file is written using
+     * {@link org.unitils.util.FileUtils#writeFile}, so that other processes never read a half written cache.
+     *
+     * @param cachedExecutedScripts The executed scripts, not null
+     */
+    protected void writeCacheFile(CachedExecutedScripts cachedExecutedScripts) {
+        File cacheFile = getCacheFile();
+        if (cacheFile == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        properties.setProperty("fingerprint", cachedExecutedScripts.fingerprint);
+        for (ExecutedScript executedScript : cachedExecutedScripts.executedScripts) {
+            Script script = executedScript.getScript();
+            properties.setProperty("script." + script.getFileName(), script.getFileLastModifiedAt() + ":" + script.getCheckSum() + ":" +
+                    executedScript.getExecutedAt().getTime() + ":" + executedScript.isSucceeded());
+        }
+        try {
+            writeFile(cacheFile, new ContentWriter() {
+                public void writeContent(File file) throws Exception {
+                    OutputStream outputStream = new FileOutputStream(file);
+                    try {
+                        properties.store(outputStream, "Unitils executed scripts cache for " + cacheKey);
+                    } finally {
+                        closeQuietly(outputStream);
+                    }
+                }
+            });
+        } catch (UnitilsException e) {
+            logger.warn("Unable to store executed scripts cache " + cacheFile + ".", e);
+        }
+    }
+
+
+    /**
+     * @return The cache file for the executed scripts table, named after a hash of the cache key, null if the
+     *         executed scripts are not cached on disk
+     */
+    protected File getCacheFile() {
+        if (cacheDirectory == null || cacheKey == null) {
+            return null;
+        }
+        try {
+            StringBuilder hash = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(cacheKey.getBytes("UTF-8"))) {
+                hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return new File(cacheDirectory, "executed-scripts-" + hash + ".properties");
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to determine executed scripts cache file.", e);
+        }
+    }
+
+
+    /**
+     * Copies the given executed scripts, so that changes to the executed scripts of one instance do not affect the
+     * cache.
+     *
+     * @param executedScripts The executed scripts, not null
+     * @return The copy, not null
+     */
+    protected Set<ExecutedScript> copy(Set<ExecutedScript> executedScripts) {
+        Set<ExecutedScript> result = new HashSet<ExecutedScript>();
+        for (ExecutedScript executedScript : executedScripts) {
+            result.add(new ExecutedScript(executedScript.getScript(), executedScript.getExecutedAt(), executedScript.isSucceeded()));
+        }
+        return result;
     }
 
 
@@ -297,6 +579,7 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
      */
     protected void doSaveExecutedScript(ExecutedScript executedScript) {
         executedScripts.add(executedScript);
+        invalidateCache();
 
         String executedAt = timestampFormat.format(executedScript.getExecutedAt());
         String insertSql = "insert into " + defaultDbSupport.qualified(executedScriptsTableName) +
@@ -316,6 +599,7 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
      */
     protected void doUpdateExecutedScript(ExecutedScript executedScript) {
         executedScripts.add(executedScript);
+        invalidateCache();
 
         String executedAt = timestampFormat.format(executedScript.getExecutedAt());
         String updateSql = "update " + defaultDbSupport.qualified(executedScriptsTableName) +
@@ -349,6 +633,7 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
 
     protected void doClearAllExecutedScripts() {
         executedScripts = new HashSet<ExecutedScript>();
+        invalidateCache();
 
         String deleteSql = "delete from " + defaultDbSupport.qualified(executedScriptsTableName);
         sqlHandler.executeUpdateAndCommit(deleteSql);
@@ -390,6 +675,15 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
      * @return False if the version table was not ok and therefore re-created
      */
     protected boolean isExecutedScriptsTableValid() {
+        // the fingerprint query uses all columns: if it succeeds, the table is valid
+        if (cacheEnabled) {
+            try {
+                fingerprint = getFingerprint();
+                return true;
+            } catch (UnitilsException e) {
+                fingerprint = null;
+            }
+        }
         // Check existence of version table
         Set<String> tableNames = defaultDbSupport.getTableNames();
         if (tableNames.contains(executedScriptsTableName)) {
@@ -419,6 +713,7 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
 
         // Create db version table
         sqlHandler.executeUpdateAndCommit(getCreateExecutedScriptsTableStatement());
+        invalidateCache();
     }
 
 
@@ -438,4 +733,21 @@ public class DefaultExecutedScriptInfoSource extends BaseDatabaseAccessor implem
     }
 
 
+    /**
+     * The executed scripts of a table together with the fingerprint of the table at the time they were read.
+     */
+    protected static class CachedExecutedScripts {
+
+        /* The fingerprint of the executed scripts table */
+        protected String fingerprint;
+
+        /* The executed scripts */
+        protected Set<ExecutedScript> executedScripts;
+
+
+        public CachedExecutedScripts(String fingerprint, Set<ExecutedScript> executedScripts) {
+            this.fingerprint = fingerprint;
+            this.executedScripts = executedScripts;
+        }
+    }
 }
@@ -18,8 +18,9 @@ package org.unitils.dbunit;
 import static org.dbunit.database.DatabaseConfig.FEATURE_BATCHED_STATEMENTS;
 import static org.dbunit.database.DatabaseConfig.PROPERTY_DATATYPE_FACTORY;
 import static org.dbunit.database.DatabaseConfig.PROPERTY_ESCAPE_PATTERN;
-import static org.unitils.core.dbsupport.DbSupportFactory.getDbSupport;
+import static org.unitils.core.dbsupport.DbSupportFactory.createDbSupport;
 import static org.unitils.core.util.ConfigUtils.getInstanceOf;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
 import static org.unitils.util.AnnotationUtils.getMethodOrClassLevelAnnotation;
 import static org.unitils.util.AnnotationUtils.getMethodOrClassLevelAnnotationProperty;
 import static org.unitils.util.ModuleUtils.getAnnotationPropertyDefault;
@@ -30,8 +31,11 @@ import static org.unitils.util.ReflectionUtils.createInstanceOfType;
 import static org.unitils.util.ReflectionUtils.getClassWithName;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -61,17 +65,23 @@ import org.unitils.database.DataSourceWrapper;
 import org.unitils.database.DatabaseModule;
 import org.unitils.database.config.DatabaseConfiguration;
 import org.unitils.dbmaintainer.locator.ClassPathDataLocator;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
 import org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie;
 import org.unitils.dbunit.annotation.DataSet;
 import org.unitils.dbunit.annotation.DataSets;
 import org.unitils.dbunit.annotation.ExpectedDataSet;
 import org.unitils.dbunit.annotation.ExpectedDataSets;
+import org.unitils.dbunit.dataset.ActualSchemaFactory;
+import org.unitils.dbunit.dataset.Schema;
+import org.unitils.dbunit.dataset.SchemaFactory;
 import org.unitils.dbunit.datasetfactory.DataSetFactory;
 import org.unitils.dbunit.datasetfactory.DataSetResolver;
+import org.unitils.dbunit.datasetfactory.InputStreamDataSetFactory;
 import org.unitils.dbunit.datasetloadstrategy.DataSetLoadStrategy;
 import org.unitils.dbunit.datasetloadstrategy.impl.CleanInsertLoadStrategy;
 import org.unitils.dbunit.datasetloadstrategy.impl.InsertLoadStrategy;
 import org.unitils.dbunit.util.DataSetAssert;
+import org.unitils.dbunit.util.DataSetCache;
 import org.unitils.dbunit.util.DataSetFileNamesHandler;
 import org.unitils.dbunit.util.DbUnitDatabaseConnection;
 import org.unitils.dbunit.util.FileHandler;
@@ -99,6 +109,12 @@ public class DbUnitModule implements Module {
 
     public static final String PROPERTY_METAHANDLER = "org.dbunit.database.DatabaseConfig.metadatahandler";
 
+    /* Property key of the maximum number of parsed data sets that are kept in memory */
+    public static final String PROPKEY_DATASET_CACHE_SIZE = "dbUnit.dataSetCache.size";
+
+    /* Property key that indicates whether only the expected tables and columns are queried for the actual data set */
+    public static final String PROPKEY_TARGETED_ACTUAL_DATASET_ENABLED = "dbUnit.expectedDataSet.targetedQuery.enabled";
+
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DbUnitModule.class);
 
@@ -129,6 +145,16 @@ public class DbUnitModule implements Module {
 
     protected String scriptExtension = "xml";
 
+    /**
+     * The parsed data sets, shared by all tests
+     */
+    protected DataSetCache dataSetCache;
+
+    /**
+     * True if only the tables and columns of the expected data set are queried for the actual data set
+     */
+    protected boolean targetedActualDataSetEnabled;
+
     /**
      * Initializes the DbUnitModule using the given Configuration
      *
@@ -139,6 +165,8 @@ public class DbUnitModule implements Module {
     public void init(Properties configuration) {
         this.configuration = configuration;
         defaultAnnotationPropertyValues = getAnnotationPropertyDefaults(DbUnitModule.class, configuration, DataSet.class, ExpectedDataSet.class);
+        dataSetCache = new DataSetCache(PropertyUtils.getInt(PROPKEY_DATASET_CACHE_SIZE, 20, configuration));
+        targetedActualDataSetEnabled = PropertyUtils.getBoolean(PROPKEY_TARGETED_ACTUAL_DATASET_ENABLED, true, configuration);
     }
 
 
@@ -406,9 +434,14 @@ public class DbUnitModule implements Module {
             DataSetAssert dataSetAssert = new DataSetAssert();
             for (String schemaName : multiSchemaExpectedDataSet.getSchemaNames()) {
                 IDataSet expectedDataSet = multiSchemaExpectedDataSet.getDataSetForSchema(schemaName);
-                IDataSet actualDataSet = getActualDataSet(schemaName);
-
-                dataSetAssert.assertEqualDbUnitDataSets(schemaName, expectedDataSet, actualDataSet);
+                if (targetedActualDataSetEnabled) {
+                    Schema expectedSchema = new SchemaFactory().createSchemaForDbUnitDataSet(schemaName, expectedDataSet);
+                    Schema actualSchema = getActualSchema(schemaName, expectedSchema);
+                    dataSetAssert.assertEqualSchemas(expectedSchema, actualSchema);
+                } else {
+                    IDataSet actualDataSet = getActualDataSet(schemaName);
+                    dataSetAssert.assertEqualDbUnitDataSets(schemaName, expectedDataSet, actualDataSet);
+                }
             }
         } finally {
             closeJdbcConnection();
@@ -418,6 +451,18 @@ public class DbUnitModule implements Module {
 
 
 
+    /**
+     * Gets the actual database content for the tables and columns of the given expected schema.
+     *
+     * @param schemaName     The schema to get the content for, not null
+     * @param expectedSchema The expected schema, not null
+     * @return The actual schema, not null
+     */
+    protected Schema getActualSchema(String schemaName, Schema expectedSchema) {
+        return new ActualSchemaFactory().createActualSchema(expectedSchema, getDbUnitDatabaseConnection(schemaName));
+    }
+
+
     /**
      * Gets the actual data set for the given schema.
      *
@@ -506,6 +551,9 @@ public class DbUnitModule implements Module {
      * @return The data set, null if the file does not exist
      */
     protected MultiSchemaDataSet getDataSet(Class<?> testClass, String[] dataSetFileNames, DataSetFactory dataSetFactory) {
+        if (dataSetFactory instanceof InputStreamDataSetFactory) {
+            return getCachedDataSet(testClass, dataSetFileNames, (InputStreamDataSetFactory) dataSetFactory);
+        }
         List<File> dataSetFiles = new ArrayList<File>();
 
         ResourcePickingStrategie resourcePickingStrategie = getResourcePickingStrategie();
@@ -521,6 +569,50 @@ public class DbUnitModule implements Module {
         return dataSet;
     }
 
+
+    /**
+     * Gets the data set for the given files from the data set cache. If it is not cached yet, the resources are read
+     * directly, without copying them to temp files, and the parsed data set is added to the cache. A data set is read
+     * again when one of its resources was modified.
+     *
+     * @param testClass The test class, not null
+     * @param dataSetFileNames The names of the files, (start with '/' for absolute names), not null, not empty
+     * @param dataSetFactory DataSetFactory responsible for creating the dataset
+     * @return The data set, not null
+     */
+    protected MultiSchemaDataSet getCachedDataSet(Class<?> testClass, String[] dataSetFileNames, InputStreamDataSetFactory dataSetFactory) {
+        ResourcePickingStrategie resourcePickingStrategie = getResourcePickingStrategie();
+        DataSetFileNamesHandler dataSetFileNamesHandler = createDataSetFileNamesHandler();
+
+        List<URL> dataSetUrls = new ArrayList<URL>();
+        for (String dataSetFileName : dataSetFileNames) {
+            dataSetUrls.add(dataSetFileNamesHandler.locateResourceUrl(new ClassPathDataLocator(), dataSetFileName, resourcePickingStrategie, testClass));
+        }
+
+        String key = dataSetCache.getKey(dataSetFactory.getClass().getName() + "|" + databaseName, dataSetUrls);
+        MultiSchemaDataSet dataSet = dataSetCache.get(key);
+        if (dataSet != null) {
+            return dataSet;
+        }
+
+        logger.info("Loading DbUnit data set. Resources: " + dataSetUrls);
+        InputStream[] dataSetInputStreams = new InputStream[dataSetUrls.size()];
+        try {
+            for (int i = 0; i < dataSetInputStreams.length; i++) {
+                dataSetInputStreams[i] = ClassPathResourceIndex.openStream(dataSetUrls.get(i));
+            }
+            dataSet = dataSetFactory.createDataSet(dataSetInputStreams);
+
+        } catch (IOException e) {
+            throw new UnitilsException("Unable to read DbUnit data set resources " + dataSetUrls, e);
+        } finally {
+            for (InputStream dataSetInputStream : dataSetInputStreams) {
+                closeQuietly(dataSetInputStream);
+            }
+        }
+        return dataSetCache.put(key, dataSet);
+    }
+
     /**
      * Creates the DbUnit dataset operation for loading a data set for the given method. If a value for loadStrategy is found on an
      * annotation, this class is used, otherwise the configured default class will be used.
@@ -546,14 +638,16 @@ public class DbUnitModule implements Module {
      * @return A new instance of dbUnit's <code>IDatabaseConnection</code>
      */
     protected DbUnitDatabaseConnection createDbUnitConnection(String schemaName) {
-        // A DbSupport instance is fetched in order to get the schema name in correct case
+        // A DbSupport instance is created in order to get the schema name in correct case. It is not taken from the
+        // cache since the connection also uses it to query this database, e.g. for the foreign keys
         DataSourceWrapper wrapper = getDatabaseModule().getWrapper(databaseName);
         DataSource dataSource = wrapper.getDataSourceAndActivateTransactionIfNeeded();
         SQLHandler sqlHandler = new DefaultSQLHandler(dataSource);
-        DbSupport dbSupport = getDbSupport(configuration, sqlHandler, schemaName, wrapper.getDatabaseConfiguration().getDialect());
+        DbSupport dbSupport = createDbSupport(configuration, sqlHandler, schemaName, wrapper.getDatabaseConfiguration().getDialect());
 
         // Create connection
         DbUnitDatabaseConnection connection = new DbUnitDatabaseConnection(dataSource, dbSupport.getSchemaName());
+        connection.setDbSupport(dbSupport);
         DatabaseConfig config = connection.getConfig();
 
         // Make sure that dbunit's correct IDataTypeFactory, that handles dbms specific data type issues, is used
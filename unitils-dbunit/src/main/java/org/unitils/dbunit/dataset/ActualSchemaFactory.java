@@ -0,0 +1,413 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.dataset;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IMetadataHandler;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.util.QualifiedTableName;
+import org.dbunit.util.SQLHelper;
+import org.unitils.core.UnitilsException;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Locale.ENGLISH;
+import static org.dbunit.dataset.ITable.NO_VALUE;
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * A builder for the data set schema that contains the actual database content for an expected schema.
+ * <p/>
+ * Only the tables of the expected schema are queried, and only the columns that are used by the expected rows and the
+ * primary key columns. The meta data is only retrieved for these tables. If all expected rows of a table contain
+ * a value for all primary key columns, only the actual rows with these primary keys are selected: the other rows
+ * cannot match an expected row. The rows of the result sets are added to the schema directly.
+ * <p/>
+ * Tables that do not exist are not added to the schema, columns that do not exist are not selected. They are reported
+ * as missing when the schemas are compared. As for the DbUnit database data set, only tables with one of the DbUnit
+ * table types ({@link DatabaseConfig#PROPERTY_TABLE_TYPE}) exist, and table names are only matched case sensitive when
+ * {@link DatabaseConfig#FEATURE_CASE_SENSITIVE_TABLE_NAMES} is enabled.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ActualSchemaFactory {
+
+    /* The maximum number of parameters of a query that selects rows by primary key */
+    protected static final int MAX_NR_OF_PARAMETERS = 1000;
+
+
+    /**
+     * Creates the schema with the actual database content for the tables and columns of the given expected schema.
+     *
+     * @param expectedSchema The expected schema, not null
+     * @param connection     The DbUnit connection to the database schema, not null
+     * @return The actual schema, not null
+     */
+    public Schema createActualSchema(Schema expectedSchema, IDatabaseConnection connection) {
+        Schema result = new Schema(expectedSchema.getName());
+        try {
+            Map<String, String> tableNames = getTableNames(connection);
+            for (Table expectedTable : expectedSchema.getTables()) {
+                Table actualTable = createActualTable(expectedTable, tableNames, connection);
+                if (actualTable != null) {
+                    result.addTable(actualTable);
+                }
+            }
+            return result;
+
+        } catch (UnitilsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to get actual data set for schema " + expectedSchema.getName(), e);
+        }
+    }
+
+
+    /**
+     * Gets the names of the tables of the database schema that have one of the DbUnit table types. The names are
+     * retrieved once for all expected tables.
+     *
+     * @param connection The DbUnit connection to the database schema, not null
+     * @return The database table names by table name, by upper case table name if the names are not case sensitive, not null
+     */
+    protected Map<String, String> getTableNames(IDatabaseConnection connection) throws Exception {
+        DatabaseConfig config = connection.getConfig();
+        IMetadataHandler metadataHandler = (IMetadataHandler) config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+        boolean caseSensitive = config.getFeature(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+        String[] tableTypes = (String[]) config.getProperty(DatabaseConfig.PROPERTY_TABLE_TYPE);
+        Connection jdbcConnection = connection.getConnection();
+
+        Map<String, String> result = new HashMap<String, String>();
+        ResultSet resultSet = null;
+        try {
+            resultSet = metadataHandler.getTables(jdbcConnection.getMetaData(), getSchemaName(connection, caseSensitive), tableTypes);
+            while (resultSet.next()) {
+                String tableName = resultSet.getString("TABLE_NAME");
+                String key = caseSensitive ? tableName : tableName.toUpperCase(ENGLISH);
+                if (!result.containsKey(key)) {
+                    result.put(key, tableName);
+                }
+            }
+        } finally {
+            closeQuietly(resultSet);
+        }
+        return result;
+    }
+
+
+    /**
+     * Creates the table with the actual rows for the given expected table.
+     *
+     * @param expectedTable The expected table, not null
+     * @param tableNames    The database table names as returned by {@link #getTableNames}, not null
+     * @param connection    The DbUnit connection to the database schema, not null
+     * @return The actual table, null if the table does not exist
+     */
+    protected Table createActualTable(Table expectedTable, Map<String, String> tableNames, IDatabaseConnection connection) throws Exception {
+        DatabaseConfig config = connection.getConfig();
+        IMetadataHandler metadataHandler = (IMetadataHandler) config.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+        boolean caseSensitive = config.getFeature(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+        Connection jdbcConnection = connection.getConnection();
+        DatabaseMetaData databaseMetaData = jdbcConnection.getMetaData();
+
+        String schemaName = getSchemaName(connection, caseSensitive);
+        String tableName = tableNames.get(caseSensitive ? expectedTable.getName() : expectedTable.getName().toUpperCase(ENGLISH));
+        if (tableName == null) {
+            return null;
+        }
+
+        Map<String, org.dbunit.dataset.Column> databaseColumns = getDatabaseColumns(databaseMetaData, metadataHandler, schemaName, tableName, caseSensitive, config);
+        List<org.dbunit.dataset.Column> primaryKeyColumns = getPrimaryKeyColumns(databaseMetaData, metadataHandler, schemaName, tableName, databaseColumns);
+        List<org.dbunit.dataset.Column> columns = getColumnsToSelect(expectedTable, databaseColumns, primaryKeyColumns);
+
+        Table result = new Table(tableName);
+        if (columns.isEmpty()) {
+            return result;
+        }
+        String escapePattern = (String) config.getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        String qualifiedTableName = new QualifiedTableName(tableName, schemaName, escapePattern).getQualifiedName();
+        List<Object[]> primaryKeys = getPrimaryKeys(expectedTable, primaryKeyColumns);
+        addRows(jdbcConnection, qualifiedTableName, columns, primaryKeyColumns, primaryKeys, escapePattern, result);
+        return result;
+    }
+
+
+    /**
+     * Selects the given columns and adds the rows to the given table. If primary keys are given, only these rows
+     * are selected.
+     *
+     * @param jdbcConnection     The connection, not null
+     * @param qualifiedTableName The qualified and escaped table name, not null
+     * @param columns            The columns to select, not empty
+     * @param primaryKeyColumns  The primary key columns, empty if there are none
+     * @param primaryKeys        The primary key values of the rows to select, null to select all rows
+     * @param escapePattern      The DbUnit escape pattern, null if none
+     * @param table              The table to add the rows to, not null
+     */
+    protected void addRows(Connection jdbcConnection, String qualifiedTableName, List<org.dbunit.dataset.Column> columns, List<org.dbunit.dataset.Column> primaryKeyColumns,
+                           List<Object[]> primaryKeys, String escapePattern, Table table) throws Exception {
+        String sql = getSelectStatement(qualifiedTableName, columns, primaryKeyColumns, primaryKeys, escapePattern);
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = jdbcConnection.prepareStatement(sql);
+            if (primaryKeys != null) {
+                int parameterIndex = 1;
+                for (Object[] primaryKey : primaryKeys) {
+                    for (int i = 0; i < primaryKeyColumns.size(); i++) {
+                        primaryKeyColumns.get(i).getDataType().setSqlValue(primaryKey[i], parameterIndex++, statement);
+                    }
+                }
+            }
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                Row row = new Row();
+                for (int i = 0; i < columns.size(); i++) {
+                    org.dbunit.dataset.Column databaseColumn = columns.get(i);
+                    Object value = databaseColumn.getDataType().getSqlValue(i + 1, resultSet);
+                    Column column = new Column(databaseColumn.getColumnName(), databaseColumn.getDataType(), value);
+                    if (primaryKeyColumns.contains(databaseColumn)) {
+                        row.addPrimaryKeyColumn(column);
+                    } else {
+                        row.addColumn(column);
+                    }
+                }
+                table.addRow(row);
+            }
+        } finally {
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+        }
+    }
+
+
+    /**
+     * Gets the primary key values of the expected rows. These are only returned if every expected row has a value for
+     * every primary key column that can be converted to the type of the column.
+     *
+     * @param expectedTable     The expected table, not null
+     * @param primaryKeyColumns The primary key columns, empty if there are none
+     * @return The primary key values, null if the rows cannot be selected by primary key
+     */
+    protected List<Object[]> getPrimaryKeys(Table expectedTable, List<org.dbunit.dataset.Column> primaryKeyColumns) {
+        List<Row> rows = expectedTable.getRows();
+        if (primaryKeyColumns.isEmpty() || rows.isEmpty() || rows.size() * primaryKeyColumns.size() > MAX_NR_OF_PARAMETERS) {
+            return null;
+        }
+        List<Object[]> result = new ArrayList<Object[]>(rows.size());
+        for (Row row : rows) {
+            Object[] primaryKey = new Object[primaryKeyColumns.size()];
+            for (int i = 0; i < primaryKeyColumns.size(); i++) {
+                org.dbunit.dataset.Column primaryKeyColumn = primaryKeyColumns.get(i);
+                Column column = row.getColumn(primaryKeyColumn.getColumnName());
+                if (column == null || column.getValue() == null || NO_VALUE.equals(column.getValue())) {
+                    return null;
+                }
+                try {
+                    primaryKey[i] = primaryKeyColumn.getDataType().typeCast(column.getValue());
+                } catch (TypeCastException e) {
+                    // the row is compared with all actual rows, reporting the cast error
+                    return null;
+                }
+            }
+            result.add(primaryKey);
+        }
+        return result;
+    }
+
+
+    /**
+     * @param qualifiedTableName The qualified and escaped table name, not null
+     * @param columns            The columns to select, not empty
+     * @param primaryKeyColumns  The primary key columns, empty if there are none
+     * @param primaryKeys        The primary key values of the rows to select, null to select all rows
+     * @param escapePattern      The DbUnit escape pattern, null if none
+     * @return The select statement, not null
+     */
+    protected String getSelectStatement(String qualifiedTableName, List<org.dbunit.dataset.Column> columns, List<org.dbunit.dataset.Column> primaryKeyColumns, List<Object[]> primaryKeys, String escapePattern) {
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(getQualifiedColumnName(columns.get(i), escapePattern));
+        }
+        sql.append(" from ").append(qualifiedTableName);
+        if (primaryKeys == null) {
+            return sql.toString();
+        }
+
+        StringBuilder condition = new StringBuilder("(");
+        for (int i = 0; i < primaryKeyColumns.size(); i++) {
+            if (i > 0) {
+                condition.append(" and ");
+            }
+            condition.append(getQualifiedColumnName(primaryKeyColumns.get(i), escapePattern)).append(" = ?");
+        }
+        condition.append(')');
+        sql.append(" where ");
+        for (int i = 0; i < primaryKeys.size(); i++) {
+            if (i > 0) {
+                sql.append(" or ");
+            }
+            sql.append(condition);
+        }
+        return sql.toString();
+    }
+
+
+    /**
+     * Gets the database columns that are used by the expected rows, followed by the primary key columns that are not
+     * used by the expected rows.
+     *
+     * @param expectedTable     The expected table, not null
+     * @param databaseColumns   The columns of the database table by upper case name, not null
+     * @param primaryKeyColumns The primary key columns, empty if there are none
+     * @return The columns, empty if the table has no columns
+     */
+    protected List<org.dbunit.dataset.Column> getColumnsToSelect(Table expectedTable, Map<String, org.dbunit.dataset.Column> databaseColumns, List<org.dbunit.dataset.Column> primaryKeyColumns) {
+        List<org.dbunit.dataset.Column> result = new ArrayList<org.dbunit.dataset.Column>();
+        for (Row row : expectedTable.getRows()) {
+            addColumnsToSelect(row.getPrimaryKeyColumns(), databaseColumns, result);
+            addColumnsToSelect(row.getColumns(), databaseColumns, result);
+        }
+        for (org.dbunit.dataset.Column primaryKeyColumn : primaryKeyColumns) {
+            if (!result.contains(primaryKeyColumn)) {
+                result.add(primaryKeyColumn);
+            }
+        }
+        if (result.isEmpty() && !databaseColumns.isEmpty()) {
+            // a column is needed to select the rows of an expected empty table or of rows with only unknown columns
+            result.add(databaseColumns.values().iterator().next());
+        }
+        return result;
+    }
+
+
+    /**
+     * @param columns         The columns of an expected row, not null
+     * @param databaseColumns The columns of the database table by upper case name, not null
+     * @param result          The database columns to add the columns to, not null
+     */
+    protected void addColumnsToSelect(List<Column> columns, Map<String, org.dbunit.dataset.Column> databaseColumns, List<org.dbunit.dataset.Column> result) {
+        for (Column column : columns) {
+            org.dbunit.dataset.Column databaseColumn = databaseColumns.get(column.getName().toUpperCase(ENGLISH));
+            if (databaseColumn != null && !result.contains(databaseColumn)) {
+                result.add(databaseColumn);
+            }
+        }
+    }
+
+
+    /**
+     * Gets the columns of the given table, with the DbUnit data types that DbUnit also uses for the table.
+     *
+     * @param databaseMetaData The meta data, not null
+     * @param metadataHandler  The DbUnit meta data handler, not null
+     * @param schemaName       The schema name, not null
+     * @param tableName        The table name, not null
+     * @param caseSensitive    True if the table names are case sensitive
+     * @param config           The DbUnit config, not null
+     * @return The columns by upper case name, in the order of the table, not null
+     */
+    protected Map<String, org.dbunit.dataset.Column> getDatabaseColumns(DatabaseMetaData databaseMetaData, IMetadataHandler metadataHandler, String schemaName, String tableName,
+                                                                       boolean caseSensitive, DatabaseConfig config) throws Exception {
+        IDataTypeFactory dataTypeFactory = (IDataTypeFactory) config.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+        boolean datatypeWarning = config.getFeature(DatabaseConfig.FEATURE_DATATYPE_WARNING);
+
+        Map<String, org.dbunit.dataset.Column> result = new LinkedHashMap<String, org.dbunit.dataset.Column>();
+        ResultSet resultSet = null;
+        try {
+            resultSet = metadataHandler.getColumns(databaseMetaData, schemaName, tableName);
+            while (resultSet.next()) {
+                if (!metadataHandler.matches(resultSet, schemaName, tableName, caseSensitive)) {
+                    continue;
+                }
+                org.dbunit.dataset.Column column = SQLHelper.createColumn(resultSet, dataTypeFactory, datatypeWarning);
+                if (column != null) {
+                    result.put(column.getColumnName().toUpperCase(ENGLISH), column);
+                }
+            }
+        } finally {
+            closeQuietly(resultSet);
+        }
+        return result;
+    }
+
+
+    /**
+     * @param databaseMetaData The meta data, not null
+     * @param metadataHandler  The DbUnit meta data handler, not null
+     * @param schemaName       The schema name, not null
+     * @param tableName        The table name, not null
+     * @param databaseColumns  The columns of the table by upper case name, not null
+     * @return The primary key columns, in key order, empty if the table has no primary key
+     */
+    protected List<org.dbunit.dataset.Column> getPrimaryKeyColumns(DatabaseMetaData databaseMetaData, IMetadataHandler metadataHandler, String schemaName, String tableName,
+                                                                  Map<String, org.dbunit.dataset.Column> databaseColumns) throws SQLException {
+        Map<Integer, org.dbunit.dataset.Column> columnsBySequence = new TreeMap<Integer, org.dbunit.dataset.Column>();
+        ResultSet resultSet = null;
+        try {
+            resultSet = metadataHandler.getPrimaryKeys(databaseMetaData, schemaName, tableName);
+            while (resultSet.next()) {
+                org.dbunit.dataset.Column column = databaseColumns.get(resultSet.getString("COLUMN_NAME").toUpperCase(ENGLISH));
+                if (column != null) {
+                    columnsBySequence.put(resultSet.getInt("KEY_SEQ"), column);
+                }
+            }
+        } finally {
+            closeQuietly(resultSet);
+        }
+        return new ArrayList<org.dbunit.dataset.Column>(columnsBySequence.values());
+    }
+
+
+    /**
+     * @param connection    The DbUnit connection to the database schema, not null
+     * @param caseSensitive True if the table names are case sensitive
+     * @return The schema name in the case in which it is stored if the names are not case sensitive, null if none
+     */
+    protected String getSchemaName(IDatabaseConnection connection, boolean caseSensitive) throws SQLException {
+        String schemaName = connection.getSchema();
+        if (caseSensitive || schemaName == null) {
+            return schemaName;
+        }
+        return SQLHelper.correctCase(schemaName, connection.getConnection());
+    }
+
+
+    /**
+     * @param column        The column, not null
+     * @param escapePattern The DbUnit escape pattern, null if none
+     * @return The escaped column name, not null
+     */
+    protected String getQualifiedColumnName(org.dbunit.dataset.Column column, String escapePattern) {
+        return new QualifiedTableName(column.getColumnName(), null, escapePattern).getQualifiedName();
+    }
+}
@@ -20,7 +20,11 @@ import org.unitils.dbunit.dataset.comparison.ColumnDifference;
 import org.unitils.dbunit.dataset.comparison.RowDifference;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import static java.util.Locale.ENGLISH;
 
 /**
  * A data set row
@@ -36,6 +40,9 @@ public class Row {
     /* The columns of the row */
     private List<Column> columns = new ArrayList<Column>();
 
+    /* The primary key columns and the columns of the row, by upper case column name */
+    private Map<String, Column> columnsByName = new HashMap<String, Column>();
+
 
     /**
      * Gets the column for the given name. The name is case insensitive.
@@ -44,17 +51,7 @@ public class Row {
      * @return The column, null if not found
      */
     public Column getColumn(String columnName) {
-        for (Column primaryKeyColumn : primaryKeyColumns) {
-            if (columnName.equalsIgnoreCase(primaryKeyColumn.getName())) {
-                return primaryKeyColumn;
-            }
-        }
-        for (Column column : columns) {
-            if (columnName.equalsIgnoreCase(column.getName())) {
-                return column;
-            }
-        }
-        return null;
+        return columnsByName.get(columnName.toUpperCase(ENGLISH));
     }
 
 
@@ -86,6 +83,7 @@ public class Row {
             throw new UnitilsException("Unable to add primary column to data set row. Duplicate column name: " + primaryKeyColumn.getName());
         }
         primaryKeyColumns.add(primaryKeyColumn);
+        columnsByName.put(primaryKeyColumn.getName().toUpperCase(ENGLISH), primaryKeyColumn);
     }
 
 
@@ -101,6 +99,7 @@ public class Row {
             throw new UnitilsException("Unable to add column to data set row. Duplicate column name: " + column.getName());
         }
         columns.add(column);
+        columnsByName.put(column.getName().toUpperCase(ENGLISH), column);
     }
 
 
@@ -16,13 +16,23 @@
 package org.unitils.dbunit.dataset;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.dbunit.dataset.Column;
+import org.dbunit.dataset.datatype.DataType;
+import org.unitils.core.UnitilsException;
 import org.unitils.dbunit.dataset.comparison.RowDifference;
 import org.unitils.dbunit.dataset.comparison.TableDifference;
 
+import static org.dbunit.dataset.ITable.NO_VALUE;
+
 /**
  * A data set table
  *
@@ -109,25 +119,81 @@ public class Table {
 
     /**
      * Compares the given rows with the columns of the actual table.
+     * <p/>
+     * The rows are first matched with the actual rows using an index on the values of the key columns, see
+     * {@link #getKeyColumnNames}, so that an actual row is only compared with the rows that have the same key and with
+     * the rows that could not be indexed. An actual row matches the first remaining row that is equal to it. The best
+     * differences are only determined for the rows for which no match was found, by comparing them with the actual rows
+     * that were not matched. If the rows are indexed on the primary key, only the actual rows with the same primary key
+     * are compared.
      *
      * @param rows        The rows to compare, not null
      * @param actualTable The rows to compare with, not null
      * @param result      The result to add the differences to, not null
      */
     protected void compareRows(List<Row> rows, Table actualTable, TableDifference result) {
-        List<Row> rowsWithoutMatch = new ArrayList<Row>(rows);
-        for (Row actualRow : actualTable.getRows()) {
-            Iterator<Row> rowIterator = rowsWithoutMatch.iterator();
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
+        List<Row> actualRows = actualTable.getRows();
+        List<String> keyColumnNames = getKeyColumnNames(rows, actualRows);
+
+        Map<List<Object>, List<Integer>> rowIndexesPerKey = new HashMap<List<Object>, List<Integer>>();
+        List<Integer> notIndexedRowIndexes = new LinkedList<Integer>();
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> key = getKey(rows.get(i), keyColumnNames, actualRows);
+            if (key == null) {
+                notIndexedRowIndexes.add(i);
+                continue;
+            }
+            List<Integer> rowIndexes = rowIndexesPerKey.get(key);
+            if (rowIndexes == null) {
+                rowIndexes = new LinkedList<Integer>();
+                rowIndexesPerKey.put(key, rowIndexes);
+            }
+            rowIndexes.add(i);
+        }
+
+        boolean[] matchedRows = new boolean[rows.size()];
+        List<Row> actualRowsWithoutMatch = new ArrayList<Row>();
+        for (Row actualRow : actualRows) {
+            List<Integer> rowIndexes = rowIndexesPerKey.get(getActualKey(actualRow, keyColumnNames));
+            int rowIndex = removeFirstMatchingRow(rows, actualRow, rowIndexes, notIndexedRowIndexes);
+            if (rowIndex == -1) {
+                actualRowsWithoutMatch.add(actualRow);
+            } else {
+                matchedRows[rowIndex] = true;
+                result.setMatchingRow(rows.get(rowIndex), actualRow);
+            }
+        }
+
+        // actual rows with another primary key are skipped anyway
+        Map<List<Object>, List<Row>> actualRowsWithoutMatchPerKey = null;
+        if (isPrimaryKey(keyColumnNames, actualRows)) {
+            actualRowsWithoutMatchPerKey = new HashMap<List<Object>, List<Row>>();
+            for (Row actualRow : actualRowsWithoutMatch) {
+                List<Object> key = getActualKey(actualRow, keyColumnNames);
+                List<Row> actualRowsForKey = actualRowsWithoutMatchPerKey.get(key);
+                if (actualRowsForKey == null) {
+                    actualRowsForKey = new ArrayList<Row>();
+                    actualRowsWithoutMatchPerKey.put(key, actualRowsForKey);
+                }
+                actualRowsForKey.add(actualRow);
+            }
+        }
 
-                if (row.hasDifferentPrimaryKeyColumns(actualRow)) {
+        Set<Row> matchedActualRows = new HashSet<Row>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (matchedRows[i]) {
+                continue;
+            }
+            Row row = rows.get(i);
+            for (Row actualRow : getActualRowsToCompare(row, keyColumnNames, actualRows, actualRowsWithoutMatch, actualRowsWithoutMatchPerKey)) {
+                if (matchedActualRows.contains(actualRow) || row.hasDifferentPrimaryKeyColumns(actualRow)) {
                     continue;
                 }
                 RowDifference rowDifference = row.compare(actualRow);
                 if (rowDifference == null) {
+                    matchedRows[i] = true;
+                    matchedActualRows.add(actualRow);
                     result.setMatchingRow(row, actualRow);
-                    rowIterator.remove();
                     break;
                 } else {
                     result.setIfBestRowDifference(rowDifference);
@@ -135,14 +201,199 @@ public class Table {
             }
         }
 
-        for (Row row : rowsWithoutMatch) {
-            if (result.getBestRowDifference(row) == null) {
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            if (!matchedRows[i] && result.getBestRowDifference(row) == null) {
                 result.addMissingRow(row);
             }
         }
     }
-    
-    
+
+
+    /**
+     * Gets the names of the columns on which the rows are indexed. These are the primary key columns of the actual
+     * table if all rows have a value for them. Otherwise these are all columns for which all rows have a value. A
+     * column is only used if all actual rows contain it with the same type.
+     *
+     * @param rows       The rows, not null
+     * @param actualRows The actual rows, not null
+     * @return The names of the key columns, empty if the rows cannot be indexed
+     */
+    protected List<String> getKeyColumnNames(List<Row> rows, List<Row> actualRows) {
+        List<String> result = new ArrayList<String>();
+        if (rows.isEmpty() || actualRows.isEmpty()) {
+            return result;
+        }
+        Row firstActualRow = actualRows.get(0);
+        for (org.unitils.dbunit.dataset.Column primaryKeyColumn : firstActualRow.getPrimaryKeyColumns()) {
+            if (!isKeyColumn(primaryKeyColumn.getName(), rows, actualRows)) {
+                result.clear();
+                break;
+            }
+            result.add(primaryKeyColumn.getName());
+        }
+        if (!result.isEmpty()) {
+            return result;
+        }
+        for (org.unitils.dbunit.dataset.Column primaryKeyColumn : firstActualRow.getPrimaryKeyColumns()) {
+            if (isKeyColumn(primaryKeyColumn.getName(), rows, actualRows)) {
+                result.add(primaryKeyColumn.getName());
+            }
+        }
+        for (org.unitils.dbunit.dataset.Column column : firstActualRow.getColumns()) {
+            if (isKeyColumn(column.getName(), rows, actualRows)) {
+                result.add(column.getName());
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param keyColumnNames The names of the key columns, not null
+     * @param actualRows     The actual rows, not null
+     * @return True if the key columns are the primary key columns of the actual rows
+     */
+    protected boolean isPrimaryKey(List<String> keyColumnNames, List<Row> actualRows) {
+        if (keyColumnNames.isEmpty()) {
+            return false;
+        }
+        List<String> primaryKeyColumnNames = new ArrayList<String>();
+        for (org.unitils.dbunit.dataset.Column primaryKeyColumn : actualRows.get(0).getPrimaryKeyColumns()) {
+            primaryKeyColumnNames.add(primaryKeyColumn.getName());
+        }
+        return keyColumnNames.equals(primaryKeyColumnNames);
+    }
+
+
+    /**
+     * Gets the actual rows without a match with which the given row should be compared to find the best difference.
+     *
+     * @param row                          The row, not null
+     * @param keyColumnNames               The names of the key columns, not null
+     * @param actualRows                   The actual rows, not null
+     * @param actualRowsWithoutMatch       The actual rows without a match, not null
+     * @param actualRowsWithoutMatchPerKey The actual rows without a match per primary key, null if not indexed
+     * @return The actual rows, not null
+     */
+    protected List<Row> getActualRowsToCompare(Row row, List<String> keyColumnNames, List<Row> actualRows, List<Row> actualRowsWithoutMatch, Map<List<Object>, List<Row>> actualRowsWithoutMatchPerKey) {
+        if (actualRowsWithoutMatchPerKey == null) {
+            return actualRowsWithoutMatch;
+        }
+        List<Object> key = getKey(row, keyColumnNames, actualRows);
+        if (key == null) {
+            return actualRowsWithoutMatch;
+        }
+        List<Row> result = actualRowsWithoutMatchPerKey.get(key);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+
+    /**
+     * @param columnName The name of the column, not null
+     * @param rows       The rows, not null
+     * @param actualRows The actual rows, not empty
+     * @return True if all rows have a value for the column and all actual rows have the column with the same type
+     */
+    protected boolean isKeyColumn(String columnName, List<Row> rows, List<Row> actualRows) {
+        for (Row row : rows) {
+            org.unitils.dbunit.dataset.Column column = row.getColumn(columnName);
+            if (column == null || column.getValue() == null || NO_VALUE.equals(column.getValue())) {
+                return false;
+            }
+        }
+        DataType type = actualRows.get(0).getColumn(columnName).getType();
+        for (Row actualRow : actualRows) {
+            org.unitils.dbunit.dataset.Column actualColumn = actualRow.getColumn(columnName);
+            if (actualColumn == null || !type.equals(actualColumn.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Gets the values of the key columns of the given row, casted to the type of the actual columns, so that they are
+     * equal to the values of an actual row that matches the row.
+     *
+     * @param row            The row, not null
+     * @param keyColumnNames The names of the key columns, not null
+     * @param actualRows     The actual rows, not null
+     * @return The key, null if the row cannot be indexed
+     */
+    protected List<Object> getKey(Row row, List<String> keyColumnNames, List<Row> actualRows) {
+        if (keyColumnNames.isEmpty()) {
+            return null;
+        }
+        List<Object> result = new ArrayList<Object>(keyColumnNames.size());
+        for (String keyColumnName : keyColumnNames) {
+            org.unitils.dbunit.dataset.Column column = row.getColumn(keyColumnName);
+            try {
+                result.add(column.getCastedValue(actualRows.get(0).getColumn(keyColumnName).getType()));
+            } catch (UnitilsException e) {
+                // the row will be compared with all actual rows, reporting the cast error
+                return null;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param actualRow      The actual row, not null
+     * @param keyColumnNames The names of the key columns, not null
+     * @return The values of the key columns of the actual row, null if there are no key columns
+     */
+    protected List<Object> getActualKey(Row actualRow, List<String> keyColumnNames) {
+        if (keyColumnNames.isEmpty()) {
+            return null;
+        }
+        List<Object> result = new ArrayList<Object>(keyColumnNames.size());
+        for (String keyColumnName : keyColumnNames) {
+            result.add(actualRow.getColumn(keyColumnName).getValue());
+        }
+        return result;
+    }
+
+
+    /**
+     * Finds the first row, in the order of the rows, that is equal to the actual row and removes it from the indexes.
+     *
+     * @param rows                 The rows, not null
+     * @param actualRow            The actual row, not null
+     * @param rowIndexes           The indexes of the rows with the same key as the actual row, null if there are none
+     * @param notIndexedRowIndexes The indexes of the rows that could not be indexed, not null
+     * @return The index of the matching row, -1 if there is none
+     */
+    protected int removeFirstMatchingRow(List<Row> rows, Row actualRow, List<Integer> rowIndexes, List<Integer> notIndexedRowIndexes) {
+        Iterator<Integer> indexedIterator = rowIndexes == null ? Collections.<Integer>emptyList().iterator() : rowIndexes.iterator();
+        Iterator<Integer> notIndexedIterator = notIndexedRowIndexes.iterator();
+        Integer indexedRowIndex = indexedIterator.hasNext() ? indexedIterator.next() : null;
+        Integer notIndexedRowIndex = notIndexedIterator.hasNext() ? notIndexedIterator.next() : null;
+
+        while (indexedRowIndex != null || notIndexedRowIndex != null) {
+            boolean indexed = notIndexedRowIndex == null || (indexedRowIndex != null && indexedRowIndex < notIndexedRowIndex);
+            Iterator<Integer> iterator = indexed ? indexedIterator : notIndexedIterator;
+            int rowIndex = indexed ? indexedRowIndex : notIndexedRowIndex;
+
+            if (rows.get(rowIndex).compare(actualRow) == null) {
+                iterator.remove();
+                return rowIndex;
+            }
+            if (indexed) {
+                indexedRowIndex = indexedIterator.hasNext() ? indexedIterator.next() : null;
+            } else {
+                notIndexedRowIndex = notIndexedIterator.hasNext() ? notIndexedIterator.next() : null;
+            }
+        }
+        return -1;
+    }
+
+
     /**
      * @return the columns
      */
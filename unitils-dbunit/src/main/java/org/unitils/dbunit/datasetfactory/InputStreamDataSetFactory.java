@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetfactory;
+
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+
+import java.io.InputStream;
+
+/**
+ * Factory for creating DbUnit data sets that can read the data sets directly from streams. The data sets of these
+ * factories do not have to be copied to temp files first and are cached by the DbUnit module.
+ * <p/>
+ * The created data sets are shared by all tests that use the same data set resources, so they should not be modified.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface InputStreamDataSetFactory extends DataSetFactory {
+
+
+    /**
+     * Creates a {@link MultiSchemaDataSet} using the given streams. The streams are not closed.
+     *
+     * @param dataSetInputStreams The streams to the content of the dataset files, not null
+     * @return A {@link MultiSchemaDataSet} containing the datasets per schema, not null
+     */
+    MultiSchemaDataSet createDataSet(InputStream... dataSetInputStreams);
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetfactory.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.util.MultiSchemaBinaryDataSetReader;
+import org.unitils.dbunit.util.MultiSchemaBinaryDataSetWriter;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+import org.unitils.dbunit.util.MultiSchemaXmlDataSetReaderExtend;
+import org.unitils.util.FileUtils.ContentWriter;
+import org.unitils.util.PropertyUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetReader.isBinaryDataSet;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.copy;
+import static org.unitils.util.FileUtils.writeFile;
+
+/**
+ * A data set factory for data sets in the binary format of the {@link MultiSchemaBinaryDataSetWriter}. Such a data set
+ * does not have to be parsed: its strings are read once from a dictionary and its files are memory-mapped.
+ * <p/>
+ * Data sets in the multi-schema xml format are compiled to the binary format the first time they are used. The
+ * compiled data sets are stored in the configured directory, in a file named after the checksum of the xml content.
+ * When the xml is changed, its checksum changes and it is compiled again. A binary data set file can also be created
+ * up front using {@link #compile} and then be used instead of the xml file.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiSchemaBinaryDataSetFactory extends MultiSchemaXmlDataSetFactory {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(MultiSchemaBinaryDataSetFactory.class);
+
+    /* Property key of the directory in which the compiled data sets are stored */
+    public static final String PROPKEY_COMPILED_DIRECTORY = "dbUnit.binaryDataSet.directory";
+
+    /* Property key that indicates whether the compiled data sets are compressed */
+    public static final String PROPKEY_COMPRESSION_ENABLED = "dbUnit.binaryDataSet.compression.enabled";
+
+    /* The directory in which the compiled data sets are stored */
+    protected File compiledDirectory;
+
+    /* True if the compiled data sets are compressed */
+    protected boolean compressionEnabled;
+
+
+    /**
+     * Initializes this DataSetFactory
+     *
+     * @param configuration     The configuration, not null
+     * @param defaultSchemaName The name of the default schema of the test database, not null
+     */
+    @Override
+    public void init(Properties configuration, String defaultSchemaName) {
+        super.init(configuration, defaultSchemaName);
+        compiledDirectory = new File(PropertyUtils.getString(PROPKEY_COMPILED_DIRECTORY, "target/unitils/datasets", configuration));
+        compressionEnabled = PropertyUtils.getBoolean(PROPKEY_COMPRESSION_ENABLED, false, configuration);
+    }
+
+
+    /**
+     * Creates a {@link MultiSchemaDataSet} using the given binary or xml files.
+     *
+     * @param dataSetFiles The dataset files, not null
+     * @return A {@link MultiSchemaDataSet} containing the datasets per schema, not null
+     */
+    @Override
+    public MultiSchemaDataSet createDataSet(File... dataSetFiles) {
+        try {
+            MultiSchemaBinaryDataSetReader reader = new MultiSchemaBinaryDataSetReader();
+            for (File dataSetFile : dataSetFiles) {
+                if (isBinaryDataSet(readHeader(dataSetFile))) {
+                    reader.readDataSet(dataSetFile);
+                    continue;
+                }
+                String checksum = getChecksum(dataSetFile);
+                if (!readCompiledDataSet(checksum, reader)) {
+                    InputStream inputStream = new FileInputStream(dataSetFile);
+                    try {
+                        compileDataSet(checksum, inputStream, reader);
+                    } finally {
+                        closeQuietly(inputStream);
+                    }
+                }
+            }
+            return reader.getMultiSchemaDataSet();
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to create DbUnit dataset for data set files: " + Arrays.toString(dataSetFiles), e);
+        }
+    }
+
+
+    /**
+     * Creates a {@link MultiSchemaDataSet} using the given streams to binary or xml content.
+     *
+     * @param dataSetInputStreams The streams to the content of the dataset files, not null
+     * @return A {@link MultiSchemaDataSet} containing the datasets per schema, not null
+     */
+    @Override
+    public MultiSchemaDataSet createDataSet(InputStream... dataSetInputStreams) {
+        try {
+            MultiSchemaBinaryDataSetReader reader = new MultiSchemaBinaryDataSetReader();
+            for (InputStream dataSetInputStream : dataSetInputStreams) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                copy(dataSetInputStream, outputStream);
+                byte[] content = outputStream.toByteArray();
+                if (isBinaryDataSet(content)) {
+                    reader.readDataSet(ByteBuffer.wrap(content));
+                    continue;
+                }
+                String checksum = getChecksum(new ByteArrayInputStream(content));
+                if (!readCompiledDataSet(checksum, reader)) {
+                    compileDataSet(checksum, new ByteArrayInputStream(content), reader);
+                }
+            }
+            return reader.getMultiSchemaDataSet();
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to create DbUnit dataset for data set streams.", e);
+        }
+    }
+
+
+    /**
+     * Compiles the given xml data set file to a binary data set file.
+     *
+     * @param xmlFile    The data set in the multi-schema xml format, not null
+     * @param binaryFile The file to write the binary data set to, not null
+     */
+    public void compile(File xmlFile, File binaryFile) {
+        MultiSchemaDataSet dataSet = super.createDataSet(xmlFile);
+        writeDataSet(dataSet, binaryFile);
+    }
+
+
+    /**
+     * Reads the compiled data set with the given checksum, if it exists. A compiled data set that cannot be read, e.g.
+     * because it is corrupt or was truncated, is ignored: the reader is left unchanged and the data set will be
+     * compiled again, replacing the compiled file.
+     *
+     * @param checksum The checksum of the xml content, not null
+     * @param reader   The reader to read the data set with, not null
+     * @return False if there is no readable compiled data set for the checksum
+     */
+    protected boolean readCompiledDataSet(String checksum, MultiSchemaBinaryDataSetReader reader) {
+        File compiledFile = getCompiledFile(checksum);
+        if (!compiledFile.exists()) {
+            return false;
+        }
+        try {
+            reader.readDataSet(compiledFile);
+            return true;
+
+        } catch (UnitilsException e) {
+            logger.warn("Unable to read compiled data set " + compiledFile + ". The data set will be compiled again.", e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Parses the given xml content and stores it as a compiled data set. The compiled data set is then read with the
+     * given reader. If it could not be stored, it is read from memory instead.
+     *
+     * @param checksum       The checksum of the xml content, not null
+     * @param xmlInputStream The xml content, not null
+     * @param reader         The reader to read the data set with, not null
+     */
+    protected void compileDataSet(String checksum, InputStream xmlInputStream, MultiSchemaBinaryDataSetReader reader) {
+        MultiSchemaXmlDataSetReaderExtend xmlReader = new MultiSchemaXmlDataSetReaderExtend(defaultSchemaName);
+        MultiSchemaDataSet dataSet = xmlReader.readDataSetXml(Arrays.asList(xmlInputStream));
+
+        File compiledFile = getCompiledFile(checksum);
+        try {
+            writeDataSet(dataSet, compiledFile);
+            logger.info("Compiled data set to " + compiledFile);
+            reader.readDataSet(compiledFile);
+
+        } catch (UnitilsException e) {
+            logger.warn("Unable to store compiled data set " + compiledFile + ". The data set will be compiled again the next time it is used.", e);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            new MultiSchemaBinaryDataSetWriter(compressionEnabled).writeDataSet(dataSet, outputStream);
+            reader.readDataSet(ByteBuffer.wrap(outputStream.toByteArray()));
+        }
+    }
+
+
+    /**
+     * Writes the given data set to the given file. The data set is first written to a temporary file that then
+     * replaces the file, so that other processes never read a half written data set.
+     *
+     * @param dataSet    The data set, not null
+     * @param binaryFile The file, not null
+     */
+    protected void writeDataSet(final MultiSchemaDataSet dataSet, File binaryFile) {
+        try {
+            writeFile(binaryFile, new ContentWriter() {
+                public void writeContent(File file) throws Exception {
+                    OutputStream outputStream = new FileOutputStream(file);
+                    try {
+                        new MultiSchemaBinaryDataSetWriter(compressionEnabled).writeDataSet(dataSet, outputStream);
+                    } finally {
+                        outputStream.close();
+                    }
+                }
+            });
+        } catch (UnitilsException e) {
+            throw new UnitilsException("Unable to write binary data set " + binaryFile, e);
+        }
+    }
+
+
+    /**
+     * @param checksum The checksum of the xml content, not null
+     * @return The file of the compiled data set, not null
+     */
+    protected File getCompiledFile(String checksum) {
+        return new File(compiledDirectory, checksum + ".uds");
+    }
+
+
+    /**
+     * Calculates the checksum of the content of the given file.
+     *
+     * @param file The file, not null
+     * @return The checksum, not null
+     */
+    protected String getChecksum(File file) throws Exception {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return getChecksum(inputStream);
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+
+    /**
+     * Calculates the checksum of the given content. The default schema name is included, since it determines the
+     * schemas of the compiled data set.
+     *
+     * @param inputStream The content, not null
+     * @return The checksum, not null
+     */
+    protected String getChecksum(InputStream inputStream) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update((defaultSchemaName + "\n").getBytes("UTF-8"));
+        byte[] buffer = new byte[64 * 1024];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, length);
+        }
+        StringBuilder checksum = new StringBuilder();
+        for (byte b : digest.digest()) {
+            checksum.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+        }
+        return checksum.toString();
+    }
+
+
+    /**
+     * @param file The file, not null
+     * @return The first bytes of the file, not null
+     */
+    protected byte[] readHeader(File file) throws Exception {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] header = new byte[4];
+            int length = 0;
+            int count;
+            while (length < header.length && (count = inputStream.read(header, length, header.length - length)) != -1) {
+                length += count;
+            }
+            return Arrays.copyOf(header, length);
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+}
@@ -16,11 +16,13 @@
 package org.unitils.dbunit.datasetfactory.impl;
 
 import org.unitils.core.UnitilsException;
-import org.unitils.dbunit.datasetfactory.DataSetFactory;
+import org.unitils.dbunit.datasetfactory.InputStreamDataSetFactory;
 import org.unitils.dbunit.util.MultiSchemaDataSet;
 import org.unitils.dbunit.util.MultiSchemaXmlDataSetReader;
+import org.unitils.dbunit.util.MultiSchemaXmlDataSetReaderExtend;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Properties;
 
@@ -30,7 +32,7 @@ import java.util.Properties;
  * @author Filip Neven
  * @author Tim Ducheyne
  */
-public class MultiSchemaXmlDataSetFactory implements DataSetFactory {
+public class MultiSchemaXmlDataSetFactory implements InputStreamDataSetFactory {
 
     /**
      * The schema name to use when no name was explicitly specified.
@@ -65,6 +67,22 @@ public class MultiSchemaXmlDataSetFactory implements DataSetFactory {
     }
 
 
+    /**
+     * Creates a {@link MultiSchemaDataSet} using the given streams.
+     *
+     * @param dataSetInputStreams The streams to the content of the dataset files, not null
+     * @return A {@link MultiSchemaDataSet} containing the datasets per schema, not null
+     */
+    public MultiSchemaDataSet createDataSet(InputStream... dataSetInputStreams) {
+        try {
+            MultiSchemaXmlDataSetReaderExtend multiSchemaXmlDataSetReader = new MultiSchemaXmlDataSetReaderExtend(defaultSchemaName);
+            return multiSchemaXmlDataSetReader.readDataSetXml(Arrays.asList(dataSetInputStreams));
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to create DbUnit dataset for data set streams.", e);
+        }
+    }
+
+
     /**
      * @return The extension that files which can be interpreted by this factory must have
      */
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetloadstrategy.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * {@link BatchInsertLoadStrategy} that first removes all data present in the tables specified in the dataset. The
+ * tables are emptied in the reverse order in which they are inserted, so that referencing rows are removed first.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BatchCleanInsertLoadStrategy extends BatchInsertLoadStrategy {
+
+    /**
+     * Deletes all rows of the given tables.
+     *
+     * @param connection          The connection, not null
+     * @param qualifiedTableNames The qualified names of the tables, in insert order, not null
+     */
+    @Override
+    protected void beforeInsert(Connection connection, List<String> qualifiedTableNames) throws SQLException {
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            for (int i = qualifiedTableNames.size() - 1; i >= 0; i--) {
+                statement.addBatch("delete from " + qualifiedTableNames.get(i));
+            }
+            statement.executeBatch();
+        } finally {
+            closeQuietly(statement);
+        }
+    }
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetloadstrategy.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.unitils.core.Unitils;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+import org.unitils.util.PropertyUtils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.dbunit.dataset.ITable.NO_VALUE;
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * {@link org.unitils.dbunit.datasetloadstrategy.DataSetLoadStrategy} that inserts the contents of the dataset into the
+ * database using JDBC batches, instead of a DbUnit <code>DatabaseOperation</code>.
+ * <p/>
+ * The tables are inserted in the order of their foreign keys: a table is inserted after the tables it references, so
+ * that the constraints do not have to be disabled. For every table, one prepared statement is created per set of
+ * columns that is specified by the rows. The values are converted by the DbUnit data type of the database column and
+ * added to the batch of the statement. A batch is sent to the database when it contains
+ * <code>dbUnit.batchInsertLoadStrategy.batchSize</code> rows, when the next rows use another statement and when all
+ * rows of the table were added, so that the rows are inserted in data set order. This matters for tables that
+ * reference themselves, for triggers and for generated keys.
+ * <p/>
+ * For databases that support it (MySQL and PostgreSQL), multiple rows are inserted by a single insert statement with
+ * multiple value lists.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BatchInsertLoadStrategy extends BaseDataSetLoadStrategy {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(BatchInsertLoadStrategy.class);
+
+    /* Property key of the number of rows that are sent to the database at once */
+    public static final String PROPKEY_BATCH_SIZE = "dbUnit.batchInsertLoadStrategy.batchSize";
+
+    /* Property key that indicates whether multiple rows are inserted by a single statement when the database supports it */
+    public static final String PROPKEY_MULTI_ROW_INSERT_ENABLED = "dbUnit.batchInsertLoadStrategy.multiRowInsert.enabled";
+
+    /* The maximum number of parameters of a multi-row insert statement */
+    protected static final int MAX_NR_OF_PARAMETERS = 32767;
+
+
+    /**
+     * Inserts the given dataset in the order of the foreign keys of its tables.
+     *
+     * @param dbUnitDatabaseConnection DbUnit class providing access to the database
+     * @param dataSet                  The dbunit dataset
+     */
+    @Override
+    protected void doExecute(DbUnitDatabaseConnection dbUnitDatabaseConnection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+        Properties configuration = getConfiguration();
+        int batchSize = Math.max(1, PropertyUtils.getInt(PROPKEY_BATCH_SIZE, 1000, configuration));
+        Connection connection = dbUnitDatabaseConnection.getConnection();
+        boolean multiRowInsert = PropertyUtils.getBoolean(PROPKEY_MULTI_ROW_INSERT_ENABLED, true, configuration) && isMultiRowInsertSupported(connection);
+        String escapePattern = (String) dbUnitDatabaseConnection.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        String schemaName = dbUnitDatabaseConnection.getSchema();
+
+        // the database table meta data is cached by the connection
+        IDataSet databaseDataSet = dbUnitDatabaseConnection.createDataSet();
+        Map<String, ITable> tablesPerDatabaseName = new LinkedHashMap<String, ITable>();
+        Map<String, ITableMetaData> databaseMetaDataPerDatabaseName = new HashMap<String, ITableMetaData>();
+        ITableIterator iterator = dataSet.iterator();
+        while (iterator.next()) {
+            ITable table = iterator.getTable();
+            ITableMetaData databaseMetaData = databaseDataSet.getTableMetaData(table.getTableMetaData().getTableName());
+            tablesPerDatabaseName.put(databaseMetaData.getTableName(), table);
+            databaseMetaDataPerDatabaseName.put(databaseMetaData.getTableName(), databaseMetaData);
+        }
+
+        Map<String, Set<String>> referencedTableNames = getReferencedTableNames(dbUnitDatabaseConnection, tablesPerDatabaseName.keySet());
+        List<String> tableNames = getTableNamesInInsertOrder(tablesPerDatabaseName.keySet(), referencedTableNames);
+        List<String> qualifiedTableNames = new ArrayList<String>();
+        for (String tableName : tableNames) {
+            qualifiedTableNames.add(getQualifiedName(schemaName, tableName, escapePattern));
+        }
+        beforeInsert(connection, qualifiedTableNames);
+
+        for (int i = 0; i < tableNames.size(); i++) {
+            String tableName = tableNames.get(i);
+            ITable table = tablesPerDatabaseName.get(tableName);
+            Column[] columns = getDatabaseColumns(table, databaseMetaDataPerDatabaseName.get(tableName));
+            insertTable(connection, qualifiedTableNames.get(i), table, columns, escapePattern, batchSize, multiRowInsert);
+        }
+    }
+
+
+    /**
+     * Hook that is called before the tables are inserted. Does nothing by default.
+     *
+     * @param connection          The connection, not null
+     * @param qualifiedTableNames The qualified names of the tables, in insert order, not null
+     */
+    protected void beforeInsert(Connection connection, List<String> qualifiedTableNames) throws SQLException {
+    }
+
+
+    /**
+     * Inserts the rows of the given table. Rows that specify the same columns are inserted using the same prepared
+     * statement. Every statement keeps its own batch, which is sent to the database when it is full, when rows are
+     * added to another statement and after all rows were added.
+     *
+     * @param connection         The connection, not null
+     * @param qualifiedTableName The qualified and escaped table name, not null
+     * @param table              The data set table, not null
+     * @param columns            The database columns of the columns of the data set table, not null
+     * @param escapePattern      The DbUnit escape pattern for identifiers, null if none
+     * @param batchSize          The number of rows per batch
+     * @param multiRowInsert     True if multiple rows are inserted by a single statement
+     */
+    protected void insertTable(Connection connection, String qualifiedTableName, ITable table, Column[] columns, String escapePattern, int batchSize, boolean multiRowInsert) throws DatabaseUnitException, SQLException {
+        int rowCount = table.getRowCount();
+        Map<String, BatchStatement> batchStatementsPerSql = new LinkedHashMap<String, BatchStatement>();
+        try {
+            int row = 0;
+            while (row < rowCount) {
+                boolean[] specifiedColumns = getSpecifiedColumns(table, columns, row);
+                int end = row + 1;
+                while (end < rowCount && Arrays.equals(specifiedColumns, getSpecifiedColumns(table, columns, end))) {
+                    end++;
+                }
+                insertRows(connection, qualifiedTableName, table, columns, specifiedColumns, row, end, escapePattern, batchSize, multiRowInsert, batchStatementsPerSql);
+                row = end;
+            }
+            for (BatchStatement batchStatement : batchStatementsPerSql.values()) {
+                executeBatch(batchStatement);
+            }
+        } finally {
+            for (BatchStatement batchStatement : batchStatementsPerSql.values()) {
+                closeQuietly(batchStatement.statement);
+            }
+        }
+        logger.debug("Inserted " + rowCount + " rows in " + qualifiedTableName);
+    }
+
+
+    /**
+     * Adds the given rows, that all specify the same columns, to the batches of the statements of the table.
+     *
+     * @param connection         The connection, not null
+     * @param qualifiedTableName The qualified and escaped table name, not null
+     * @param table              The data set table, not null
+     * @param columns            The database columns of the columns of the data set table, not null
+     * @param specifiedColumns   True for the columns that are specified by the rows, not null
+     * @param startRow           The index of the first row
+     * @param endRow             The index after the last row
+     * @param escapePattern      The DbUnit escape pattern for identifiers, null if none
+     * @param batchSize          The number of rows per batch
+     * @param multiRowInsert     True if multiple rows are inserted by a single statement
+     * @param batchStatementsPerSql The prepared statements of the table with their batches, not null
+     */
+    protected void insertRows(Connection connection, String qualifiedTableName, ITable table, Column[] columns, boolean[] specifiedColumns, int startRow, int endRow,
+                              String escapePattern, int batchSize, boolean multiRowInsert, Map<String, BatchStatement> batchStatementsPerSql) throws DatabaseUnitException, SQLException {
+        List<Column> insertColumns = new ArrayList<Column>();
+        for (int i = 0; i < columns.length; i++) {
+            if (specifiedColumns[i]) {
+                insertColumns.add(columns[i]);
+            }
+        }
+        int rowsPerStatement = 1;
+        if (multiRowInsert && !insertColumns.isEmpty()) {
+            rowsPerStatement = Math.max(1, Math.min(batchSize, MAX_NR_OF_PARAMETERS / insertColumns.size()));
+        }
+
+        int row = startRow;
+        while (row < endRow) {
+            int nrOfRows = Math.min(rowsPerStatement, endRow - row);
+            String sql = getInsertStatement(qualifiedTableName, insertColumns, escapePattern, nrOfRows);
+            BatchStatement batchStatement = batchStatementsPerSql.get(sql);
+            if (batchStatement == null) {
+                batchStatement = new BatchStatement(connection.prepareStatement(sql));
+                batchStatementsPerSql.put(sql, batchStatement);
+            }
+            // the previous rows of the table were added to other statements, these have to be inserted first
+            for (BatchStatement otherBatchStatement : batchStatementsPerSql.values()) {
+                if (otherBatchStatement != batchStatement) {
+                    executeBatch(otherBatchStatement);
+                }
+            }
+
+            int parameterIndex = 1;
+            for (int i = 0; i < nrOfRows; i++, row++) {
+                for (Column column : insertColumns) {
+                    Object value = table.getValue(row, column.getColumnName());
+                    if (value == null) {
+                        // as DbUnit does, not all data types support setting a null value
+                        batchStatement.statement.setNull(parameterIndex++, column.getDataType().getSqlType());
+                    } else {
+                        column.getDataType().setSqlValue(value, parameterIndex++, batchStatement.statement);
+                    }
+                }
+            }
+            batchStatement.statement.addBatch();
+            batchStatement.nrOfBatchedRows += nrOfRows;
+            if (batchStatement.nrOfBatchedRows >= batchSize) {
+                executeBatch(batchStatement);
+            }
+        }
+    }
+
+
+    /**
+     * Sends the batch of the given statement to the database, if it contains rows.
+     *
+     * @param batchStatement The statement with its batch, not null
+     */
+    protected void executeBatch(BatchStatement batchStatement) throws SQLException {
+        if (batchStatement.nrOfBatchedRows > 0) {
+            batchStatement.statement.executeBatch();
+            batchStatement.nrOfBatchedRows = 0;
+        }
+    }
+
+
+    /**
+     * Gets the tables that are referenced by the foreign keys of the given tables. Only references between the given
+     * tables are included. A table that references itself is included in its own referenced tables.
+     * <p/>
+     * The foreign keys of the whole schema are retrieved at once using the db support of the connection, which uses a
+     * single query for most databases. If the connection has no db support, e.g. when it was not created by the
+     * DbUnit module, the foreign keys are retrieved table per table using the JDBC database meta data.
+     *
+     * @param dbUnitDatabaseConnection The DbUnit connection, not null
+     * @param tableNames               The database table names, not null
+     * @return The referenced table names per table name, not null
+     */
+    protected Map<String, Set<String>> getReferencedTableNames(DbUnitDatabaseConnection dbUnitDatabaseConnection, Set<String> tableNames) throws SQLException {
+        Map<String, Set<String>> referencedTableNamesPerTable;
+        DbSupport dbSupport = dbUnitDatabaseConnection.getDbSupport();
+        if (dbSupport != null) {
+            referencedTableNamesPerTable = dbSupport.getReferencedTableNamesPerTable();
+        } else {
+            referencedTableNamesPerTable = getImportedTableNames(dbUnitDatabaseConnection.getConnection(), dbUnitDatabaseConnection.getSchema(), tableNames);
+        }
+
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (String tableName : tableNames) {
+            Set<String> referenced = new LinkedHashSet<String>();
+            Set<String> referencedTableNames = referencedTableNamesPerTable.get(tableName);
+            if (referencedTableNames != null) {
+                for (String referencedTableName : referencedTableNames) {
+                    if (tableNames.contains(referencedTableName)) {
+                        referenced.add(referencedTableName);
+                    }
+                }
+            }
+            result.put(tableName, referenced);
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets the tables that are referenced by the foreign keys of the given tables using the JDBC database meta data.
+     *
+     * @param connection The connection, not null
+     * @param schemaName The schema name, null or empty if none
+     * @param tableNames The database table names, not null
+     * @return The referenced table names per table name, not null
+     */
+    protected Map<String, Set<String>> getImportedTableNames(Connection connection, String schemaName, Set<String> tableNames) throws SQLException {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        DatabaseMetaData databaseMetaData = connection.getMetaData();
+        for (String tableName : tableNames) {
+            Set<String> referenced = new LinkedHashSet<String>();
+            ResultSet resultSet = null;
+            try {
+                resultSet = databaseMetaData.getImportedKeys(null, isEmpty(schemaName) ? null : schemaName, tableName);
+                while (resultSet.next()) {
+                    referenced.add(resultSet.getString("PKTABLE_NAME"));
+                }
+            } finally {
+                closeQuietly(resultSet);
+            }
+            result.put(tableName, referenced);
+        }
+        return result;
+    }
+
+
+    /**
+     * Sorts the given tables so that a table comes after the tables it references. Tables that do not depend on each
+     * other keep the order of the data set. Tables that are part of a reference cycle are added in data set order,
+     * before the tables that reference them.
+     *
+     * @param tableNames           The database table names, in data set order, not null
+     * @param referencedTableNames The referenced table names per table name, not null
+     * @return The table names in insert order, not null
+     */
+    protected List<String> getTableNamesInInsertOrder(Set<String> tableNames, Map<String, Set<String>> referencedTableNames) {
+        List<String> result = new ArrayList<String>();
+        Set<String> remaining = new LinkedHashSet<String>(tableNames);
+        while (!remaining.isEmpty()) {
+            String next = null;
+            for (String tableName : remaining) {
+                if (getRemainingReferencedTableNames(tableName, referencedTableNames, remaining).isEmpty()) {
+                    next = tableName;
+                    break;
+                }
+            }
+            if (next == null) {
+                List<String> cycle = getReferenceCycle(referencedTableNames, remaining);
+                logger.warn("Tables " + cycle + " reference each other. They are inserted in data set order.");
+                result.addAll(cycle);
+                remaining.removeAll(cycle);
+                continue;
+            }
+            result.add(next);
+            remaining.remove(next);
+        }
+        return result;
+    }
+
+
+    /**
+     * Finds the first table that is part of a reference cycle and returns all tables of that cycle. Should only be
+     * called when each of the remaining tables references another remaining table, there then is at least one cycle.
+     *
+     * @param referencedTableNames The referenced table names per table name, not null
+     * @param remaining            The tables that are not inserted yet, in data set order, not null
+     * @return The tables of the cycle, in data set order, not null
+     */
+    protected List<String> getReferenceCycle(Map<String, Set<String>> referencedTableNames, Set<String> remaining) {
+        Map<String, Set<String>> reachableTableNames = new HashMap<String, Set<String>>();
+        for (String tableName : remaining) {
+            reachableTableNames.put(tableName, getReachableTableNames(tableName, referencedTableNames, remaining));
+        }
+        List<String> result = new ArrayList<String>();
+        for (String tableName : remaining) {
+            if (!reachableTableNames.get(tableName).contains(tableName)) {
+                continue;
+            }
+            for (String otherTableName : remaining) {
+                if (otherTableName.equals(tableName) || (reachableTableNames.get(tableName).contains(otherTableName) && reachableTableNames.get(otherTableName).contains(tableName))) {
+                    result.add(otherTableName);
+                }
+            }
+            return result;
+        }
+        return new ArrayList<String>(remaining);
+    }
+
+
+    /**
+     * @param tableName            The table name, not null
+     * @param referencedTableNames The referenced table names per table name, not null
+     * @param remaining            The tables that are not inserted yet, not null
+     * @return The remaining tables that can be reached by following the references of the table, not null
+     */
+    protected Set<String> getReachableTableNames(String tableName, Map<String, Set<String>> referencedTableNames, Set<String> remaining) {
+        Set<String> result = new HashSet<String>();
+        List<String> tableNamesToVisit = new ArrayList<String>();
+        tableNamesToVisit.add(tableName);
+        while (!tableNamesToVisit.isEmpty()) {
+            String visitedTableName = tableNamesToVisit.remove(tableNamesToVisit.size() - 1);
+            for (String referencedTableName : getRemainingReferencedTableNames(visitedTableName, referencedTableNames, remaining)) {
+                if (result.add(referencedTableName)) {
+                    tableNamesToVisit.add(referencedTableName);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param tableName            The table name, not null
+     * @param referencedTableNames The referenced table names per table name, not null
+     * @param remaining            The tables that are not inserted yet, not null
+     * @return The other remaining tables that are referenced by the table, not null
+     */
+    protected Set<String> getRemainingReferencedTableNames(String tableName, Map<String, Set<String>> referencedTableNames, Set<String> remaining) {
+        Set<String> result = new HashSet<String>();
+        for (String referencedTableName : referencedTableNames.get(tableName)) {
+            if (!referencedTableName.equals(tableName) && remaining.contains(referencedTableName)) {
+                result.add(referencedTableName);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @param table        The data set table, not null
+     * @param metaData     The meta data of the database table, not null
+     * @return The database columns for the columns of the data set table, not null
+     */
+    protected Column[] getDatabaseColumns(ITable table, ITableMetaData metaData) throws DatabaseUnitException {
+        Column[] columns = table.getTableMetaData().getColumns();
+        Column[] databaseColumns = metaData.getColumns();
+        Column[] result = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = databaseColumns[metaData.getColumnIndex(columns[i].getColumnName())];
+        }
+        return result;
+    }
+
+
+    /**
+     * @param table   The data set table, not null
+     * @param columns The columns, not null
+     * @param row     The row index
+     * @return True for the columns that have a value (possibly null) in the given row, not null
+     */
+    protected boolean[] getSpecifiedColumns(ITable table, Column[] columns, int row) throws DatabaseUnitException {
+        boolean[] result = new boolean[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = table.getValue(row, columns[i].getColumnName()) != NO_VALUE;
+        }
+        return result;
+    }
+
+
+    /**
+     * @param qualifiedTableName The qualified and escaped table name, not null
+     * @param columns            The columns, not null
+     * @param escapePattern      The DbUnit escape pattern for identifiers, null if none
+     * @param nrOfRows           The number of value lists
+     * @return The insert statement, not null
+     */
+    protected String getInsertStatement(String qualifiedTableName, List<Column> columns, String escapePattern, int nrOfRows) {
+        StringBuilder valueList = new StringBuilder("(");
+        StringBuilder sql = new StringBuilder("insert into ").append(qualifiedTableName).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                valueList.append(", ");
+            }
+            sql.append(escape(columns.get(i).getColumnName(), escapePattern));
+            valueList.append('?');
+        }
+        valueList.append(')');
+        sql.append(") values ");
+        for (int i = 0; i < nrOfRows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(valueList);
+        }
+        return sql.toString();
+    }
+
+
+    /**
+     * @param schemaName    The schema name, null or empty if none
+     * @param tableName     The table name, not null
+     * @param escapePattern The DbUnit escape pattern for identifiers, null if none
+     * @return The escaped table name, qualified by the escaped schema name, not null
+     */
+    protected String getQualifiedName(String schemaName, String tableName, String escapePattern) {
+        if (isEmpty(schemaName)) {
+            return escape(tableName, escapePattern);
+        }
+        return escape(schemaName, escapePattern) + "." + escape(tableName, escapePattern);
+    }
+
+
+    /**
+     * Escapes the given identifier in the same way as DbUnit: a '?' in the pattern is replaced by the identifier, a
+     * pattern without '?' is put around the identifier.
+     *
+     * @param identifier    The identifier, not null
+     * @param escapePattern The DbUnit escape pattern, null if none
+     * @return The escaped identifier, not null
+     */
+    protected String escape(String identifier, String escapePattern) {
+        if (isEmpty(escapePattern)) {
+            return identifier;
+        }
+        int index = escapePattern.indexOf('?');
+        if (index == -1) {
+            return escapePattern + identifier + escapePattern;
+        }
+        return escapePattern.substring(0, index) + identifier + escapePattern.substring(index + 1);
+    }
+
+
+    /**
+     * @param connection The connection, not null
+     * @return True if the database supports inserting multiple rows using a single insert statement
+     */
+    protected boolean isMultiRowInsertSupported(Connection connection) throws SQLException {
+        String databaseProductName = connection.getMetaData().getDatabaseProductName();
+        return databaseProductName != null && (databaseProductName.contains("MySQL") || databaseProductName.contains("PostgreSQL"));
+    }
+
+
+    /**
+     * @return The unitils configuration, not null
+     */
+    protected Properties getConfiguration() {
+        return Unitils.getInstance().getConfiguration();
+    }
+
+
+    /**
+     * A prepared insert statement with the number of rows in its batch that were not sent to the database yet.
+     */
+    protected static class BatchStatement {
+
+        /* The prepared statement */
+        protected PreparedStatement statement;
+
+        /* The number of rows in the batch of the statement */
+        protected int nrOfBatchedRows;
+
+
+        public BatchStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
+
+import java.io.File;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of parsed data sets that is shared by all tests. A data set is identified by the urls of the resources it was
+ * read from, together with their last modification time, so that a changed resource is read again.
+ * <p/>
+ * The cache holds at most the given number of data sets: when it is full, the data set that was least recently used
+ * is removed. The tables of a cached data set are shared by all tests that use it: they can only be read, through the
+ * DbUnit ReplacementDataSet that wraps them. Every lookup returns a new {@link MultiSchemaDataSet}, so that replacing
+ * the data set of a schema does not change the cached data set.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DataSetCache {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DataSetCache.class);
+
+    /* The maximum number of cached data sets */
+    protected int maxSize;
+
+    /* The cached data sets in least recently used order */
+    protected Map<String, MultiSchemaDataSet> dataSets;
+
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize The maximum number of cached data sets, 0 to disable caching
+     */
+    public DataSetCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.dataSets = new LinkedHashMap<String, MultiSchemaDataSet>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MultiSchemaDataSet> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+
+    /**
+     * Gets the cached data set with the given key.
+     *
+     * @param key The key, see {@link #getKey}, not null
+     * @return A copy of the cached data set, null if it is not cached
+     */
+    public synchronized MultiSchemaDataSet get(String key) {
+        MultiSchemaDataSet dataSet = dataSets.get(key);
+        if (dataSet == null) {
+            return null;
+        }
+        logger.debug("Using cached data set " + key);
+        return copy(dataSet);
+    }
+
+
+    /**
+     * Adds the given data set to the cache.
+     *
+     * @param key     The key, see {@link #getKey}, not null
+     * @param dataSet The data set, not null
+     * @return A copy of the data set that can be given to the test, not null
+     */
+    public synchronized MultiSchemaDataSet put(String key, MultiSchemaDataSet dataSet) {
+        if (maxSize > 0) {
+            dataSets.put(key, dataSet);
+        }
+        return copy(dataSet);
+    }
+
+
+    /**
+     * Gets the key of the data set that is read from the given resources.
+     *
+     * @param prefix       Identifies how the resources are read, e.g. the class of the data set factory, not null
+     * @param resourceUrls The urls of the resources, not null
+     * @return The key, not null
+     */
+    public String getKey(String prefix, List<URL> resourceUrls) {
+        StringBuilder key = new StringBuilder(prefix);
+        for (URL resourceUrl : resourceUrls) {
+            key.append('|').append(resourceUrl).append('@').append(getVersion(resourceUrl));
+        }
+        return key.toString();
+    }
+
+
+    /**
+     * Gets the version of the given resource: its last modification time and, for files, also its size.
+     *
+     * @param resourceUrl The url, not null
+     * @return The version of the resource, not null
+     */
+    protected String getVersion(URL resourceUrl) {
+        try {
+            String version = String.valueOf(ClassPathResourceIndex.getLastModified(resourceUrl));
+            if ("file".equals(resourceUrl.getProtocol())) {
+                version += ":" + new File(resourceUrl.toURI()).length();
+            }
+            return version;
+        } catch (Exception e) {
+            logger.debug("Unable to get last modification time of " + resourceUrl, e);
+            return "0";
+        }
+    }
+
+
+    /**
+     * @param dataSet The data set, not null
+     * @return A data set containing the same data sets per schema, not null
+     */
+    protected MultiSchemaDataSet copy(MultiSchemaDataSet dataSet) {
+        MultiSchemaDataSet result = new MultiSchemaDataSet();
+        for (String schemaName : dataSet.getSchemaNames()) {
+            result.setDataSetForSchema(schemaName, dataSet.getDataSetForSchema(schemaName));
+        }
+        return result;
+    }
+}
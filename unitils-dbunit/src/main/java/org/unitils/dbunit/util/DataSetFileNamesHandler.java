@@ -5,6 +5,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Properties;
 
 import org.unitils.core.Unitils;
@@ -162,6 +164,38 @@ public class DataSetFileNamesHandler  {
         return tempFile;
     }
 
+    /**
+     * Same as {@link #locateResource} but returns the url of the resource instead of copying it to a temp file, so
+     * that it can be read directly.
+     *
+     * @param locator
+     * @param nameResource
+     * @param strategy
+     * @param testClass
+     * @return The url of the resource, not null
+     */
+    public URL locateResourceUrl(ClassPathDataLocator locator, String nameResource, ResourcePickingStrategie strategy, Class<?> testClass) {
+        URL url;
+        if (nameResource.startsWith("/")) {
+            url = locator.getDataResourceUrl(nameResource.substring(1), strategy);
+        } else {
+            url = locator.getDataResourceUrl(nameResource, strategy);
+        }
+        if (url != null) {
+            return url;
+        }
+
+        File resolvedFile = getDataSetResolver().resolve(testClass, generateResourceName(nameResource, testClass.getPackage()));
+        if (resolvedFile == null || !resolvedFile.isFile()) {
+            throw new UnitilsException((new StringBuilder()).append("DataSetResource file with name '").append(nameResource).append("' cannot be found").toString());
+        }
+        try {
+            return resolvedFile.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new UnitilsException((new StringBuilder()).append("DataSetResource file with name '").append(nameResource).append("' cannot be found").toString(), e);
+        }
+    }
+
     /**
      * @return The data set resolver, as configured in the Unitils configuration
      */
@@ -23,6 +23,7 @@ import javax.sql.DataSource;
 
 import org.dbunit.database.AbstractDatabaseConnection;
 import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.unitils.core.dbsupport.DbSupport;
 import org.unitils.database.DatabaseUnitils;
 
 /**
@@ -41,6 +42,9 @@ public class DbUnitDatabaseConnection extends AbstractDatabaseConnection {
     /* Name of the database schema */
     private String schemaName;
 
+    /* The db support for the database schema, null if not known */
+    private DbSupport dbSupport;
+
     /* Connection that is currently in use by DBUnit. Is stored to enable returning it to the connection pool after
      the DBUnit operation finished */
     private Connection currentlyUsedConnection, currentlyUsedNativeConnection;
@@ -75,6 +79,22 @@ public class DbUnitDatabaseConnection extends AbstractDatabaseConnection {
     }
 
 
+    /**
+     * @return The db support for the database schema, null if not known
+     */
+    public DbSupport getDbSupport() {
+        return dbSupport;
+    }
+
+
+    /**
+     * @param dbSupport The db support for the database schema, null if not known
+     */
+    public void setDbSupport(DbSupport dbSupport) {
+        this.dbSupport = dbSupport;
+    }
+
+
     /**
      * Returns a <code>Connection</code> that can be used by DBUnit. A reference to the connection is kept, to be able
      * to 'close' it (return it to the connection pool) after the DBUnit operation finished. If an open connection
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.util;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.ReplacementDataSet;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbunit.datasetfactory.impl.DbUnitDataSet;
+import org.unitils.dbunit.datasetfactory.impl.DbUnitTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+
+import static org.dbunit.dataset.ITable.NO_VALUE;
+import static org.dbunit.dataset.datatype.DataType.UNKNOWN;
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetWriter.FIRST_DICTIONARY_CODE;
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetWriter.MAGIC;
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetWriter.NO_VALUE_CODE;
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetWriter.NULL_CODE;
+import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * A reader for data sets in the binary format of the {@link MultiSchemaBinaryDataSetWriter}. Files are memory-mapped
+ * instead of being read through a stream.
+ * <p/>
+ * Multiple data sets can be read into the same result. As for the {@link MultiSchemaXmlDataSetReader}, the rows of a
+ * table that occurs in more than one data set are added to the same table. The values are shared strings from the
+ * dictionary of the data set.
+ * <p/>
+ * The tables of a data set are only added to the result once the data set was read completely: if a data set is
+ * corrupt or truncated, a {@link UnitilsException} is thrown and the result is left unchanged.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiSchemaBinaryDataSetReader {
+
+    /* All created data sets per schema */
+    protected Map<String, DbUnitDataSet> dbUnitDataSetsPerSchemaName = new LinkedHashMap<String, DbUnitDataSet>();
+
+
+    /**
+     * Checks whether the given content starts with the magic number of a binary data set.
+     *
+     * @param header The first bytes of the content, not null
+     * @return True if it is a binary data set
+     */
+    public static boolean isBinaryDataSet(byte[] header) {
+        return header.length >= 4 && ByteBuffer.wrap(header, 0, 4).getInt() == MAGIC;
+    }
+
+
+    /**
+     * Reads the given binary data set file by memory-mapping it.
+     *
+     * @param dataSetFile The file, not null
+     */
+    public void readDataSet(File dataSetFile) {
+        FileInputStream fileInputStream = null;
+        try {
+            fileInputStream = new FileInputStream(dataSetFile);
+            FileChannel fileChannel = fileInputStream.getChannel();
+            readDataSet(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+
+        } catch (UnitilsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to read binary data set " + dataSetFile, e);
+        } finally {
+            closeQuietly(fileInputStream);
+        }
+    }
+
+
+    /**
+     * Reads the given binary data set content.
+     *
+     * @param buffer The content, not null
+     */
+    public void readDataSet(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new UnitilsException("Unable to read binary data set: content is not a binary data set.");
+            }
+            boolean compressed = buffer.get() != 0;
+            if (compressed) {
+                buffer = inflate(buffer);
+            }
+            String[] dictionary = readDictionary(buffer);
+
+            List<TableContent> tableContents = new ArrayList<TableContent>();
+            int schemaCount = readCount(buffer);
+            for (int i = 0; i < schemaCount; i++) {
+                String schemaName = dictionary[buffer.getInt() - FIRST_DICTIONARY_CODE];
+                int tableCount = readCount(buffer);
+                for (int j = 0; j < tableCount; j++) {
+                    tableContents.add(readTable(buffer, dictionary, schemaName));
+                }
+            }
+            for (TableContent tableContent : tableContents) {
+                addTable(tableContent);
+            }
+
+        } catch (UnitilsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to read binary data set.", e);
+        }
+    }
+
+
+    /**
+     * Gets the result data set.
+     *
+     * @return the data set, not null
+     */
+    public MultiSchemaDataSet getMultiSchemaDataSet() {
+        MultiSchemaDataSet multiSchemaDataSet = new MultiSchemaDataSet();
+        for (Map.Entry<String, DbUnitDataSet> entry : dbUnitDataSetsPerSchemaName.entrySet()) {
+            // wrap data sets in replacement data sets, and replace [null] tokens by the null reference
+            ReplacementDataSet replacementDataSet = new ReplacementDataSet(entry.getValue());
+            replacementDataSet.addReplacementObject("[null]", null);
+            multiSchemaDataSet.setDataSetForSchema(entry.getKey(), replacementDataSet);
+        }
+        return multiSchemaDataSet;
+    }
+
+
+    /**
+     * Reads the columns and values of a table.
+     *
+     * @param buffer     The content, not null
+     * @param dictionary The strings per dictionary index, not null
+     * @param schemaName The schema of the table, not null
+     * @return The content of the table, not null
+     */
+    protected TableContent readTable(ByteBuffer buffer, String[] dictionary, String schemaName) {
+        String tableName = dictionary[buffer.getInt() - FIRST_DICTIONARY_CODE];
+        int columnCount = readCount(buffer);
+        String[] columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = dictionary[buffer.getInt() - FIRST_DICTIONARY_CODE];
+        }
+        int rowCount = columnCount == 0 ? buffer.getInt() : readCount(buffer);
+
+        // the values are stored column by column
+        Object[][] values = new Object[columnCount][rowCount];
+        for (int i = 0; i < columnCount; i++) {
+            int width = buffer.get();
+            for (int row = 0; row < rowCount; row++) {
+                int code;
+                if (width == 1) {
+                    code = buffer.get() & 0xFF;
+                } else if (width == 2) {
+                    code = buffer.getShort() & 0xFFFF;
+                } else {
+                    code = buffer.getInt();
+                }
+                values[i][row] = getValue(code, dictionary);
+            }
+        }
+        return new TableContent(schemaName, tableName, columnNames, values, rowCount);
+    }
+
+
+    /**
+     * Adds the columns and rows of the given table content to the table with the same name in the data set of its
+     * schema.
+     *
+     * @param tableContent The content of the table, not null
+     */
+    protected void addTable(TableContent tableContent) {
+        DbUnitDataSet dbUnitDataSet = dbUnitDataSetsPerSchemaName.get(tableContent.schemaName);
+        if (dbUnitDataSet == null) {
+            dbUnitDataSet = new DbUnitDataSet();
+            dbUnitDataSetsPerSchemaName.put(tableContent.schemaName, dbUnitDataSet);
+        }
+        DbUnitTable table = dbUnitDataSet.getDbUnitTable(tableContent.tableName);
+        if (table == null) {
+            table = new DbUnitTable(tableContent.tableName);
+            dbUnitDataSet.addTable(table);
+        }
+
+        String[] columnNames = tableContent.columnNames;
+        for (String columnName : columnNames) {
+            table.addColumn(new Column(columnName, UNKNOWN));
+        }
+        List<String> tableColumnNames = table.getColumnNames();
+        int[] columnIndexes = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIndexes[i] = tableColumnNames.indexOf(columnNames[i]);
+        }
+        for (int row = 0; row < tableContent.rowCount; row++) {
+            Object[] rowValues = new Object[tableColumnNames.size()];
+            Arrays.fill(rowValues, NO_VALUE);
+            for (int i = 0; i < columnNames.length; i++) {
+                rowValues[columnIndexes[i]] = tableContent.values[i][row];
+            }
+            table.addRow(Arrays.asList(rowValues));
+        }
+    }
+
+
+    /**
+     * Reads a nr of elements. Every element takes at least 1 byte, so a count that is larger than the remaining content
+     * can only be read from a corrupt data set. Checking it avoids allocating huge arrays for such a data set.
+     *
+     * @param buffer The content, not null
+     * @return The count, not negative
+     */
+    protected int readCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new UnitilsException("Unable to read binary data set: content is corrupt.");
+        }
+        return count;
+    }
+
+
+    /**
+     * @param buffer The content, positioned at the start of the dictionary, not null
+     * @return The strings of the dictionary, not null
+     */
+    protected String[] readDictionary(ByteBuffer buffer) throws Exception {
+        String[] dictionary = new String[readCount(buffer)];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = readCount(buffer);
+            if (length > bytes.length) {
+                bytes = new byte[length];
+            }
+            buffer.get(bytes, 0, length);
+            dictionary[i] = new String(bytes, 0, length, "UTF-8");
+        }
+        return dictionary;
+    }
+
+
+    /**
+     * @param code       The code of the value
+     * @param dictionary The strings per dictionary index, not null
+     * @return The value
+     */
+    protected Object getValue(int code, String[] dictionary) {
+        if (code == NO_VALUE_CODE) {
+            return NO_VALUE;
+        }
+        if (code == NULL_CODE) {
+            return null;
+        }
+        return dictionary[code - FIRST_DICTIONARY_CODE];
+    }
+
+
+    /**
+     * Decompresses the remaining content of the given buffer.
+     *
+     * @param buffer The compressed content, not null
+     * @return The decompressed content, not null
+     */
+    protected ByteBuffer inflate(ByteBuffer buffer) throws Exception {
+        byte[] input = new byte[buffer.remaining()];
+        buffer.get(input);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(input.length * 4);
+            byte[] output = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(output);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new UnitilsException("Unable to read binary data set: compressed content is incomplete.");
+                }
+                outputStream.write(output, 0, length);
+            }
+            return ByteBuffer.wrap(outputStream.toByteArray());
+        } finally {
+            inflater.end();
+        }
+    }
+
+
+    /**
+     * The columns and values of a table that were read from a data set, but not yet added to the result.
+     */
+    protected static class TableContent {
+
+        /* The schema of the table */
+        protected String schemaName;
+
+        /* The name of the table */
+        protected String tableName;
+
+        /* The names of the columns of the table */
+        protected String[] columnNames;
+
+        /* The values per column and row */
+        protected Object[][] values;
+
+        /* The nr of rows */
+        protected int rowCount;
+
+
+        public TableContent(String schemaName, String tableName, String[] columnNames, Object[][] values, int rowCount) {
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+            this.columnNames = columnNames;
+            this.values = values;
+            this.rowCount = rowCount;
+        }
+    }
+}
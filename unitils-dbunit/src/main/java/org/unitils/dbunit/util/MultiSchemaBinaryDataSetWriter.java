@@ -0,0 +1,251 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.util;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.unitils.core.UnitilsException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.dbunit.dataset.ITable.NO_VALUE;
+
+/**
+ * Writes a data set in the compact binary format that is read by the {@link MultiSchemaBinaryDataSetReader}.
+ * <p/>
+ * The file starts with a header: the magic number {@link #MAGIC} and a byte that indicates whether the rest of the
+ * file is compressed (deflate). All strings of the data set (schema, table and column names and values) are stored
+ * once, in a dictionary. The tables are stored column by column: for every column the dictionary indexes of its
+ * values are written, as bytes, shorts or ints depending on the largest index of the column.
+ * <p/>
+ * The values are stored as the strings that are found in the data set. The actual column types are only known when
+ * the data set is inserted, so DbUnit still converts the values at that moment.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiSchemaBinaryDataSetWriter {
+
+    /* The magic number that starts every binary data set: UDS1 */
+    public static final int MAGIC = 0x55445331;
+
+    /* The code of a value that is not specified for a row */
+    public static final int NO_VALUE_CODE = 0;
+
+    /* The code of a null value */
+    public static final int NULL_CODE = 1;
+
+    /* The code of the first dictionary entry */
+    public static final int FIRST_DICTIONARY_CODE = 2;
+
+    /* True if the content is compressed */
+    protected boolean compressed;
+
+
+    /**
+     * Creates a writer.
+     *
+     * @param compressed True if the content is compressed
+     */
+    public MultiSchemaBinaryDataSetWriter(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+
+    /**
+     * Writes the given data set to the given stream. The stream is not closed.
+     *
+     * @param multiSchemaDataSet The data set, not null
+     * @param outputStream       The stream to write to, not null
+     */
+    public void writeDataSet(MultiSchemaDataSet multiSchemaDataSet, OutputStream outputStream) {
+        try {
+            DataOutputStream headerOutputStream = new DataOutputStream(outputStream);
+            headerOutputStream.writeInt(MAGIC);
+            headerOutputStream.writeBoolean(compressed);
+            headerOutputStream.flush();
+
+            DeflaterOutputStream deflaterOutputStream = null;
+            OutputStream bodyOutputStream = outputStream;
+            if (compressed) {
+                bodyOutputStream = deflaterOutputStream = new DeflaterOutputStream(outputStream);
+            }
+            DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(bodyOutputStream, 64 * 1024));
+            writeBody(multiSchemaDataSet, dataOutputStream);
+            dataOutputStream.flush();
+            if (deflaterOutputStream != null) {
+                deflaterOutputStream.finish();
+            }
+
+        } catch (Exception e) {
+            throw new UnitilsException("Unable to write binary data set.", e);
+        }
+    }
+
+
+    /**
+     * Writes the dictionary, followed by the tables per schema.
+     *
+     * @param multiSchemaDataSet The data set, not null
+     * @param dataOutputStream   The stream to write to, not null
+     */
+    protected void writeBody(MultiSchemaDataSet multiSchemaDataSet, DataOutputStream dataOutputStream) throws Exception {
+        Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+        Map<String, List<ITable>> tablesPerSchemaName = new LinkedHashMap<String, List<ITable>>();
+        for (String schemaName : multiSchemaDataSet.getSchemaNames()) {
+            List<ITable> tables = new ArrayList<ITable>();
+            ITableIterator iterator = multiSchemaDataSet.getDataSetForSchema(schemaName).iterator();
+            while (iterator.next()) {
+                tables.add(iterator.getTable());
+            }
+            tablesPerSchemaName.put(schemaName, tables);
+            addToDictionary(schemaName, dictionary);
+            for (ITable table : tables) {
+                addToDictionary(table, dictionary);
+            }
+        }
+
+        dataOutputStream.writeInt(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes("UTF-8");
+            dataOutputStream.writeInt(bytes.length);
+            dataOutputStream.write(bytes);
+        }
+
+        dataOutputStream.writeInt(tablesPerSchemaName.size());
+        for (Map.Entry<String, List<ITable>> entry : tablesPerSchemaName.entrySet()) {
+            dataOutputStream.writeInt(getCode(entry.getKey(), dictionary));
+            dataOutputStream.writeInt(entry.getValue().size());
+            for (ITable table : entry.getValue()) {
+                writeTable(table, dictionary, dataOutputStream);
+            }
+        }
+    }
+
+
+    /**
+     * Writes the name, the column names and the values of the given table. The values are written column by column.
+     *
+     * @param table            The table, not null
+     * @param dictionary       The codes per string, not null
+     * @param dataOutputStream The stream to write to, not null
+     */
+    protected void writeTable(ITable table, Map<String, Integer> dictionary, DataOutputStream dataOutputStream) throws Exception {
+        Column[] columns = table.getTableMetaData().getColumns();
+        int rowCount = table.getRowCount();
+
+        dataOutputStream.writeInt(getCode(table.getTableMetaData().getTableName(), dictionary));
+        dataOutputStream.writeInt(columns.length);
+        for (Column column : columns) {
+            dataOutputStream.writeInt(getCode(column.getColumnName(), dictionary));
+        }
+        dataOutputStream.writeInt(rowCount);
+
+        int[] codes = new int[rowCount];
+        for (Column column : columns) {
+            int maxCode = 0;
+            for (int row = 0; row < rowCount; row++) {
+                codes[row] = getCode(table.getValue(row, column.getColumnName()), dictionary);
+                maxCode = Math.max(maxCode, codes[row]);
+            }
+            int width = getWidth(maxCode);
+            dataOutputStream.writeByte(width);
+            for (int row = 0; row < rowCount; row++) {
+                if (width == 1) {
+                    dataOutputStream.writeByte(codes[row]);
+                } else if (width == 2) {
+                    dataOutputStream.writeShort(codes[row]);
+                } else {
+                    dataOutputStream.writeInt(codes[row]);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds the name, the column names and the values of the given table to the dictionary.
+     *
+     * @param table      The table, not null
+     * @param dictionary The codes per string, not null
+     */
+    protected void addToDictionary(ITable table, Map<String, Integer> dictionary) throws Exception {
+        addToDictionary(table.getTableMetaData().getTableName(), dictionary);
+        Column[] columns = table.getTableMetaData().getColumns();
+        for (Column column : columns) {
+            addToDictionary(column.getColumnName(), dictionary);
+        }
+        for (int row = 0; row < table.getRowCount(); row++) {
+            for (Column column : columns) {
+                Object value = table.getValue(row, column.getColumnName());
+                if (value != null && value != NO_VALUE) {
+                    addToDictionary(String.valueOf(value), dictionary);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param value      The string to add, not null
+     * @param dictionary The codes per string, not null
+     */
+    protected void addToDictionary(String value, Map<String, Integer> dictionary) {
+        if (!dictionary.containsKey(value)) {
+            dictionary.put(value, FIRST_DICTIONARY_CODE + dictionary.size());
+        }
+    }
+
+
+    /**
+     * @param value      The value, null for a null value
+     * @param dictionary The codes per string, not null
+     * @return The code of the value
+     */
+    protected int getCode(Object value, Map<String, Integer> dictionary) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        if (value == NO_VALUE) {
+            return NO_VALUE_CODE;
+        }
+        return dictionary.get(String.valueOf(value));
+    }
+
+
+    /**
+     * @param maxCode The largest code of a column
+     * @return The number of bytes needed to store the codes of the column: 1, 2 or 4
+     */
+    protected int getWidth(int maxCode) {
+        if (maxCode <= 0xFF) {
+            return 1;
+        }
+        if (maxCode <= 0xFFFF) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -17,6 +17,7 @@ package org.unitils.core.dbsupport;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.unitils.core.dbsupport.DbSupportFactory.getDefaultDbSupport;
@@ -30,6 +31,7 @@ import static org.unitils.database.SQLUnitils.executeUpdate;
 import static org.unitils.database.SQLUnitils.getItemAsLong;
 import static org.unitils.reflectionassert.ReflectionAssert.assertLenientEquals;
 
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -124,6 +126,58 @@ public class DbSupportTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Tests getting the column names of all tables at once.
+     */
+    @Test
+    public void testGetColumnNamesPerTable() throws Exception {
+        Map<String, Set<String>> result = dbSupport.getColumnNamesPerTable();
+        assertLenientEquals(asList(dbSupport.toCorrectCaseIdentifier("col1"), dbSupport.toCorrectCaseIdentifier("col2")), result.get(dbSupport.toCorrectCaseIdentifier("test_table")));
+        assertLenientEquals(asList(dbSupport.toCorrectCaseIdentifier("col1")), result.get("Test_CASE_Table"));
+    }
+
+
+    /**
+     * Tests getting the primary key column names of all tables at once. Tables without primary key are not included.
+     */
+    @Test
+    public void testGetPrimaryKeyColumnNamesPerTable() throws Exception {
+        Map<String, Set<String>> result = dbSupport.getPrimaryKeyColumnNamesPerTable();
+        assertLenientEquals(asList(dbSupport.toCorrectCaseIdentifier("col1")), result.get(dbSupport.toCorrectCaseIdentifier("test_table")));
+        assertNull(result.get("Test_CASE_Table"));
+    }
+
+
+    /**
+     * Tests getting the tables referenced by foreign keys of all tables at once.
+     */
+    @Test
+    public void testGetReferencedTableNamesPerTable() throws Exception {
+        Map<String, Set<String>> result = dbSupport.getReferencedTableNamesPerTable();
+        assertLenientEquals(asList(dbSupport.toCorrectCaseIdentifier("test_table")), result.get("Test_CASE_Table"));
+        assertNull(result.get(dbSupport.toCorrectCaseIdentifier("test_table")));
+    }
+
+
+    /**
+     * Tests the meta data snapshot. The meta data is only loaded once, changes afterwards are not visible.
+     */
+    @Test
+    public void testCreateSchemaMetadataSnapshot() throws Exception {
+        SchemaMetadataSnapshot snapshot = dbSupport.createSchemaMetadataSnapshot();
+        String tableName = dbSupport.toCorrectCaseIdentifier("test_table");
+
+        assertLenientEquals(asList(tableName, "Test_CASE_Table"), snapshot.getTableNames());
+        assertLenientEquals(asList(dbSupport.toCorrectCaseIdentifier("col1"), dbSupport.toCorrectCaseIdentifier("col2")), snapshot.getColumnNames(tableName));
+        assertLenientEquals(asList(tableName), snapshot.getReferencedTableNames("Test_CASE_Table"));
+        assertTrue(snapshot.getColumnNames("xxxx").isEmpty());
+
+        cleanupTestDatabase();
+        assertLenientEquals(asList(tableName, "Test_CASE_Table"), snapshot.getTableNames());
+        assertTrue(dbSupport.createSchemaMetadataSnapshot().getTableNames().isEmpty());
+    }
+
+
     /**
      * Tests getting the table names but no tables in db.
      */
@@ -318,6 +372,24 @@ public class DbSupportTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Tests incrementing several sequences at once and retrieving the values of all sequences.
+     */
+    @Test
+    public void testIncrementSequencesToValue() throws Exception {
+        if (!dbSupport.supportsSequences()) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+
+        String sequenceName = dbSupport.toCorrectCaseIdentifier("TEST_SEQUENCE");
+        dbSupport.incrementSequencesToValue(asList(sequenceName), 30);
+        Map<String, Long> result = dbSupport.getSequenceValues();
+        assertEquals(Long.valueOf(30), result.get(sequenceName));
+        assertEquals(dbSupport.getSequenceNames(), result.keySet());
+    }
+
+
     /**
      * Tests incrementing the current value of the primary key.
      */
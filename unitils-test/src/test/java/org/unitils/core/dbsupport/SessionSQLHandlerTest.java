@@ -0,0 +1,251 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.core.dbsupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.UnitilsException;
+import org.unitils.database.annotations.TestDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.endSession;
+import static org.unitils.core.dbsupport.SessionAwareSQLHandler.Sessions.startSession;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
+import static org.unitils.database.SQLUnitils.getItemAsLong;
+
+/**
+ * Test for the {@link SessionSQLHandler}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SessionSQLHandlerTest extends UnitilsJUnit4 {
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* The nr of connections that were retrieved from the data source */
+    private AtomicInteger nrOfConnections = new AtomicInteger();
+
+    /* Tested object */
+    private SessionSQLHandler sessionSQLHandler;
+
+
+    @Before
+    public void setUp() throws Exception {
+        sessionSQLHandler = new SessionSQLHandler(createCountingDataSource(), true, 3);
+
+        executeUpdateQuietly("drop table test_table", dataSource);
+        executeUpdate("create table test_table (col1 int)", dataSource);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        executeUpdateQuietly("drop table test_table", dataSource);
+    }
+
+
+    @Test
+    public void testNoSession() {
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        long result = sessionSQLHandler.getItemAsLong("select count(*) from test_table");
+
+        assertEquals(1, result);
+        assertEquals(2, nrOfConnections.get());
+    }
+
+
+    @Test
+    public void testConnectionIsReusedDuringSession() throws Exception {
+        sessionSQLHandler.startSession(false);
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        sessionSQLHandler.getItemAsLong("select count(*) from test_table");
+        sessionSQLHandler.getItemAsLong("select count(*) from test_table");
+        sessionSQLHandler.getItemsAsStringSet("select col1 from test_table");
+        sessionSQLHandler.endSession();
+
+        assertEquals(1, nrOfConnections.get());
+    }
+
+
+    @Test
+    public void testDataSourceHandsOutOwnConnectionsDuringSession() throws Exception {
+        sessionSQLHandler.startSession(true);
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        Connection connection = sessionSQLHandler.getDataSource().getConnection();
+        try {
+            assertEquals(1, getItemAsLong("select count(*) from test_table", dataSource));
+        } finally {
+            connection.close();
+        }
+        assertEquals(1, sessionSQLHandler.getItemAsLong("select count(*) from test_table"));
+        sessionSQLHandler.endSession();
+
+        assertEquals(2, nrOfConnections.get());
+    }
+
+
+    @Test
+    public void testBatchedUpdatesAreExecutedBeforeQuery() {
+        sessionSQLHandler.startSession(true);
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        sessionSQLHandler.executeUpdate("insert into test_table values (2)");
+        assertEquals(0, getItemAsLong("select count(*) from test_table", dataSource));
+
+        long result = sessionSQLHandler.getItemAsLong("select count(*) from test_table");
+        sessionSQLHandler.endSession();
+        assertEquals(2, result);
+    }
+
+
+    @Test
+    public void testBatchIsExecutedWhenFull() {
+        sessionSQLHandler.startSession(true);
+        for (int i = 0; i < 4; i++) {
+            sessionSQLHandler.executeUpdate("insert into test_table values (" + i + ")");
+        }
+        assertEquals(3, getItemAsLong("select count(*) from test_table", dataSource));
+
+        sessionSQLHandler.endSession();
+        assertEquals(4, getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+
+    @Test
+    public void testNestedSessionWithoutBatching() {
+        sessionSQLHandler.startSession(true);
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        sessionSQLHandler.startSession(false);
+        sessionSQLHandler.executeUpdate("insert into test_table values (2)");
+        assertEquals(2, getItemAsLong("select count(*) from test_table", dataSource));
+
+        sessionSQLHandler.endSession();
+        sessionSQLHandler.endSession();
+        assertEquals(1, nrOfConnections.get());
+    }
+
+
+    @Test
+    public void testErrorInBatch() {
+        sessionSQLHandler.startSession(true);
+        sessionSQLHandler.executeUpdate("insert into test_table values (1)");
+        sessionSQLHandler.executeUpdate("insert into xxxx values (1)");
+        try {
+            sessionSQLHandler.endSession();
+            fail("UnitilsException expected");
+        } catch (UnitilsException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("insert into xxxx values (1)"));
+        }
+        assertEquals(false, sessionSQLHandler.isSessionActive());
+    }
+
+
+    @Test
+    public void testSessionsOfHandlerWithoutSessionSupport() {
+        final SQLHandler defaultSQLHandler = new DefaultSQLHandler(createCountingDataSource());
+        SQLHandler sqlHandler = (SQLHandler) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SQLHandler.class}, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                try {
+                    return method.invoke(defaultSQLHandler, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }
+        });
+
+        startSession(sqlHandler, true);
+        sqlHandler.executeUpdate("insert into test_table values (1)");
+        endSession(sqlHandler);
+
+        assertEquals(1, nrOfConnections.get());
+        assertEquals(1, getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+
+    @Test
+    public void testSessionsOfTwoThreads() throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 2; i++) {
+                final int value = i;
+                results.add(executorService.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        barrier.await();
+                        sessionSQLHandler.startSession(true);
+                        try {
+                            sessionSQLHandler.executeUpdate("insert into test_table values (" + value + ")");
+                            barrier.await();
+                            return sessionSQLHandler.isSessionActive() && sessionSQLHandler.getItemAsLong("select count(*) from test_table where col1 = " + value) == 1;
+                        } finally {
+                            sessionSQLHandler.endSession();
+                        }
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertFalse(sessionSQLHandler.isSessionActive());
+        assertEquals(2, nrOfConnections.get());
+        assertEquals(2, getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+
+    private DataSource createCountingDataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("getConnection".equals(method.getName())) {
+                    nrOfConnections.incrementAndGet();
+                }
+                try {
+                    return method.invoke(dataSource, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.dbsupport.SQLHandler;
+import org.unitils.dbmaintainer.script.ExecutedScript;
+import org.unitils.dbmaintainer.script.Script;
+import org.unitils.dbmaintainer.script.ScriptContentHandle;
+import org.unitils.dbmaintainer.script.ScriptContentHandle.StringScriptContentHandle;
+import org.unitils.dbmaintainer.script.ScriptRunner;
+import org.unitils.dbmaintainer.version.ExecutedScriptInfoSource;
+import org.unitils.thirdparty.org.apache.commons.io.IOUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the parallel execution of scripts by the DBMaintainer.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DBMaintainerParallelTest extends UnitilsJUnit4 {
+
+    /* Tested object */
+    private DBMaintainer dbMaintainer;
+
+    /* The executed scripts in the order in which they were finished */
+    private List<String> executedScriptNames = Collections.synchronizedList(new ArrayList<String>());
+
+    /* The registered script executions */
+    private Set<ExecutedScript> executedScripts = new HashSet<ExecutedScript>();
+
+    /* The name of the script that should fail, null if none */
+    private String failingScriptName;
+
+    /* Test scripts */
+    private Script customers1, customers2, orders1, orders2, common, products1;
+
+
+    @Before
+    public void setUp() throws Exception {
+        dbMaintainer = new DBMaintainer();
+        dbMaintainer.nrOfThreads = 3;
+        dbMaintainer.scriptRunner = new TestScriptRunner();
+        dbMaintainer.versionSource = new TestExecutedScriptInfoSource();
+
+        customers1 = createScript("01_customers/001_create.sql");
+        customers2 = createScript("01_customers/002_insert.sql");
+        orders1 = createScript("02_orders/001_create.sql");
+        orders2 = createScript("02_orders/002_insert.sql");
+        common = createScript("03_common.sql");
+        products1 = createScript("04_products/001_create.sql");
+    }
+
+
+    @Test
+    public void testGetScriptDependencies() {
+        Map<Script, Set<Script>> result = dbMaintainer.getScriptDependencies(Arrays.asList(customers1, customers2, orders1, orders2, common, products1));
+
+        assertTrue(result.get(customers1).isEmpty());
+        assertEquals(asSet(customers1), result.get(customers2));
+        assertTrue(result.get(orders1).isEmpty());
+        assertEquals(asSet(orders1), result.get(orders2));
+        assertEquals(asSet(customers2, orders2), result.get(common));
+        assertEquals(asSet(common), result.get(products1));
+    }
+
+
+    @Test
+    public void testGetScriptDependencies_declaredDependency() {
+        dbMaintainer.scriptDependencies.put("02_orders", Arrays.asList("01_customers"));
+        Map<Script, Set<Script>> result = dbMaintainer.getScriptDependencies(Arrays.asList(customers1, customers2, orders1, orders2));
+
+        assertEquals(asSet(customers2), result.get(orders1));
+        assertEquals(asSet(orders1, customers2), result.get(orders2));
+    }
+
+
+    @Test
+    public void testExecuteScriptsInParallel() {
+        dbMaintainer.executeScripts(Arrays.asList(customers1, customers2, orders1, orders2, common, products1));
+
+        assertEquals(6, executedScriptNames.size());
+        assertBefore(customers1, customers2);
+        assertBefore(orders1, orders2);
+        assertBefore(customers2, common);
+        assertBefore(orders2, common);
+        assertBefore(common, products1);
+        assertEquals(6, executedScripts.size());
+        for (ExecutedScript executedScript : executedScripts) {
+            assertTrue(executedScript.isSucceeded());
+        }
+    }
+
+
+    @Test
+    public void testExecuteScriptsInParallel_failure() {
+        failingScriptName = customers1.getFileName();
+        try {
+            dbMaintainer.executeScripts(Arrays.asList(customers1, customers2, orders1, orders2, common, products1));
+            fail("UnitilsException expected");
+        } catch (UnitilsException e) {
+            assertEquals("Script failed: " + failingScriptName, e.getMessage());
+        }
+        // the scripts that depend on the failing script are not executed
+        assertFalse(executedScriptNames.contains(customers2.getFileName()));
+        assertFalse(executedScriptNames.contains(common.getFileName()));
+        assertFalse(executedScriptNames.contains(products1.getFileName()));
+        for (ExecutedScript executedScript : executedScripts) {
+            assertEquals(!executedScript.getScript().equals(customers1), executedScript.isSucceeded());
+        }
+    }
+
+
+    private void assertBefore(Script script1, Script script2) {
+        assertTrue(script1 + " should be executed before " + script2, executedScriptNames.indexOf(script1.getFileName()) < executedScriptNames.indexOf(script2.getFileName()));
+    }
+
+
+    private Set<Script> asSet(Script... scripts) {
+        return new HashSet<Script>(Arrays.asList(scripts));
+    }
+
+
+    private Script createScript(String fileName) {
+        return new Script(fileName, 0L, new StringScriptContentHandle(fileName));
+    }
+
+
+    /**
+     * Script runner that takes a little time to execute a script, so that scripts overlap.
+     */
+    private class TestScriptRunner implements ScriptRunner {
+
+        public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+        }
+
+        public void execute(ScriptContentHandle scriptContentHandle) {
+            String scriptName;
+            try {
+                scriptName = IOUtils.toString(scriptContentHandle.openScriptContentReader());
+                Thread.sleep(20);
+            } catch (Exception e) {
+                throw new UnitilsException(e);
+            }
+            if (scriptName.equals(failingScriptName)) {
+                throw new UnitilsException("Script failed: " + scriptName);
+            }
+            executedScriptNames.add(scriptName);
+        }
+    }
+
+
+    /**
+     * Executed script info source that keeps the registered scripts in memory. It is not thread-safe: the
+     * registration should be synchronized by the DBMaintainer.
+     */
+    private class TestExecutedScriptInfoSource implements ExecutedScriptInfoSource {
+
+        public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+        }
+
+        public boolean isFromScratchUpdateRecommended() {
+            return false;
+        }
+
+        public void registerExecutedScript(ExecutedScript executedScript) {
+            executedScripts.add(executedScript);
+        }
+
+        public void updateExecutedScript(ExecutedScript executedScript) {
+            executedScripts.remove(executedScript);
+            executedScripts.add(executedScript);
+        }
+
+        public void clearAllExecutedScripts() {
+            executedScripts.clear();
+        }
+
+        public Set<ExecutedScript> getExecutedScripts() {
+            return executedScripts;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.UnitilsException;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.DefaultSQLHandler;
+import org.unitils.core.dbsupport.H2DbSupport;
+import org.unitils.core.dbsupport.HsqldbDbSupport;
+import org.unitils.core.dbsupport.SQLHandler;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbmaintainer.clean.DBClearer;
+import org.unitils.dbmaintainer.script.ExecutedScript;
+import org.unitils.dbmaintainer.script.Script;
+import org.unitils.dbmaintainer.script.ScriptContentHandle;
+import org.unitils.dbmaintainer.script.ScriptContentHandle.StringScriptContentHandle;
+import org.unitils.dbmaintainer.script.ScriptRunner;
+import org.unitils.dbmaintainer.script.ScriptSource;
+import org.unitils.dbmaintainer.structure.ConstraintsDisabler;
+import org.unitils.dbmaintainer.version.ExecutedScriptInfoSource;
+import org.unitils.dbmaintainer.version.Version;
+import org.unitils.thirdparty.org.apache.commons.io.FileUtils;
+import org.unitils.thirdparty.org.apache.commons.io.IOUtils;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.core.dbsupport.DbSupportFactory.getDefaultDbSupport;
+import static org.unitils.core.util.SQLTestUtils.dropTestTables;
+import static org.unitils.util.PropertyUtils.getStringList;
+
+/**
+ * Tests the database snapshots of the DBMaintainer. Creating and restoring snapshots is only tested for databases that
+ * support snapshots, e.g. h2.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DBMaintainerSnapshotTest extends UnitilsJUnit4 {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DBMaintainerSnapshotTest.class);
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* Tested object */
+    private DBMaintainer dbMaintainer;
+
+    /* The handler for the test database */
+    private SQLHandler sqlHandler;
+
+    /* The DbSupport object */
+    private DbSupport dbSupport;
+
+    /* True if the current database does not support snapshots */
+    private boolean disabled;
+
+    /* The registered script executions */
+    private Set<ExecutedScript> executedScripts = new HashSet<ExecutedScript>();
+
+    /* The directory for the snapshots */
+    private File snapshotDirectory;
+
+    /* True if the schemas were cleared */
+    private boolean cleared;
+
+    /* Test scripts */
+    private List<Script> scripts;
+
+
+    @Before
+    public void setUp() throws Exception {
+        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        String dialect = configuration.getProperty("database.dialect");
+        List<String> schemas = getStringList("database.schemaNames", configuration);
+        sqlHandler = new DefaultSQLHandler(dataSource);
+        dbSupport = getDefaultDbSupport(configuration, sqlHandler, dialect, schemas.get(0));
+        disabled = !dbSupport.supportsSnapshots();
+
+        snapshotDirectory = File.createTempFile("unitils-snapshots", "");
+        snapshotDirectory.delete();
+
+        dbMaintainer = new DBMaintainer();
+        dbMaintainer.setDialect(dialect);
+        dbMaintainer.fromScratchEnabled = true;
+        dbMaintainer.snapshotEnabled = true;
+        dbMaintainer.snapshotDirectory = snapshotDirectory;
+        dbMaintainer.dbSupports = Arrays.asList(dbSupport);
+        dbMaintainer.scriptRunner = new TestScriptRunner();
+        dbMaintainer.scriptSource = new TestScriptSource();
+        dbMaintainer.versionSource = new TestExecutedScriptInfoSource();
+        dbMaintainer.constraintsDisabler = new ConstraintsDisabler() {
+            public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+            }
+
+            public void disableConstraints() {
+            }
+        };
+        dbMaintainer.dbClearer = new DBClearer() {
+            public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+            }
+
+            public void clearSchemas() {
+                cleared = true;
+            }
+        };
+
+        scripts = Arrays.asList(createScript("01_create.sql", "create table snapshot_table (col1 int primary key)"),
+                createScript("02_insert.sql", "insert into snapshot_table values (1)"));
+        dropTestTables(dbSupport, "snapshot_table");
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        dropTestTables(dbSupport, "snapshot_table");
+        FileUtils.deleteDirectory(snapshotDirectory);
+    }
+
+
+    /**
+     * Checks that a snapshot is taken after executing the scripts and that restoring it recreates the table and its
+     * data and registers the scripts.
+     */
+    @Test
+    public void testCreateAndRestoreSnapshot() {
+        if (disabled) {
+            logger.warn("Snapshots are not supported for the current dialect. Skipping test.");
+            return;
+        }
+        File snapshotFile = dbMaintainer.getSnapshotFile(scripts, "database");
+        assertFalse(snapshotFile.exists());
+
+        dbMaintainer.updateDatabase(scripts, "database", true, snapshotFile);
+        assertTrue(snapshotFile.exists());
+        assertEquals(1, snapshotDirectory.list().length);
+
+        sqlHandler.executeUpdate("drop table snapshot_table");
+        executedScripts.clear();
+
+        assertTrue(dbMaintainer.restoreSnapshot(snapshotFile, scripts, "database", true));
+        assertEquals(1, sqlHandler.getItemAsLong("select count(*) from snapshot_table"));
+        assertEquals(2, executedScripts.size());
+    }
+
+
+    /**
+     * Checks that a broken snapshot is deleted and that the schemas are cleared again so that the scripts can be
+     * executed instead.
+     */
+    @Test
+    public void testRestoreSnapshot_invalidSnapshot() throws Exception {
+        if (disabled) {
+            logger.warn("Snapshots are not supported for the current dialect. Skipping test.");
+            return;
+        }
+        File snapshotFile = dbMaintainer.getSnapshotFile(scripts, "database");
+        snapshotDirectory.mkdirs();
+        FileUtils.writeStringToFile(snapshotFile, "this is not sql;", "UTF-8");
+        executedScripts.add(new ExecutedScript(scripts.get(0), null, true));
+
+        assertFalse(dbMaintainer.restoreSnapshot(snapshotFile, scripts, "database", true));
+        assertFalse(snapshotFile.exists());
+        assertTrue(cleared);
+        assertTrue(executedScripts.isEmpty());
+    }
+
+
+    /**
+     * Checks that the snapshot file changes when a script is changed.
+     */
+    @Test
+    public void testGetSnapshotFile() {
+        dbMaintainer.dbSupports = Arrays.<DbSupport>asList(new H2DbSupport());
+        File snapshotFile = dbMaintainer.getSnapshotFile(scripts, "database");
+        assertEquals(snapshotFile, dbMaintainer.getSnapshotFile(new ArrayList<Script>(scripts), "database"));
+
+        List<Script> changedScripts = Arrays.asList(scripts.get(0), createScript("02_insert.sql", "insert into snapshot_table values (2)"));
+        assertFalse(snapshotFile.equals(dbMaintainer.getSnapshotFile(changedScripts, "database")));
+    }
+
+
+    /**
+     * Checks that no snapshot is used for a database that does not support snapshots.
+     */
+    @Test
+    public void testGetSnapshotFile_notSupported() {
+        dbMaintainer.dbSupports = Arrays.<DbSupport>asList(new H2DbSupport());
+        assertNotNull(dbMaintainer.getSnapshotFile(scripts, "database"));
+
+        dbMaintainer.dbSupports = Arrays.<DbSupport>asList(new HsqldbDbSupport());
+        assertNull(dbMaintainer.getSnapshotFile(scripts, "database"));
+    }
+
+
+    private Script createScript(String fileName, String content) {
+        return new Script(fileName, 0L, new StringScriptContentHandle(content));
+    }
+
+
+    /**
+     * Script runner that executes the content of a script as a single statement.
+     */
+    private class TestScriptRunner implements ScriptRunner {
+
+        public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+        }
+
+        public void execute(ScriptContentHandle scriptContentHandle) {
+            try {
+                sqlHandler.executeUpdate(IOUtils.toString(scriptContentHandle.openScriptContentReader()));
+            } catch (UnitilsException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new UnitilsException(e);
+            }
+        }
+    }
+
+
+    /**
+     * Script source without postprocessing scripts.
+     */
+    private class TestScriptSource implements ScriptSource {
+
+        public void init(Properties configuration) {
+        }
+
+        public List<Script> getAllUpdateScripts(String dialect, String databaseName, boolean defaultDatabase) {
+            return scripts;
+        }
+
+        public List<Script> getNewScripts(Version highestExecutedScriptVersion, Set<ExecutedScript> alreadyExecutedScripts, String dialect, String databaseName, boolean defaultDatabase) {
+            return scripts;
+        }
+
+        public boolean isExistingIndexedScriptModified(Version currentVersion, Set<ExecutedScript> alreadyExecutedScripts, String dialect, String databaseName, boolean defaultDatabase) {
+            return false;
+        }
+
+        public List<Script> getPostProcessingScripts(String dialect, String databaseName, boolean defaultDatabase) {
+            return new ArrayList<Script>();
+        }
+    }
+
+
+    /**
+     * Executed script info source that keeps the registered scripts in memory.
+     */
+    private class TestExecutedScriptInfoSource implements ExecutedScriptInfoSource {
+
+        public void init(Properties configuration, SQLHandler sqlHandler, String dialect, List<String> schemaNames) {
+        }
+
+        public boolean isFromScratchUpdateRecommended() {
+            return false;
+        }
+
+        public void registerExecutedScript(ExecutedScript executedScript) {
+            executedScripts.add(executedScript);
+        }
+
+        public void updateExecutedScript(ExecutedScript executedScript) {
+            executedScripts.remove(executedScript);
+            executedScripts.add(executedScript);
+        }
+
+        public void clearAllExecutedScripts() {
+            executedScripts.clear();
+        }
+
+        public Set<ExecutedScript> getExecutedScripts() {
+            return executedScripts;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.clean.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.DefaultSQLHandler;
+import org.unitils.core.dbsupport.HsqldbDbSupport;
+import org.unitils.core.dbsupport.PostgreSqlDbSupport;
+import org.unitils.core.dbsupport.SQLHandler;
+import org.unitils.core.dbsupport.SessionSQLHandler;
+import org.unitils.database.annotations.TestDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.core.dbsupport.DbSupportFactory.getDefaultDbSupport;
+import static org.unitils.core.util.SQLTestUtils.dropTestTables;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.database.SQLUnitils.isEmpty;
+import static org.unitils.dbmaintainer.clean.impl.DefaultDBCleaner.PROPKEY_NR_OF_THREADS;
+import static org.unitils.dbmaintainer.clean.impl.DefaultDBCleaner.PROPKEY_PRESERVE_DATA_TABLES;
+import static org.unitils.dbmaintainer.clean.impl.DefaultDBCleaner.PROPKEY_TRUNCATE_ENABLED;
+import static org.unitils.util.PropertyUtils.getStringList;
+
+/**
+ * Test class for the truncate strategy and the parallel cleaning of the {@link DefaultDBCleaner}. This test is only
+ * executed for hsqldb.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDBCleanerTruncateTest extends UnitilsJUnit4 {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultDBCleanerTruncateTest.class);
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* Tested object */
+    private DefaultDBCleaner defaultDbCleaner;
+
+    /* The DbSupport object */
+    private DbSupport dbSupport;
+
+    /* True if current test is not for the current dialect */
+    private boolean disabled;
+
+    /* The configuration */
+    private Properties configuration;
+
+    /* The schema names */
+    private List<String> schemas;
+
+
+    /**
+     * Configures the tested object and creates the test tables.
+     */
+    @Before
+    public void setUp() throws Exception {
+        configuration = new ConfigurationLoader().loadConfiguration();
+        String dialect = configuration.getProperty("database.dialect");
+        disabled = !"hsqldb".equals(dialect);
+        if (disabled) {
+            return;
+        }
+        configuration.setProperty(PROPKEY_TRUNCATE_ENABLED, "true");
+        configuration.setProperty(PROPKEY_NR_OF_THREADS, "3");
+        configuration.setProperty(PROPKEY_PRESERVE_DATA_TABLES, "table_preserve");
+        schemas = getStringList("database.schemaNames", configuration);
+        SQLHandler sqlHandler = new DefaultSQLHandler(dataSource);
+        dbSupport = getDefaultDbSupport(configuration, sqlHandler, dialect, schemas.get(0));
+        defaultDbCleaner = new DefaultDBCleaner();
+        defaultDbCleaner.init(configuration, sqlHandler, dialect, schemas);
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+
+    /**
+     * Removes the test tables.
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (disabled) {
+            return;
+        }
+        cleanupTestDatabase();
+    }
+
+
+    /**
+     * Checks that all tables are cleaned, except for the table to preserve.
+     */
+    @Test
+    public void testCleanSchemas() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        defaultDbCleaner.cleanSchemas();
+
+        assertTrue(isEmpty("table_parent", dataSource));
+        assertTrue(isEmpty("table_child", dataSource));
+        assertTrue(isEmpty("table_other", dataSource));
+        assertTrue(isEmpty("table_empty", dataSource));
+        assertFalse(isEmpty("table_preserve", dataSource));
+    }
+
+
+    /**
+     * Checks that all tables are cleaned when the tasks run in sessions of their own and that the thread pool is
+     * reused by the next call.
+     */
+    @Test
+    public void testCleanSchemas_sessionSQLHandler() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        defaultDbCleaner = new DefaultDBCleaner();
+        defaultDbCleaner.init(configuration, new SessionSQLHandler(dataSource), configuration.getProperty("database.dialect"), schemas);
+
+        defaultDbCleaner.cleanSchemas();
+        Object executorService = defaultDbCleaner.getExecutorService();
+        executeUpdate("insert into table_other values (1)", dataSource);
+        defaultDbCleaner.cleanSchemas();
+
+        assertSame(executorService, defaultDbCleaner.getExecutorService());
+        assertTrue(isEmpty("table_parent", dataSource));
+        assertTrue(isEmpty("table_child", dataSource));
+        assertTrue(isEmpty("table_other", dataSource));
+        assertFalse(isEmpty("table_preserve", dataSource));
+    }
+
+
+    /**
+     * Checks that only the tables that contain rows are found.
+     */
+    @Test
+    public void testGetNonEmptyTableNames() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        List<String> tableNames = Arrays.asList("TABLE_PARENT", "TABLE_CHILD", "TABLE_OTHER", "TABLE_EMPTY");
+        assertEquals(3, dbSupport.getNonEmptyTableNames(tableNames).size());
+        assertFalse(dbSupport.getNonEmptyTableNames(tableNames).contains("TABLE_EMPTY"));
+    }
+
+
+    /**
+     * Checks that tables that are linked by a foreign key are put in the same group.
+     */
+    @Test
+    public void testGetTableGroups() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        List<List<String>> result = defaultDbCleaner.getTableGroups(Arrays.asList("TABLE_OTHER", "TABLE_PARENT", "TABLE_CHILD"), dbSupport);
+
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).size());
+        assertTrue(result.get(0).containsAll(Arrays.asList("TABLE_PARENT", "TABLE_CHILD")));
+        assertEquals(Arrays.asList("TABLE_OTHER"), result.get(1));
+    }
+
+
+    /**
+     * Checks that a table that is referenced by another table is not truncated: its rows are deleted after the other
+     * tables are truncated. The truncates are recorded, since HSQLDB 1.8 does not support them.
+     */
+    @Test
+    public void testTruncateTables_referencedTable() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        final List<String> truncatedTableNames = new ArrayList<String>();
+        HsqldbDbSupport hsqldbDbSupport = new HsqldbDbSupport() {
+            @Override
+            protected boolean isTruncateSupported() {
+                return true;
+            }
+
+            @Override
+            protected void truncateTable(String tableName) {
+                truncatedTableNames.add(tableName);
+                deleteRows(tableName);
+            }
+        };
+        hsqldbDbSupport.init(configuration, new DefaultSQLHandler(dataSource), schemas.get(0));
+
+        hsqldbDbSupport.truncateTables(Arrays.asList("TABLE_PARENT", "TABLE_CHILD", "TABLE_OTHER"));
+
+        assertEquals(Arrays.asList("TABLE_CHILD", "TABLE_OTHER"), truncatedTableNames);
+        assertTrue(isEmpty("table_parent", dataSource));
+        assertTrue(isEmpty("table_child", dataSource));
+        assertTrue(isEmpty("table_other", dataSource));
+    }
+
+
+    /**
+     * Checks the statements for PostgreSQL: a table is only truncated together with all tables that reference it.
+     * TABLE_A is referenced by TABLE_B, which is not truncated. TABLE_C references TABLE_A, so that it cannot be
+     * truncated without TABLE_A either. No database is needed: the statements are recorded.
+     */
+    @Test
+    public void testTruncateTables_postgreSql() throws Exception {
+        final List<String> statements = new ArrayList<String>();
+        final Map<String, Set<String>> referencedTableNamesPerTable = new HashMap<String, Set<String>>();
+        referencedTableNamesPerTable.put("TABLE_B", new HashSet<String>(Arrays.asList("TABLE_A")));
+        referencedTableNamesPerTable.put("TABLE_A", new HashSet<String>(Arrays.asList("TABLE_C")));
+        referencedTableNamesPerTable.put("TABLE_E", new HashSet<String>(Arrays.asList("TABLE_D", "TABLE_E")));
+        PostgreSqlDbSupport postgreSqlDbSupport = new PostgreSqlDbSupport() {
+            @Override
+            public Map<String, Set<String>> getReferencedTableNamesPerTable() {
+                return referencedTableNamesPerTable;
+            }
+        };
+        Properties postgreSqlConfiguration = new Properties();
+        postgreSqlConfiguration.setProperty("database.identifierQuoteString.postgresql", "\"");
+        postgreSqlConfiguration.setProperty("database.storedIndentifierCase.postgresql", "upper_case");
+        postgreSqlDbSupport.init(postgreSqlConfiguration, new DefaultSQLHandler(null) {
+            @Override
+            public int executeUpdate(String sql) {
+                statements.add(sql);
+                return 0;
+            }
+        }, "PUBLIC");
+
+        postgreSqlDbSupport.truncateTables(Arrays.asList("TABLE_A", "TABLE_C", "TABLE_D", "TABLE_E"));
+
+        assertEquals(Arrays.asList("truncate table \"PUBLIC\".\"TABLE_D\", \"PUBLIC\".\"TABLE_E\"", "delete from \"PUBLIC\".\"TABLE_A\"", "delete from \"PUBLIC\".\"TABLE_C\""), statements);
+    }
+
+
+    /**
+     * Creates the test tables and inserts rows in all of them, except for table_empty.
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table table_parent (col1 int not null primary key)", dataSource);
+        executeUpdate("create table table_child (col1 int, foreign key (col1) references table_parent(col1))", dataSource);
+        executeUpdate("create table table_other (col1 int)", dataSource);
+        executeUpdate("create table table_empty (col1 int)", dataSource);
+        executeUpdate("create table table_preserve (col1 int)", dataSource);
+        executeUpdate("insert into table_parent values (1)", dataSource);
+        executeUpdate("insert into table_child values (1)", dataSource);
+        executeUpdate("insert into table_other values (1)", dataSource);
+        executeUpdate("insert into table_preserve values (1)", dataSource);
+    }
+
+
+    /**
+     * Drops all created test tables.
+     */
+    private void cleanupTestDatabase() throws Exception {
+        dropTestTables(dbSupport, "table_child", "table_parent", "table_other", "table_empty", "table_preserve");
+    }
+}
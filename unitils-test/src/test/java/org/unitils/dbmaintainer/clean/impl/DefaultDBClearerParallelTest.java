@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.clean.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.DefaultSQLHandler;
+import org.unitils.core.dbsupport.SQLHandler;
+import org.unitils.core.dbsupport.SessionSQLHandler;
+import org.unitils.database.annotations.TestDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.core.dbsupport.DbSupportFactory.getDefaultDbSupport;
+import static org.unitils.core.util.SQLTestUtils.dropTestSequences;
+import static org.unitils.core.util.SQLTestUtils.dropTestTables;
+import static org.unitils.core.util.SQLTestUtils.dropTestViews;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.dbmaintainer.clean.impl.DefaultDBClearer.PROPKEY_NR_OF_THREADS;
+import static org.unitils.util.PropertyUtils.getStringList;
+
+/**
+ * Test class for the parallel clearing of the {@link DefaultDBClearer}. This test is only executed for hsqldb.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDBClearerParallelTest extends UnitilsJUnit4 {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(DefaultDBClearerParallelTest.class);
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* Tested object */
+    private DefaultDBClearer defaultDbClearer;
+
+    /* The DbSupport object */
+    private DbSupport dbSupport;
+
+    /* True if current test is not for the current dialect */
+    private boolean disabled;
+
+    /* The configuration */
+    private Properties configuration;
+
+    /* The schema names */
+    private List<String> schemas;
+
+
+    /**
+     * Configures the tested object and creates the test tables.
+     */
+    @Before
+    public void setUp() throws Exception {
+        configuration = new ConfigurationLoader().loadConfiguration();
+        configuration.setProperty(PROPKEY_NR_OF_THREADS, "4");
+        String dialect = configuration.getProperty("database.dialect");
+        disabled = !"hsqldb".equals(dialect);
+        if (disabled) {
+            return;
+        }
+        schemas = getStringList("database.schemaNames", configuration);
+        SQLHandler sqlHandler = new DefaultSQLHandler(dataSource);
+        dbSupport = getDefaultDbSupport(configuration, sqlHandler, dialect, schemas.get(0));
+        defaultDbClearer = new DefaultDBClearer();
+        defaultDbClearer.init(configuration, sqlHandler, dialect, schemas);
+
+        cleanupTestDatabase();
+        createTestDatabase();
+    }
+
+
+    /**
+     * Removes the test tables.
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (disabled) {
+            return;
+        }
+        cleanupTestDatabase();
+    }
+
+
+    /**
+     * Checks that all items are dropped.
+     */
+    @Test
+    public void testClearSchemas() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        defaultDbClearer.clearSchemas();
+
+        // the version table is preserved
+        for (String tableName : dbSupport.getTableNames()) {
+            assertFalse(tableName, tableName.startsWith("TABLE_"));
+        }
+        assertTrue(dbSupport.getViewNames().isEmpty());
+        assertTrue(dbSupport.getSequenceNames().isEmpty());
+    }
+
+
+    /**
+     * Checks that all items are dropped when the tasks run in sessions of their own and that the thread pool is
+     * reused by the next call.
+     */
+    @Test
+    public void testClearSchemas_sessionSQLHandler() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        defaultDbClearer = new DefaultDBClearer();
+        defaultDbClearer.init(configuration, new SessionSQLHandler(dataSource), configuration.getProperty("database.dialect"), schemas);
+
+        defaultDbClearer.clearSchemas();
+        Object executorService = defaultDbClearer.getExecutorService();
+        createTestDatabase();
+        defaultDbClearer.clearSchemas();
+
+        assertSame(executorService, defaultDbClearer.getExecutorService());
+        for (String tableName : dbSupport.getTableNames()) {
+            assertFalse(tableName, tableName.startsWith("TABLE_"));
+        }
+        assertTrue(dbSupport.getViewNames().isEmpty());
+        assertTrue(dbSupport.getSequenceNames().isEmpty());
+    }
+
+
+    /**
+     * Checks that referencing tables are dropped before the tables they reference and that the tables of a
+     * cycle are dropped in a single task at the end.
+     */
+    @Test
+    public void testGetTableDropWaves() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        List<List<Callable<Void>>> result = defaultDbClearer.getTableDropWaves(dbSupport.createSchemaMetadataSnapshot());
+
+        assertEquals(4, result.size());
+        assertEquals(3, result.get(0).size()); // table_c, table_d and table_e
+        assertEquals(1, result.get(1).size()); // table_b
+        assertEquals(1, result.get(2).size()); // table_a
+        assertEquals(1, result.get(3).size()); // table_f and table_g
+    }
+
+
+    /**
+     * Creates a chain of tables a <- b <- c, an unrelated table d, a self referencing table e and 2 tables f and g
+     * that reference each other.
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create table table_a (col1 int not null primary key)", dataSource);
+        executeUpdate("create table table_b (col1 int not null primary key, foreign key (col1) references table_a(col1))", dataSource);
+        executeUpdate("create table table_c (col1 int, foreign key (col1) references table_b(col1))", dataSource);
+        executeUpdate("create table table_d (col1 int)", dataSource);
+        executeUpdate("create table table_e (col1 int not null primary key, col2 int, foreign key (col2) references table_e(col1))", dataSource);
+        executeUpdate("create table table_f (col1 int not null primary key, col2 int)", dataSource);
+        executeUpdate("create table table_g (col1 int not null primary key, col2 int, foreign key (col2) references table_f(col1))", dataSource);
+        executeUpdate("alter table table_f add constraint fk_f_g foreign key (col2) references table_g(col1)", dataSource);
+        executeUpdate("create view test_view as select col1 from table_c", dataSource);
+        executeUpdate("create sequence test_sequence", dataSource);
+    }
+
+
+    /**
+     * Drops all created test database structures.
+     */
+    private void cleanupTestDatabase() throws Exception {
+        dropTestViews(dbSupport, "test_view");
+        dropTestTables(dbSupport, "table_c", "table_b", "table_a", "table_d", "table_e", "table_f", "table_g");
+        dropTestSequences(dbSupport, "test_sequence");
+    }
+}
@@ -1,10 +1,15 @@
 package org.unitils.dbmaintainer.locator;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.apache.commons.collections.ListUtils;
 import org.easymock.EasyMock;
@@ -14,9 +19,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.unitils.UnitilsJUnit4TestClassRunner;
 import org.unitils.dbmaintainer.locator.resourcepickingstrategie.ResourcePickingStrategie;
+import org.unitils.dbmaintainer.locator.resourcepickingstrategie.impl.UniqueMostRecentPickingStrategie;
 import org.unitils.easymock.EasyMockUnitils;
 import org.unitils.easymock.annotation.Mock;
 import org.unitils.inject.annotation.TestedObject;
+import org.unitils.thirdparty.org.apache.commons.io.IOUtils;
 
 /**
  * Will test finding data on the classpath
@@ -111,5 +118,51 @@ public class ClassPathDataLocatorTest {
 
     }
 
+    /**
+     * Tests a data set in a folder with a space in its name that is found in 2 jars: the most recent one is used.
+     */
+    @Test
+    public void testGetDataResourceUrl_encodedJarPath() throws Exception {
+        File oldJar = writeJar("old", "data sets/DataSet.xml");
+        File newJar = writeJar("new", "data sets/DataSet.xml");
+        oldJar.setLastModified(newJar.lastModified() - 10000);
+        final URLClassLoader classLoader = new URLClassLoader(new URL[]{oldJar.toURI().toURL(), newJar.toURI().toURL()}, null);
+        ClassPathDataLocator locator = new ClassPathDataLocator() {
+            @Override
+            protected ClassPathResourceIndex getResourceIndex() {
+                return ClassPathResourceIndex.getInstance(classLoader);
+            }
+        };
+
+        URL url = locator.getDataResourceUrl("data sets/DataSet.xml", new UniqueMostRecentPickingStrategie());
+        InputStream inputStream = ClassPathResourceIndex.openStream(url);
+        try {
+            Assert.assertEquals("new", IOUtils.toString(inputStream));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes a temporary jar with the given entry.
+     *
+     * @param content   The content of the entry
+     * @param entryName The name of the entry
+     * @return The jar, not null
+     */
+    private File writeJar(String content, String entryName) throws IOException {
+        File jarFile = File.createTempFile("ClassPathDataLocatorTest", ".jar");
+        jarFile.deleteOnExit();
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            jarOutputStream.putNextEntry(new JarEntry(entryName));
+            jarOutputStream.write(content.getBytes("UTF-8"));
+            jarOutputStream.closeEntry();
+        } finally {
+            jarOutputStream.close();
+        }
+        return jarFile;
+    }
+
 
 }
@@ -0,0 +1,206 @@
+package org.unitils.dbmaintainer.locator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.thirdparty.org.apache.commons.io.IOUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests looking up resources in jars and directories using the {@link ClassPathResourceIndex}.
+ *
+ * @author tdr
+ */
+public class ClassPathResourceIndexTest extends UnitilsJUnit4 {
+
+    /* Tested object */
+    private ClassPathResourceIndex classPathResourceIndex;
+
+    /* The test jar */
+    private File jarFile;
+
+    /* The class loader containing the test jar */
+    private URLClassLoader classLoader;
+
+
+    @Before
+    public void setUp() throws Exception {
+        jarFile = File.createTempFile("ClassPathResourceIndexTest", ".jar");
+        writeJar("dbscripts/", "dbscripts/01_create.sql", "dbscripts/02_insert.sql", "dbscripts/readme.txt", "dbscripts/sub/03_update.sql", "other/", "other/04_other.sql", "other/05_nosql",
+                "db scripts/", "db scripts/01 cr\u00e9\u00e9.sql");
+        classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, null);
+        classPathResourceIndex = ClassPathResourceIndex.getInstance(classLoader);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        jarFile.deleteOnExit();
+    }
+
+
+    @Test
+    public void testGetResources() throws Exception {
+        List<URL> rootResources = classPathResourceIndex.getRootResources("dbscripts/");
+        assertEquals(1, rootResources.size());
+
+        List<URL> result = classPathResourceIndex.getResources(rootResources.get(0), null);
+        assertEquals(4, result.size());
+        assertTrue(result.get(0).toString().endsWith("!/dbscripts/01_create.sql"));
+        assertTrue(result.get(3).toString().endsWith("!/dbscripts/sub/03_update.sql"));
+    }
+
+
+    @Test
+    public void testGetResources_extensions() throws Exception {
+        URL rootUrl = classPathResourceIndex.getRootResources("dbscripts/").get(0);
+
+        List<URL> result = classPathResourceIndex.getResources(rootUrl, Arrays.asList("sql"));
+        assertEquals(3, result.size());
+    }
+
+
+    /**
+     * Tests that a name that ends with the extension, but without a dot before it, is not matched.
+     */
+    @Test
+    public void testGetResources_extensionWithoutDot() throws Exception {
+        URL rootUrl = classPathResourceIndex.getRootResources("other/").get(0);
+
+        List<URL> result = classPathResourceIndex.getResources(rootUrl, Arrays.asList("sql"));
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).toString().endsWith("!/other/04_other.sql"));
+    }
+
+
+    /**
+     * Tests that the entries are indexed again when the jar is replaced by a jar with other content.
+     */
+    @Test
+    public void testGetResources_replacedJar() throws Exception {
+        URL rootUrl = classPathResourceIndex.getRootResources("dbscripts/").get(0);
+        assertEquals(4, classPathResourceIndex.getResources(rootUrl, null).size());
+
+        long lastModified = jarFile.lastModified();
+        writeJar("dbscripts/", "dbscripts/01_create.sql", "dbscripts/06_new.sql");
+        jarFile.setLastModified(lastModified - 10000);
+
+        List<URL> result = classPathResourceIndex.getResources(rootUrl, null);
+        assertEquals(2, result.size());
+        assertTrue(result.get(1).toString().endsWith("!/dbscripts/06_new.sql"));
+        InputStream inputStream = ClassPathResourceIndex.openStream(result.get(1));
+        try {
+            assertEquals("dbscripts/06_new.sql", IOUtils.toString(inputStream));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+
+    /**
+     * Tests a folder with a space in its name and an entry with non-ascii characters. The urls are encoded.
+     */
+    @Test
+    public void testGetResources_encodedNames() throws Exception {
+        URL rootUrl = classPathResourceIndex.getRootResources("db scripts/").get(0);
+        assertTrue(rootUrl.toString().endsWith("!/db%20scripts/"));
+
+        List<URL> result = classPathResourceIndex.getResources(rootUrl, Arrays.asList("sql"));
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).toString().endsWith("!/db%20scripts/01%20cr%C3%A9%C3%A9.sql"));
+        InputStream inputStream = ClassPathResourceIndex.openStream(result.get(0));
+        try {
+            assertEquals("db scripts/01 cr\u00e9\u00e9.sql", IOUtils.toString(inputStream, "UTF-8"));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+
+    /**
+     * Tests that the jar files are opened again after they were closed.
+     */
+    @Test
+    public void testCloseJarFiles() throws Exception {
+        URL url = classPathResourceIndex.getRootResources("dbscripts/02_insert.sql").get(0);
+        ClassPathResourceIndex.openStream(url).close();
+
+        ClassPathResourceIndex.closeJarFiles();
+
+        InputStream inputStream = ClassPathResourceIndex.openStream(url);
+        try {
+            assertEquals("dbscripts/02_insert.sql", IOUtils.toString(inputStream));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+
+    @Test
+    public void testGetResources_directory() throws Exception {
+        URL rootUrl = getClass().getResource("/org/unitils/dbunit/testdbscripts/");
+
+        List<URL> result = classPathResourceIndex.getResources(rootUrl, Arrays.asList("sql"));
+        assertTrue(result.contains(getClass().getResource("/org/unitils/dbunit/testdbscripts/001_Initial_TESTcreate.sql")));
+    }
+
+
+    @Test
+    public void testGetResources_notIndexed() throws Exception {
+        assertNull(classPathResourceIndex.getResources(new URL("http://localhost/dbscripts/"), null));
+    }
+
+
+    @Test
+    public void testOpenStream() throws Exception {
+        URL url = classPathResourceIndex.getRootResources("dbscripts/02_insert.sql").get(0);
+
+        InputStream inputStream = ClassPathResourceIndex.openStream(url);
+        try {
+            assertEquals("dbscripts/02_insert.sql", IOUtils.toString(inputStream));
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(jarFile.lastModified(), ClassPathResourceIndex.getLastModified(url));
+    }
+
+
+    @Test
+    public void testGetInstance() throws Exception {
+        assertSame(classPathResourceIndex, ClassPathResourceIndex.getInstance(classLoader));
+    }
+
+
+    /**
+     * Writes the test jar with the given entries. The content of each entry is its name.
+     *
+     * @param entryNames The names of the entries, not null
+     */
+    private void writeJar(String... entryNames) throws Exception {
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            for (String entryName : entryNames) {
+                jarOutputStream.putNextEntry(new JarEntry(entryName));
+                jarOutputStream.write(entryName.getBytes("UTF-8"));
+                jarOutputStream.closeEntry();
+            }
+        } finally {
+            jarOutputStream.close();
+        }
+    }
+}
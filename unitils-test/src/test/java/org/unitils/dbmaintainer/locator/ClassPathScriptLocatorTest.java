@@ -64,7 +64,7 @@ public class ClassPathScriptLocatorTest {
         List<Script> scriptList = new ArrayList<Script>();
 
         List<String> scriptExtensions = new ArrayList<String>();
-        scriptExtensions.add(".sql");
+        scriptExtensions.add("sql");
 
         EasyMock.expect(resourcePickingStrategie.filter((List<URL>) EasyMock.anyObject(), (String) EasyMock.anyObject())).andReturn(urlList);
 
@@ -46,15 +46,13 @@ private UniqueMostRecentPickingStrategie strategy;
 
     @Test
     public void testAddMostRecentDuplicateFile() throws IOException {
-        List<URL> filteredResources = new ArrayList<URL>();
         File file1 = new File("src/test/resources/org/unitils/dbunit/test1/testFile.txt");
         
         URL urlFile1 = new URL("file:///" + file1.getAbsolutePath());
-        filteredResources.add(urlFile1);
         
         String resourceSearchName = file1.getAbsolutePath().substring(file1.getAbsolutePath().lastIndexOf(pathSeperator) + 1);
         
-        strategy.addMostRecent(filteredResources, urlFile1, resourceSearchName);
+        List<URL> filteredResources = strategy.filter(Arrays.asList(urlFile1, urlFile1), resourceSearchName);
         Assert.assertEquals(1, filteredResources.size());
         ReflectionAssert.assertLenientEquals(Arrays.asList(urlFile1), filteredResources);
     }
@@ -62,17 +60,15 @@ private UniqueMostRecentPickingStrategie strategy;
     @Ignore
     @Test
     public void testAddMostRecentDifferentFiles() throws Exception {
-        List<URL> filteredResources = new ArrayList<URL>();
         File file1 = new File("src/test/resources/org/unitils/dbunit/test1/testFile.txt");
         File file2 = new File("src/test/resources/org/unitils/dbunit/test2/testFile.txt");
         
         URL urlFile1 = new URL("file:///" + file1.getAbsolutePath());
         URL urlFile2 = new URL("file:///" + file2.getAbsolutePath());
-        filteredResources.add(urlFile1);
         
         String resourceSearchName = file1.getAbsolutePath().substring(file1.getAbsolutePath().lastIndexOf(pathSeperator) + 1);
         
-        strategy.addMostRecent(filteredResources, urlFile2, resourceSearchName);
+        List<URL> filteredResources = strategy.filter(Arrays.asList(urlFile1, urlFile2), resourceSearchName);
     
         
         Assert.assertEquals(1, filteredResources.size());
@@ -81,14 +77,13 @@ private UniqueMostRecentPickingStrategie strategy;
     
     @Test
     public void testAddMostRecentEmptyFilteredResources() throws Exception {
-        List<URL> filteredResources = new ArrayList<URL>();
         File file1 = new File("src/test/resources/org/unitils/dbunit/test1/testFile.txt");
         
         URL urlFile1 = new URL("file:///" + file1.getAbsolutePath());
         
         String resourceSearchName = file1.getAbsolutePath().substring(file1.getAbsolutePath().lastIndexOf("\\") + 1);
         
-        strategy.addMostRecent(filteredResources, urlFile1, resourceSearchName);
+        List<URL> filteredResources = strategy.filter(Arrays.asList(urlFile1), resourceSearchName);
         Assert.assertEquals(1, filteredResources.size());
         ReflectionAssert.assertLenientEquals(Arrays.asList(urlFile1), filteredResources);
     }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.script.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.UnitilsException;
+import org.unitils.dbmaintainer.script.StatementBuilder;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptParser.PROPKEY_BACKSLASH_ESCAPING_ENABLED;
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptParser.PROPKEY_BUFFERED_TOKENIZER_ENABLED;
+import static org.unitils.thirdparty.org.apache.commons.io.FileUtils.readFileToString;
+
+/**
+ * Tests that the {@link BufferedScriptTokenizer} returns the same statements as the parsing states.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BufferedScriptTokenizerTest extends UnitilsJUnit4 {
+
+    /* The characters out of which the random scripts are made */
+    private static final String CHARACTERS = "ab ;;'\"\\-/*\n\r\tÉ";
+
+    /* The unitils properties */
+    private Properties configuration;
+
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new ConfigurationLoader().loadConfiguration();
+    }
+
+
+    @Test
+    public void testTokenizerIsUsed() {
+        DefaultScriptParser defaultScriptParser = new DefaultScriptParser();
+        defaultScriptParser.init(configuration, new StringReader(""));
+        assertNotNull(defaultScriptParser.bufferedScriptTokenizer);
+
+        configuration.setProperty(PROPKEY_BUFFERED_TOKENIZER_ENABLED, "false");
+        defaultScriptParser = new DefaultScriptParser();
+        defaultScriptParser.init(configuration, new StringReader(""));
+        assertNull(defaultScriptParser.bufferedScriptTokenizer);
+    }
+
+
+    @Test
+    public void testTokenizerIsNotUsedForOtherParsingStates() {
+        DefaultScriptParser defaultScriptParser = new DefaultScriptParser() {
+            @Override
+            protected StatementBuilder createStatementBuilder() {
+                return new StatementBuilder() {
+                };
+            }
+        };
+        defaultScriptParser.init(configuration, new StringReader(""));
+        assertNull(defaultScriptParser.bufferedScriptTokenizer);
+    }
+
+
+    @Test
+    public void testScripts() throws Exception {
+        for (String scriptName : new String[]{"sql-script.sql", "sql-script-ending-with-comment.sql", "sql-script-missing-semicolon.sql", "sql-script-not-ending-with-new-line.sql", "plsql-script.sql", "plsql-script-ending-with-comment.sql"}) {
+            String script = readFileToString(new File(getClass().getResource("ScriptParserTest/" + scriptName).toURI()), "UTF-8");
+            assertSameStatements(script, false, false);
+            assertSameStatements(script, true, false);
+        }
+    }
+
+
+    @Test
+    public void testRandomScripts() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            // some scripts are larger than the buffer
+            int length = random.nextInt(i % 10 == 0 ? 3 * BufferedScriptTokenizer.BUFFER_SIZE : 200);
+            StringBuilder script = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                script.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            assertSameStatements(script.toString(), i % 2 == 0, i % 3 == 0);
+        }
+    }
+
+
+    @Test
+    public void testRandomPlSqlScripts() throws Exception {
+        Random random = new Random(2);
+        String[] parts = {"create or replace procedure p is begin x; end;", "begin", "select 1 from dual;", "\n/\n", " / ", "\r\n", "'a;'", "-- c\n", "/* ; */"};
+        for (int i = 0; i < 300; i++) {
+            int length = random.nextInt(40);
+            StringBuilder script = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                script.append(parts[random.nextInt(parts.length)]);
+            }
+            assertSameStatements(script.toString(), false, false);
+        }
+    }
+
+
+    private void assertSameStatements(String script, boolean oracle, boolean backSlashEscapingEnabled) {
+        configuration.setProperty(PROPKEY_BACKSLASH_ESCAPING_ENABLED, String.valueOf(backSlashEscapingEnabled));
+        List<String> expected = getStatements(script, oracle, false);
+        List<String> result = getStatements(script, oracle, true);
+        assertEquals(script, expected, result);
+    }
+
+
+    private List<String> getStatements(String script, boolean oracle, boolean bufferedTokenizerEnabled) {
+        configuration.setProperty(PROPKEY_BUFFERED_TOKENIZER_ENABLED, String.valueOf(bufferedTokenizerEnabled));
+        DefaultScriptParser scriptParser = oracle ? new OracleScriptParser() : new DefaultScriptParser();
+        scriptParser.init(configuration, new StringReader(script));
+
+        List<String> result = new ArrayList<String>();
+        try {
+            String statement;
+            while ((statement = scriptParser.getNextStatement()) != null) {
+                result.add(statement);
+            }
+        } catch (UnitilsException e) {
+            result.add("EXCEPTION: " + e.getMessage());
+        }
+        return result;
+    }
+}
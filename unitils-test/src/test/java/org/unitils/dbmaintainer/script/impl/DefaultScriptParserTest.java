@@ -16,6 +16,7 @@
 package org.unitils.dbmaintainer.script.impl;
 
 import org.junit.After;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import org.junit.Before;
@@ -23,6 +24,7 @@ import org.junit.Test;
 import org.unitils.UnitilsJUnit4;
 import org.unitils.core.ConfigurationLoader;
 import org.unitils.core.UnitilsException;
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptParser.PROPKEY_BUFFERED_TOKENIZER_ENABLED;
 import static org.unitils.thirdparty.org.apache.commons.io.IOUtils.closeQuietly;
 
 import java.io.File;
@@ -145,4 +147,21 @@ public class DefaultScriptParserTest extends UnitilsJUnit4 {
         defaultScriptParser.init(configuration, emptyScriptReader);
         assertNull(defaultScriptParser.getNextStatement());
     }
+
+
+    /**
+     * Test parsing statements that are not separated by a new line, both with and without the buffered tokenizer.
+     */
+    @Test
+    public void testParseStatements_noNewLineAfterSeparator() throws Exception {
+        for (String bufferedTokenizerEnabled : new String[]{"true", "false"}) {
+            configuration.setProperty(PROPKEY_BUFFERED_TOKENIZER_ENABLED, bufferedTokenizerEnabled);
+            defaultScriptParser = new DefaultScriptParser();
+            defaultScriptParser.init(configuration, new StringReader("select 1;select 2;"));
+
+            assertEquals("select 1", defaultScriptParser.getNextStatement());
+            assertEquals("select 2", defaultScriptParser.getNextStatement());
+            assertNull(defaultScriptParser.getNextStatement());
+        }
+    }
 }
@@ -18,19 +18,25 @@ package org.unitils.dbmaintainer.script.impl;
 import java.util.List;
 import org.junit.After;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.unitils.UnitilsJUnit4;
 import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.UnitilsException;
 import org.unitils.core.dbsupport.DefaultSQLHandler;
 
 import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
+import static org.unitils.database.SQLUnitils.getItemAsLong;
 import static org.unitils.database.SQLUnitils.isEmpty;
 
 import org.unitils.database.annotations.TestDataSource;
 import org.unitils.dbmaintainer.script.Script;
+import org.unitils.dbmaintainer.script.ScriptContentHandle.StringScriptContentHandle;
 import org.unitils.dbmaintainer.script.ScriptContentHandle.UrlScriptContentHandle;
 
 import javax.sql.DataSource;
@@ -38,6 +44,10 @@ import javax.sql.DataSource;
 import java.util.Properties;
 import org.unitils.util.PropertyUtils;
 
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptRunner.PROPKEY_BATCH_ENABLED;
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptRunner.PROPKEY_BATCH_SIZE;
+import static org.unitils.dbmaintainer.script.impl.DefaultScriptRunner.PROPKEY_COMMIT_INTERVAL;
+
 /**
  * Test class for the DefaultScriptRunner.
  *
@@ -63,6 +73,9 @@ public class DefaultScriptRunnerTest extends UnitilsJUnit4 {
     
     private List<String> schemas;
 
+    /* The unitils properties */
+    private Properties configuration;
+
 
     /**
      * Test fixture. Configures the ConstraintsDisabler with the implementation that matches the configured database
@@ -70,7 +83,7 @@ public class DefaultScriptRunnerTest extends UnitilsJUnit4 {
      */
     @Before
     public void setUp() throws Exception {
-        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        configuration = new ConfigurationLoader().loadConfiguration();
         schemas = PropertyUtils.getStringList("database.schemaNames", configuration);
         defaultScriptRunner = new DefaultScriptRunner();
         defaultScriptRunner.init(configuration, new DefaultSQLHandler(dataSource), dialect, schemas);
@@ -106,6 +119,89 @@ public class DefaultScriptRunnerTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Tests running a script in batches: the inserts and updates are batched, the create statement is not.
+     */
+    @Test
+    public void testExecute_batched() throws Exception {
+        DefaultScriptRunner batchedScriptRunner = createBatchedScriptRunner(0);
+        batchedScriptRunner.execute(new StringScriptContentHandle("create table table1 (col1 int);\n" +
+                "insert into table1 values (1);\ninsert into table1 values (2);\ninsert into table1 values (3);\n" +
+                "update table1 set col1 = 4 where col1 = 3;\n"));
+
+        assertEquals(3, getItemAsLong("select count(*) from table1", dataSource));
+        assertEquals(1, getItemAsLong("select count(*) from table1 where col1 = 4", dataSource));
+    }
+
+
+    /**
+     * Tests running a script in batches that contains an error. The failing statement should be reported and the
+     * changes should be rolled back.
+     */
+    @Test
+    public void testExecute_batchedWithError() throws Exception {
+        executeUpdateQuietly("create table table1 (col1 int)", dataSource);
+        DefaultScriptRunner batchedScriptRunner = createBatchedScriptRunner(0);
+        try {
+            batchedScriptRunner.execute(new StringScriptContentHandle("insert into table1 values (1);\n" +
+                    "insert into table1 values (2);\ninsert into table1 values (3);\ninsert into xxxx values (1);\n"));
+            fail("UnitilsException expected");
+        } catch (UnitilsException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("insert into xxxx values (1)"));
+        }
+        assertTrue(isEmpty("table1", dataSource));
+    }
+
+
+    /**
+     * Tests running a script in batches with a commit interval. The changes before the last commit should be kept
+     * when an error occurs.
+     */
+    @Test
+    public void testExecute_batchedWithCommitInterval() throws Exception {
+        executeUpdateQuietly("create table table1 (col1 int)", dataSource);
+        DefaultScriptRunner batchedScriptRunner = createBatchedScriptRunner(2);
+        try {
+            batchedScriptRunner.execute(new StringScriptContentHandle("insert into table1 values (1);\n" +
+                    "insert into table1 values (2);\ninsert into table1 values (3);\ninsert into xxxx values (1);\n"));
+            fail("UnitilsException expected");
+        } catch (UnitilsException e) {
+            // expected
+        }
+        assertEquals(2, getItemAsLong("select count(*) from table1", dataSource));
+    }
+
+
+    /**
+     * Tests which statements can be batched.
+     */
+    @Test
+    public void testIsBatchable() {
+        assertTrue(defaultScriptRunner.isBatchable("insert into table1 values (1)"));
+        assertTrue(defaultScriptRunner.isBatchable("  UPDATE table1 set col1 = 1"));
+        assertTrue(defaultScriptRunner.isBatchable("-- comment\n/* comment */ delete from table1"));
+        assertFalse(defaultScriptRunner.isBatchable("create table table1 (col1 int)"));
+        assertFalse(defaultScriptRunner.isBatchable("inserted_values"));
+        assertFalse(defaultScriptRunner.isBatchable("begin insert into table1 values (1); end"));
+    }
+
+
+    /**
+     * Creates a script runner that executes the scripts in batches of 2 statements.
+     *
+     * @param commitInterval The nr of statements after which the changes are committed, 0 to commit once
+     * @return The script runner, not null
+     */
+    private DefaultScriptRunner createBatchedScriptRunner(int commitInterval) {
+        configuration.setProperty(PROPKEY_BATCH_ENABLED, "true");
+        configuration.setProperty(PROPKEY_BATCH_SIZE, "2");
+        configuration.setProperty(PROPKEY_COMMIT_INTERVAL, String.valueOf(commitInterval));
+        DefaultScriptRunner batchedScriptRunner = new DefaultScriptRunner();
+        batchedScriptRunner.init(configuration, new DefaultSQLHandler(dataSource), dialect, schemas);
+        return batchedScriptRunner;
+    }
+
+
     /**
      * Drops the test tables
      */
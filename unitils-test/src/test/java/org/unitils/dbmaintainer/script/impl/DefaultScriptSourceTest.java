@@ -171,6 +171,97 @@ public class DefaultScriptSourceTest extends UnitilsJUnit4 {
         assertEquals("scripts/scriptJ.sql", scripts.get(8).getFileName());       // x.x.x
     }
 
+
+    /**
+     * Tests that the checksums of the scripts are stored in the index and are taken from the index the next time,
+     * unless the script changed.
+     */
+    @Test
+    public void testGetAllUpdateScripts_checksumIndex() throws Exception {
+        File indexFile = new File(tempFolder.getRoot(), "index/script-checksums.properties");
+        configuration.setProperty(DefaultScriptSource.PROPKEY_CHECKSUM_INDEX_FILE, indexFile.getPath());
+        scriptSource = new DefaultScriptSource();
+        scriptSource.init(configuration);
+
+        List<Script> scripts = scriptSource.getAllUpdateScripts(dialect, schemas.get(0), true);
+        assertEquals(getCheckSum("1_scripts/001_scriptA.sql"), scripts.get(0).getCheckSum());
+        assertTrue(indexFile.exists());
+
+        // replace the stored checksum of script A, the stored value should be used
+        File scriptA = new File(scriptsDirName + "/test_scripts/1_scripts/001_scriptA.sql");
+        assertTrue(scriptA.setLastModified(System.currentTimeMillis() - 10000));
+        ScriptChecksumIndex scriptChecksumIndex = new ScriptChecksumIndex(indexFile);
+        scriptChecksumIndex.putCheckSum(scriptA, "stored");
+        scriptChecksumIndex.save();
+
+        scriptSource = new DefaultScriptSource();
+        scriptSource.init(configuration);
+        scripts = scriptSource.getAllUpdateScripts(dialect, schemas.get(0), true);
+        assertEquals("stored", scripts.get(0).getCheckSum());
+
+        // a changed script should get a new checksum
+        assertTrue(scriptA.setLastModified(scriptA.lastModified() - 10000));
+        scriptSource = new DefaultScriptSource();
+        scriptSource.init(configuration);
+        scripts = scriptSource.getAllUpdateScripts(dialect, schemas.get(0), true);
+        assertEquals(getCheckSum("1_scripts/001_scriptA.sql"), scripts.get(0).getCheckSum());
+    }
+
+
+    /**
+     * Tests that an index that is shared by 2 databases keeps the entries of both and that the entries of files that
+     * no longer exist are removed when the index is saved.
+     */
+    @Test
+    public void testChecksumIndex_sharedIndexFile() throws Exception {
+        File indexFile = new File(tempFolder.getRoot(), "index/script-checksums.properties");
+        File script1 = tempFolder.newFile("script1.sql");
+        File script2 = tempFolder.newFile("script2.sql");
+        File script3 = tempFolder.newFile("script3.sql");
+        for (File script : new File[]{script1, script2, script3}) {
+            assertTrue(script.setLastModified(System.currentTimeMillis() - 10000));
+        }
+
+        ScriptChecksumIndex scriptChecksumIndex1 = new ScriptChecksumIndex(indexFile);
+        ScriptChecksumIndex scriptChecksumIndex2 = new ScriptChecksumIndex(indexFile);
+        scriptChecksumIndex1.putCheckSum(script1, "checksum1");
+        scriptChecksumIndex1.putCheckSum(script3, "checksum3");
+        scriptChecksumIndex1.save();
+        scriptChecksumIndex2.putCheckSum(script2, "checksum2");
+        scriptChecksumIndex2.save();
+        assertEquals("checksum1", new ScriptChecksumIndex(indexFile).getCheckSum(script1));
+        assertEquals("checksum2", new ScriptChecksumIndex(indexFile).getCheckSum(script2));
+
+        assertTrue(script3.delete());
+        scriptChecksumIndex1.save();
+        ScriptChecksumIndex result = new ScriptChecksumIndex(indexFile);
+        assertEquals("checksum1", result.getCheckSum(script1));
+        assertEquals("checksum2", result.getCheckSum(script2));
+        assertFalse(result.storedEntries.containsKey(script3.getAbsolutePath()));
+        assertEquals(1, indexFile.getParentFile().list().length);
+    }
+
+
+    /**
+     * Tests that a stored checksum is not used if the file was modified shortly before the checksum was stored: the
+     * file could have changed again without changing its modification time.
+     */
+    @Test
+    public void testChecksumIndex_racyTimestamp() throws Exception {
+        File indexFile = new File(tempFolder.getRoot(), "index/script-checksums.properties");
+        File script = tempFolder.newFile("script.sql");
+
+        ScriptChecksumIndex scriptChecksumIndex = new ScriptChecksumIndex(indexFile);
+        scriptChecksumIndex.putCheckSum(script, "racy");
+        scriptChecksumIndex.save();
+        assertNull(new ScriptChecksumIndex(indexFile).getCheckSum(script));
+
+        assertTrue(script.setLastModified(System.currentTimeMillis() - 10000));
+        scriptChecksumIndex.putCheckSum(script, "clean");
+        scriptChecksumIndex.save();
+        assertEquals("clean", new ScriptChecksumIndex(indexFile).getCheckSum(script));
+    }
+
     @Test
     public void testDuplicateIndex() throws Exception {
         File duplicateIndexScript = null;
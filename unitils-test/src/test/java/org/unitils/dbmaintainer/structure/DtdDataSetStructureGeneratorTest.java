@@ -77,11 +77,12 @@ public class DtdDataSetStructureGeneratorTest extends UnitilsJUnit4 {
 
 
     /**
-     * Clean-up test database.
+     * Clean-up test database and the generated DTD.
      */
     @After
     public void tearDown() throws Exception {
         dropTestTables();
+        dtdFile.delete();
     }
 
 
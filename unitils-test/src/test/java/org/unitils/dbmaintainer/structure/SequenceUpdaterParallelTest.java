@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbmaintainer.structure;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.core.dbsupport.DbSupport;
+import org.unitils.core.dbsupport.SessionSQLHandler;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbmaintainer.structure.impl.DefaultSequenceUpdater;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.core.dbsupport.DbSupportFactory.getDbSupport;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
+import static org.unitils.database.SQLUnitils.getItemAsLong;
+import static org.unitils.dbmaintainer.structure.impl.DefaultSequenceUpdater.PROPKEY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE;
+import static org.unitils.dbmaintainer.structure.impl.DefaultSequenceUpdater.PROPKEY_NR_OF_THREADS;
+import static org.unitils.util.PropertyUtils.getStringList;
+
+/**
+ * Test class for updating the sequences of several schemas in parallel with the {@link DefaultSequenceUpdater}. This
+ * test is only executed for hsqldb.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SequenceUpdaterParallelTest extends UnitilsJUnit4 {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(SequenceUpdaterParallelTest.class);
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* Tested object */
+    private DefaultSequenceUpdater sequenceUpdater;
+
+    /* The SQL handler of the tested object */
+    private SessionSQLHandler sqlHandler;
+
+    /* The db support for the default PUBLIC schema */
+    private DbSupport dbSupportPublic;
+
+    /* The db support for the SCHEMA_A schema */
+    private DbSupport dbSupportSchemaA;
+
+    /* True if current test is not for the current dialect */
+    private boolean disabled;
+
+
+    /**
+     * Configures the tested object to update 2 schemas using 2 threads and creates a sequence and a table with an
+     * identity column in both schemas.
+     */
+    @Before
+    public void setUp() throws Exception {
+        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        String dialect = configuration.getProperty("database.dialect");
+        disabled = !"hsqldb".equals(dialect);
+        if (disabled) {
+            return;
+        }
+        configuration.setProperty("database.schemaNames", "PUBLIC, SCHEMA_A");
+        configuration.setProperty(PROPKEY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE, "1000");
+        configuration.setProperty(PROPKEY_NR_OF_THREADS, "2");
+        List<String> schemas = getStringList("database.schemaNames", configuration);
+        sqlHandler = new SessionSQLHandler(dataSource);
+        dbSupportPublic = getDbSupport(configuration, sqlHandler, "PUBLIC", dialect);
+        dbSupportSchemaA = getDbSupport(configuration, sqlHandler, "SCHEMA_A", dialect);
+        sequenceUpdater = new DefaultSequenceUpdater();
+        sequenceUpdater.init(configuration, sqlHandler, dialect, schemas);
+
+        dropTestDatabase();
+        createTestDatabase();
+    }
+
+
+    /**
+     * Removes the test database structures.
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (disabled) {
+            return;
+        }
+        dropTestDatabase();
+    }
+
+
+    /**
+     * Checks that the sequences and identity columns of all schemas are updated when no session was started by the
+     * caller, e.g. when called through DatabaseUnitils.updateSequences().
+     */
+    @Test
+    public void testUpdateSequences_noSession() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        assertFalse(sqlHandler.isSessionActive());
+        sequenceUpdater.updateSequences();
+
+        assertFalse(sqlHandler.isSessionActive());
+        assertTrue(dbSupportPublic.getSequenceValue("TEST_SEQUENCE") >= 1000);
+        assertTrue(dbSupportSchemaA.getSequenceValue("TEST_SEQUENCE") >= 1000);
+        executeUpdate("insert into TEST_TABLE(col2) values('test')", dataSource);
+        executeUpdate("insert into SCHEMA_A.TEST_TABLE(col2) values('test')", dataSource);
+        assertEquals(1000, getItemAsLong("select col1 from TEST_TABLE", dataSource));
+        assertEquals(1000, getItemAsLong("select col1 from SCHEMA_A.TEST_TABLE", dataSource));
+    }
+
+
+    /**
+     * Creates all test database structures
+     */
+    private void createTestDatabase() throws Exception {
+        executeUpdate("create schema SCHEMA_A AUTHORIZATION DBA", dataSource);
+        executeUpdate("create table TEST_TABLE (col1 int not null identity, col2 varchar(12) not null)", dataSource);
+        executeUpdate("create table SCHEMA_A.TEST_TABLE (col1 int not null identity, col2 varchar(12) not null)", dataSource);
+        executeUpdate("create sequence TEST_SEQUENCE", dataSource);
+        executeUpdate("create sequence SCHEMA_A.TEST_SEQUENCE", dataSource);
+    }
+
+
+    /**
+     * Drops all created test database structures
+     */
+    private void dropTestDatabase() throws Exception {
+        executeUpdateQuietly("drop sequence TEST_SEQUENCE", dataSource);
+        executeUpdateQuietly("drop sequence SCHEMA_A.TEST_SEQUENCE", dataSource);
+        executeUpdateQuietly("drop table TEST_TABLE", dataSource);
+        executeUpdateQuietly("drop table SCHEMA_A.TEST_TABLE", dataSource);
+        executeUpdateQuietly("drop schema SCHEMA_A", dataSource);
+    }
+}
@@ -21,6 +21,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.After;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -35,6 +36,7 @@ import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
 
 import org.unitils.database.annotations.TestDataSource;
 import org.unitils.dbmaintainer.clean.DBClearer;
+import org.unitils.dbmaintainer.structure.impl.BaseDataSetStructureGenerator;
 import org.unitils.dbmaintainer.structure.impl.XsdDataSetStructureGenerator;
 import org.unitils.dbmaintainer.util.DatabaseModuleConfigUtils;
 
@@ -85,6 +87,10 @@ public class XsdDataSetStructureGeneratorTest extends UnitilsJUnit4 {
     private static String dialect = "h2";
     
     private List<String> schemas;
+
+    /* The configuration of the tested object */
+    private Properties configuration;
+
     /**
      * Initializes the test by creating following tables in the test database:
      * tableOne(columnA not null, columnB not null, columnC) and
@@ -92,7 +98,7 @@ public class XsdDataSetStructureGeneratorTest extends UnitilsJUnit4 {
      */
     @Before
     public void setUp() throws Exception {
-        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        configuration = new ConfigurationLoader().loadConfiguration();
         schemas = PropertyUtils.getStringList("database.schemaNames", configuration);
         this.disabled = !"hsqldb".equals(PropertyUtils.getString(PROPKEY_DATABASE_DIALECT, configuration));
         if (disabled) {
@@ -164,6 +170,34 @@ public class XsdDataSetStructureGeneratorTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Tests that the xsd files are not generated again if the structure of the database did not change, and that they
+     * are generated again when a column is added.
+     */
+    @Test
+    public void testGenerateDataSetStructure_unchanged() throws Exception {
+        if (disabled) {
+            logger.warn("Test is not for current dialect. Skipping test.");
+            return;
+        }
+        configuration.setProperty(BaseDataSetStructureGenerator.PROPKEY_SKIP_UNCHANGED_ENABLED, "true");
+        dataSetStructureGenerator = DatabaseModuleConfigUtils.getConfiguredDatabaseTaskInstance(DataSetStructureGenerator.class, configuration, new DefaultSQLHandler(dataSource), dialect, schemas);
+
+        dataSetStructureGenerator.generateDataSetStructure();
+        File publicSchemaDataSetXsd = new File(xsdDirectory, "PUBLIC.xsd");
+        assertTrue(publicSchemaDataSetXsd.setLastModified(1000000000000L));
+
+        dataSetStructureGenerator.generateDataSetStructure();
+        assertEquals(1000000000000L, publicSchemaDataSetXsd.lastModified());
+        // no other files than the xsds are written
+        assertEquals(2, xsdDirectory.list().length);
+
+        executeUpdate("alter table TABLE_2 add column column3 varchar(1)", dataSource);
+        dataSetStructureGenerator.generateDataSetStructure();
+        assertFileContains("<xsd:attribute name=\"COLUMN3\" use=\"optional\" />", publicSchemaDataSetXsd);
+    }
+
+
     /**
      * Creates the test tables.
      */
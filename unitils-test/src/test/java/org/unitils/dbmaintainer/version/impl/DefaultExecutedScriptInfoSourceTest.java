@@ -30,9 +30,11 @@ import org.unitils.core.dbsupport.SQLHandler;
 import org.unitils.database.annotations.TestDataSource;
 import org.unitils.dbmaintainer.script.ExecutedScript;
 import org.unitils.dbmaintainer.script.Script;
+import org.unitils.thirdparty.org.apache.commons.io.FileUtils;
 
 import javax.sql.DataSource;
 
+import java.io.File;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.Date;
@@ -45,6 +47,8 @@ import static org.unitils.core.dbsupport.DbSupportFactory.getDefaultDbSupport;
 import static org.unitils.database.SQLUnitils.executeUpdate;
 import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
 import static org.unitils.dbmaintainer.version.impl.DefaultExecutedScriptInfoSource.PROPERTY_AUTO_CREATE_EXECUTED_SCRIPTS_TABLE;
+import static org.unitils.dbmaintainer.version.impl.DefaultExecutedScriptInfoSource.PROPERTY_CACHE_DIRECTORY;
+import static org.unitils.dbmaintainer.version.impl.DefaultExecutedScriptInfoSource.PROPERTY_CACHE_ENABLED;
 import static org.unitils.reflectionassert.ReflectionAssert.assertLenientEquals;
 import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEquals;
 import static org.unitils.reflectionassert.ReflectionComparatorMode.LENIENT_DATES;
@@ -79,14 +83,24 @@ public class DefaultExecutedScriptInfoSourceTest extends UnitilsJUnit4 {
     private static String dialect = "h2";
     
     private List<String> schemas;
+
+    private Properties configuration;
+
+    private SQLHandler sqlHandler;
+
+    private File cacheDirectory;
+
     /**
      * Initialize test fixture and creates a test version table.
      */
     @Before
     public void setUp() throws Exception {
-        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        configuration = new ConfigurationLoader().loadConfiguration();
+        cacheDirectory = File.createTempFile("unitils-executed-scripts", "");
+        cacheDirectory.delete();
+        configuration.setProperty(PROPERTY_CACHE_DIRECTORY, cacheDirectory.getPath());
         schemas = PropertyUtils.getStringList("database.schemaNames", configuration);
-        SQLHandler sqlHandler = new DefaultSQLHandler(dataSource);
+        sqlHandler = new DefaultSQLHandler(dataSource);
         defaultDbSupport = getDefaultDbSupport(configuration, sqlHandler, dialect, schemas.get(0));
 
         configuration.setProperty(PROPERTY_AUTO_CREATE_EXECUTED_SCRIPTS_TABLE, "false");
@@ -116,6 +130,7 @@ public class DefaultExecutedScriptInfoSourceTest extends UnitilsJUnit4 {
     @After
     public void tearDown() throws Exception {
         dropExecutedScriptsTable();
+        FileUtils.deleteDirectory(cacheDirectory);
     }
 
 
@@ -183,6 +198,47 @@ public class DefaultExecutedScriptInfoSourceTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Tests that the executed scripts are cached in memory and on disk and read again when the table changed.
+     */
+    @Test
+    public void testGetExecutedScripts_cached() throws Exception {
+        configuration.setProperty(PROPERTY_CACHE_ENABLED, "true");
+        dbVersionSource.registerExecutedScript(executedScript1);
+
+        DefaultExecutedScriptInfoSource cachingVersionSource = new DefaultExecutedScriptInfoSource();
+        cachingVersionSource.init(configuration, sqlHandler, dialect, schemas);
+        assertLenientEquals(asList(executedScript1), cachingVersionSource.getExecutedScripts());
+        assertLenientEquals(asList(executedScript1), cachingVersionSource.readCacheFile().executedScripts);
+
+        executeUpdate("update dbmaintain_scripts set succeeded = 0", dataSource);
+
+        cachingVersionSource = new DefaultExecutedScriptInfoSource();
+        cachingVersionSource.init(configuration, sqlHandler, dialect, schemas);
+        assertFalse(cachingVersionSource.getExecutedScripts().iterator().next().isSucceeded());
+    }
+
+
+    /**
+     * Tests that the cached executed scripts are read again when only the checksum of a script changed.
+     */
+    @Test
+    public void testGetExecutedScripts_cachedChecksumChanged() throws Exception {
+        configuration.setProperty(PROPERTY_CACHE_ENABLED, "true");
+        dbVersionSource.registerExecutedScript(executedScript1);
+
+        DefaultExecutedScriptInfoSource cachingVersionSource = new DefaultExecutedScriptInfoSource();
+        cachingVersionSource.init(configuration, sqlHandler, dialect, schemas);
+        cachingVersionSource.getExecutedScripts();
+
+        executeUpdate("update dbmaintain_scripts set checksum = 'changed'", dataSource);
+
+        cachingVersionSource = new DefaultExecutedScriptInfoSource();
+        cachingVersionSource.init(configuration, sqlHandler, dialect, schemas);
+        assertEquals("changed", cachingVersionSource.getExecutedScripts().iterator().next().getScript().getCheckSum());
+    }
+
+
     /**
      * Utility method to create the test version table.
      */
@@ -16,6 +16,8 @@
 package org.unitils.dbunit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.unitils.database.SQLUnitils.executeUpdate;
@@ -44,6 +46,7 @@ import org.unitils.database.annotations.TestDataSource;
 import org.unitils.dbunit.annotation.DataSet;
 import org.unitils.dbunit.datasetfactory.impl.MultiSchemaXmlDataSetFactory;
 import org.unitils.dbunit.datasetloadstrategy.impl.CleanInsertLoadStrategy;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
 
 /**
  * Test class for loading of data sets using the {@link DbUnitModule}.
@@ -245,6 +248,22 @@ public class DbUnitModuleDataSetTest extends UnitilsJUnit4 {
     }
 
 
+    /**
+     * Test that a data set that is used a second time is taken from the data set cache.
+     */
+    @Test
+    public void testGetDataSet_cached() throws Exception {
+        String[] dataSetFileNames = new String[]{"CustomDataSet.xml"};
+        MultiSchemaDataSet dataSet1 = dbUnitModule.getDataSet(DataSetTest.class, dataSetFileNames, dbUnitModule.getDefaultDataSetFactory());
+        MultiSchemaDataSet dataSet2 = dbUnitModule.getDataSet(DataSetTest.class, dataSetFileNames, dbUnitModule.getDefaultDataSetFactory());
+
+        assertNotSame(dataSet1, dataSet2);
+        assertEquals(dataSet1.getSchemaNames(), dataSet2.getSchemaNames());
+        String schemaName = dataSet1.getSchemaNames().iterator().next();
+        assertSame(dataSet1.getDataSetForSchema(schemaName), dataSet2.getDataSetForSchema(schemaName));
+    }
+
+
     /**
      * Utility method to assert that the correct data set was loaded.
      *
@@ -1,8 +1,18 @@
 package org.unitils.dbunit;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.unitils.dbmaintainer.locator.ClassPathDataLocator;
+import org.unitils.dbmaintainer.locator.ClassPathResourceIndex;
+import org.unitils.dbmaintainer.locator.resourcepickingstrategie.impl.UniqueMostRecentPickingStrategie;
 import org.unitils.dbunit.dataset.ColumnComparisonTest;
 import org.unitils.dbunit.util.DataSetFileNamesHandler;
 
@@ -93,6 +103,34 @@ public class DbunitModuleNaming {
         Assert.assertEquals(expected, actual);
     }
 
+    /**
+     * Test method for {@link DataSetFileNamesHandler#locateResourceUrl} with a data set in a jar folder with a space in
+     * its name.
+     */
+    @Test
+    public void testLocateResourceUrl_encodedJarPath() throws Exception {
+        File jarFile = File.createTempFile("DbunitModuleNaming", ".jar");
+        jarFile.deleteOnExit();
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            jarOutputStream.putNextEntry(new JarEntry("data sets/DataSet.xml"));
+            jarOutputStream.closeEntry();
+        } finally {
+            jarOutputStream.close();
+        }
+        final URLClassLoader classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, null);
+        ClassPathDataLocator locator = new ClassPathDataLocator() {
+            @Override
+            protected ClassPathResourceIndex getResourceIndex() {
+                return ClassPathResourceIndex.getInstance(classLoader);
+            }
+        };
+
+        URL actual = sut.locateResourceUrl(locator, "/data sets/DataSet.xml", new UniqueMostRecentPickingStrategie(), getClass());
+        Assert.assertEquals(new URL("jar:" + jarFile.toURI() + "!/data%20sets/DataSet.xml"), actual);
+        ClassPathResourceIndex.openStream(actual).close();
+    }
+
     private class TestClass1 {
 
         public void testMethod() {
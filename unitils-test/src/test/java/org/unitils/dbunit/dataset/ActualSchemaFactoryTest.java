@@ -0,0 +1,265 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.dataset;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbunit.DbUnitModule;
+import org.unitils.dbunit.util.DataSetAssert;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
+
+/**
+ * Test for {@link ActualSchemaFactory}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ActualSchemaFactoryTest extends UnitilsJUnit4 {
+
+    /* Tested object */
+    private ActualSchemaFactory actualSchemaFactory = new ActualSchemaFactory();
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* DbUnit connection to the test database, as created by the DbUnit module */
+    private DbUnitDatabaseConnection dbUnitDatabaseConnection;
+
+
+    @Before
+    public void setUp() throws Exception {
+        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        DbUnitModule dbUnitModule = new DbUnitModule();
+        dbUnitModule.init(configuration);
+        dbUnitDatabaseConnection = dbUnitModule.getDbUnitDatabaseConnection("PUBLIC");
+
+        dropTestTables();
+        executeUpdate("create table TEST_TABLE (ID integer primary key, NAME varchar(20), DESCRIPTION varchar(20))", dataSource);
+        executeUpdate("insert into TEST_TABLE values (1, 'name 1', 'description 1')", dataSource);
+        executeUpdate("insert into TEST_TABLE values (2, 'name 2', 'description 2')", dataSource);
+        executeUpdate("insert into TEST_TABLE values (3, 'name 3', 'description 3')", dataSource);
+        executeUpdate("create view TEST_VIEW as select ID, NAME from TEST_TABLE", dataSource);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        dbUnitDatabaseConnection.closeJdbcConnection();
+        dropTestTables();
+    }
+
+
+    /**
+     * Tests that only the rows with the primary keys of the expected rows are selected and only the expected columns
+     * and the primary key columns.
+     */
+    @Test
+    public void testCreateActualSchema_primaryKeys() throws Exception {
+        Schema expectedSchema = createExpectedSchema(row("ID", "3", "NAME", "name 3"), row("ID", "1", "NAME", "name 1"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+
+        Table table = result.getTable("TEST_TABLE");
+        assertEquals(2, table.getRows().size());
+        for (Row row : table.getRows()) {
+            assertEquals(asList("ID"), getColumnNames(row.getPrimaryKeyColumns()));
+            assertEquals(asList("NAME"), getColumnNames(row.getColumns()));
+            assertNull(row.getColumn("DESCRIPTION"));
+        }
+        new DataSetAssert().assertEqualSchemas(expectedSchema, result);
+    }
+
+
+    /**
+     * Tests that all rows are selected when an expected row does not contain the primary key. The primary key columns
+     * are always selected.
+     */
+    @Test
+    public void testCreateActualSchema_noPrimaryKeys() throws Exception {
+        Schema expectedSchema = createExpectedSchema(row("NAME", "name 2"), row("ID", "1", "DESCRIPTION", "description 1"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+
+        Table table = result.getTable("TEST_TABLE");
+        assertEquals(3, table.getRows().size());
+        Row row = table.getRows().get(0);
+        assertEquals(asList("ID"), getColumnNames(row.getPrimaryKeyColumns()));
+        assertEquals(asList("NAME", "DESCRIPTION"), getColumnNames(row.getColumns()));
+        new DataSetAssert().assertEqualSchemas(expectedSchema, result);
+    }
+
+
+    /**
+     * Tests that differences are still found: a row with another value and a column that does not exist.
+     */
+    @Test
+    public void testCreateActualSchema_differences() throws Exception {
+        Schema expectedSchema = createExpectedSchema(row("ID", "1", "NAME", "xxxx"), row("ID", "2", "UNKNOWN_COLUMN", "value"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+        try {
+            new DataSetAssert().assertEqualSchemas(expectedSchema, result);
+            fail("AssertionError expected");
+        } catch (AssertionError e) {
+            assertContains("NAME: \"xxxx\" <-> \"name 1\"", e.getMessage());
+            assertContains("Missing column UNKNOWN_COLUMN", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Tests that all rows are selected for an expected table without rows, so that the remaining rows are reported.
+     */
+    @Test
+    public void testCreateActualSchema_emptyTable() throws Exception {
+        Schema expectedSchema = createExpectedSchema();
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+
+        Table table = result.getTable("TEST_TABLE");
+        assertEquals(3, table.getRows().size());
+        try {
+            new DataSetAssert().assertEqualSchemas(expectedSchema, result);
+            fail("AssertionError expected");
+        } catch (AssertionError e) {
+            // expected
+        }
+    }
+
+
+    /**
+     * Tests that the table names are matched case insensitive by default.
+     */
+    @Test
+    public void testCreateActualSchema_caseInsensitive() throws Exception {
+        Schema expectedSchema = createExpectedSchema(row("ID", "1", "NAME", "name 1"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+
+        assertEquals(1, result.getTable("TEST_TABLE").getRows().size());
+    }
+
+
+    /**
+     * Tests that the expected table test_table does not match the database table TEST_TABLE when the table names are
+     * case sensitive.
+     */
+    @Test
+    public void testCreateActualSchema_caseSensitive() throws Exception {
+        dbUnitDatabaseConnection.getConfig().setProperty(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES, Boolean.TRUE);
+        Schema expectedSchema = createExpectedSchema(row("ID", "1", "NAME", "name 1"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+
+        assertNull(result.getTable("test_table"));
+    }
+
+
+    /**
+     * Tests that only tables with one of the DbUnit table types are queried. By default views are not included.
+     */
+    @Test
+    public void testCreateActualSchema_tableTypes() throws Exception {
+        Schema expectedSchema = new Schema("PUBLIC");
+        expectedSchema.addTable(new Table("TEST_VIEW"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+        assertNull(result.getTable("TEST_VIEW"));
+
+        dbUnitDatabaseConnection.getConfig().setProperty(DatabaseConfig.PROPERTY_TABLE_TYPE, new String[]{"TABLE", "VIEW"});
+        result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+        assertNotNull(result.getTable("TEST_VIEW"));
+        assertEquals(3, result.getTable("TEST_VIEW").getRows().size());
+    }
+
+
+    /**
+     * Tests that a table that does not exist is not added to the actual schema.
+     */
+    @Test
+    public void testCreateActualSchema_unknownTable() throws Exception {
+        Schema expectedSchema = new Schema("PUBLIC");
+        expectedSchema.addTable(new Table("UNKNOWN_TABLE"));
+
+        Schema result = actualSchemaFactory.createActualSchema(expectedSchema, dbUnitDatabaseConnection);
+        assertNull(result.getTable("UNKNOWN_TABLE"));
+    }
+
+
+    private Schema createExpectedSchema(Row... rows) {
+        Table table = new Table("test_table");
+        for (Row row : rows) {
+            table.addRow(row);
+        }
+        Schema schema = new Schema("PUBLIC");
+        schema.addTable(table);
+        return schema;
+    }
+
+
+    private Row row(String... columnNamesAndValues) {
+        Row row = new Row();
+        for (int i = 0; i < columnNamesAndValues.length; i += 2) {
+            row.addColumn(new Column(columnNamesAndValues[i], DataType.UNKNOWN, columnNamesAndValues[i + 1]));
+        }
+        return row;
+    }
+
+
+    private List<String> getColumnNames(List<Column> columns) {
+        List<String> result = new ArrayList<String>();
+        for (Column column : columns) {
+            result.add(column.getName());
+        }
+        return result;
+    }
+
+
+    private void assertContains(String expected, String message) {
+        if (!message.contains(expected)) {
+            fail("Expected message to contain " + expected + " but was " + message);
+        }
+    }
+
+
+    /**
+     * Removes the test view and table
+     */
+    private void dropTestTables() {
+        executeUpdateQuietly("drop view TEST_VIEW", dataSource);
+        executeUpdateQuietly("drop table TEST_TABLE", dataSource);
+    }
+}
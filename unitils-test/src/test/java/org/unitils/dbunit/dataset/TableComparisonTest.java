@@ -153,6 +153,49 @@ public class TableComparisonTest extends UnitilsJUnit4 {
     }
 
 
+    @Test
+    public void testEqualTablesInDifferentOrderWithPrimaryKeys() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            addRow(expectedTable, "pk" + i, "value" + i);
+            addRowWithPrimaryKey(actualTable, "pk" + (999 - i), "value" + (999 - i));
+        }
+
+        TableDifference result = expectedTable.compare(actualTable);
+
+        assertNull(result);
+    }
+
+
+    @Test
+    public void testEqualTablesWithRowsWithoutKeyValue() throws Exception {
+        addRow(expectedTable, "value1", "value2");
+        addRow(expectedTable, "value3", null);
+        addRow(expectedTable, "value4", "value5");
+        addRow(actualTable, "value3", "xxxx");
+        addRow(actualTable, "value4", "value5");
+        addRow(actualTable, "value1", "value2");
+
+        TableDifference result = expectedTable.compare(actualTable);
+
+        assertNull(result);
+    }
+
+
+    @Test
+    public void testDifferentValueUsingPrimaryKeyInLargeTable() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            addRow(expectedTable, "pk" + i, "value" + i);
+            addRowWithPrimaryKey(actualTable, "pk" + i, i == 500 ? "xxxx" : "value" + i);
+        }
+
+        TableDifference result = expectedTable.compare(actualTable);
+
+        assertDifferentRows(result, "value500", "xxxx");
+        assertEquals(1, result.getBestRowDifferences().size());
+        assertTrue(result.getMissingRows().isEmpty());
+    }
+
+
     private void assertDifferentRows(TableDifference tableDifference, String expectedValue, Object actualValue) {
         RowDifference rowDifference = getRowDifference(tableDifference, expectedValue, actualValue);
         assertNotNull("Row difference not found for expected value: " + expectedValue + " and actual value: " + actualValue, rowDifference);
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetfactory.impl;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.dbunit.util.MultiSchemaDataSet;
+import org.unitils.thirdparty.org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.dbunit.dataset.ITable.NO_VALUE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.dbunit.util.MultiSchemaBinaryDataSetReader.isBinaryDataSet;
+import static org.unitils.reflectionassert.ReflectionAssert.assertLenientEquals;
+import static org.unitils.reflectionassert.ReflectionAssert.assertPropertyLenientEquals;
+import static org.unitils.thirdparty.org.apache.commons.io.FileUtils.toFile;
+
+/**
+ * Test for {@link MultiSchemaBinaryDataSetFactory}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiSchemaBinaryDataSetFactoryTest {
+
+    /* Tested object */
+    private MultiSchemaBinaryDataSetFactory multiSchemaBinaryDataSetFactory;
+
+    /* The directory for the compiled data sets */
+    private File compiledDirectory;
+
+    /* Test data set files */
+    private File lessColumnsLastFile;
+
+    private File lessColumnsFirstFile;
+
+
+    @Before
+    public void setUp() throws Exception {
+        compiledDirectory = File.createTempFile("unitils-datasets", "");
+        compiledDirectory.delete();
+
+        Properties configuration = new Properties();
+        configuration.setProperty(MultiSchemaBinaryDataSetFactory.PROPKEY_COMPILED_DIRECTORY, compiledDirectory.getPath());
+        multiSchemaBinaryDataSetFactory = new MultiSchemaBinaryDataSetFactory();
+        multiSchemaBinaryDataSetFactory.init(configuration, "SCHEMA_A");
+
+        lessColumnsLastFile = toFile(getClass().getResource("/org/unitils/dbunit/util/LessColumnsLastDataSet.xml"));
+        lessColumnsFirstFile = toFile(getClass().getResource("/org/unitils/dbunit/util/LessColumnsFirstDataSet.xml"));
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(compiledDirectory);
+    }
+
+
+    /**
+     * Tests that an xml data set is compiled the first time it is used and that the compiled data set is used the
+     * next time.
+     */
+    @Test
+    public void testCreateDataSet_compiled() throws Exception {
+        MultiSchemaDataSet result = multiSchemaBinaryDataSetFactory.createDataSet(lessColumnsLastFile);
+        assertLessColumnsLast(result);
+        assertEquals(1, compiledDirectory.list().length);
+        File compiledFile = compiledDirectory.listFiles()[0];
+        long lastModified = compiledFile.lastModified();
+
+        result = multiSchemaBinaryDataSetFactory.createDataSet(lessColumnsLastFile);
+        assertLessColumnsLast(result);
+        assertEquals(1, compiledDirectory.list().length);
+        assertEquals(lastModified, compiledFile.lastModified());
+    }
+
+
+    /**
+     * Tests that a compiled data set that cannot be read is compiled again right away.
+     */
+    @Test
+    public void testCreateDataSet_invalidCompiledDataSet() throws Exception {
+        File compiledFile = multiSchemaBinaryDataSetFactory.getCompiledFile(multiSchemaBinaryDataSetFactory.getChecksum(lessColumnsLastFile));
+        compiledDirectory.mkdirs();
+        FileUtils.writeStringToFile(compiledFile, "invalid", "UTF-8");
+
+        MultiSchemaDataSet result = multiSchemaBinaryDataSetFactory.createDataSet(lessColumnsLastFile);
+        assertLessColumnsLast(result);
+        assertTrue(isBinaryDataSet(multiSchemaBinaryDataSetFactory.readHeader(compiledFile)));
+    }
+
+
+    /**
+     * Tests that a truncated compiled data set is compiled again right away and that the tables of the other data
+     * sets are not affected by the part that could be read.
+     */
+    @Test
+    public void testCreateDataSet_truncatedCompiledDataSet() throws Exception {
+        multiSchemaBinaryDataSetFactory.createDataSet(lessColumnsLastFile);
+        File compiledFile = multiSchemaBinaryDataSetFactory.getCompiledFile(multiSchemaBinaryDataSetFactory.getChecksum(lessColumnsLastFile));
+        long length = compiledFile.length();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(compiledFile, "rw");
+        try {
+            randomAccessFile.setLength(length - 5);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        MultiSchemaDataSet result = multiSchemaBinaryDataSetFactory.createDataSet(lessColumnsFirstFile, lessColumnsLastFile);
+
+        ITable table = result.getDataSetForSchema("SCHEMA_A").getTable("TABLE_A");
+        assertEquals(4, table.getRowCount());
+        assertEquals(length, compiledFile.length());
+    }
+
+
+    /**
+     * Tests reading compressed data sets from streams. The rows of both data sets are added to the same table.
+     */
+    @Test
+    public void testCreateDataSet_compressedStreams() throws Exception {
+        multiSchemaBinaryDataSetFactory.compressionEnabled = true;
+        InputStream inputStream1 = new FileInputStream(lessColumnsLastFile);
+        InputStream inputStream2 = new FileInputStream(lessColumnsFirstFile);
+        try {
+            MultiSchemaDataSet result = multiSchemaBinaryDataSetFactory.createDataSet(inputStream1, inputStream2);
+
+            ITable table = result.getDataSetForSchema("SCHEMA_A").getTable("TABLE_A");
+            assertEquals(4, table.getRowCount());
+            assertEquals("4", table.getValue(2, "COLUMN_2"));
+            assertSame(NO_VALUE, table.getValue(2, "COLUMN_1"));
+        } finally {
+            inputStream1.close();
+            inputStream2.close();
+        }
+    }
+
+
+    /**
+     * Tests compiling an xml data set up front and using the binary data set file. Null tokens are kept.
+     */
+    @Test
+    public void testCompile() throws Exception {
+        compiledDirectory.mkdirs();
+        File xmlFile = new File(compiledDirectory, "NullDataSet.xml");
+        FileUtils.writeStringToFile(xmlFile, "<dataset><TABLE_A COLUMN_1=\"[null]\" COLUMN_2=\"value\"/></dataset>", "UTF-8");
+        File binaryFile = new File(compiledDirectory, "NullDataSet.uds");
+
+        multiSchemaBinaryDataSetFactory.compile(xmlFile, binaryFile);
+        MultiSchemaDataSet result = multiSchemaBinaryDataSetFactory.createDataSet(binaryFile);
+
+        ITable table = result.getDataSetForSchema("SCHEMA_A").getTable("TABLE_A");
+        assertEquals(1, table.getRowCount());
+        assertNull(table.getValue(0, "COLUMN_1"));
+        assertEquals("value", table.getValue(0, "COLUMN_2"));
+    }
+
+
+    private void assertLessColumnsLast(MultiSchemaDataSet result) throws Exception {
+        assertLenientEquals(new String[]{"SCHEMA_A"}, result.getSchemaNames());
+        IDataSet dataSet = result.getDataSetForSchema("SCHEMA_A");
+        assertLenientEquals(new String[]{"TABLE_A"}, dataSet.getTableNames());
+
+        ITable table = dataSet.getTable("TABLE_A");
+        assertEquals(2, table.getRowCount());
+        assertPropertyLenientEquals("columnName", asList("COLUMN_1", "COLUMN_2", "COLUMN_3"), asList(table.getTableMetaData().getColumns()));
+        assertEquals("1", table.getValue(0, "COLUMN_1"));
+        assertEquals("2", table.getValue(0, "COLUMN_2"));
+        assertEquals("3", table.getValue(0, "COLUMN_3"));
+    }
+}
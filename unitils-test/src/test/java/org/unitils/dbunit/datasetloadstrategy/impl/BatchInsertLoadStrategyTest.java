@@ -0,0 +1,314 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.datasetloadstrategy.impl;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.ext.hsqldb.HsqldbDataTypeFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.core.ConfigurationLoader;
+import org.unitils.database.annotations.TestDataSource;
+import org.unitils.dbunit.DbUnitModule;
+import org.unitils.dbunit.util.DbUnitDatabaseConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.dbunit.dataset.ITable.NO_VALUE;
+import static org.junit.Assert.assertEquals;
+import static org.unitils.database.SQLUnitils.executeUpdate;
+import static org.unitils.database.SQLUnitils.executeUpdateQuietly;
+import static org.unitils.thirdparty.org.apache.commons.dbutils.DbUtils.closeQuietly;
+
+/**
+ * Test for {@link BatchInsertLoadStrategy} and {@link BatchCleanInsertLoadStrategy}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class BatchInsertLoadStrategyTest extends UnitilsJUnit4 {
+
+    /* DataSource for the test database, is injected */
+    @TestDataSource
+    private DataSource dataSource = null;
+
+    /* DbUnit connection to the test database, as created by the DbUnit module */
+    private DbUnitDatabaseConnection dbUnitDatabaseConnection;
+
+    /* Data set in which the referencing table comes before the referenced table */
+    private IDataSet dataSet;
+
+
+    @Before
+    public void setUp() throws Exception {
+        Properties configuration = new ConfigurationLoader().loadConfiguration();
+        DbUnitModule dbUnitModule = new DbUnitModule();
+        dbUnitModule.init(configuration);
+        dbUnitDatabaseConnection = dbUnitModule.getDbUnitDatabaseConnection("PUBLIC");
+
+        dropTestTables();
+        createTestTables();
+
+        DefaultTable child = new DefaultTable("CHILD", new Column[]{column("ID"), column("PARENT_ID"), column("CREATED")});
+        child.addRow(new Object[]{"1", "1", "2013-01-01"});
+        child.addRow(new Object[]{"2", "1", NO_VALUE});
+        child.addRow(new Object[]{"3", "2", null});
+        DefaultTable parent = new DefaultTable("PARENT", new Column[]{column("ID"), column("NAME")});
+        parent.addRow(new Object[]{"1", "parent 1"});
+        parent.addRow(new Object[]{"2", NO_VALUE});
+        parent.addRow(new Object[]{"3", "parent 3"});
+        dataSet = new DefaultDataSet(child, parent);
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        dbUnitDatabaseConnection.closeJdbcConnection();
+        dropTestTables();
+    }
+
+
+    /**
+     * Tests inserting a data set with a referencing table before the referenced table, using batches of 2 rows.
+     * Rows that do not specify all columns get null values for the other columns.
+     */
+    @Test
+    public void testExecute() throws Exception {
+        new TestBatchInsertLoadStrategy(false, 2).execute(dbUnitDatabaseConnection, dataSet);
+
+        assertEquals(asList("1|parent 1", "2|null", "3|parent 3"), query("select ID, NAME from PARENT order by ID"));
+        assertEquals(asList("1|1|2013-01-01", "2|1|null", "3|2|null"), query("select ID, PARENT_ID, CREATED from CHILD order by ID"));
+    }
+
+
+    /**
+     * Tests inserting the data set using insert statements with multiple value lists.
+     */
+    @Test
+    public void testExecute_multiRowInsert() throws Exception {
+        new TestBatchInsertLoadStrategy(true, 2).execute(dbUnitDatabaseConnection, dataSet);
+
+        assertEquals(asList("1|parent 1", "2|null", "3|parent 3"), query("select ID, NAME from PARENT order by ID"));
+        assertEquals(asList("1|1|2013-01-01", "2|1|null", "3|2|null"), query("select ID, PARENT_ID, CREATED from CHILD order by ID"));
+    }
+
+
+    /**
+     * Tests inserting the data set using a connection without db support. The foreign keys are then retrieved
+     * using the JDBC database meta data.
+     */
+    @Test
+    public void testExecute_noDbSupport() throws Exception {
+        DbUnitDatabaseConnection connection = new DbUnitDatabaseConnection(dataSource, "PUBLIC");
+        connection.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, new HsqldbDataTypeFactory());
+        try {
+            new TestBatchInsertLoadStrategy(false, 2).execute(connection, dataSet);
+        } finally {
+            connection.closeJdbcConnection();
+        }
+        assertEquals(asList("1|parent 1", "2|null", "3|parent 3"), query("select ID, NAME from PARENT order by ID"));
+        assertEquals(asList("1|1|2013-01-01", "2|1|null", "3|2|null"), query("select ID, PARENT_ID, CREATED from CHILD order by ID"));
+    }
+
+
+    /**
+     * Tests that the rows are inserted in data set order: the batch of a statement is sent when the next rows specify
+     * other columns and thus use another statement.
+     */
+    @Test
+    public void testExecute_dataSetOrder() throws Exception {
+        DefaultTable parent = new DefaultTable("PARENT", new Column[]{column("ID"), column("NAME")});
+        parent.addRow(new Object[]{"1", "parent 1"});
+        parent.addRow(new Object[]{"2", "parent 2"});
+        parent.addRow(new Object[]{"3", NO_VALUE});
+        parent.addRow(new Object[]{"4", "parent 4"});
+        parent.addRow(new Object[]{"5", "parent 5"});
+        TestBatchInsertLoadStrategy batchInsertLoadStrategy = new TestBatchInsertLoadStrategy(false, 10);
+
+        batchInsertLoadStrategy.execute(dbUnitDatabaseConnection, new DefaultDataSet(parent));
+
+        assertEquals(3, batchInsertLoadStrategy.nrOfExecutedBatches);
+        assertEquals(asList("1|parent 1", "2|parent 2", "3|null", "4|parent 4", "5|parent 5"), query("select ID, NAME from PARENT order by ID"));
+    }
+
+
+    /**
+     * Tests that the rows of a table that references itself are inserted in data set order, also when they
+     * alternately specify other columns.
+     */
+    @Test
+    public void testExecute_selfReferencing() throws Exception {
+        DefaultTable tree = new DefaultTable("TREE", new Column[]{column("ID"), column("PARENT_ID"), column("NAME")});
+        tree.addRow(new Object[]{"1", null, "root"});
+        tree.addRow(new Object[]{"2", "1", NO_VALUE});
+        tree.addRow(new Object[]{"3", "2", "leaf 3"});
+        tree.addRow(new Object[]{"4", "3", NO_VALUE});
+        TestBatchInsertLoadStrategy batchInsertLoadStrategy = new TestBatchInsertLoadStrategy(false, 10);
+
+        batchInsertLoadStrategy.execute(dbUnitDatabaseConnection, new DefaultDataSet(tree));
+
+        assertEquals(4, batchInsertLoadStrategy.nrOfExecutedBatches);
+        assertEquals(asList("1|null|root", "2|1|null", "3|2|leaf 3", "4|3|null"), query("select ID, PARENT_ID, NAME from TREE order by ID"));
+    }
+
+
+    /**
+     * Tests that only the tables of a reference cycle are inserted in data set order. A table that references the
+     * cycle is inserted after it.
+     */
+    @Test
+    public void testGetTableNamesInInsertOrder_cycle() throws Exception {
+        Set<String> tableNames = new LinkedHashSet<String>(asList("TABLE_C", "TABLE_A", "TABLE_B", "TABLE_D"));
+        Map<String, Set<String>> referencedTableNames = new HashMap<String, Set<String>>();
+        referencedTableNames.put("TABLE_C", new LinkedHashSet<String>(asList("TABLE_A")));
+        referencedTableNames.put("TABLE_A", new LinkedHashSet<String>(asList("TABLE_B")));
+        referencedTableNames.put("TABLE_B", new LinkedHashSet<String>(asList("TABLE_A", "TABLE_B")));
+        referencedTableNames.put("TABLE_D", new LinkedHashSet<String>());
+
+        List<String> result = new BatchInsertLoadStrategy().getTableNamesInInsertOrder(tableNames, referencedTableNames);
+        assertEquals(asList("TABLE_D", "TABLE_A", "TABLE_B", "TABLE_C"), result);
+    }
+
+
+    /**
+     * Tests that the clean insert variant first removes the existing rows, referencing rows first.
+     */
+    @Test
+    public void testExecute_cleanInsert() throws Exception {
+        executeUpdate("insert into PARENT (ID, NAME) values (9, 'old')", dataSource);
+        executeUpdate("insert into CHILD (ID, PARENT_ID) values (9, 9)", dataSource);
+
+        BatchCleanInsertLoadStrategy batchCleanInsertLoadStrategy = new BatchCleanInsertLoadStrategy() {
+            @Override
+            protected Properties getConfiguration() {
+                return new Properties();
+            }
+        };
+        batchCleanInsertLoadStrategy.execute(dbUnitDatabaseConnection, dataSet);
+
+        assertEquals(asList("1|parent 1", "2|null", "3|parent 3"), query("select ID, NAME from PARENT order by ID"));
+        assertEquals(asList("1|1|2013-01-01", "2|1|null", "3|2|null"), query("select ID, PARENT_ID, CREATED from CHILD order by ID"));
+    }
+
+
+    private Column column(String name) {
+        return new Column(name, DataType.UNKNOWN);
+    }
+
+
+    private List<String> query(String sql) throws SQLException {
+        List<String> result = new ArrayList<String>();
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery(sql);
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columnCount; i++) {
+                    if (i > 1) {
+                        row.append('|');
+                    }
+                    row.append(resultSet.getString(i));
+                }
+                result.add(row.toString());
+            }
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+        return result;
+    }
+
+
+    /**
+     * Creates the test tables
+     */
+    private void createTestTables() {
+        executeUpdate("create table PARENT (ID integer primary key, NAME varchar(20))", dataSource);
+        executeUpdate("create table CHILD (ID integer primary key, PARENT_ID integer not null, CREATED date, foreign key (PARENT_ID) references PARENT(ID))", dataSource);
+        executeUpdate("create table TREE (ID integer primary key, PARENT_ID integer, NAME varchar(20), foreign key (PARENT_ID) references TREE(ID))", dataSource);
+    }
+
+
+    /**
+     * Removes the test tables
+     */
+    private void dropTestTables() {
+        executeUpdateQuietly("drop table CHILD", dataSource);
+        executeUpdateQuietly("drop table PARENT", dataSource);
+        executeUpdateQuietly("drop table TREE", dataSource);
+    }
+
+
+    /**
+     * Strategy with the given batch size that can be forced to use multi-row inserts. The executed batches are counted.
+     */
+    private static class TestBatchInsertLoadStrategy extends BatchInsertLoadStrategy {
+
+        private boolean multiRowInsertSupported;
+
+        private int batchSize;
+
+        private int nrOfExecutedBatches;
+
+        public TestBatchInsertLoadStrategy(boolean multiRowInsertSupported, int batchSize) {
+            this.multiRowInsertSupported = multiRowInsertSupported;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected boolean isMultiRowInsertSupported(Connection connection) {
+            return multiRowInsertSupported;
+        }
+
+        @Override
+        protected void executeBatch(BatchStatement batchStatement) throws SQLException {
+            if (batchStatement.nrOfBatchedRows > 0) {
+                nrOfExecutedBatches++;
+            }
+            super.executeBatch(batchStatement);
+        }
+
+        @Override
+        protected Properties getConfiguration() {
+            Properties configuration = new Properties();
+            configuration.setProperty(PROPKEY_BATCH_SIZE, String.valueOf(batchSize));
+            configuration.setProperty(PROPKEY_MULTI_ROW_INSERT_ENABLED, "true");
+            return configuration;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.dbunit.util;
+
+import org.dbunit.dataset.DefaultDataSet;
+import org.junit.Test;
+import org.unitils.thirdparty.org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link DataSetCache}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DataSetCacheTest {
+
+    /* Tested object */
+    private DataSetCache dataSetCache = new DataSetCache(2);
+
+
+    /**
+     * Tests that the least recently used data set is removed when the cache is full.
+     */
+    @Test
+    public void testPut_leastRecentlyUsedRemoved() {
+        dataSetCache.put("a", createDataSet());
+        dataSetCache.put("b", createDataSet());
+        dataSetCache.get("a");
+        dataSetCache.put("c", createDataSet());
+
+        assertNotNull(dataSetCache.get("a"));
+        assertNull(dataSetCache.get("b"));
+        assertNotNull(dataSetCache.get("c"));
+    }
+
+
+    /**
+     * Tests that a copy is returned that shares the data sets of the schemas.
+     */
+    @Test
+    public void testGet_copy() {
+        MultiSchemaDataSet dataSet = createDataSet();
+        dataSetCache.put("a", dataSet);
+
+        MultiSchemaDataSet result = dataSetCache.get("a");
+        result.setDataSetForSchema("SCHEMA", new DefaultDataSet());
+        assertSame(dataSet.getDataSetForSchema("SCHEMA"), dataSetCache.get("a").getDataSetForSchema("SCHEMA"));
+    }
+
+
+    /**
+     * Tests that the key changes when a resource is modified.
+     */
+    @Test
+    public void testGetKey_modified() throws Exception {
+        File file = File.createTempFile("DataSetCacheTest", ".xml");
+        try {
+            FileUtils.writeStringToFile(file, "<dataset/>", "UTF-8");
+            List<URL> urls = Arrays.asList(file.toURI().toURL());
+            String key = dataSetCache.getKey("factory", urls);
+            assertEquals(key, dataSetCache.getKey("factory", urls));
+
+            FileUtils.writeStringToFile(file, "<dataset><table/></dataset>", "UTF-8");
+            assertFalse(key.equals(dataSetCache.getKey("factory", urls)));
+        } finally {
+            file.delete();
+        }
+    }
+
+
+    private MultiSchemaDataSet createDataSet() {
+        MultiSchemaDataSet dataSet = new MultiSchemaDataSet();
+        dataSet.setDataSetForSchema("SCHEMA", new DefaultDataSet());
+        return dataSet;
+    }
+}
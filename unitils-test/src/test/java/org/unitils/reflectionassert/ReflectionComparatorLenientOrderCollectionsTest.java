@@ -17,12 +17,21 @@ package org.unitils.reflectionassert;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+import static org.unitils.reflectionassert.ReflectionComparatorMode.IGNORE_DEFAULTS;
 import static org.unitils.reflectionassert.ReflectionComparatorMode.LENIENT_ORDER;
 import org.unitils.reflectionassert.difference.UnorderedCollectionDifference;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
 import static java.util.Arrays.binarySearch;
 
 
@@ -71,6 +80,51 @@ public class ReflectionComparatorLenientOrderCollectionsTest {
     }
 
 
+    /**
+     * The first matching element of a left element is not always part of a complete match. With ignore defaults,
+     * the null valued left element matches both right elements.
+     */
+    @Test
+    public void matchFoundWhenFirstMatchingElementIsNotPartOfCompleteMatch() {
+        List<Element> expected = asList(new Element(null), new Element("a"));
+        List<Element> actual = asList(new Element("a"), new Element("b"));
+
+        ReflectionComparator ignoreDefaultsComparator = createRefectionComparator(LENIENT_ORDER, IGNORE_DEFAULTS);
+        assertNull(ignoreDefaultsComparator.getDifference(expected, actual));
+    }
+
+
+    @Test
+    public void largeShuffledCollections() {
+        List<Element> expected = new ArrayList<Element>();
+        List<Element> actual = new ArrayList<Element>();
+        for (int i = 0; i < 2000; i++) {
+            expected.add(new Element("value" + i));
+            actual.add(new Element("value" + i));
+        }
+        Collections.shuffle(actual, new Random(0));
+
+        assertNull(reflectionComparator.getDifference(expected, actual));
+    }
+
+
+    @Test
+    public void largeCollectionsWithOneDifference() {
+        List<Element> expected = new ArrayList<Element>();
+        List<Element> actual = new ArrayList<Element>();
+        for (int i = 0; i < 500; i++) {
+            expected.add(new Element("value" + i));
+            actual.add(new Element("value" + (499 - i)));
+        }
+        actual.set(0, new Element("other"));
+
+        UnorderedCollectionDifference difference = (UnorderedCollectionDifference) reflectionComparator.getDifference(expected, actual);
+        assertEquals(1, difference.getBestMatchingIndexes().size());
+        assertEquals(0, (int) difference.getBestMatchingIndexes().get(499));
+        assertTrue(difference.getElementDifferences().size() == 500);
+    }
+
+
     @SuppressWarnings({"RedundantCast"})
     private void assertBestMatch(String[] expected, String expectedValue, String[] actual, String actualValue, UnorderedCollectionDifference difference) {
         int expectedIndex = binarySearch(expected, expectedValue);
@@ -80,4 +134,16 @@ public class ReflectionComparatorLenientOrderCollectionsTest {
         assertEquals("Expected (" + expectedValue + "," + actualValue + ") as best match, but found (" + expected[bestMatchingIndex] + "," + actualValue + ").", actualIndex, (int) bestMatchingIndex);
     }
 
+
+    /**
+     * Test class containing a single value.
+     */
+    private static class Element {
+
+        private String value;
+
+        public Element(String value) {
+            this.value = value;
+        }
+    }
 }
\ No newline at end of file
@@ -110,6 +110,22 @@ public class ReflectionComparatorMapTest extends TestCase {
     }
 
 
+    /**
+     * Test for two maps with number keys of different types.
+     */
+    public void testGetDifference_equalsDifferentNumberTypesAsKeys() {
+        Map<Object, String> left = new HashMap<Object, String>();
+        left.put(1L, "a");
+        left.put(2L, "b");
+        Map<Object, String> right = new HashMap<Object, String>();
+        right.put(2.0, "b");
+        right.put(1, "a");
+
+        Difference result = reflectionComparator.getDifference(left, right);
+        assertNull(result);
+    }
+
+
     /**
      * Test for two maps that contain different values.
      */
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.reflectionassert.difference.CollectionDifference;
+import org.unitils.reflectionassert.difference.Difference;
+import org.unitils.reflectionassert.report.impl.DefaultDifferenceReport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+import static org.unitils.reflectionassert.ReflectionComparatorMode.PARALLEL;
+
+/**
+ * Test class for {@link ReflectionComparator}.
+ * Contains tests for the parallel comparison of large collections and maps.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ReflectionComparatorParallelTest {
+
+    /* Comparator that compares collections and maps with more than 10 elements in parallel */
+    private ReflectionComparator parallelReflectionComparator;
+
+    /* Comparator that compares all elements sequentially */
+    private ReflectionComparator sequentialReflectionComparator;
+
+
+    @Before
+    public void initialize() {
+        parallelReflectionComparator = createRefectionComparator(10, PARALLEL);
+        sequentialReflectionComparator = createRefectionComparator();
+    }
+
+
+    @Test
+    public void equalLists() {
+        Difference result = parallelReflectionComparator.getDifference(createList(1000, -1), createList(1000, -1));
+        assertNull(result);
+    }
+
+
+    @Test
+    public void differentLists() {
+        List<Element> left = createList(1000, -1);
+        List<Element> right = createList(1005, 3);
+        right.get(500).value = "xxx";
+        right.get(999).inner = createList(2, -1);
+
+        assertSameDifferences(left, right);
+    }
+
+
+    @Test
+    public void onlyFirstDifference() {
+        List<Element> left = createList(1000, -1);
+        List<Element> right = createList(1000, 400);
+        right.get(700).value = "xxx";
+
+        CollectionDifference result = (CollectionDifference) parallelReflectionComparator.getDifference(left, right, true);
+
+        assertEquals(1, result.getElementDifferences().size());
+        assertEquals(400, (int) result.getElementDifferences().keySet().iterator().next());
+    }
+
+
+    @Test
+    public void equalMaps() {
+        Difference result = parallelReflectionComparator.getDifference(createMap(1000, -1), createMap(1000, -1));
+        assertNull(result);
+    }
+
+
+    @Test
+    public void differentMaps() {
+        Map<Integer, Element> left = createMap(1000, 10);
+        Map<Integer, Element> right = createMap(1000, 20);
+        left.remove(30);
+        right.remove(40);
+
+        assertSameDifferences(left, right);
+    }
+
+
+    @Test
+    public void cycles() {
+        List<Object> left = new ArrayList<Object>(createList(100, -1));
+        List<Object> right = new ArrayList<Object>(createList(100, 50));
+        left.add(left);
+        right.add(right);
+
+        assertSameDifferences(left, right);
+    }
+
+
+    /**
+     * Tests comparisons that run at the same time on different threads. They share the thread pool, but every
+     * comparison uses its own comparator and caches.
+     */
+    @Test
+    public void concurrentComparisons() throws Exception {
+        final List<Element> left = createList(1000, 100);
+        final List<Element> right = createList(1000, 200);
+        final String expected = new DefaultDifferenceReport().createReport(sequentialReflectionComparator.getDifference(left, right));
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> reports = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                reports.add(callers.submit(new Callable<String>() {
+                    public String call() {
+                        Difference result = createRefectionComparator(10, PARALLEL).getDifference(left, right);
+                        return new DefaultDifferenceReport().createReport(result);
+                    }
+                }));
+            }
+            for (Future<String> report : reports) {
+                assertEquals(expected, report.get());
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+
+    private void assertSameDifferences(Object left, Object right) {
+        Difference sequentialResult = sequentialReflectionComparator.getDifference(left, right);
+        Difference parallelResult = parallelReflectionComparator.getDifference(left, right);
+
+        DefaultDifferenceReport report = new DefaultDifferenceReport();
+        assertEquals(report.createReport(sequentialResult), report.createReport(parallelResult));
+    }
+
+
+    private List<Element> createList(int size, int differentIndex) {
+        List<Element> result = new ArrayList<Element>();
+        for (int i = 0; i < size; i++) {
+            result.add(new Element(i == differentIndex ? "different" : "value " + i, null));
+        }
+        return result;
+    }
+
+
+    private Map<Integer, Element> createMap(int size, int differentKey) {
+        Map<Integer, Element> result = new HashMap<Integer, Element>();
+        for (int i = 0; i < size; i++) {
+            result.put(i, new Element(i == differentKey ? "different" : "value " + i, null));
+        }
+        return result;
+    }
+
+
+    private static class Element {
+
+        private String value;
+
+        private List<Element> inner;
+
+        public Element(String value, List<Element> inner) {
+            this.value = value;
+            this.inner = inner;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.HashSet;
 
 
 /**
@@ -233,6 +234,48 @@ public class ReflectionComparatorTest extends TestCase {
     }
 
 
+    /**
+     * Test for objects with a circular dependency when no comparison results are cached.
+     */
+    public void testGetAllDifferences_circularDependencyNoCachedResults() {
+        ReflectionComparator noCacheReflectionComparator = new ReflectionComparator(ReflectionComparatorFactory.getComparatorChain(new HashSet<ReflectionComparatorMode>()), 0);
+
+        Difference result = noCacheReflectionComparator.getDifference(objectsCircularDependencyA, objectsCircularDependencyB);
+        assertNull(result);
+    }
+
+
+    /**
+     * Test for two objects that contain different values when no comparison results are cached.
+     */
+    public void testGetAllDifferences_notEqualsNoCachedResults() {
+        ReflectionComparator noCacheReflectionComparator = new ReflectionComparator(ReflectionComparatorFactory.getComparatorChain(new HashSet<ReflectionComparatorMode>()), 0);
+
+        Difference result = noCacheReflectionComparator.getDifference(objectsInnerA, objectsInnerDifferentValue);
+
+        Difference difference = getInnerDifference("string2", getInnerDifference("inner", result));
+        assertEquals("test 2", difference.getLeftValue());
+        assertEquals("XXXXXX", difference.getRightValue());
+    }
+
+
+    /**
+     * Test for objects that share sub-graphs when the cache is full. The oldest results are removed, so that the
+     * shared sub-graphs are still compared only once instead of once per path.
+     */
+    public void testGetAllDifferences_sharedSubGraphsFullCache() {
+        ReflectionComparator smallCacheReflectionComparator = new ReflectionComparator(ReflectionComparatorFactory.getComparatorChain(new HashSet<ReflectionComparatorMode>()), 10);
+        Node left = createSharedNodes(100, "value");
+        Node right = createSharedNodes(100, "other value");
+
+        Difference result = smallCacheReflectionComparator.getDifference(left, right);
+
+        assertNotNull(result);
+        assertTrue(smallCacheReflectionComparator.nrOfCachedResults <= 10);
+        assertEquals(smallCacheReflectionComparator.nrOfCachedResults, smallCacheReflectionComparator.cachedResultKeys.size());
+    }
+
+
     /**
      * Test for two objects that contain different values.
      */
@@ -250,6 +293,22 @@ public class ReflectionComparatorTest extends TestCase {
     }
 
 
+    /**
+     * Creates a chain of nodes in which both children of a node are the same next node.
+     *
+     * @param nrOfNodes The nr of nodes in the chain
+     * @param value     The value of the last node
+     * @return The first node, not null
+     */
+    private Node createSharedNodes(int nrOfNodes, String value) {
+        Node result = new Node(value, null);
+        for (int i = 1; i < nrOfNodes; i++) {
+            result = new Node(null, result);
+        }
+        return result;
+    }
+
+
     /**
      * Test class with failing equals.
      */
@@ -346,4 +405,21 @@ public class ReflectionComparatorTest extends TestCase {
     }
 
 
-}
\ No newline at end of file
+    /**
+     * Test class of which both children are the same node.
+     */
+    private static class Node {
+
+        private String value;
+
+        private Node left;
+
+        private Node right;
+
+        public Node(String value, Node child) {
+            this.value = value;
+            this.left = child;
+            this.right = child;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.report.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.unitils.reflectionassert.difference.Difference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.unitils.reflectionassert.ReflectionComparatorFactory.createRefectionComparator;
+
+/**
+ * Test class for the size limits of the {@link DefaultDifferenceReport}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDifferenceReportTest {
+
+
+    @Test
+    public void smallReportIsNotTruncated() {
+        Difference difference = getDifference(createList(3, "a"), createList(3, "b"));
+
+        String result = new DefaultDifferenceReport().createReport(difference);
+
+        assertTrue(result.contains("[2]: expected: \"a2\", actual: \"b2\""));
+        assertTrue(result.contains("--- Difference detail tree ---"));
+        assertFalse(result.contains("differences are shown"));
+        assertFalse(result.contains("output truncated"));
+    }
+
+
+    @Test
+    public void maxNrOfDifferences() {
+        Difference difference = getDifference(createList(100, "a"), createList(100, "b"));
+
+        String result = new DefaultDifferenceReport(1000000, 10, 1000).createReport(difference);
+
+        assertTrue(result.contains("[9]: expected: \"a9\", actual: \"b9\""));
+        assertFalse(result.contains("[10]: expected: \"a10\", actual: \"b10\""));
+        assertEquals(2, StringUtils.countMatches(result, "... (only the first 10 differences are shown)"));
+    }
+
+
+    @Test
+    public void maxNrOfCharacters() {
+        Difference difference = getDifference(createList(100, "a"), createList(100, "b"));
+
+        String result = new DefaultDifferenceReport(500, 1000, 1000).createReport(difference);
+
+        assertTrue(result.endsWith("\n... (output truncated after 500 characters)\n"));
+        assertEquals(500 + "\n... (output truncated after 500 characters)\n".length(), result.length());
+    }
+
+
+    @Test
+    public void largeStringValueShownAsWindowAroundFirstDifference() {
+        String left = StringUtils.repeat("x", 5000) + "abc" + StringUtils.repeat("y", 5000);
+        String right = StringUtils.repeat("x", 5000) + "def" + StringUtils.repeat("y", 5000);
+        Difference difference = getDifference(left, right);
+
+        String result = new DefaultDifferenceReport(1000000, 1000, 20).createReport(difference);
+
+        assertTrue(result.contains("\"...xxxxxxxxxxabcyyyyyyy...\" (length: 10003, first difference at index: 5000)"));
+        assertTrue(result.contains("\"...xxxxxxxxxxdefyyyyyyy...\" (length: 10003, first difference at index: 5000)"));
+        assertFalse(result.contains(StringUtils.repeat("x", 21)));
+    }
+
+
+    @Test
+    public void largeStringValueInObjectIsCutOff() {
+        List<List<String>> left = new ArrayList<List<String>>();
+        left.add(createList(1, StringUtils.repeat("x", 100)));
+        List<List<String>> right = new ArrayList<List<String>>();
+        right.add(createList(2, StringUtils.repeat("x", 100)));
+        Difference difference = getDifference(left, right);
+
+        String result = new DefaultDifferenceReport(1000000, 1000, 20).createReport(difference);
+
+        assertTrue(result.contains("\"" + StringUtils.repeat("x", 20) + "...\""));
+        assertFalse(result.contains(StringUtils.repeat("x", 21)));
+    }
+
+
+    @Test
+    public void writeReport() {
+        Difference difference = getDifference(createList(3, "a"), createList(3, "b"));
+        StringBuilder output = new StringBuilder();
+
+        new DefaultDifferenceReport().writeReport(difference, output);
+
+        assertEquals(new DefaultDifferenceReport().createReport(difference), output.toString());
+    }
+
+
+    @Test
+    public void valuesAreNotFormattedAfterMaxNrOfDifferences() {
+        Difference difference = getDifference(createList(100, "a"), createList(100, "b"));
+
+        CountingDefaultDifferenceView defaultDifferenceView = new CountingDefaultDifferenceView();
+        defaultDifferenceView.writeView(difference, new StringBuilder());
+        CountingTreeDifferenceView treeDifferenceView = new CountingTreeDifferenceView();
+        treeDifferenceView.writeView(difference, new StringBuilder());
+
+        assertEquals(2 * 10, defaultDifferenceView.nrOfFormattedValues);
+        assertEquals(2 * 10, treeDifferenceView.nrOfFormattedValues);
+    }
+
+
+    private Difference getDifference(Object left, Object right) {
+        return createRefectionComparator().getDifference(left, right);
+    }
+
+
+    private List<String> createList(int size, String prefix) {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            result.add(prefix + i);
+        }
+        return result;
+    }
+
+
+    /**
+     * View that shows at most 10 differences and counts the formatted values.
+     */
+    private static class CountingDefaultDifferenceView extends DefaultDifferenceView {
+
+        private int nrOfFormattedValues;
+
+        public CountingDefaultDifferenceView() {
+            super(10, 1000);
+        }
+
+        @Override
+        protected String formatObject(Object object, Object otherObject) {
+            nrOfFormattedValues++;
+            return super.formatObject(object, otherObject);
+        }
+    }
+
+
+    /**
+     * View that shows at most 10 differences and counts the formatted values.
+     */
+    private static class CountingTreeDifferenceView extends TreeDifferenceView {
+
+        private int nrOfFormattedValues;
+
+        public CountingTreeDifferenceView() {
+            super(10, 1000);
+        }
+
+        @Override
+        protected String formatObject(Object object, Object otherObject) {
+            nrOfFormattedValues++;
+            return super.formatObject(object, otherObject);
+        }
+    }
+}
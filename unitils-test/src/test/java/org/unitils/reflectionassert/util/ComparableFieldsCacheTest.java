@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.util;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.unitils.reflectionassert.util.ComparableFieldsCache.getComparableFields;
+
+/**
+ * Test class for {@link ComparableFieldsCache}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ComparableFieldsCacheTest {
+
+
+    @Test
+    public void fieldsOfClassAndSuperClasses() {
+        List<Field> result = getComparableFields(Child.class);
+
+        assertEquals(2, result.size());
+        assertEquals("childValue", result.get(0).getName());
+        assertEquals("parentValue", result.get(1).getName());
+        assertTrue(result.get(0).isAccessible());
+        assertTrue(result.get(1).isAccessible());
+    }
+
+
+    @Test
+    public void fieldsAreCached() {
+        List<Field> result1 = getComparableFields(Child.class);
+        List<Field> result2 = getComparableFields(Child.class);
+
+        assertSame(result1, result2);
+    }
+
+
+    @Test
+    public void noFields() {
+        List<Field> result = getComparableFields(Object.class);
+
+        assertEquals(0, result.size());
+    }
+
+
+    @Test
+    public void fieldsCannotBeModified() {
+        List<Field> result = getComparableFields(Child.class);
+        try {
+            result.clear();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(2, getComparableFields(Child.class).size());
+    }
+
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    private static class Parent {
+
+        private static String staticValue;
+
+        private transient String transientValue;
+
+        private String parentValue;
+    }
+
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    private static class Child extends Parent {
+
+        private String childValue;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.reflectionassert.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link UnorderedCollectionMatcher}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UnorderedCollectionMatcherTest {
+
+
+    /**
+     * Left element i matches right elements i and i + 1, the last left element only matches right element 0. The
+     * last left element can only be matched through an augmenting path that runs through all other elements.
+     */
+    @Test
+    public void longAugmentingPath() {
+        int size = 200000;
+        List<Integer> leftList = new ArrayList<Integer>();
+        List<Integer> rightList = new ArrayList<Integer>();
+        for (int i = 0; i <= size; i++) {
+            leftList.add(i);
+            rightList.add(i);
+        }
+        UnorderedCollectionMatcher matcher = new ChainMatcher(leftList, rightList);
+
+        assertTrue(matcher.isCompleteMatch());
+        assertEquals(0, matcher.getLeftMatches()[size]);
+        assertEquals(size, matcher.getLeftMatches()[size - 1]);
+    }
+
+
+    /**
+     * Matcher for the chain of the long augmenting path test. No elements are paired greedily.
+     */
+    private static class ChainMatcher extends UnorderedCollectionMatcher {
+
+        public ChainMatcher(List<?> leftList, List<?> rightList) {
+            super(leftList, rightList, null);
+        }
+
+        @Override
+        protected Object getBucketKey(Object element) {
+            return new Object();
+        }
+
+        @Override
+        protected int[] getMatchingRightIndexes(int leftIndex) {
+            if (leftIndex == leftList.size() - 1) {
+                return new int[]{0};
+            }
+            return new int[]{leftIndex, leftIndex + 1};
+        }
+    }
+}
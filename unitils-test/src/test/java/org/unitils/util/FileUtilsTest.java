@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013,  Unitils.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.unitils.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unitils.core.UnitilsException;
+import org.unitils.util.FileUtils.ContentWriter;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.unitils.thirdparty.org.apache.commons.io.FileUtils.readFileToString;
+import static org.unitils.util.FileUtils.writeFile;
+import static org.unitils.util.FileUtils.writeStringToFile;
+
+/**
+ * Test for {@link FileUtils#writeFile}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class FileUtilsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    /**
+     * Tests replacing an existing file in a directory that does not exist yet. No temporary file should be left behind.
+     */
+    @Test
+    public void testWriteFile() throws Exception {
+        File file = new File(tempFolder.getRoot(), "directory/file.txt");
+
+        writeFile(file, new TestContentWriter("first"));
+        writeFile(file, new TestContentWriter("second"));
+
+        assertEquals("second", readFileToString(file, null));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+
+    /**
+     * Tests that the file is left untouched and the temporary file is removed if the content cannot be written.
+     */
+    @Test
+    public void testWriteFile_failure() throws Exception {
+        File file = tempFolder.newFile("file.txt");
+        writeStringToFile(file, "original");
+
+        try {
+            writeFile(file, new ContentWriter() {
+                public void writeContent(File file) throws Exception {
+                    writeStringToFile(file, "half");
+                    throw new IllegalStateException("failure");
+                }
+            });
+            fail("Expected UnitilsException");
+        } catch (UnitilsException e) {
+            // expected
+        }
+        assertEquals("original", readFileToString(file, null));
+        assertEquals(1, tempFolder.getRoot().list().length);
+    }
+
+
+    /**
+     * Writer that writes the given string.
+     */
+    private static class TestContentWriter implements ContentWriter {
+
+        private String content;
+
+        public TestContentWriter(String content) {
+            this.content = content;
+        }
+
+        public void writeContent(File file) throws Exception {
+            writeStringToFile(file, content);
+        }
+    }
+}